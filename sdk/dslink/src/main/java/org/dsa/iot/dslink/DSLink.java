@@ -1,13 +1,15 @@
 package org.dsa.iot.dslink;
 
 import org.dsa.iot.dslink.connection.DataHandler;
+import org.dsa.iot.dslink.connection.JsonMessage;
+import org.dsa.iot.dslink.connection.MessageView;
+import org.dsa.iot.dslink.connection.OutboundMessage;
 import org.dsa.iot.dslink.link.Requester;
 import org.dsa.iot.dslink.link.Responder;
 import org.dsa.iot.dslink.methods.StreamState;
 import org.dsa.iot.dslink.node.NodeManager;
 import org.dsa.iot.dslink.node.SubscriptionManager;
 import org.vertx.java.core.Handler;
-import org.vertx.java.core.json.JsonArray;
 import org.vertx.java.core.json.JsonObject;
 
 import java.io.PrintWriter;
@@ -114,29 +116,27 @@ public class DSLink {
      */
     public void setDefaultDataHandlers(boolean requester, boolean responder) {
         if (requester) {
-            getWriter().setRespHandler(new Handler<JsonArray>() {
+            getWriter().setRespHandler(new Handler<List<MessageView>>() {
                 @Override
-                public void handle(JsonArray event) {
-                    for (Object object : event) {
-                        JsonObject json = (JsonObject) object;
-                        DSLink.this.requester.parse(json);
+                public void handle(List<MessageView> event) {
+                    for (MessageView message : event) {
+                        DSLink.this.requester.parse(message);
                     }
                 }
             });
         }
         if (responder) {
-            getWriter().setReqHandler(new Handler<JsonArray>() {
+            getWriter().setReqHandler(new Handler<List<MessageView>>() {
                 @Override
-                public void handle(JsonArray event) {
-                    List<JsonObject> responses = new LinkedList<>();
-                    for (Object object : event) {
-                        JsonObject json = (JsonObject) object;
+                public void handle(List<MessageView> event) {
+                    List<OutboundMessage> responses = new LinkedList<>();
+                    for (MessageView message : event) {
                         try {
-                            JsonObject resp = DSLink.this.responder.parse(json);
+                            OutboundMessage resp = DSLink.this.responder.parse(message);
                             responses.add(resp);
                         } catch (Exception e) {
                             JsonObject resp = new JsonObject();
-                            Integer rid = json.getInteger("rid");
+                            Integer rid = message.getRid();
                             if (rid != null) {
                                 resp.putNumber("rid", rid);
                             }
@@ -150,7 +150,9 @@ public class DSLink {
                                 resp.putString("detail", writer.toString());
                             }
                             resp.putObject("error", err);
-                            responses.add(resp);
+                            if (rid != null) {
+                                responses.add(new JsonMessage(resp));
+                            }
                         }
                     }
 
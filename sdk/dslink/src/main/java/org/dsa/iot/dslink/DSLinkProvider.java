@@ -1,9 +1,12 @@
 package org.dsa.iot.dslink;
 
+import org.dsa.iot.dslink.config.Configuration;
 import org.dsa.iot.dslink.connection.ConnectionManager;
 import org.dsa.iot.dslink.connection.DataHandler;
 import org.dsa.iot.dslink.node.NodeManager;
 import org.dsa.iot.dslink.serializer.SerializationManager;
+import org.dsa.iot.dslink.util.ExecutorConfig;
+import org.dsa.iot.dslink.util.ExecutorType;
 import org.dsa.iot.dslink.util.Objects;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,7 +50,16 @@ public class DSLinkProvider {
     public void start() {
         running = true;
 
-        final String dsId = handler.getConfig().getDsIdWithHash();
+        // Applied here so that pools can be configured in preInit
+        Configuration config = handler.getConfig();
+        for (ExecutorType type : ExecutorType.values()) {
+            ExecutorConfig executor = config.getExecutorConfig(type);
+            if (executor != null) {
+                Objects.setExecutorConfig(type, executor);
+            }
+        }
+
+        final String dsId = config.getDsIdWithHash();
         manager.setPreInitHandler(new Handler<ClientConnected>() {
             @Override
             public void handle(final ClientConnected event) {
@@ -58,8 +70,10 @@ public class DSLinkProvider {
                     public void run() {
                         if (event.isRequester()) {
                             final DSLink link;
+                            final boolean reconnected;
                             synchronized (lock) {
                                 DSLink tmp = linkRequesterCache.get(dsId);
+                                reconnected = tmp != null;
                                 if (tmp == null) {
                                     tmp = new DSLink(handler, h, true, true);
                                     tmp.setDefaultDataHandlers(true, false);
@@ -72,6 +86,9 @@ public class DSLinkProvider {
                             event.setRequesterOnConnected(new Handler<ClientConnected>() {
                                 @Override
                                 public void handle(ClientConnected event) {
+                                    if (reconnected) {
+                                        link.getRequester().restore();
+                                    }
                                     handler.onRequesterConnected(link);
                                 }
                             });
@@ -1,7 +1,15 @@
 package org.dsa.iot.dslink.config;
 
+import org.dsa.iot.dslink.connection.BackpressurePolicy;
 import org.dsa.iot.dslink.connection.ConnectionType;
+import org.dsa.iot.dslink.connection.DataHandler;
+import org.dsa.iot.dslink.connection.IntervalUpdateManager;
+import org.dsa.iot.dslink.connection.UpdateCoalescing;
+import org.dsa.iot.dslink.connection.WireCodec;
+import org.dsa.iot.dslink.connection.codec.JsonCodec;
 import org.dsa.iot.dslink.handshake.LocalKeys;
+import org.dsa.iot.dslink.util.ExecutorConfig;
+import org.dsa.iot.dslink.util.ExecutorType;
 import org.dsa.iot.dslink.util.FileUtils;
 import org.dsa.iot.dslink.util.LogManager;
 import org.dsa.iot.dslink.util.URLInfo;
@@ -9,6 +17,8 @@ import org.vertx.java.core.json.JsonObject;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
 
 /**
  * Holds the configuration of a DSLink.
@@ -25,6 +35,18 @@ public class Configuration {
     private ConnectionType type;
     private LocalKeys keys;
     private File serializationPath;
+    private WireCodec wireCodec = new JsonCodec();
+    private UpdateCoalescing coalescing = UpdateCoalescing.NONE;
+    private BackpressurePolicy backpressurePolicy = BackpressurePolicy.BLOCK;
+    private int writeHighWatermark = IntervalUpdateManager.DEFAULT_HIGH_WATERMARK;
+    private int maxMessageSize = DataHandler.DEFAULT_MAX_MESSAGE_SIZE;
+    private boolean sessionResumption;
+    private int connections = 1;
+    private int pingInterval;
+    private int minInterval = -1;
+    private int maxInterval = -1;
+    private int targetLatency = IntervalUpdateManager.DEFAULT_TARGET_LATENCY;
+    private final Map<ExecutorType, ExecutorConfig> executors = new EnumMap<>(ExecutorType.class);
 
     /**
      * Example endpoint: http://localhost:8080/conn
@@ -207,6 +229,259 @@ public class Configuration {
         return serializationPath;
     }
 
+    /**
+     * Sets the preferred codec used to encode data sent over the network.
+     * The broker must accept the format of the codec during the handshake,
+     * otherwise the link falls back to JSON.
+     *
+     * @param codec Codec to use when the broker supports its format.
+     * @see org.dsa.iot.dslink.connection.codec.MsgPackCodec
+     * @see org.dsa.iot.dslink.connection.codec.DeflateCodec
+     */
+    public void setWireCodec(WireCodec codec) {
+        if (codec == null)
+            throw new NullPointerException("codec");
+        this.wireCodec = codec;
+    }
+
+    /**
+     * @return Preferred codec used to encode data sent over the network.
+     */
+    public WireCodec getWireCodec() {
+        return wireCodec;
+    }
+
+    /**
+     * Sets how subscription updates of the same node that change multiple
+     * times within a single update interval are sent to the broker. By
+     * default every update is sent.
+     *
+     * @param coalescing Coalescing mode of subscription updates.
+     */
+    public void setUpdateCoalescing(UpdateCoalescing coalescing) {
+        if (coalescing == null)
+            throw new NullPointerException("coalescing");
+        this.coalescing = coalescing;
+    }
+
+    /**
+     * @return Coalescing mode of subscription updates.
+     */
+    public UpdateCoalescing getUpdateCoalescing() {
+        return coalescing;
+    }
+
+    /**
+     * Sets what happens to outgoing data once the broker can't keep up
+     * and the high watermark is reached. By default nothing is dropped
+     * and the threads posting data wait until the broker drains.
+     *
+     * @param policy Backpressure policy.
+     * @see #setWriteHighWatermark
+     */
+    public void setBackpressurePolicy(BackpressurePolicy policy) {
+        if (policy == null)
+            throw new NullPointerException("policy");
+        this.backpressurePolicy = policy;
+    }
+
+    /**
+     * @return Backpressure policy.
+     */
+    public BackpressurePolicy getBackpressurePolicy() {
+        return backpressurePolicy;
+    }
+
+    /**
+     * Sets the amount of bytes that can be queued in the connection before
+     * it stops accepting data. The same amount of data can be held back by
+     * the link until the connection drains, which happens once the queue
+     * of the connection falls to half of the high watermark.
+     *
+     * @param bytes High watermark in bytes.
+     */
+    public void setWriteHighWatermark(int bytes) {
+        if (bytes <= 0)
+            throw new IllegalArgumentException("bytes");
+        this.writeHighWatermark = bytes;
+    }
+
+    /**
+     * @return High watermark in bytes.
+     */
+    public int getWriteHighWatermark() {
+        return writeHighWatermark;
+    }
+
+    /**
+     * Sets the maximum size of a single frame sent to the broker. Larger
+     * batches of messages are split across multiple frames.
+     *
+     * @param size Maximum size in bytes, 0 to never split.
+     */
+    public void setMaxMessageSize(int size) {
+        if (size < 0)
+            throw new IllegalArgumentException("size");
+        this.maxMessageSize = size;
+    }
+
+    /**
+     * @return Maximum size of a single frame sent to the broker.
+     */
+    public int getMaxMessageSize() {
+        return maxMessageSize;
+    }
+
+    /**
+     * Sets whether reconnections reuse the handshake of the previous
+     * connection. The link first connects to the data endpoint with the
+     * cached authentication and only performs a full handshake if the
+     * broker rejects it.
+     *
+     * @param resumption Whether to resume the previous session.
+     */
+    public void setSessionResumption(boolean resumption) {
+        this.sessionResumption = resumption;
+    }
+
+    /**
+     * @return Whether reconnections reuse the previous handshake.
+     */
+    public boolean isSessionResumption() {
+        return sessionResumption;
+    }
+
+    /**
+     * Sets the amount of parallel data connections to the broker. Request
+     * and subscription IDs are spread across the connections, which the
+     * broker must support.
+     *
+     * @param connections Amount of data connections.
+     * @see org.dsa.iot.dslink.connection.ShardedClient
+     */
+    public void setConnections(int connections) {
+        if (connections <= 0)
+            throw new IllegalArgumentException("connections");
+        this.connections = connections;
+    }
+
+    /**
+     * @return Amount of parallel data connections to the broker.
+     */
+    public int getConnections() {
+        return connections;
+    }
+
+    /**
+     * Sets the interval of the pings sent to the broker to measure the
+     * round trip time of the connection. The broker doesn't need them to
+     * keep the connection alive, so none are sent by default.
+     *
+     * @param seconds Interval in seconds, 0 to never send pings.
+     * @see org.dsa.iot.dslink.connection.ConnectionHealth
+     */
+    public void setPingInterval(int seconds) {
+        if (seconds < 0)
+            throw new IllegalArgumentException("seconds");
+        this.pingInterval = seconds;
+    }
+
+    /**
+     * @return Interval in seconds between pings sent to the broker, or 0
+     *         if none are sent.
+     */
+    public int getPingInterval() {
+        return pingInterval;
+    }
+
+    /**
+     * Sets the bounds of an interval between frames sent to the broker
+     * that adapts to the load. Under light load messages are sent right
+     * away, under heavy load they are batched into fewer frames as long
+     * as they are sent within the target latency. By default the update
+     * interval of the handshake is used.
+     *
+     * @param min Minimum interval in milliseconds.
+     * @param max Maximum interval in milliseconds, which bounds how long
+     *            a message waits before being sent.
+     */
+    public void setAdaptiveInterval(int min, int max) {
+        if (min < 0)
+            throw new IllegalArgumentException("min");
+        else if (max < min)
+            throw new IllegalArgumentException("max");
+        this.minInterval = min;
+        this.maxInterval = max;
+    }
+
+    /**
+     * @return Whether the interval between frames adapts to the load.
+     */
+    public boolean isAdaptiveInterval() {
+        return maxInterval >= 0;
+    }
+
+    /**
+     * @return Minimum adaptive interval in milliseconds, -1 if not set.
+     */
+    public int getMinInterval() {
+        return minInterval;
+    }
+
+    /**
+     * @return Maximum adaptive interval in milliseconds, -1 if not set.
+     */
+    public int getMaxInterval() {
+        return maxInterval;
+    }
+
+    /**
+     * Sets the latency between posting a message and sending it that the
+     * adaptive interval aims for.
+     *
+     * @param millis Target latency in milliseconds.
+     * @see #setAdaptiveInterval
+     */
+    public void setTargetLatency(int millis) {
+        if (millis <= 0)
+            throw new IllegalArgumentException("millis");
+        this.targetLatency = millis;
+    }
+
+    /**
+     * @return Target latency of the adaptive interval in milliseconds.
+     */
+    public int getTargetLatency() {
+        return targetLatency;
+    }
+
+    /**
+     * Sets the sizing and bounds of a thread pool. The pools are shared by
+     * every link of the process and configured when a link is started.
+     *
+     * @param type   Purpose of the pool.
+     * @param config Configuration of the pool, {@code null} for the
+     *               default configuration.
+     * @see org.dsa.iot.dslink.util.Objects#getPool
+     */
+    public void setExecutorConfig(ExecutorType type, ExecutorConfig config) {
+        if (type == null)
+            throw new NullPointerException("type");
+        if (config == null) {
+            executors.remove(type);
+        } else {
+            executors.put(type, config);
+        }
+    }
+
+    /**
+     * @param type Purpose of the pool.
+     * @return Configuration of the pool, {@code null} if not set.
+     */
+    public ExecutorConfig getExecutorConfig(ExecutorType type) {
+        return executors.get(type);
+    }
+
     /**
      * Validates the configuration for any issues.
      */
@@ -218,7 +493,7 @@ public class Configuration {
             throw new RuntimeException("dsId is empty");
         } else if (type == null) {
             throw new RuntimeException("connection type not set");
-        } else if (authEndpoint == null) {
+        } else if (authEndpoint == null && type != ConnectionType.LOOPBACK) {
             throw new RuntimeException("authentication endpoint not set");
         } else if (keys == null) {
             throw new RuntimeException("keys not set");
@@ -0,0 +1,31 @@
+package org.dsa.iot.dslink.connection;
+
+/**
+ * Determines what happens to outgoing data when the connection can't keep
+ * up and the queued data reaches the high watermark. Only subscription
+ * updates can be dropped, threads posting data wait once the other held
+ * messages reach the high watermark under every policy.
+ *
+ * @author Samuel Grenier
+ * @see org.dsa.iot.dslink.config.Configuration#setBackpressurePolicy
+ */
+public enum BackpressurePolicy {
+
+    /**
+     * Threads posting data wait until the connection drains. Nothing is
+     * dropped, this is the default.
+     */
+    BLOCK,
+
+    /**
+     * The oldest subscription updates are dropped.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Only the latest subscription update of each sid is kept. The oldest
+     * updates are dropped if that isn't enough to stay under the high
+     * watermark.
+     */
+    KEEP_LATEST
+}
@@ -0,0 +1,124 @@
+package org.dsa.iot.dslink.connection;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the health of the connection to the remote endpoint through the
+ * pings exchanged with it. All values are updated from the network thread
+ * and can be read from any thread.
+ *
+ * @author Samuel Grenier
+ */
+public class ConnectionHealth {
+
+    private final AtomicLong pingsReceived = new AtomicLong();
+    private final AtomicLong lastPingReceived = new AtomicLong();
+
+    private final AtomicLong pingsSent = new AtomicLong();
+    private final AtomicLong pongsReceived = new AtomicLong();
+    private final AtomicLong pendingId = new AtomicLong(-1);
+    private final AtomicLong pendingTime = new AtomicLong();
+
+    private final AtomicLong lastRtt = new AtomicLong(-1);
+    private final AtomicLong averageRtt = new AtomicLong(-1);
+    private final AtomicLong maxRtt = new AtomicLong(-1);
+
+    /**
+     * Records a ping received from the remote endpoint.
+     */
+    public void pingReceived() {
+        pingsReceived.incrementAndGet();
+        lastPingReceived.set(System.currentTimeMillis());
+    }
+
+    /**
+     * Records a ping sent to the remote endpoint. Only the latest ping is
+     * tracked, a pong for an older ping is ignored.
+     *
+     * @return ID of the ping to send.
+     */
+    public long pingSent() {
+        long id = pingsSent.incrementAndGet();
+        pendingTime.set(System.nanoTime());
+        pendingId.set(id);
+        return id;
+    }
+
+    /**
+     * Records a pong received from the remote endpoint and updates the
+     * round trip time if it answers the latest ping.
+     *
+     * @param id ID of the pong.
+     */
+    public void pongReceived(long id) {
+        pongsReceived.incrementAndGet();
+        if (!pendingId.compareAndSet(id, -1)) {
+            return;
+        }
+
+        long rtt = (System.nanoTime() - pendingTime.get()) / 1000000;
+        lastRtt.set(rtt);
+
+        long avg = averageRtt.get();
+        // Exponentially weighted so a single slow pong doesn't dominate
+        averageRtt.set(avg < 0 ? rtt : (avg * 7 + rtt) / 8);
+
+        long max;
+        do {
+            max = maxRtt.get();
+        } while (rtt > max && !maxRtt.compareAndSet(max, rtt));
+    }
+
+    /**
+     * @return Amount of pings received from the remote endpoint.
+     */
+    public long getPingsReceived() {
+        return pingsReceived.get();
+    }
+
+    /**
+     * @return Time in milliseconds since the epoch of the last ping that
+     *         was received, or 0 if none were received.
+     */
+    public long getLastPingReceived() {
+        return lastPingReceived.get();
+    }
+
+    /**
+     * @return Amount of pings sent to the remote endpoint.
+     */
+    public long getPingsSent() {
+        return pingsSent.get();
+    }
+
+    /**
+     * @return Amount of pongs received from the remote endpoint.
+     */
+    public long getPongsReceived() {
+        return pongsReceived.get();
+    }
+
+    /**
+     * @return Round trip time in milliseconds of the latest ping, or -1 if
+     *         no round trip was measured yet.
+     */
+    public long getLastRtt() {
+        return lastRtt.get();
+    }
+
+    /**
+     * @return Smoothed round trip time in milliseconds, or -1 if no round
+     *         trip was measured yet.
+     */
+    public long getAverageRtt() {
+        return averageRtt.get();
+    }
+
+    /**
+     * @return Highest round trip time in milliseconds, or -1 if no round
+     *         trip was measured yet.
+     */
+    public long getMaxRtt() {
+        return maxRtt.get();
+    }
+}
@@ -1,19 +1,25 @@
 package org.dsa.iot.dslink.connection;
 
 import org.dsa.iot.dslink.config.Configuration;
+import org.dsa.iot.dslink.connection.codec.JsonCodec;
+import org.dsa.iot.dslink.connection.connector.PendingConnects;
 import org.dsa.iot.dslink.connection.connector.WebSocketConnector;
 import org.dsa.iot.dslink.handshake.LocalHandshake;
 import org.dsa.iot.dslink.handshake.RemoteHandshake;
+import org.dsa.iot.dslink.util.ExecutorType;
+import org.dsa.iot.dslink.util.HttpClientUtils;
 import org.dsa.iot.dslink.util.Objects;
 import org.dsa.iot.dslink.util.URLInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.vertx.java.core.AsyncResult;
 import org.vertx.java.core.Handler;
-import org.vertx.java.core.json.JsonObject;
+import org.vertx.java.core.http.HttpClient;
 
 import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author Samuel Grenier
@@ -24,14 +30,22 @@ public class ConnectionManager {
 
     private final Configuration configuration;
     private final LocalHandshake localHandshake;
+    private final ConnectionHealth health = new ConnectionHealth();
 
     private Handler<ClientConnected> preInitHandler;
     private DataHandler handler;
     private NetworkClient client;
-    private int delay = 1;
 
+    // Guarded by this
+    private int delay = 1;
     private ScheduledFuture<?> future;
     private boolean running;
+    private int attempts;
+
+    // Kept across reconnections for session resumption
+    private RemoteHandshake resumable;
+    private HttpClient httpClient;
+    private PendingConnects httpConnects;
 
     public ConnectionManager(Configuration configuration,
                              LocalHandshake localHandshake) {
@@ -43,6 +57,15 @@ public class ConnectionManager {
         return handler;
     }
 
+    /**
+     * The health metrics are kept across reconnections.
+     *
+     * @return Ping and round trip time metrics of the connection.
+     */
+    public ConnectionHealth getHealth() {
+        return health;
+    }
+
     /**
      * The pre initialization handler allows the dslink to be configured
      * before the link is actually connected to the server.
@@ -53,99 +76,267 @@ public class ConnectionManager {
         this.preInitHandler = onClientInit;
     }
 
+    /**
+     * Starts the connection sequence. The handshake and the connection to
+     * the data endpoint are performed asynchronously, no thread waits on
+     * the network while connecting.
+     *
+     * @param onClientConnected Called once the link is connected.
+     */
     public synchronized void start(final Handler<ClientConnected> onClientConnected) {
-        stop();
+        stop(false);
         running = true;
+        final int attempt = ++attempts;
+
+        if (configuration.getConnectionType() == ConnectionType.LOOPBACK) {
+            // Nothing to negotiate with
+            Objects.getDaemonThreadPool().execute(new Runnable() {
+                @Override
+                public void run() {
+                    connect(attempt, null, false, onClientConnected);
+                }
+            });
+            return;
+        }
+
+        final RemoteHandshake previous = resumable;
+        if (previous != null && configuration.isSessionResumption()) {
+            LOGGER.debug("Resuming previous session");
+            Objects.getDaemonThreadPool().execute(new Runnable() {
+                @Override
+                public void run() {
+                    connect(attempt, previous, true, onClientConnected);
+                }
+            });
+            return;
+        }
 
-        final ScheduledThreadPoolExecutor stpe = Objects.getDaemonThreadPool();
-        stpe.execute(new Runnable() {
+        handshake(attempt, onClientConnected);
+    }
+
+    private void handshake(final int attempt,
+                           final Handler<ClientConnected> onClientConnected) {
+        LOGGER.debug("Initiating connection sequence");
+        Handler<AsyncResult<RemoteHandshake>> onHandshake = new Handler<AsyncResult<RemoteHandshake>>() {
             @Override
-            public void run() {
-                synchronized (ConnectionManager.this) {
-                    if (!running) {
-                        return;
-                    }
+            public void handle(final AsyncResult<RemoteHandshake> event) {
+                if (!isCurrent(attempt)) {
+                    return;
+                } else if (event.failed()) {
+                    LOGGER.error("Failed to complete handshake: {}", event.cause().getMessage());
+                    reconnect();
+                    return;
                 }
-                LOGGER.debug("Initiating connection sequence");
-                RemoteHandshake currentHandshake = generateHandshake(new Handler<Exception>() {
+
+                if (configuration.isSessionResumption()) {
+                    resumable = event.result();
+                }
+
+                // Initialization handlers may block, keep them off the
+                // network threads
+                Objects.getDaemonThreadPool().execute(new Runnable() {
                     @Override
-                    public void handle(Exception event) {
-                        LOGGER.error("Failed to complete handshake: {}", event.getMessage());
-                        reconnect();
+                    public void run() {
+                        connect(attempt, event.result(), false, onClientConnected);
                     }
                 });
+            }
+        };
+
+        URLInfo auth = configuration.getAuthEndpoint();
+        if (configuration.isSessionResumption()) {
+            HttpClient client = getHttpClient();
+            RemoteHandshake.generate(localHandshake, client, auth.path, onHandshake);
+        } else {
+            RemoteHandshake.generate(localHandshake, auth, onHandshake);
+        }
+    }
 
-                if (currentHandshake == null) {
-                    return;
-                }
+    /**
+     * @param currentHandshake Handshake of the connection, {@code null} for
+     *                         a loopback connection.
+     */
+    private void connect(final int attempt,
+                         final RemoteHandshake currentHandshake,
+                         final boolean resumed,
+                         final Handler<ClientConnected> onClientConnected) {
+        if (!isCurrent(attempt)) {
+            return;
+        }
 
-                int updateInterval = currentHandshake.getUpdateInterval();
-                if (handler == null) {
-                    handler = new DataHandler(updateInterval);
-                }
+        // Loopback messages aren't batched for a remote endpoint
+        int updateInterval = 0;
+        WireCodec codec = configuration.getWireCodec();
+        if (currentHandshake != null) {
+            updateInterval = currentHandshake.getUpdateInterval();
+            codec = selectCodec(currentHandshake);
+        }
+        if (handler == null) {
+            handler = new DataHandler(updateInterval);
+        }
+        handler.setCodec(codec);
+        handler.setUpdateCoalescing(configuration.getUpdateCoalescing());
+        handler.setMaxMessageSize(configuration.getMaxMessageSize());
+        if (configuration.isAdaptiveInterval()) {
+            handler.setAdaptiveInterval(configuration.getMinInterval(),
+                                        configuration.getMaxInterval(),
+                                        configuration.getTargetLatency());
+        }
+        handler.setBackpressure(configuration.getBackpressurePolicy(),
+                                configuration.getWriteHighWatermark());
 
-                boolean req = localHandshake.isRequester();
-                boolean resp = localHandshake.isResponder();
-                final ClientConnected cc = new ClientConnected(req, resp);
-                cc.setHandler(handler);
+        boolean req = localHandshake.isRequester();
+        boolean resp = localHandshake.isResponder();
+        final ClientConnected cc = new ClientConnected(req, resp);
+        cc.setHandler(handler);
 
-                if (preInitHandler != null) {
-                    preInitHandler.handle(cc);
-                }
+        if (preInitHandler != null) {
+            preInitHandler.handle(cc);
+        }
 
-                ConnectionType type = configuration.getConnectionType();
-                switch (type) {
-                    case WEB_SOCKET:
-                        WebSocketConnector connector = new WebSocketConnector(handler);
-                        connector.setEndpoint(configuration.getAuthEndpoint());
-                        connector.setRemoteHandshake(currentHandshake);
-                        connector.setLocalHandshake(localHandshake);
-                        connector.setOnConnected(new Handler<Void>() {
-                            @Override
-                            public void handle(Void event) {
-                                if (onClientConnected != null) {
-                                    onClientConnected.handle(cc);
-                                }
-                                cc.connected();
+        ConnectionType type = configuration.getConnectionType();
+        switch (type) {
+            case WEB_SOCKET:
+                int count = configuration.getConnections();
+                final AtomicInteger connected = new AtomicInteger();
+                final AtomicBoolean received = new AtomicBoolean();
+                final WebSocketConnector[] connectors = new WebSocketConnector[count];
+                for (int i = 0; i < count; i++) {
+                    WebSocketConnector connector = new WebSocketConnector(handler);
+                    connector.setEndpoint(configuration.getAuthEndpoint());
+                    connector.setRemoteHandshake(currentHandshake);
+                    connector.setLocalHandshake(localHandshake);
+                    if (configuration.isSessionResumption()) {
+                        synchronized (this) {
+                            connector.setHttpClient(getHttpClient(), httpConnects);
+                        }
+                    }
+                    if (count > 1) {
+                        connector.setShard(i);
+                    }
+                    if (i == 0) {
+                        // Only the first connection measures the round trips
+                        connector.setHealth(health);
+                        connector.setPingInterval(configuration.getPingInterval());
+                    }
+                    connector.setWriteQueueMaxSize(configuration.getWriteHighWatermark());
+                    connector.setOnConnected(new Handler<Void>() {
+                        @Override
+                        public void handle(Void event) {
+                            if (connected.incrementAndGet() != connectors.length) {
+                                return;
                             }
-                        });
-
-                        connector.setOnDisconnected(new Handler<Void>() {
-                            @Override
-                            public void handle(Void event) {
-                                if (running) {
-                                    LOGGER.warn("WebSocket connection failed");
-                                    reconnect();
-                                }
+                            if (onClientConnected != null) {
+                                onClientConnected.handle(cc);
                             }
-                        });
-
-                        connector.setOnException(new Handler<Throwable>() {
-                            @Override
-                            public void handle(Throwable event) {
-                                LOGGER.error("Connector exception", event);
+                            cc.connected();
+                        }
+                    });
+
+                    connector.setOnDisconnected(new Handler<Void>() {
+                        @Override
+                        public void handle(Void event) {
+                            if (resumed && !received.get()) {
+                                // Closed by the broker before any data was
+                                // exchanged, the session can't be resumed
+                                invalidate(currentHandshake);
+                            }
+                            if (isCurrent(attempt)) {
+                                LOGGER.warn("WebSocket connection failed");
+                                reconnect();
                             }
-                        });
+                        }
+                    });
+
+                    connector.setOnException(new Handler<Throwable>() {
+                        @Override
+                        public void handle(Throwable event) {
+                            LOGGER.error("Connector exception", event);
+                        }
+                    });
+
+                    connector.setOnDrain(new Handler<Void>() {
+                        @Override
+                        public void handle(Void event) {
+                            getHandler().resume();
+                        }
+                    });
+
+                    connector.setOnData(new Handler<InboundFrame>() {
+                        @Override
+                        public void handle(InboundFrame event) {
+                            received.set(true);
+                            getHandler().processData(event);
+                        }
+                    });
+                    connectors[i] = connector;
+                }
 
-                        connector.setOnData(new Handler<JsonObject>() {
-                            @Override
-                            public void handle(JsonObject event) {
-                                getHandler().processData(event);
+                NetworkClient client;
+                if (count == 1) {
+                    client = connectors[0];
+                } else {
+                    client = new ShardedClient(connectors);
+                }
+                synchronized (this) {
+                    if (!isCurrent(attempt)) {
+                        return;
+                    }
+                    this.client = client;
+                }
+                handler.setClient(client);
+
+                final AtomicBoolean failed = new AtomicBoolean();
+                for (WebSocketConnector connector : connectors) {
+                    connector.start(new Handler<AsyncResult<Void>>() {
+                        @Override
+                        public void handle(AsyncResult<Void> event) {
+                            if (event.succeeded() || !isCurrent(attempt)) {
+                                return;
+                            } else if (!failed.compareAndSet(false, true)) {
+                                // Already handled by another connection
+                                return;
+                            } else if (resumed) {
+                                LOGGER.info("Session resumption rejected: {}", event.cause().getMessage());
+                                invalidate(currentHandshake);
+                                // Supersedes the attempt so the other
+                                // connections closing are ignored
+                                start(onClientConnected);
+                                return;
                             }
-                        });
-
-                        client = connector;
-                        handler.setClient(connector);
-                        connector.start();
-                        break;
-                    default:
-                        throw new RuntimeException("Unhandled type: " + type);
+                            LOGGER.error("Failed to connect: {}", event.cause().getMessage());
+                            reconnect();
+                        }
+                    });
                 }
-            }
-        });
+                break;
+            case LOOPBACK:
+                LoopbackClient loopback = new LoopbackClient(handler);
+                synchronized (this) {
+                    if (!isCurrent(attempt)) {
+                        return;
+                    }
+                    this.client = loopback;
+                }
+                handler.setClient(loopback);
+                if (onClientConnected != null) {
+                    onClientConnected.handle(cc);
+                }
+                cc.connected();
+                break;
+            default:
+                throw new RuntimeException("Unhandled type: " + type);
+        }
     }
 
+    /**
+     * Stops the connection and discards the cached session.
+     */
     public synchronized void stop() {
+        stop(true);
+    }
+
+    private synchronized void stop(boolean discardSession) {
         running = false;
 
         if (future != null) {
@@ -157,50 +348,104 @@ public class ConnectionManager {
             client.close();
             client = null;
         }
+
+        if (discardSession) {
+            resumable = null;
+            if (httpClient != null) {
+                httpClient.close();
+                httpClient = null;
+                httpConnects = null;
+            }
+        }
+    }
+
+    private WireCodec selectCodec(RemoteHandshake handshake) {
+        WireCodec codec = configuration.getWireCodec();
+        if (codec.getFormat().equals(handshake.getFormat())) {
+            return codec;
+        }
+        LOGGER.debug("Remote selected format {}, using JSON", handshake.getFormat());
+        return new JsonCodec();
     }
 
-    private RemoteHandshake generateHandshake(Handler<Exception> errorHandler) {
-        try {
-            synchronized (this) {
-                if (!running) {
-                    return null;
+    /**
+     * @return Client to the authentication endpoint kept across
+     * reconnections.
+     */
+    private synchronized HttpClient getHttpClient() {
+        if (httpClient == null) {
+            httpClient = HttpClientUtils.configure(configuration.getAuthEndpoint());
+            httpConnects = PendingConnects.install(httpClient, new Handler<Throwable>() {
+                @Override
+                public void handle(Throwable event) {
+                    LOGGER.debug("Endpoint client failure", event);
                 }
-            }
-            URLInfo auth = configuration.getAuthEndpoint();
-            return RemoteHandshake.generate(localHandshake, auth);
-        } catch (Exception e) {
-            if (errorHandler != null) {
-                errorHandler.handle(e);
-            }
+            });
+        }
+        return httpClient;
+    }
+
+    /**
+     * Prevents the next reconnection from resuming a session.
+     *
+     * @param handshake Handshake of the session that can't be resumed.
+     */
+    private synchronized void invalidate(RemoteHandshake handshake) {
+        if (resumable == handshake) {
+            resumable = null;
         }
-        return null;
+    }
+
+    /**
+     * @param attempt Connection attempt to check.
+     * @return Whether the attempt wasn't superseded or stopped.
+     */
+    private synchronized boolean isCurrent(int attempt) {
+        return running && attempt == attempts;
     }
 
     private synchronized void reconnect() {
-        if (!running) {
+        if (!running || future != null) {
+            // Already scheduled by another connection
             return;
         }
 
-        LOGGER.info("Reconnecting in {} seconds", delay);
-        future = Objects.getDaemonThreadPool().schedule(new Runnable() {
+        // Resuming a session doesn't involve the authentication endpoint,
+        // it is attempted right away and falls back to the backoff
+        final boolean resume = resumable != null
+                && configuration.isSessionResumption();
+        int wait = resume ? 0 : delay;
+        LOGGER.info("Reconnecting in {} seconds", wait);
+        future = Objects.getPool(ExecutorType.TIMER).schedule(new Runnable() {
             @Override
             public void run() {
+                synchronized (ConnectionManager.this) {
+                    if (!running || future == null) {
+                        // Stopped or superseded while waiting
+                        return;
+                    }
+                    future = null;
+                    // Grown before the attempt so a success resets it
+                    if (!resume) {
+                        delay *= 2;
+                        int cap = 60;
+                        if (delay > cap) {
+                            delay = cap;
+                        }
+                    }
+                }
+
                 start(new Handler<ClientConnected>() {
                     @Override
                     public void handle(ClientConnected event) {
                         LOGGER.info("Connection established");
-                        delay = 1;
+                        synchronized (ConnectionManager.this) {
+                            delay = 1;
+                        }
                     }
                 });
-                delay *= 2;
-                int cap = 60;
-                if (delay > cap) {
-                    delay = cap;
-                }
-
-                future = null;
             }
-        }, delay, TimeUnit.SECONDS);
+        }, wait, TimeUnit.SECONDS);
     }
 
     public static class ClientConnected {
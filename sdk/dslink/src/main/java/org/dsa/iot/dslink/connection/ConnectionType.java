@@ -11,6 +11,15 @@ public enum ConnectionType {
      * Web socket connection type. Used for connecting to data endpoints
      * after a handshake to connect to the web socket URI.
      */
-    WEB_SOCKET
+    WEB_SOCKET,
+
+    /**
+     * In process connection type. The link is connected to itself without
+     * a handshake or a broker, the requester sends its requests directly
+     * to the responder of the same link.
+     *
+     * @see LoopbackClient
+     */
+    LOOPBACK
 
 }
@@ -1,29 +1,42 @@
 package org.dsa.iot.dslink.connection;
 
+import org.dsa.iot.dslink.connection.codec.JsonCodec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.vertx.java.core.Handler;
-import org.vertx.java.core.json.JsonArray;
 import org.vertx.java.core.json.JsonObject;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 /**
- * Handles all incoming and outgoing data in a network endpoint.
+ * Handles all incoming and outgoing data in a network endpoint. When the
+ * client is a {@link ShardedClient} the outgoing data is spread across its
+ * connections. When the client is a {@link LoopbackClient} the outgoing
+ * data is handed to its peer without being encoded.
  *
  * @author Samuel Grenier
  */
 public class DataHandler {
 
+    /**
+     * Default maximum size of a frame sent to the remote endpoint.
+     */
+    public static final int DEFAULT_MAX_MESSAGE_SIZE = 512 * 1024;
+
     private static final Logger LOGGER;
 
+    private final OutboundStats stats = new OutboundStats();
     private final IntervalUpdateManager requests;
     private final IntervalUpdateManager responses;
 
     private NetworkClient client;
-    private Handler<JsonArray> reqHandler;
-    private Handler<JsonArray> respHandler;
+    private volatile int maxMessageSize = DEFAULT_MAX_MESSAGE_SIZE;
+    private WireCodec codec = new JsonCodec();
+    private Handler<List<MessageView>> reqHandler;
+    private Handler<List<MessageView>> respHandler;
 
     public DataHandler(int updateInterval) {
         requests = getIntervalHandler(updateInterval, "requests");
@@ -32,13 +45,117 @@ public class DataHandler {
 
     public void setClient(NetworkClient client) {
         this.client = client;
+        requests.setClient(client);
+        responses.setClient(client);
+    }
+
+    /**
+     * Sets how outgoing data is bounded while the client can't keep up.
+     *
+     * @param policy        Policy applied once the high watermark is
+     *                      reached.
+     * @param highWatermark Estimated amount of bytes that can be held back.
+     * @see org.dsa.iot.dslink.config.Configuration#setBackpressurePolicy
+     */
+    public void setBackpressure(BackpressurePolicy policy, int highWatermark) {
+        requests.setBackpressure(policy, highWatermark);
+        responses.setBackpressure(policy, highWatermark);
+    }
+
+    /**
+     * Writes any data held back while the client couldn't keep up. Must be
+     * called when the client drained.
+     */
+    public void resume() {
+        requests.resume();
+        responses.resume();
+    }
+
+    /**
+     * Lets the interval between flushes adapt to the amount of outgoing
+     * data rather than using the update interval of the handshake.
+     *
+     * @param min     Minimum interval in milliseconds.
+     * @param max     Maximum interval in milliseconds.
+     * @param latency Latency in milliseconds the interval aims for.
+     * @see IntervalUpdateManager#setAdaptiveInterval(int, int, int)
+     */
+    public void setAdaptiveInterval(int min, int max, int latency) {
+        requests.setAdaptiveInterval(min, max, latency);
+        responses.setAdaptiveInterval(min, max, latency);
+    }
+
+    /**
+     * @return Interval in milliseconds currently used between flushes of
+     *         requests.
+     */
+    public int getRequestsInterval() {
+        return requests.getInterval();
+    }
+
+    /**
+     * @return Interval in milliseconds currently used between flushes of
+     *         responses.
+     */
+    public int getResponsesInterval() {
+        return responses.getInterval();
+    }
+
+    /**
+     * @return Metrics of outgoing data held back or dropped.
+     */
+    public OutboundStats getOutboundStats() {
+        return stats;
+    }
+
+    /**
+     * Sets the codec used to encode outgoing data. The codec must match
+     * the format negotiated with the remote endpoint.
+     *
+     * @param codec Codec to set.
+     */
+    public void setCodec(WireCodec codec) {
+        if (codec == null)
+            throw new NullPointerException("codec");
+        this.codec = codec;
+    }
+
+    /**
+     * @return Codec used to encode and decode data.
+     */
+    public WireCodec getCodec() {
+        return codec;
     }
 
-    public void setReqHandler(Handler<JsonArray> handler) {
+    /**
+     * Sets how subscription updates of the same sid are combined when
+     * several of them are queued within a single update interval.
+     *
+     * @param coalescing Coalescing mode of outgoing subscription updates.
+     */
+    public void setUpdateCoalescing(UpdateCoalescing coalescing) {
+        responses.setCoalescing(coalescing);
+    }
+
+    /**
+     * Sets the maximum size of a frame sent to the remote endpoint. Larger
+     * batches are split across multiple frames and large responses are
+     * continued in the next frame with the same rid. A frame exceeds the
+     * maximum by at most a single message or update row.
+     *
+     * @param size Maximum size in bytes, 0 to never split.
+     */
+    public void setMaxMessageSize(int size) {
+        if (size < 0)
+            throw new IllegalArgumentException("size");
+        this.maxMessageSize = size;
+    }
+
+    public void setReqHandler(Handler<List<MessageView>> handler) {
         this.reqHandler = handler;
     }
 
-    public void setRespHandler(Handler<JsonArray> handler) {
+    public void setRespHandler(Handler<List<MessageView>> handler) {
         this.respHandler = handler;
     }
 
@@ -48,68 +165,210 @@ public class DataHandler {
      * @param obj JSON object to process.
      */
     public void processData(JsonObject obj) {
+        processData(InboundFrame.fromJson(obj));
+    }
+
+    /**
+     * Processes an incoming frame from a remote endpoint.
+     *
+     * @param frame Frame to process.
+     */
+    public void processData(InboundFrame frame) {
         if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug("Received data: {}", obj.encode());
+            logReceived(frame.getRequests());
+            logReceived(frame.getResponses());
         }
 
-        JsonArray requests = obj.getArray("requests");
+        List<MessageView> requests = frame.getRequests();
         if (!(reqHandler == null || requests == null)) {
             reqHandler.handle(requests);
         }
 
-        JsonArray responses = obj.getArray("responses");
+        List<MessageView> responses = frame.getResponses();
         if (!(respHandler == null || responses == null)) {
             respHandler.handle(responses);
         }
     }
 
+    private static void logReceived(List<MessageView> messages) {
+        if (messages != null) {
+            for (MessageView message : messages) {
+                LOGGER.debug("Received data: {}", message.toJson().encode());
+            }
+        }
+    }
+
     public void writeRequest(JsonObject object) {
         if (object == null) {
             throw new NullPointerException("object");
         }
-        requests.post(object);
+        writeRequest(new JsonMessage(object));
+    }
+
+    public void writeRequest(OutboundMessage message) {
+        if (message == null) {
+            throw new NullPointerException("message");
+        }
+        requests.post(message);
+    }
+
+    public void writeRequests(List<? extends OutboundMessage> messages) {
+        if (messages == null) {
+            throw new NullPointerException("messages");
+        }
+        requests.post(messages);
     }
 
     public void writeResponse(JsonObject object) {
         if (object == null) {
             throw new NullPointerException("object");
         }
-        responses.post(object);
+        writeResponse(new JsonMessage(object));
     }
 
-    public void writeResponses(List<JsonObject> objects) {
-        if (objects == null) {
-            throw new NullPointerException("objects");
+    public void writeResponse(OutboundMessage message) {
+        if (message == null) {
+            throw new NullPointerException("message");
         }
-        responses.post(objects);
+        responses.post(message);
+    }
+
+    public void writeResponses(List<? extends OutboundMessage> messages) {
+        if (messages == null) {
+            throw new NullPointerException("messages");
+        }
+        responses.post(messages);
     }
 
     private IntervalUpdateManager getIntervalHandler(int updateInterval,
                                                                final String name) {
+        final boolean isRequests = "requests".equals(name);
         return new IntervalUpdateManager(updateInterval,
-                new Handler<Collection<JsonObject>>() {
+                IntervalUpdateManager.DEFAULT_CAPACITY, stats,
+                new Handler<Collection<MessageGroup>>() {
+
+                    // Only accessed by the flusher of the update manager. The
+                    // splitters write to the shards of the client they were
+                    // built for, so they are rebuilt whenever it changes.
+                    private FrameSplitter[] splitters = new FrameSplitter[0];
+                    private WireCodec writerCodec;
+                    private NetworkClient writerClient;
+
                     @Override
-                    public void handle(Collection<JsonObject> event) {
-                        JsonObject top = new JsonObject();
+                    public void handle(Collection<MessageGroup> event) {
+                        NetworkClient client = DataHandler.this.client;
+                        if (!client.isConnected()) {
+                            return;
+                        } else if (client instanceof LoopbackClient) {
+                            ((LoopbackClient) client).deliver(isRequests, event);
+                            return;
+                        }
+
+                        List<NetworkClient> shards;
+                        if (client instanceof ShardedClient) {
+                            shards = ((ShardedClient) client).getShards();
+                        } else {
+                            shards = Collections.singletonList(client);
+                        }
 
-                        JsonArray array = new JsonArray();
-                        for (JsonObject obj : event) {
-                            array.addObject(obj);
+                        WireCodec codec = DataHandler.this.codec;
+                        if (writerCodec != codec || writerClient != client) {
+                            splitters = new FrameSplitter[shards.size()];
+                            for (int i = 0; i < splitters.length; i++) {
+                                final WireCodec c = codec;
+                                final NetworkClient shard = shards.get(i);
+                                StreamWriter writer = codec.createWriter();
+                                splitters[i] = new FrameSplitter(writer, name, 0, new Handler<StreamWriter>() {
+                                    @Override
+                                    public void handle(StreamWriter event) {
+                                        send(c, event, shard);
+                                    }
+                                });
+                            }
+                            writerCodec = codec;
+                            writerClient = client;
                         }
 
-                        top.putArray(name, array);
-                        String encoded = top.encode();
+                        if (splitters.length == 1) {
+                            write(splitters[0], event);
+                            return;
+                        }
 
-                        if (client.isConnected()) {
-                            if (LOGGER.isDebugEnabled()) {
-                                LOGGER.debug("Sent data: {}", encoded);
+                        List<List<MessageGroup>> sharded = shard((ShardedClient) client, event);
+                        for (int i = 0; i < splitters.length; i++) {
+                            List<MessageGroup> groups = sharded.get(i);
+                            if (!groups.isEmpty()) {
+                                write(splitters[i], groups);
                             }
-                            client.write(encoded);
                         }
                     }
                 });
     }
 
+    private void write(FrameSplitter splitter, Collection<MessageGroup> groups) {
+        splitter.setMaxSize(maxMessageSize);
+        splitter.begin();
+        for (MessageGroup group : groups) {
+            group.write(splitter);
+        }
+        splitter.end();
+    }
+
+    /**
+     * Assigns every group to a connection by its rid. Subscription updates
+     * are spread by their sid instead.
+     *
+     * @param client Connections to spread the groups across.
+     * @param groups Groups of a flush.
+     * @return Groups of each connection in the order of the flush.
+     */
+    private static List<List<MessageGroup>> shard(ShardedClient client,
+                                                  Collection<MessageGroup> groups) {
+        int count = client.getShards().size();
+        List<List<MessageGroup>> sharded = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            sharded.add(new ArrayList<MessageGroup>());
+        }
+
+        for (MessageGroup group : groups) {
+            if (group.getRid() != 0) {
+                sharded.get(client.shardOfRid(group.getRid())).add(group);
+                continue;
+            }
+
+            MessageGroup[] updates = new MessageGroup[count];
+            for (OutboundMessage msg : group.getMessages()) {
+                int shard;
+                if (msg instanceof SubscriptionMessage) {
+                    shard = client.shardOfSid(((SubscriptionMessage) msg).getSid());
+                } else {
+                    shard = client.shardOfRid(0);
+                }
+                if (updates[shard] == null) {
+                    updates[shard] = new MessageGroup(0);
+                    sharded.get(shard).add(updates[shard]);
+                }
+                updates[shard].add(msg, group.getLane());
+            }
+        }
+        return sharded;
+    }
+
+    private void send(WireCodec codec, StreamWriter writer, NetworkClient client) {
+        if (codec.isBinary()) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Sent {} bytes", writer.size());
+            }
+            client.write(writer.toBuffer());
+        } else {
+            String encoded = writer.toString();
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Sent data: {}", encoded);
+            }
+            client.write(encoded);
+        }
+    }
+
     static {
         LOGGER = LoggerFactory.getLogger(DataHandler.class);
     }
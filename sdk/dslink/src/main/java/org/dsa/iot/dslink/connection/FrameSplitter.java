@@ -0,0 +1,306 @@
+package org.dsa.iot.dslink.connection;
+
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.buffer.Buffer;
+
+/**
+ * Writes the top level {@code requests} or {@code responses} envelope and
+ * splits it into multiple frames once a frame exceeds the maximum message
+ * size. Frames are split between messages, or between the update rows of
+ * a single message which is then continued with the same rid in the next
+ * frame. A frame therefore only exceeds the maximum size by at most one
+ * message or row.
+ * <p>
+ * Fields written before the updates of a message are sent with its first
+ * chunk while fields written after them, such as the stream state, are
+ * sent with its last chunk.
+ *
+ * @author Samuel Grenier
+ * @see MessageGroup#write
+ */
+public class FrameSplitter implements StreamWriter {
+
+    // Logical depths of the envelope structure
+    private static final int ENVELOPE = 1;
+    private static final int MESSAGES = 2;
+    private static final int MESSAGE = 3;
+    private static final int UPDATES = 4;
+
+    private final StreamWriter writer;
+    private final String name;
+    private final Handler<StreamWriter> sender;
+    private int maxSize;
+
+    private int depth;
+    private boolean ridField;
+    private long rid;
+    private boolean inUpdates;
+    private boolean updatesField;
+
+    /**
+     * Whether the frame of the current message was sent and the message
+     * hasn't been reopened in a new frame yet.
+     */
+    private boolean suspended;
+    private boolean frameStarted;
+    private int messages;
+
+    /**
+     * @param writer  Writer the frames are written into.
+     * @param name    Name of the envelope array, either {@code requests} or
+     *                {@code responses}.
+     * @param maxSize Maximum size of a frame in bytes, 0 to never split.
+     * @param sender  Sends each completed frame held by the writer.
+     */
+    public FrameSplitter(StreamWriter writer,
+                         String name,
+                         int maxSize,
+                         Handler<StreamWriter> sender) {
+        if (writer == null)
+            throw new NullPointerException("writer");
+        else if (name == null)
+            throw new NullPointerException("name");
+        else if (sender == null)
+            throw new NullPointerException("sender");
+        this.writer = writer;
+        this.name = name;
+        this.sender = sender;
+        setMaxSize(maxSize);
+    }
+
+    /**
+     * @param maxSize Maximum size of a frame in bytes, 0 to never split.
+     */
+    public void setMaxSize(int maxSize) {
+        if (maxSize < 0)
+            throw new IllegalArgumentException("maxSize");
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Starts writing a batch of messages.
+     */
+    public void begin() {
+        depth = MESSAGES;
+        suspended = false;
+        inUpdates = false;
+        startFrame();
+    }
+
+    /**
+     * Ends the batch and sends the last frame if it contains any message.
+     */
+    public void end() {
+        if (depth != MESSAGES) {
+            throw new IllegalStateException("Unfinished message");
+        }
+        if (frameStarted && messages > 0) {
+            endFrame();
+        }
+        frameStarted = false;
+        depth = 0;
+    }
+
+    @Override
+    public void writeStartObject() {
+        beforeValue();
+        if (depth == MESSAGES) {
+            ridField = false;
+            updatesField = false;
+        }
+        writer.writeStartObject();
+        depth++;
+    }
+
+    @Override
+    public void writeEndObject() {
+        depth--;
+        if (depth == MESSAGES) {
+            if (suspended) {
+                // Everything was sent with the previous frame
+                suspended = false;
+            } else {
+                writer.writeEndObject();
+                messages++;
+            }
+            checkSize();
+            return;
+        }
+        writer.writeEndObject();
+        afterValue();
+    }
+
+    @Override
+    public void writeStartArray() {
+        if (depth == MESSAGE && updatesField) {
+            inUpdates = true;
+            updatesField = false;
+            if (suspended) {
+                depth++;
+                return;
+            }
+        } else {
+            beforeValue();
+        }
+        writer.writeStartArray();
+        depth++;
+    }
+
+    @Override
+    public void writeEndArray() {
+        depth--;
+        if (depth == MESSAGE && inUpdates) {
+            inUpdates = false;
+            if (suspended) {
+                return;
+            }
+        }
+        writer.writeEndArray();
+        afterValue();
+    }
+
+    @Override
+    public void writeFieldName(String name) {
+        if (depth == MESSAGE) {
+            if (suspended) {
+                resume(false);
+            }
+            ridField = "rid".equals(name);
+            updatesField = "updates".equals(name);
+        }
+        writer.writeFieldName(name);
+    }
+
+    @Override
+    public void writeString(String s) {
+        beforeValue();
+        writer.writeString(s);
+        afterValue();
+    }
+
+    @Override
+    public void writeLong(long l) {
+        if (depth == MESSAGE && ridField) {
+            rid = l;
+            ridField = false;
+        }
+        beforeValue();
+        writer.writeLong(l);
+        afterValue();
+    }
+
+    @Override
+    public void writeDouble(double d) {
+        beforeValue();
+        writer.writeDouble(d);
+        afterValue();
+    }
+
+    @Override
+    public void writeNumber(Number n) {
+        beforeValue();
+        writer.writeNumber(n);
+        afterValue();
+    }
+
+    @Override
+    public void writeBoolean(boolean b) {
+        beforeValue();
+        writer.writeBoolean(b);
+        afterValue();
+    }
+
+    @Override
+    public void writeNull() {
+        beforeValue();
+        writer.writeNull();
+        afterValue();
+    }
+
+    @Override
+    public void writeValue(Object value) {
+        beforeValue();
+        writer.writeValue(value);
+        afterValue();
+    }
+
+    @Override
+    public int size() {
+        return writer.size();
+    }
+
+    @Override
+    public void reset() {
+        writer.reset();
+        frameStarted = false;
+        messages = 0;
+    }
+
+    @Override
+    public Buffer toBuffer() {
+        return writer.toBuffer();
+    }
+
+    @Override
+    public String toString() {
+        return writer.toString();
+    }
+
+    private void beforeValue() {
+        if (depth == MESSAGES && !frameStarted) {
+            startFrame();
+        } else if (suspended && depth == UPDATES) {
+            // A new row of a message continued from the previous frame
+            resume(true);
+        }
+    }
+
+    private void afterValue() {
+        if (depth == UPDATES && inUpdates && maxSize > 0
+                && writer.size() >= maxSize) {
+            // Closes the message and continues it in the next frame
+            writer.writeEndArray();
+            writer.writeEndObject();
+            messages++;
+            endFrame();
+            suspended = true;
+        }
+    }
+
+    private void checkSize() {
+        if (maxSize > 0 && messages > 0 && writer.size() >= maxSize) {
+            endFrame();
+        }
+    }
+
+    private void resume(boolean updates) {
+        suspended = false;
+        if (!frameStarted) {
+            startFrame();
+        }
+        writer.writeStartObject();
+        writer.writeFieldName("rid");
+        writer.writeLong(rid);
+        if (updates) {
+            writer.writeFieldName("updates");
+            writer.writeStartArray();
+        }
+    }
+
+    private void startFrame() {
+        writer.reset();
+        writer.writeStartObject();
+        writer.writeFieldName(name);
+        writer.writeStartArray();
+        frameStarted = true;
+        messages = 0;
+    }
+
+    private void endFrame() {
+        writer.writeEndArray();
+        writer.writeEndObject();
+        sender.handle(writer);
+        frameStarted = false;
+        messages = 0;
+    }
+}
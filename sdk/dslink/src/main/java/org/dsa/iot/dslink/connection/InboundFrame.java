@@ -0,0 +1,82 @@
+package org.dsa.iot.dslink.connection;
+
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A decoded frame received from the remote endpoint.
+ *
+ * @author Samuel Grenier
+ * @see WireCodec#decodeFrame
+ */
+public class InboundFrame {
+
+    private final List<MessageView> requests;
+    private final List<MessageView> responses;
+    private final Object ping;
+
+    /**
+     * @param requests  Incoming requests, can be null.
+     * @param responses Incoming responses, can be null.
+     * @param ping      Ping ID, can be null.
+     */
+    public InboundFrame(List<MessageView> requests,
+                        List<MessageView> responses,
+                        Object ping) {
+        this.requests = requests;
+        this.responses = responses;
+        this.ping = ping;
+    }
+
+    /**
+     * @return Incoming requests, can be null.
+     */
+    public List<MessageView> getRequests() {
+        return requests;
+    }
+
+    /**
+     * @return Incoming responses, can be null.
+     */
+    public List<MessageView> getResponses() {
+        return responses;
+    }
+
+    /**
+     * @return The ID of the ping that must be sent back as a pong, can be
+     *         null.
+     */
+    public Object getPing() {
+        return ping;
+    }
+
+    /**
+     * Creates a frame from an already decoded JSON object.
+     *
+     * @param obj Decoded frame.
+     * @return Frame wrapping the messages of the object.
+     */
+    public static InboundFrame fromJson(JsonObject obj) {
+        List<MessageView> requests = wrap(obj.getArray("requests"));
+        List<MessageView> responses = wrap(obj.getArray("responses"));
+        return new InboundFrame(requests, responses, obj.getValue("ping"));
+    }
+
+    private static List<MessageView> wrap(JsonArray array) {
+        if (array == null) {
+            return null;
+        } else if (array.size() == 0) {
+            return Collections.emptyList();
+        }
+
+        List<MessageView> views = new ArrayList<>(array.size());
+        for (Object obj : array) {
+            views.add(new MapMessageView((JsonObject) obj));
+        }
+        return views;
+    }
+}
@@ -1,101 +1,580 @@
 package org.dsa.iot.dslink.connection;
 
+import org.dsa.iot.dslink.connection.codec.JsonWriter;
+import org.dsa.iot.dslink.util.ExecutorType;
+import org.dsa.iot.dslink.util.HashedWheelTimer;
+import org.dsa.iot.dslink.util.MpscRingBuffer;
 import org.dsa.iot.dslink.util.Objects;
 import org.vertx.java.core.Handler;
-import org.vertx.java.core.json.JsonArray;
-import org.vertx.java.core.json.JsonObject;
 
 import java.util.*;
-import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Handles updates to the remote endpoint that is not allowed to exceed the
- * minimum update interval.
+ * minimum update interval. Posting threads only enqueue their messages,
+ * a single flusher groups them by rid and hands them to the callback. The
+ * flusher runs on the {@link ExecutorType#FLUSH} pool so that producers
+ * waiting for room in the queue can't hold up the flush.
+ * <p>
+ * While the client can't accept more data the flusher holds the messages
+ * back until the client drains. Once the held messages reach the high
+ * watermark the {@link BackpressurePolicy} may drop subscription updates to
+ * make room, otherwise the flusher stops taking messages from the queue so
+ * the producers wait.
+ * <p>
+ * The groups of a flush are ordered in weighted rounds of their
+ * {@link OutboundLane} so control messages are written ahead of bulk
+ * traffic. Messages of the same rid always stay in order.
+ * <p>
+ * With an adaptive interval the delay between flushes follows the load.
+ * While messages queue up between flushes and the slowest lane stays
+ * within the target latency the interval grows so more messages are
+ * batched into each frame. It shrinks in proportion once a lane exceeds
+ * the target, and decays to the minimum when there is nothing to batch.
  *
  * @author Samuel Grenier
  */
 public class IntervalUpdateManager {
 
-    private final Map<Integer, JsonObject> tasks = new HashMap<>();
-    private final Handler<Collection<JsonObject>> callback;
-    private final int updateInterval;
+    /**
+     * Default amount of messages that can be queued between two flushes.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
 
-    private long time;
-    private ScheduledFuture<?> fut;
+    /**
+     * Default amount of bytes that can be held back while the client can't
+     * keep up.
+     */
+    public static final int DEFAULT_HIGH_WATERMARK = 1024 * 1024;
 
-    public IntervalUpdateManager(int updateInterval, Handler<Collection<JsonObject>> callback) {
+    /**
+     * Default latency in milliseconds the adaptive interval aims for.
+     */
+    public static final int DEFAULT_TARGET_LATENCY = 100;
+
+    private static final Executor FLUSH = Objects.getExecutor(ExecutorType.FLUSH);
+
+    private final MpscRingBuffer<OutboundMessage> queue;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Handler<Collection<MessageGroup>> callback;
+    private final OutboundStats stats;
+
+    // Only accessed by the flusher
+    private final Map<Integer, MessageGroup> tasks = new LinkedHashMap<>();
+    // Responses of rids other than 0, which are never dropped
+    private final Deque<Held> held = new ArrayDeque<>();
+    // Messages of rid 0 in order, only subscription updates can be dropped
+    private final Deque<Held> heldUpdates = new ArrayDeque<>();
+    private final Map<Integer, Held> latest = new HashMap<>();
+    private final List<List<MessageGroup>> lanes = new ArrayList<>();
+    private final List<MessageGroup> ordered = new ArrayList<>();
+    private final JsonWriter sizer = new JsonWriter();
+    private final long[] laneLatency = new long[OutboundLane.values().length];
+    private long heldBytes;
+    private int heldCount;
+
+    private volatile long lastFlush;
+    private volatile int interval;
+    private volatile boolean adaptive;
+    private volatile int minInterval;
+    private volatile int maxInterval;
+    private volatile int targetLatency = DEFAULT_TARGET_LATENCY;
+    private volatile UpdateCoalescing coalescing = UpdateCoalescing.NONE;
+    private volatile BackpressurePolicy policy = BackpressurePolicy.BLOCK;
+    private volatile int highWatermark = DEFAULT_HIGH_WATERMARK;
+    private volatile NetworkClient client;
+
+    private final Runnable flusher = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    public IntervalUpdateManager(int updateInterval, Handler<Collection<MessageGroup>> callback) {
+        this(updateInterval, DEFAULT_CAPACITY, callback);
+    }
+
+    public IntervalUpdateManager(int updateInterval,
+                                 int capacity,
+                                 Handler<Collection<MessageGroup>> callback) {
+        this(updateInterval, capacity, new OutboundStats(), callback);
+    }
+
+    /**
+     * @param updateInterval Minimum interval between flushes in milliseconds.
+     * @param capacity       Amount of messages that can be queued. Posting
+     *                       threads wait for the next flush once it is
+     *                       exceeded.
+     * @param stats          Metrics to record held back messages into.
+     * @param callback       Receives the queued messages grouped by rid.
+     */
+    public IntervalUpdateManager(int updateInterval,
+                                 int capacity,
+                                 OutboundStats stats,
+                                 Handler<Collection<MessageGroup>> callback) {
         if (callback == null) {
             throw new NullPointerException("callback");
+        } else if (stats == null) {
+            throw new NullPointerException("stats");
         }
-        this.updateInterval = updateInterval;
+        this.interval = updateInterval;
         this.callback = callback;
+        this.stats = stats;
+        this.queue = new MpscRingBuffer<>(capacity);
+        for (int i = 0; i < OutboundLane.values().length; i++) {
+            lanes.add(new ArrayList<MessageGroup>());
+        }
     }
 
-    public synchronized void post(JsonObject content) {
-        List<JsonObject> list = new ArrayList<>(1);
-        list.add(content);
-        post(list);
+    /**
+     * Sets the client the messages are written to. Messages are held back
+     * while the client isn't writable and discarded while it is
+     * disconnected. Without a client every flush is handed to the
+     * callback.
+     *
+     * @param client Client the callback writes to.
+     */
+    public void setClient(NetworkClient client) {
+        this.client = client;
     }
 
-    public synchronized void post(List<JsonObject> content) {
-        long curr = System.currentTimeMillis();
-        long diff = curr - time;
-        if (diff > updateInterval) {
-            callback.handle(content);
-        } else {
-            addTask(content);
-            long delay = updateInterval - diff;
-            if (fut == null) {
-                fut = Objects.getDaemonThreadPool().schedule(new Runnable() {
-                    @Override
-                    public void run() {
-                        synchronized (IntervalUpdateManager.this) {
-                            if (!tasks.isEmpty()) {
-                                callback.handle(tasks.values());
-                                tasks.clear();
-                            }
-                            fut = null;
-                        }
-                    }
-                }, delay, TimeUnit.MILLISECONDS);
+    /**
+     * Sets how subscription updates of the same sid are combined within a
+     * flush. Only subscription updates of rid 0 are coalesced.
+     *
+     * @param coalescing Coalescing mode to use for the next flushes.
+     */
+    public void setCoalescing(UpdateCoalescing coalescing) {
+        if (coalescing == null)
+            throw new NullPointerException("coalescing");
+        this.coalescing = coalescing;
+    }
+
+    /**
+     * @param policy        Policy applied once the held back messages reach
+     *                      the high watermark.
+     * @param highWatermark Estimated amount of bytes that can be held back.
+     */
+    public void setBackpressure(BackpressurePolicy policy, int highWatermark) {
+        if (policy == null)
+            throw new NullPointerException("policy");
+        else if (highWatermark <= 0)
+            throw new IllegalArgumentException("highWatermark");
+        this.policy = policy;
+        this.highWatermark = highWatermark;
+    }
+
+    /**
+     * Lets the interval between flushes adapt to the load within bounds,
+     * aiming for the {@link #DEFAULT_TARGET_LATENCY default} latency.
+     *
+     * @param min Minimum interval in milliseconds, 0 to flush right away
+     *            under light load.
+     * @param max Maximum interval in milliseconds.
+     * @see #setAdaptiveInterval(int, int, int)
+     */
+    public void setAdaptiveInterval(int min, int max) {
+        setAdaptiveInterval(min, max, DEFAULT_TARGET_LATENCY);
+    }
+
+    /**
+     * Lets the interval between flushes adapt to the load within bounds.
+     * The maximum bounds how long a message waits for its flush.
+     *
+     * @param min     Minimum interval in milliseconds, 0 to flush right
+     *                away under light load.
+     * @param max     Maximum interval in milliseconds.
+     * @param latency Latency in milliseconds between posting a message
+     *                and its flush that no lane should exceed.
+     */
+    public void setAdaptiveInterval(int min, int max, int latency) {
+        if (min < 0)
+            throw new IllegalArgumentException("min");
+        else if (max < min)
+            throw new IllegalArgumentException("max");
+        else if (latency <= 0)
+            throw new IllegalArgumentException("latency");
+        this.minInterval = min;
+        this.maxInterval = max;
+        this.targetLatency = latency;
+        this.interval = min;
+        this.adaptive = true;
+    }
+
+    /**
+     * @return Interval in milliseconds currently used between flushes.
+     */
+    public int getInterval() {
+        return interval;
+    }
+
+    /**
+     * @return Metrics of the held back messages.
+     */
+    public OutboundStats getStats() {
+        return stats;
+    }
+
+    public void post(OutboundMessage content) {
+        enqueue(content);
+        schedule();
+    }
+
+    public void post(List<? extends OutboundMessage> content) {
+        for (OutboundMessage msg : content) {
+            enqueue(msg);
+        }
+        schedule();
+    }
+
+    /**
+     * Writes the held back messages once the client drained.
+     */
+    public void resume() {
+        schedule();
+    }
+
+    private void enqueue(OutboundMessage msg) {
+        if (msg == null) {
+            throw new NullPointerException("content");
+        }
+        int spins = 0;
+        while (!queue.offer(msg, System.nanoTime())) {
+            // Full, wait for the flusher to make room
+            schedule();
+            if (++spins < 64) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+    }
+
+    private void schedule() {
+        if (!scheduled.get() && scheduled.compareAndSet(false, true)) {
+            long diff = System.currentTimeMillis() - lastFlush;
+            long delay = Math.max(0, interval - diff);
+            NetworkClient client = this.client;
+            if (client != null && !client.isWritable()) {
+                // Retries of the held messages must not spin
+                delay = Math.max(delay, HashedWheelTimer.DEFAULT_TICK);
+            }
+            try {
+                Objects.getTimer().schedule(flusher, delay,
+                                            TimeUnit.MILLISECONDS, FLUSH);
+            } catch (RuntimeException e) {
+                // Lets the next post try again rather than never flushing
+                scheduled.set(false);
+                throw e;
+            }
+        }
+    }
+
+    private void flush() {
+        try {
+            NetworkClient client = this.client;
+            if (client != null && !client.isConnected()) {
+                discard();
+            } else if (client == null || client.isWritable()) {
+                write();
+            } else {
+                hold();
             }
+        } finally {
+            tasks.clear();
+            lastFlush = System.currentTimeMillis();
+            scheduled.set(false);
+        }
+
+        // Messages published while flushing didn't schedule a flush and
+        // held messages are retried in case the drain went unnoticed
+        if (!queue.isEmpty() || heldCount > 0) {
+            schedule();
         }
-        time = curr;
     }
 
-    private void addTask(List<JsonObject> content) {
-        for (JsonObject obj : content) {
-            addTask(obj);
+    private void write() {
+        UpdateCoalescing coalescing = this.coalescing;
+        long now = System.nanoTime();
+        int count = held.size() + heldUpdates.size();
+        // Held messages are older than the queued ones
+        for (Held h : held) {
+            addTask(h.message, coalescing, now - h.stamp);
+        }
+        for (Held h : heldUpdates) {
+            addTask(h.message, coalescing, now - h.stamp);
+        }
+        clearHeld();
+
+        // Bounded so producers outpacing the flusher can't starve it
+        Arrays.fill(laneLatency, 0);
+        int max = queue.capacity();
+        while (max-- > 0) {
+            long stamp = queue.peekStamp();
+            OutboundMessage msg = queue.poll();
+            if (msg == null) {
+                break;
+            }
+            long latency = now - stamp;
+            int lane = addTask(msg, coalescing, latency).ordinal();
+            laneLatency[lane] = Math.max(laneLatency[lane], latency);
+            count++;
+        }
+
+        if (!tasks.isEmpty()) {
+            try {
+                callback.handle(order());
+            } finally {
+                ordered.clear();
+            }
+        }
+
+        if (adaptive) {
+            adapt(count + queue.size());
         }
     }
 
-    @SuppressWarnings("unchecked")
-    private void addTask(JsonObject content) {
-        int rid = content.getInteger("rid");
-        JsonObject obj = tasks.get(rid);
-        if (obj == null) {
-            tasks.put(rid, content);
+    /**
+     * Adapts the interval to the latency of the slowest lane of the last
+     * flush. Latencies of held messages are left out since they depend on
+     * the client rather than the interval.
+     *
+     * @param depth Amount of messages queued when the last flush started.
+     */
+    private void adapt(int depth) {
+        long worst = 0;
+        for (long latency : laneLatency) {
+            worst = Math.max(worst, latency);
+        }
+        long latency = TimeUnit.NANOSECONDS.toMillis(worst);
+        int target = targetLatency;
+        long next = interval;
+        if (latency > target) {
+            // Shrinks in proportion to how far the target was exceeded
+            next = next * target / latency;
+        } else if (depth > 1) {
+            // Batches more while there is room left under the target
+            next += Math.max(1, (target - latency) / 2);
         } else {
-            JsonArray oldUpdates = obj.getField("updates");
-            if (oldUpdates != null) {
-                Object newUpdates = content.removeField("updates");
-                if (newUpdates instanceof List) {
-                    for (Object update : (List) newUpdates) {
-                        if (update instanceof List) {
-                            oldUpdates.add(new JsonArray((List) update));
-                        } else if (update instanceof Map) {
-                            oldUpdates.add(new JsonObject((Map) update));
-                        } else {
-                            String clazz = update.getClass().getName();
-                            throw new RuntimeException("Unhandled type: " + clazz);
-                        }
-                    }
+            next /= 2;
+        }
+        interval = (int) Math.min(maxInterval, Math.max(minInterval, next));
+    }
+
+    /**
+     * Orders the groups in rounds where each lane contributes as many
+     * groups as its weight.
+     *
+     * @return Ordered groups of the flush.
+     */
+    private List<MessageGroup> order() {
+        for (MessageGroup group : tasks.values()) {
+            lanes.get(group.getLane().ordinal()).add(group);
+        }
+
+        OutboundLane[] values = OutboundLane.values();
+        int[] positions = new int[values.length];
+        int remaining = tasks.size();
+        while (remaining > 0) {
+            for (int i = 0; i < values.length; i++) {
+                List<MessageGroup> lane = lanes.get(i);
+                int end = Math.min(lane.size(), positions[i] + values[i].getWeight());
+                for (int pos = positions[i]; pos < end; pos++) {
+                    ordered.add(lane.get(pos));
+                    remaining--;
                 }
-                obj.mergeIn(content);
+                positions[i] = end;
+            }
+        }
+
+        for (List<MessageGroup> lane : lanes) {
+            lane.clear();
+        }
+        return ordered;
+    }
+
+    private void hold() {
+        BackpressurePolicy policy = this.policy;
+        int high = highWatermark;
+        int max = queue.capacity();
+        while (max-- > 0) {
+            if (heldBytes >= high && !evict(policy, high - 1)) {
+                // Leaves the queue full so the producers wait
+                break;
+            }
+            long stamp = queue.peekStamp();
+            OutboundMessage msg = queue.poll();
+            if (msg == null) {
+                break;
+            }
+            hold(msg, stamp, policy);
+        }
+        evict(policy, high);
+    }
+
+    private void hold(OutboundMessage msg, long stamp, BackpressurePolicy policy) {
+        int size = sizeOf(msg);
+        if (msg.getRid() != 0) {
+            held.add(new Held(msg, -1, size, stamp));
+            held(1, size);
+            return;
+        } else if (policy == BackpressurePolicy.BLOCK
+                || !(msg instanceof SubscriptionMessage)) {
+            heldUpdates.add(new Held(msg, -1, size, stamp));
+            held(1, size);
+            return;
+        }
+
+        SubscriptionMessage update = (SubscriptionMessage) msg;
+        if (policy == BackpressurePolicy.KEEP_LATEST) {
+            Held prev = latest.get(update.getSid());
+            if (prev != null) {
+                if (coalescing == UpdateCoalescing.ROLLUP) {
+                    update = update.rollup((SubscriptionMessage) prev.message);
+                    size = sizeOf(update);
+                }
+                // Takes the place of the previous update
+                held(0, size - prev.size);
+                prev.message = update;
+                prev.size = size;
+                prev.stamp = stamp;
+                stats.dropped(1);
+                return;
+            }
+        }
+
+        Held h = new Held(update, update.getSid(), size, stamp);
+        heldUpdates.add(h);
+        if (policy == BackpressurePolicy.KEEP_LATEST) {
+            latest.put(update.getSid(), h);
+        }
+        held(1, size);
+    }
+
+    /**
+     * Drops the oldest held subscription updates until the held messages
+     * fit in the limit.
+     *
+     * @param policy Policy in use, nothing is dropped under
+     *               {@link BackpressurePolicy#BLOCK}.
+     * @param limit  Amount of bytes the held messages must not exceed.
+     * @return Whether the held messages fit in the limit.
+     */
+    private boolean evict(BackpressurePolicy policy, long limit) {
+        if (policy == BackpressurePolicy.BLOCK) {
+            return heldBytes <= limit;
+        }
+        Iterator<Held> it = heldUpdates.iterator();
+        while (heldBytes > limit && it.hasNext()) {
+            Held h = it.next();
+            if (h.sid >= 0) {
+                it.remove();
+                if (latest.get(h.sid) == h) {
+                    latest.remove(h.sid);
+                }
+                held(-1, -h.size);
+                stats.dropped(1);
+            }
+        }
+        return heldBytes <= limit;
+    }
+
+    private void discard() {
+        int count = heldCount;
+        clearHeld();
+
+        int max = queue.capacity();
+        while (max-- > 0 && queue.poll() != null) {
+            count++;
+        }
+        if (count > 0) {
+            stats.discarded(count);
+        }
+    }
+
+    private void held(int count, long bytes) {
+        heldCount += count;
+        heldBytes += bytes;
+        stats.queued(count, bytes);
+    }
+
+    private void clearHeld() {
+        if (heldCount > 0) {
+            stats.queued(-heldCount, -heldBytes);
+        }
+        held.clear();
+        heldUpdates.clear();
+        latest.clear();
+        heldCount = 0;
+        heldBytes = 0;
+    }
+
+    /**
+     * Adds a message to the group of its rid.
+     *
+     * @param msg        Message to add.
+     * @param coalescing Coalescing mode of rid 0.
+     * @param latency    Nanoseconds the message waited for its flush.
+     * @return Lane of the message.
+     */
+    private OutboundLane addTask(OutboundMessage msg,
+                                 UpdateCoalescing coalescing,
+                                 long latency) {
+        OutboundLane lane = OutboundLane.of(msg);
+        stats.flushed(lane, latency);
+
+        int rid = msg.getRid();
+        MessageGroup group = tasks.get(rid);
+        if (group == null) {
+            if (rid == 0) {
+                group = new MessageGroup(rid, coalescing);
             } else {
-                obj.mergeIn(content);
+                group = new MessageGroup(rid);
             }
+            tasks.put(rid, group);
+        }
+        group.add(msg, lane);
+        return lane;
+    }
+
+    /**
+     * Estimates the size of a message by its JSON encoding.
+     *
+     * @param msg Message to measure.
+     * @return Size in bytes.
+     */
+    private int sizeOf(OutboundMessage msg) {
+        JsonWriter writer = sizer;
+        writer.reset();
+        writer.writeStartObject();
+        msg.writeFields(writer);
+        if (msg.hasUpdates()) {
+            writer.writeFieldName("updates");
+            writer.writeStartArray();
+            msg.writeUpdates(writer);
+            writer.writeEndArray();
+        }
+        writer.writeEndObject();
+        return writer.size();
+    }
+
+    private static class Held {
+
+        private final int sid;
+        private OutboundMessage message;
+        private int size;
+        private long stamp;
+
+        Held(OutboundMessage message, int sid, int size, long stamp) {
+            this.message = message;
+            this.sid = sid;
+            this.size = size;
+            this.stamp = stamp;
         }
     }
 }
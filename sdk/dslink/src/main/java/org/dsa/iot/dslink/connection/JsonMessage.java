@@ -0,0 +1,98 @@
+package org.dsa.iot.dslink.connection;
+
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Adapts a pre-built JSON object to an outbound message.
+ *
+ * @author Samuel Grenier
+ */
+public class JsonMessage implements OutboundMessage {
+
+    private final JsonObject object;
+    private final int rid;
+
+    /**
+     * @param object Request or response object, must contain a rid.
+     */
+    public JsonMessage(JsonObject object) {
+        if (object == null)
+            throw new NullPointerException("object");
+        Integer rid = object.getInteger("rid");
+        if (rid == null)
+            throw new NullPointerException("rid");
+        this.object = object;
+        this.rid = rid;
+    }
+
+    /**
+     * @return Wrapped JSON object.
+     */
+    public JsonObject getObject() {
+        return object;
+    }
+
+    @Override
+    public int getRid() {
+        return rid;
+    }
+
+    @Override
+    public void writeFields(StreamWriter writer) {
+        for (String name : object.getFieldNames()) {
+            if ("rid".equals(name) || "updates".equals(name)) {
+                continue;
+            }
+            writer.writeFieldName(name);
+            writer.writeValue(object.getValue(name));
+        }
+    }
+
+    @Override
+    public boolean hasUpdates() {
+        return object.getArray("updates") != null;
+    }
+
+    @Override
+    public void writeUpdates(StreamWriter writer) {
+        JsonArray updates = object.getArray("updates");
+        if (updates != null) {
+            for (Object update : updates) {
+                writer.writeValue(update);
+            }
+        }
+    }
+
+    /**
+     * Merges a newer message of the same rid into this message. The
+     * updates of the newer message are appended to the updates of this
+     * message and any other field is overwritten.
+     *
+     * @param other Newer message to merge.
+     */
+    @SuppressWarnings("unchecked")
+    public void merge(JsonMessage other) {
+        JsonObject content = other.object;
+        JsonArray oldUpdates = object.getField("updates");
+        if (oldUpdates != null) {
+            Object newUpdates = content.removeField("updates");
+            if (newUpdates instanceof List) {
+                for (Object update : (List) newUpdates) {
+                    if (update instanceof List) {
+                        oldUpdates.add(new JsonArray((List) update));
+                    } else if (update instanceof Map) {
+                        oldUpdates.add(new JsonObject((Map) update));
+                    } else {
+                        String clazz = update.getClass().getName();
+                        throw new RuntimeException("Unhandled type: " + clazz);
+                    }
+                }
+            }
+        }
+        object.mergeIn(content);
+    }
+}
@@ -0,0 +1,154 @@
+package org.dsa.iot.dslink.connection;
+
+import org.dsa.iot.dslink.connection.codec.ObjectWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Connects a data handler to another data handler in the same process
+ * without any network in between. Requests written through the client are
+ * received as requests by the peer and responses are received as
+ * responses. A dual link can be connected to itself by using its own data
+ * handler as the peer.
+ * <p>
+ * Flushed messages are handed to the peer by reference rather than being
+ * encoded and decoded. The peer processes them on the flushing thread
+ * before the flush completes. As no broker routes the messages, the paths
+ * of requests are the paths of the nodes of the responder.
+ *
+ * @author Samuel Grenier
+ * @see DataHandler
+ * @see ConnectionType#LOOPBACK
+ */
+public class LoopbackClient implements NetworkClient {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoopbackClient.class);
+
+    private final DataHandler peer;
+    private volatile boolean connected = true;
+
+    /**
+     * @param peer Data handler receiving the data written to the client.
+     */
+    public LoopbackClient(DataHandler peer) {
+        if (peer == null)
+            throw new NullPointerException("peer");
+        this.peer = peer;
+    }
+
+    /**
+     * Connects two data handlers to each other.
+     *
+     * @param first  Data handler of one side.
+     * @param second Data handler of the other side.
+     */
+    public static void connect(DataHandler first, DataHandler second) {
+        if (first == null)
+            throw new NullPointerException("first");
+        else if (second == null)
+            throw new NullPointerException("second");
+        first.setClient(new LoopbackClient(second));
+        second.setClient(new LoopbackClient(first));
+    }
+
+    /**
+     * @return Data handler receiving the data written to the client.
+     */
+    public DataHandler getPeer() {
+        return peer;
+    }
+
+    /**
+     * Hands flushed groups to the peer without encoding them.
+     *
+     * @param requests Whether the groups are requests or responses.
+     * @param groups   Groups of a flush.
+     */
+    void deliver(boolean requests, Collection<MessageGroup> groups) {
+        if (!connected) {
+            return;
+        }
+
+        List<MessageView> views = new ArrayList<>(groups.size());
+        for (MessageGroup group : groups) {
+            views.add(toView(group));
+        }
+
+        InboundFrame frame;
+        if (requests) {
+            frame = new InboundFrame(views, null, null);
+        } else {
+            frame = new InboundFrame(null, views, null);
+        }
+        process(frame);
+    }
+
+    @Override
+    public void write(String data) {
+        checkConnected();
+        process(InboundFrame.fromJson(new JsonObject(data)));
+    }
+
+    @Override
+    public void write(Buffer data) {
+        checkConnected();
+        process(peer.getCodec().decodeFrame(data));
+    }
+
+    @Override
+    public void close() {
+        connected = false;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public boolean isWritable() {
+        return connected;
+    }
+
+    private void process(InboundFrame frame) {
+        try {
+            peer.processData(frame);
+        } catch (RuntimeException e) {
+            // Errors of the peer must not propagate into the flusher
+            LOGGER.error("Failed to process looped back data", e);
+        }
+    }
+
+    private void checkConnected() {
+        if (!connected) {
+            throw new RuntimeException("Cannot write to closed loopback");
+        }
+    }
+
+    /**
+     * A lone JSON message is passed as is, anything else is written into
+     * an object in memory.
+     *
+     * @param group Group to view.
+     * @return View of the group as a single request or response.
+     */
+    private static MessageView toView(MessageGroup group) {
+        List<OutboundMessage> messages = group.getMessages();
+        if (messages.size() == 1) {
+            OutboundMessage message = messages.get(0);
+            if (message instanceof JsonMessage) {
+                return new MapMessageView(((JsonMessage) message).getObject());
+            }
+        }
+
+        ObjectWriter writer = new ObjectWriter();
+        group.write(writer);
+        return new MapMessageView(writer.getObject());
+    }
+}
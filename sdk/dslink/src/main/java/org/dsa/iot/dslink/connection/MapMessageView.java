@@ -0,0 +1,74 @@
+package org.dsa.iot.dslink.connection;
+
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+
+/**
+ * View over a message that has already been decoded into a JSON object.
+ *
+ * @author Samuel Grenier
+ */
+public class MapMessageView implements MessageView {
+
+    private final JsonObject object;
+
+    public MapMessageView(JsonObject object) {
+        if (object == null)
+            throw new NullPointerException("object");
+        this.object = object;
+    }
+
+    @Override
+    public Integer getRid() {
+        return object.getInteger("rid");
+    }
+
+    @Override
+    public String getMethod() {
+        return object.getString("method");
+    }
+
+    @Override
+    public String getPath() {
+        return object.getString("path");
+    }
+
+    @Override
+    public String getStream() {
+        return object.getString("stream");
+    }
+
+    @Override
+    public void readUpdates(Handler<UpdateRow> handler) {
+        JsonArray updates = object.getArray("updates");
+        if (updates == null) {
+            return;
+        }
+
+        UpdateRow row = new UpdateRow();
+        for (Object obj : updates) {
+            if (obj instanceof JsonArray) {
+                row.reset(false);
+                for (Object value : (JsonArray) obj) {
+                    row.add(null, value);
+                }
+            } else if (obj instanceof JsonObject) {
+                JsonObject update = (JsonObject) obj;
+                row.reset(true);
+                for (String name : update.getFieldNames()) {
+                    row.add(name, update.getValue(name));
+                }
+            } else {
+                String err = "Invalid update: " + obj;
+                throw new RuntimeException(err);
+            }
+            handler.handle(row);
+        }
+    }
+
+    @Override
+    public JsonObject toJson() {
+        return object;
+    }
+}
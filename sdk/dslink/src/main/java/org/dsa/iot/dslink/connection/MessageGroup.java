@@ -0,0 +1,195 @@
+package org.dsa.iot.dslink.connection;
+
+import org.dsa.iot.dslink.connection.codec.ObjectWriter;
+import org.vertx.java.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outbound messages that share the same rid and are written to the remote
+ * endpoint as a single object.
+ *
+ * @author Samuel Grenier
+ */
+public class MessageGroup {
+
+    private final List<OutboundMessage> messages = new ArrayList<>(2);
+    private final UpdateCoalescing coalescing;
+    private final int rid;
+    private OutboundLane lane = OutboundLane.BULK;
+
+    /**
+     * Index of the queued update of each sid when coalescing.
+     */
+    private Map<Integer, Integer> sids;
+
+    public MessageGroup(int rid) {
+        this(rid, UpdateCoalescing.NONE);
+    }
+
+    /**
+     * @param rid        Request ID of the group.
+     * @param coalescing How subscription updates of the same sid are
+     *                   combined.
+     */
+    public MessageGroup(int rid, UpdateCoalescing coalescing) {
+        if (coalescing == null)
+            throw new NullPointerException("coalescing");
+        this.rid = rid;
+        this.coalescing = coalescing;
+    }
+
+    public int getRid() {
+        return rid;
+    }
+
+    /**
+     * @return Highest priority lane of the messages in the group.
+     */
+    public OutboundLane getLane() {
+        return lane;
+    }
+
+    /**
+     * @return Messages in the order they were queued.
+     */
+    public List<OutboundMessage> getMessages() {
+        return messages;
+    }
+
+    /**
+     * Adds a message to the group. Consecutive JSON messages are merged
+     * together as they are added.
+     *
+     * @param message Message to add, must have the same rid as the group.
+     */
+    public void add(OutboundMessage message) {
+        if (message == null)
+            throw new NullPointerException("message");
+        add(message, OutboundLane.of(message));
+    }
+
+    /**
+     * Adds an already classified message to the group. The group takes
+     * the highest priority lane of its messages.
+     *
+     * @param message Message to add, must have the same rid as the group.
+     * @param lane    Lane of the message.
+     */
+    public void add(OutboundMessage message, OutboundLane lane) {
+        if (message == null)
+            throw new NullPointerException("message");
+        else if (lane == null)
+            throw new NullPointerException("lane");
+        else if (message.getRid() != rid)
+            throw new IllegalArgumentException("rid mismatch");
+
+        if (lane.ordinal() < this.lane.ordinal()) {
+            this.lane = lane;
+        }
+
+        if (coalescing != UpdateCoalescing.NONE
+                && message instanceof SubscriptionMessage) {
+            coalesce((SubscriptionMessage) message);
+            return;
+        }
+
+        int size = messages.size();
+        if (size > 0 && message instanceof JsonMessage) {
+            OutboundMessage last = messages.get(size - 1);
+            if (last instanceof JsonMessage) {
+                ((JsonMessage) last).merge((JsonMessage) message);
+                return;
+            }
+        }
+        messages.add(message);
+    }
+
+    private void coalesce(SubscriptionMessage update) {
+        if (sids == null) {
+            sids = new HashMap<>();
+        }
+
+        Integer index = sids.get(update.getSid());
+        if (index == null) {
+            sids.put(update.getSid(), messages.size());
+            messages.add(update);
+        } else if (coalescing == UpdateCoalescing.ROLLUP) {
+            SubscriptionMessage previous = (SubscriptionMessage) messages.get(index);
+            messages.set(index, update.rollup(previous));
+        } else {
+            messages.set(index, update);
+        }
+    }
+
+    /**
+     * Writes the group as a single request or response object. The fields
+     * of every message are merged, with the fields of later messages
+     * taking precedence, and written before the updates so they are sent
+     * with the first chunk when the object is split across frames. Only
+     * the stream state is written after the updates so it ends up in the
+     * last chunk.
+     *
+     * @param writer Writer to write the object to.
+     * @see FrameSplitter
+     */
+    public void write(StreamWriter writer) {
+        writer.writeStartObject();
+        writer.writeFieldName("rid");
+        writer.writeLong(rid);
+
+        Object stream = null;
+        JsonObject fields = mergeFields();
+        if (fields != null) {
+            for (String name : fields.getFieldNames()) {
+                Object value = fields.getValue(name);
+                if ("stream".equals(name)) {
+                    stream = value;
+                    continue;
+                }
+                writer.writeFieldName(name);
+                writer.writeValue(value);
+            }
+        }
+
+        int size = messages.size();
+        boolean hasUpdates = false;
+        for (int i = 0; i < size; i++) {
+            OutboundMessage message = messages.get(i);
+            if (message.hasUpdates()) {
+                if (!hasUpdates) {
+                    writer.writeFieldName("updates");
+                    writer.writeStartArray();
+                    hasUpdates = true;
+                }
+                message.writeUpdates(writer);
+            }
+        }
+        if (hasUpdates) {
+            writer.writeEndArray();
+        }
+
+        if (stream != null) {
+            writer.writeFieldName("stream");
+            writer.writeValue(stream);
+        }
+        writer.writeEndObject();
+    }
+
+    /**
+     * @return Union of the fields of every message, or {@code null} if
+     *         none of them has any field.
+     */
+    private JsonObject mergeFields() {
+        ObjectWriter fields = new ObjectWriter();
+        fields.writeStartObject();
+        for (OutboundMessage message : messages) {
+            message.writeFields(fields);
+        }
+        fields.writeEndObject();
+        return fields.size() > 1 ? fields.getObject() : null;
+    }
+}
@@ -0,0 +1,49 @@
+package org.dsa.iot.dslink.connection;
+
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.json.JsonObject;
+
+/**
+ * A request or response received from the remote endpoint. Fields are
+ * decoded on demand so that only the parts of a message that are used
+ * are ever materialized.
+ *
+ * @author Samuel Grenier
+ */
+public interface MessageView {
+
+    /**
+     * @return Request ID of the message, can be {@code null}.
+     */
+    Integer getRid();
+
+    /**
+     * @return Method of a request, can be {@code null}.
+     */
+    String getMethod();
+
+    /**
+     * @return Path of a request, can be {@code null}.
+     */
+    String getPath();
+
+    /**
+     * @return Stream state of a response, can be {@code null}.
+     */
+    String getStream();
+
+    /**
+     * Reads every row of the {@code updates} array. The row passed to the
+     * handler is reused between rows.
+     *
+     * @param handler Handler called for each row.
+     */
+    void readUpdates(Handler<UpdateRow> handler);
+
+    /**
+     * Decodes the entire message.
+     *
+     * @return Message as a JSON object.
+     */
+    JsonObject toJson();
+}
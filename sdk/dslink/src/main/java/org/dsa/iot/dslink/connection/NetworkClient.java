@@ -1,5 +1,7 @@
 package org.dsa.iot.dslink.connection;
 
+import org.vertx.java.core.buffer.Buffer;
+
 /**
  * Handles writing and closing connections. Can be used for clients connected
  * to servers and remote endpoint connections.
@@ -15,6 +17,13 @@ public interface NetworkClient {
      */
     void write(String data);
 
+    /**
+     * Writes binary data to the network.
+     *
+     * @param data Data to write
+     */
+    void write(Buffer data);
+
     /**
      * Closes the connection to the client
      */
@@ -24,4 +33,10 @@ public interface NetworkClient {
      * @return Whether the client is connected or not.
      */
     boolean isConnected();
+
+    /**
+     * @return Whether the client can accept more data without exceeding
+     *         its write queue.
+     */
+    boolean isWritable();
 }
@@ -1,7 +1,6 @@
 package org.dsa.iot.dslink.connection;
 
 import org.vertx.java.core.Handler;
-import org.vertx.java.core.json.JsonObject;
 
 /**
  * Handles network clients on vertx events.
@@ -13,7 +12,8 @@ class NetworkHandlers {
     private Handler<Void> onConnected;
     private Handler<Void> onDisconnected;
     private Handler<Throwable> onException;
-    private Handler<JsonObject> onData;
+    private Handler<InboundFrame> onData;
+    private Handler<Void> onDrain;
 
     public Handler<Void> getOnConnected() {
         return onConnected;
@@ -39,11 +39,23 @@ class NetworkHandlers {
         this.onException = onException;
     }
 
-    public Handler<JsonObject> getOnData() {
+    public Handler<InboundFrame> getOnData() {
         return onData;
     }
 
-    public void setOnData(Handler<JsonObject> onData) {
+    public void setOnData(Handler<InboundFrame> onData) {
         this.onData = onData;
     }
+
+    public Handler<Void> getOnDrain() {
+        return onDrain;
+    }
+
+    /**
+     * @param onDrain Called when the write queue of the client drained
+     *                after being full.
+     */
+    public void setOnDrain(Handler<Void> onDrain) {
+        this.onDrain = onDrain;
+    }
 }
@@ -0,0 +1,88 @@
+package org.dsa.iot.dslink.connection;
+
+import org.dsa.iot.dslink.methods.StreamState;
+import org.vertx.java.core.json.JsonObject;
+
+/**
+ * Priority lanes of the outbound messages. Each flush writes the lanes in
+ * weighted rounds so control messages reach the remote endpoint ahead of
+ * bulk traffic queued at the same time without starving it.
+ *
+ * @author Samuel Grenier
+ */
+public enum OutboundLane {
+
+    /**
+     * Closes, errors and subscription management.
+     */
+    CONTROL(8),
+
+    /**
+     * Invoke and set results.
+     */
+    INTERACTIVE(4),
+
+    /**
+     * Subscription value updates.
+     */
+    SUBSCRIPTION(2),
+
+    /**
+     * List streams and streaming tables.
+     */
+    BULK(1);
+
+    private final int weight;
+
+    OutboundLane(int weight) {
+        this.weight = weight;
+    }
+
+    /**
+     * @return Amount of messages of the lane written in each round.
+     */
+    public int getWeight() {
+        return weight;
+    }
+
+    /**
+     * Classifies a message. Messages written straight into the frame other
+     * than subscription updates are lists, which are bulk traffic.
+     *
+     * @param msg Message to classify.
+     * @return Lane of the message.
+     */
+    public static OutboundLane of(OutboundMessage msg) {
+        if (msg.getRid() == 0) {
+            return SUBSCRIPTION;
+        } else if (!(msg instanceof JsonMessage)) {
+            return BULK;
+        }
+
+        JsonObject obj = ((JsonMessage) msg).getObject();
+        String method = obj.getString("method");
+        if (method != null) {
+            switch (method) {
+                case "close":
+                case "subscribe":
+                case "unsubscribe":
+                    return CONTROL;
+                case "list":
+                    return BULK;
+                default:
+                    return INTERACTIVE;
+            }
+        }
+
+        String stream = obj.getString("stream");
+        boolean updates = obj.getArray("updates") != null;
+        if (obj.getField("error") != null) {
+            return CONTROL;
+        } else if (StreamState.CLOSED.getJsonName().equals(stream) && !updates) {
+            return CONTROL;
+        } else if (StreamState.OPEN.getJsonName().equals(stream) && updates) {
+            return BULK;
+        }
+        return INTERACTIVE;
+    }
+}
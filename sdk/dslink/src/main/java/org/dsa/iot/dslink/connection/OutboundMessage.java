@@ -0,0 +1,42 @@
+package org.dsa.iot.dslink.connection;
+
+/**
+ * A request or response queued to be sent to the remote endpoint. The
+ * message is written directly into the outgoing frame when the queue is
+ * flushed.
+ * <p>
+ * Messages that share the same rid within a single flush are sent as one
+ * object. The updates of every message are concatenated in the order they
+ * were queued while the fields of every message are merged, the fields of
+ * later messages taking precedence.
+ *
+ * @author Samuel Grenier
+ * @see JsonMessage
+ */
+public interface OutboundMessage {
+
+    /**
+     * @return Request ID of the message.
+     */
+    int getRid();
+
+    /**
+     * Writes the fields of the message into the current object, excluding
+     * the {@code rid} and {@code updates} fields.
+     *
+     * @param writer Writer to write the fields to.
+     */
+    void writeFields(StreamWriter writer);
+
+    /**
+     * @return Whether the message has any update rows.
+     */
+    boolean hasUpdates();
+
+    /**
+     * Writes every update row of the message into the current array.
+     *
+     * @param writer Writer to write the rows to.
+     */
+    void writeUpdates(StreamWriter writer);
+}
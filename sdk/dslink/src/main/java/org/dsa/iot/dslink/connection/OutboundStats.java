@@ -0,0 +1,87 @@
+package org.dsa.iot.dslink.connection;
+
+import org.dsa.iot.dslink.util.LatencyHistogram;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics of the outgoing data held back while the connection can't keep
+ * up with it.
+ *
+ * @author Samuel Grenier
+ */
+public class OutboundStats {
+
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private final AtomicLong queuedMessages = new AtomicLong();
+    private final AtomicLong droppedUpdates = new AtomicLong();
+    private final AtomicLong discardedMessages = new AtomicLong();
+    private final LatencyHistogram[] latencies;
+
+    public OutboundStats() {
+        OutboundLane[] lanes = OutboundLane.values();
+        latencies = new LatencyHistogram[lanes.length];
+        for (int i = 0; i < lanes.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * @return Estimated size in bytes of the messages held back, based on
+     *         their JSON encoding.
+     */
+    public long getQueuedBytes() {
+        return queuedBytes.get();
+    }
+
+    /**
+     * @return Amount of messages held back.
+     */
+    public long getQueuedMessages() {
+        return queuedMessages.get();
+    }
+
+    /**
+     * @return Amount of subscription updates dropped or replaced by a
+     *         newer update due to backpressure.
+     */
+    public long getDroppedUpdates() {
+        return droppedUpdates.get();
+    }
+
+    /**
+     * @return Amount of messages discarded because the connection was
+     *         closed.
+     */
+    public long getDiscardedMessages() {
+        return discardedMessages.get();
+    }
+
+    /**
+     * @param lane Lane to retrieve the latencies of.
+     * @return Time the messages of the lane spent queued before being
+     *         flushed.
+     */
+    public LatencyHistogram getLatency(OutboundLane lane) {
+        if (lane == null)
+            throw new NullPointerException("lane");
+        return latencies[lane.ordinal()];
+    }
+
+    void queued(long messages, long bytes) {
+        queuedMessages.addAndGet(messages);
+        queuedBytes.addAndGet(bytes);
+    }
+
+    void dropped(long updates) {
+        droppedUpdates.addAndGet(updates);
+    }
+
+    void discarded(long messages) {
+        discardedMessages.addAndGet(messages);
+    }
+
+    void flushed(OutboundLane lane, long nanos) {
+        latencies[lane.ordinal()].record(nanos);
+    }
+}
@@ -2,9 +2,12 @@ package org.dsa.iot.dslink.connection;
 
 import org.bouncycastle.jcajce.provider.digest.SHA256;
 import org.dsa.iot.dslink.handshake.LocalHandshake;
+import org.dsa.iot.dslink.connection.codec.JsonCodec;
 import org.dsa.iot.dslink.handshake.RemoteHandshake;
 import org.dsa.iot.dslink.util.URLInfo;
 import org.dsa.iot.dslink.util.UrlBase64;
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
 import org.vertx.java.core.buffer.Buffer;
 
 import java.io.UnsupportedEncodingException;
@@ -20,12 +23,30 @@ public abstract class RemoteEndpoint extends NetworkHandlers implements NetworkC
     private LocalHandshake localHandshake;
     private RemoteHandshake remoteHandshake;
     private URLInfo endpoint;
+    private ConnectionHealth health = new ConnectionHealth();
+    private int writeQueueMaxSize = IntervalUpdateManager.DEFAULT_HIGH_WATERMARK;
+    private int pingInterval;
+    private int shard = -1;
 
     public RemoteEndpoint(DataHandler handler) {
         this.handler = handler;
     }
 
-    public abstract void start();
+    /**
+     * Connects to the endpoint without waiting for the connection.
+     */
+    public void start() {
+        start(null);
+    }
+
+    /**
+     * Connects to the endpoint without waiting for the connection. The
+     * handler is notified once the connection either succeeded or failed.
+     *
+     * @param handler Receives the result of the connection attempt, can be
+     *                {@code null}.
+     */
+    public abstract void start(Handler<AsyncResult<Void>> handler);
 
     public DataHandler getDataHandler() {
         return handler;
@@ -74,6 +95,82 @@ public abstract class RemoteEndpoint extends NetworkHandlers implements NetworkC
         return endpoint;
     }
 
+    /**
+     * @param health Health metrics to record the pings of the connection
+     *               into.
+     */
+    public void setHealth(ConnectionHealth health) {
+        if (health == null)
+            throw new NullPointerException("health");
+        this.health = health;
+    }
+
+    /**
+     * @return Health metrics of the connection.
+     */
+    public ConnectionHealth getHealth() {
+        return health;
+    }
+
+    /**
+     * @param size Amount of bytes the write queue of the connection can
+     *             hold before the connection is no longer writable.
+     */
+    public void setWriteQueueMaxSize(int size) {
+        if (size <= 0)
+            throw new IllegalArgumentException("size");
+        this.writeQueueMaxSize = size;
+    }
+
+    /**
+     * @return Amount of bytes the write queue of the connection can hold.
+     */
+    public int getWriteQueueMaxSize() {
+        return writeQueueMaxSize;
+    }
+
+    /**
+     * Sets the interval of the pings sent to measure the round trip time
+     * of the connection. Pings received from the remote endpoint are
+     * answered regardless.
+     *
+     * @param seconds Interval in seconds, 0 to never send pings.
+     */
+    public void setPingInterval(int seconds) {
+        if (seconds < 0)
+            throw new IllegalArgumentException("seconds");
+        this.pingInterval = seconds;
+    }
+
+    /**
+     * @return Interval in seconds between pings sent, or 0 if the
+     *         connection doesn't send any.
+     */
+    public int getPingInterval() {
+        return pingInterval;
+    }
+
+    /**
+     * Identifies the connection to the broker as one of several parallel
+     * connections of the link.
+     *
+     * @param shard Index of the connection.
+     * @see ShardedClient
+     */
+    public void setShard(int shard) {
+        if (shard < 0)
+            throw new IllegalArgumentException("shard");
+        this.shard = shard;
+    }
+
+    /**
+     * @return Index of the connection, or -1 if the link only has a single
+     *         connection.
+     */
+    public int getShard() {
+        return shard;
+    }
+
     public String getUri() {
         RemoteHandshake handshake = remoteHandshake;
         String uri = handshake.getWsUri() + "?auth=";
@@ -89,6 +186,14 @@ public abstract class RemoteEndpoint extends NetworkHandlers implements NetworkC
             byte[] digested = sha.digest(buffer.getBytes());
             String encoded = UrlBase64.encode(digested);
             uri += encoded + "&dsId=" + getLocalHandshake().getDsId();
+
+            String format = handshake.getFormat();
+            if (!JsonCodec.FORMAT.equals(format)) {
+                uri += "&format=" + format;
+            }
+            if (shard >= 0) {
+                uri += "&shard=" + shard;
+            }
         } catch (UnsupportedEncodingException e) {
             throw new RuntimeException(e);
         }
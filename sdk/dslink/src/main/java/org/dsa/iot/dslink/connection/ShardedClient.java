@@ -0,0 +1,119 @@
+package org.dsa.iot.dslink.connection;
+
+import org.dsa.iot.dslink.util.ConsistentHash;
+import org.vertx.java.core.buffer.Buffer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Spreads the traffic of a single link across several connections to the
+ * same remote endpoint. Request IDs and subscription IDs are mapped onto
+ * the connections by consistent hashing so every rid and sid is always
+ * written through the same connection in order.
+ *
+ * @author Samuel Grenier
+ * @see DataHandler
+ */
+public class ShardedClient implements NetworkClient {
+
+    private final List<NetworkClient> shards;
+    private final ConsistentHash hash;
+
+    /**
+     * @param shards Connections to spread the traffic across.
+     */
+    public ShardedClient(NetworkClient... shards) {
+        if (shards == null)
+            throw new NullPointerException("shards");
+        else if (shards.length == 0)
+            throw new IllegalArgumentException("shards");
+        for (NetworkClient shard : shards) {
+            if (shard == null) {
+                throw new NullPointerException("shard");
+            }
+        }
+        this.shards = Collections.unmodifiableList(Arrays.asList(shards.clone()));
+        this.hash = new ConsistentHash(shards.length);
+    }
+
+    /**
+     * @return Connections the traffic is spread across.
+     */
+    public List<NetworkClient> getShards() {
+        return shards;
+    }
+
+    /**
+     * @param rid Request ID of a message.
+     * @return Index of the connection the request is written through.
+     */
+    public int shardOfRid(int rid) {
+        return hash.nodeOf(rid);
+    }
+
+    /**
+     * Subscription updates are spread by their sid rather than their rid,
+     * which is always 0.
+     *
+     * @param sid Subscription ID of an update.
+     * @return Index of the connection the update is written through.
+     */
+    public int shardOfSid(int sid) {
+        return hash.nodeOf(sid);
+    }
+
+    /**
+     * Writes through the first connection.
+     *
+     * @param data Data to write.
+     */
+    @Override
+    public void write(String data) {
+        shards.get(0).write(data);
+    }
+
+    /**
+     * Writes through the first connection.
+     *
+     * @param data Data to write.
+     */
+    @Override
+    public void write(Buffer data) {
+        shards.get(0).write(data);
+    }
+
+    @Override
+    public void close() {
+        for (NetworkClient shard : shards) {
+            shard.close();
+        }
+    }
+
+    /**
+     * @return Whether every connection is connected.
+     */
+    @Override
+    public boolean isConnected() {
+        for (NetworkClient shard : shards) {
+            if (!shard.isConnected()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Whether every connection can accept more data.
+     */
+    @Override
+    public boolean isWritable() {
+        for (NetworkClient shard : shards) {
+            if (!shard.isWritable()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,69 @@
+package org.dsa.iot.dslink.connection;
+
+import org.vertx.java.core.buffer.Buffer;
+
+/**
+ * Generator style writer used to encode outgoing data without building
+ * an intermediate tree of JSON objects and arrays. The writer owns the
+ * memory it writes into so that it can be reset and reused for every
+ * frame that is sent.
+ *
+ * @author Samuel Grenier
+ * @see WireCodec#createWriter()
+ */
+public interface StreamWriter {
+
+    void writeStartObject();
+
+    void writeEndObject();
+
+    void writeStartArray();
+
+    void writeEndArray();
+
+    /**
+     * Writes the name of the next field of the current object. The value
+     * of the field must be written immediately after.
+     *
+     * @param name Name of the field.
+     */
+    void writeFieldName(String name);
+
+    void writeString(String s);
+
+    void writeLong(long l);
+
+    void writeDouble(double d);
+
+    void writeNumber(Number n);
+
+    void writeBoolean(boolean b);
+
+    void writeNull();
+
+    /**
+     * Writes any JSON compatible value. JSON objects and arrays, maps,
+     * lists, strings, numbers, booleans and {@code null} are supported.
+     *
+     * @param value Value to write.
+     */
+    void writeValue(Object value);
+
+    /**
+     * @return Amount of bytes written since the last reset.
+     */
+    int size();
+
+    /**
+     * Discards all written data so that the writer can be reused.
+     */
+    void reset();
+
+    /**
+     * Copies the written data into a buffer that can be handed off to the
+     * network.
+     *
+     * @return Buffer containing the written data.
+     */
+    Buffer toBuffer();
+}
@@ -0,0 +1,25 @@
+package org.dsa.iot.dslink.connection;
+
+/**
+ * A subscription update that can be coalesced with older updates of the
+ * same sid before it is sent.
+ *
+ * @author Samuel Grenier
+ * @see UpdateCoalescing
+ */
+public interface SubscriptionMessage extends OutboundMessage {
+
+    /**
+     * @return Subscription ID of the update.
+     */
+    int getSid();
+
+    /**
+     * Combines an older update of the same sid with this update.
+     *
+     * @param previous Older update of the same sid.
+     * @return An update carrying the latest value along with the rollup of
+     *         every value it replaces.
+     */
+    SubscriptionMessage rollup(SubscriptionMessage previous);
+}
@@ -0,0 +1,28 @@
+package org.dsa.iot.dslink.connection;
+
+/**
+ * Determines how subscription updates of the same sid that are queued
+ * within a single flush are sent to the remote endpoint.
+ *
+ * @author Samuel Grenier
+ * @see org.dsa.iot.dslink.config.Configuration#setUpdateCoalescing
+ */
+public enum UpdateCoalescing {
+
+    /**
+     * Every update is sent.
+     */
+    NONE,
+
+    /**
+     * Only the latest update of each sid is sent.
+     */
+    LATEST,
+
+    /**
+     * Only the latest update of each sid is sent along with the
+     * {@code count}, {@code sum}, {@code min} and {@code max} of the
+     * values that were replaced.
+     */
+    ROLLUP
+}
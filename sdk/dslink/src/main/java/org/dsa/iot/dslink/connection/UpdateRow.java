@@ -0,0 +1,95 @@
+package org.dsa.iot.dslink.connection;
+
+/**
+ * A single row of the {@code updates} array of a message. Rows are either
+ * arrays of values or objects of named values. The same row instance is
+ * reused for every row of a message and must not be retained.
+ *
+ * @author Samuel Grenier
+ * @see MessageView#readUpdates
+ */
+public class UpdateRow {
+
+    private Object[] values = new Object[4];
+    private String[] names = new String[4];
+    private boolean isMap;
+    private int size;
+
+    /**
+     * Clears the row so it can be populated again.
+     *
+     * @param isMap Whether the next row is an object.
+     */
+    public void reset(boolean isMap) {
+        for (int i = 0; i < size; i++) {
+            values[i] = null;
+            names[i] = null;
+        }
+        this.isMap = isMap;
+        this.size = 0;
+    }
+
+    /**
+     * Adds a value to the row.
+     *
+     * @param name  Name of the value, only used if the row is an object.
+     * @param value Value to add.
+     */
+    public void add(String name, Object value) {
+        if (size == values.length) {
+            int length = size << 1;
+            Object[] tmpValues = new Object[length];
+            System.arraycopy(values, 0, tmpValues, 0, size);
+            values = tmpValues;
+
+            String[] tmpNames = new String[length];
+            System.arraycopy(names, 0, tmpNames, 0, size);
+            names = tmpNames;
+        }
+        names[size] = name;
+        values[size++] = value;
+    }
+
+    /**
+     * @return Whether the row is an object rather than an array.
+     */
+    public boolean isMap() {
+        return isMap;
+    }
+
+    /**
+     * @return Amount of values in the row.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index Index of the value.
+     * @return Value at the index or {@code null} if the row is too short.
+     */
+    public Object get(int index) {
+        return index < size ? values[index] : null;
+    }
+
+    /**
+     * @param name Name of the value.
+     * @return Value of the name or {@code null} if the row doesn't have it.
+     */
+    public Object get(String name) {
+        for (int i = 0; i < size; i++) {
+            if (name.equals(names[i])) {
+                return values[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param index Index of the value.
+     * @return Name of the value at the index, only set for object rows.
+     */
+    public String getName(int index) {
+        return index < size ? names[index] : null;
+    }
+}
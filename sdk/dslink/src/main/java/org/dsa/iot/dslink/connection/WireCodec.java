@@ -0,0 +1,62 @@
+package org.dsa.iot.dslink.connection;
+
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.json.JsonObject;
+
+/**
+ * Encodes and decodes the data sent over the network to and from a remote
+ * endpoint. The format of the codec is negotiated with the remote endpoint
+ * during the handshake.
+ *
+ * @author Samuel Grenier
+ * @see org.dsa.iot.dslink.config.Configuration#setWireCodec
+ */
+public interface WireCodec {
+
+    /**
+     * @return Name of the format as used during the handshake.
+     */
+    String getFormat();
+
+    /**
+     * @return Whether the encoded data must be sent as binary frames,
+     *         otherwise they are sent as text frames.
+     */
+    boolean isBinary();
+
+    /**
+     * Encodes a top level object containing the {@code requests} or
+     * {@code responses} to send to the remote endpoint.
+     *
+     * @param object Object to encode.
+     * @return Encoded data ready to be written to the network.
+     */
+    Buffer encode(JsonObject object);
+
+    /**
+     * Decodes data received from the remote endpoint.
+     *
+     * @param data Data to decode.
+     * @return Decoded top level object.
+     */
+    JsonObject decode(Buffer data);
+
+    /**
+     * Decodes a frame received from the remote endpoint. Codecs are free
+     * to defer decoding the messages of the frame until they are accessed.
+     *
+     * @param data Data to decode.
+     * @return Decoded frame.
+     */
+    InboundFrame decodeFrame(Buffer data);
+
+    /**
+     * Creates a writer that encodes data in the format of this codec. The
+     * writer is reused for every frame sent through a single connection.
+     * Writers of text codecs return the written text from
+     * {@link Object#toString()}.
+     *
+     * @return A new stream writer.
+     */
+    StreamWriter createWriter();
+}
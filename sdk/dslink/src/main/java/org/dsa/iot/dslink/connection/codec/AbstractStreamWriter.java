@@ -0,0 +1,220 @@
+package org.dsa.iot.dslink.connection.codec;
+
+import org.dsa.iot.dslink.connection.StreamWriter;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Base stream writer that writes into a growable byte array. The array
+ * is kept across resets so that a writer reused for every frame stops
+ * allocating once it has grown to the size of the largest frame.
+ *
+ * @author Samuel Grenier
+ */
+public abstract class AbstractStreamWriter implements StreamWriter {
+
+    /**
+     * Arrays that grow past this size are released on reset rather than
+     * being kept around for the next frame.
+     */
+    private static final int MAX_RETAINED = 4 * 1024 * 1024;
+    private static final int INITIAL_SIZE = 512;
+
+    protected byte[] buf = new byte[INITIAL_SIZE];
+    protected int len;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void writeValue(Object value) {
+        if (value == null) {
+            writeNull();
+        } else if (value instanceof String) {
+            writeString((String) value);
+        } else if (value instanceof Number) {
+            writeNumber((Number) value);
+        } else if (value instanceof Boolean) {
+            writeBoolean((Boolean) value);
+        } else if (value instanceof JsonObject) {
+            JsonObject obj = (JsonObject) value;
+            writeStartObject();
+            for (String name : obj.getFieldNames()) {
+                writeFieldName(name);
+                writeValue(obj.getValue(name));
+            }
+            writeEndObject();
+        } else if (value instanceof JsonArray) {
+            writeStartArray();
+            for (Object obj : (JsonArray) value) {
+                writeValue(obj);
+            }
+            writeEndArray();
+        } else if (value instanceof Map) {
+            writeStartObject();
+            Map<String, Object> map = (Map<String, Object>) value;
+            for (Map.Entry<String, Object> entry : map.entrySet()) {
+                writeFieldName(entry.getKey());
+                writeValue(entry.getValue());
+            }
+            writeEndObject();
+        } else if (value instanceof List) {
+            writeStartArray();
+            for (Object obj : (List<Object>) value) {
+                writeValue(obj);
+            }
+            writeEndArray();
+        } else {
+            writeOther(value);
+        }
+    }
+
+    /**
+     * Called when a value that isn't JSON compatible is written.
+     *
+     * @param value Value to write.
+     */
+    protected void writeOther(Object value) {
+        String clazz = value.getClass().getName();
+        throw new RuntimeException("Unhandled type: " + clazz);
+    }
+
+    @Override
+    public int size() {
+        return len;
+    }
+
+    @Override
+    public void reset() {
+        len = 0;
+        if (buf.length > MAX_RETAINED) {
+            buf = new byte[INITIAL_SIZE];
+        }
+    }
+
+    @Override
+    public Buffer toBuffer() {
+        Buffer buffer = new Buffer(len);
+        buffer.appendBytes(buf, 0, len);
+        return buffer;
+    }
+
+    protected final void ensure(int extra) {
+        int required = len + extra;
+        if (required > buf.length) {
+            int size = buf.length << 1;
+            if (size < required) {
+                size = required;
+            }
+            byte[] tmp = new byte[size];
+            System.arraycopy(buf, 0, tmp, 0, len);
+            buf = tmp;
+        }
+    }
+
+    protected final void append(int b) {
+        ensure(1);
+        buf[len++] = (byte) b;
+    }
+
+    protected final void appendShort(int s) {
+        ensure(2);
+        buf[len++] = (byte) (s >>> 8);
+        buf[len++] = (byte) s;
+    }
+
+    protected final void appendInt(int i) {
+        ensure(4);
+        setInt(len, i);
+        len += 4;
+    }
+
+    protected final void appendLong(long l) {
+        appendInt((int) (l >>> 32));
+        appendInt((int) l);
+    }
+
+    protected final void setInt(int pos, int i) {
+        buf[pos] = (byte) (i >>> 24);
+        buf[pos + 1] = (byte) (i >>> 16);
+        buf[pos + 2] = (byte) (i >>> 8);
+        buf[pos + 3] = (byte) i;
+    }
+
+    /**
+     * Appends a string encoded as UTF-8 without creating an intermediate
+     * byte array.
+     *
+     * @param s String to append.
+     */
+    protected final void appendUtf8(String s) {
+        int length = s.length();
+        ensure(length);
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                append(c);
+            } else {
+                i = appendChar(s, c, i);
+            }
+        }
+    }
+
+    /**
+     * Appends a single non ASCII character encoded as UTF-8.
+     *
+     * @param s String the character is from.
+     * @param c Character to append.
+     * @param i Index of the character.
+     * @return Index of the last character consumed.
+     */
+    protected final int appendChar(String s, char c, int i) {
+        ensure(4);
+        if (c < 0x800) {
+            buf[len++] = (byte) (0xc0 | (c >> 6));
+            buf[len++] = (byte) (0x80 | (c & 0x3f));
+        } else if (Character.isHighSurrogate(c)
+                && i + 1 < s.length()
+                && Character.isLowSurrogate(s.charAt(i + 1))) {
+            int cp = Character.toCodePoint(c, s.charAt(++i));
+            buf[len++] = (byte) (0xf0 | (cp >> 18));
+            buf[len++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+            buf[len++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+            buf[len++] = (byte) (0x80 | (cp & 0x3f));
+        } else if (Character.isSurrogate(c)) {
+            buf[len++] = (byte) '?';
+        } else {
+            buf[len++] = (byte) (0xe0 | (c >> 12));
+            buf[len++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+            buf[len++] = (byte) (0x80 | (c & 0x3f));
+        }
+        return i;
+    }
+
+    /**
+     * @param s String to measure.
+     * @return Amount of bytes the string takes when encoded as UTF-8.
+     */
+    protected static int utf8Length(String s) {
+        int length = s.length();
+        int bytes = length;
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                if (c < 0x800) {
+                    bytes++;
+                } else if (Character.isHighSurrogate(c)
+                        && i + 1 < length
+                        && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    bytes += 2;
+                    i++;
+                } else if (!Character.isSurrogate(c)) {
+                    bytes += 2;
+                }
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,64 @@
+package org.dsa.iot.dslink.connection.codec;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of the frames sent through a {@link DeflateCodec}.
+ *
+ * @author Samuel Grenier
+ */
+public class CompressionStats {
+
+    private final AtomicLong compressedFrames = new AtomicLong();
+    private final AtomicLong skippedFrames = new AtomicLong();
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+
+    /**
+     * @return Amount of frames sent compressed.
+     */
+    public long getCompressedFrames() {
+        return compressedFrames.get();
+    }
+
+    /**
+     * @return Amount of frames sent uncompressed because they were below
+     *         the threshold or didn't get any smaller.
+     */
+    public long getSkippedFrames() {
+        return skippedFrames.get();
+    }
+
+    /**
+     * @return Size in bytes of the compressed frames before compression.
+     */
+    public long getBytesIn() {
+        return bytesIn.get();
+    }
+
+    /**
+     * @return Size in bytes of the compressed frames after compression.
+     */
+    public long getBytesOut() {
+        return bytesOut.get();
+    }
+
+    /**
+     * @return Compressed size relative to the original size of every
+     *         compressed frame, or 1 if no frames were compressed.
+     */
+    public double getRatio() {
+        long in = bytesIn.get();
+        return in == 0 ? 1 : (double) bytesOut.get() / in;
+    }
+
+    void compressed(int in, int out) {
+        compressedFrames.incrementAndGet();
+        bytesIn.addAndGet(in);
+        bytesOut.addAndGet(out);
+    }
+
+    void skipped() {
+        skippedFrames.incrementAndGet();
+    }
+}
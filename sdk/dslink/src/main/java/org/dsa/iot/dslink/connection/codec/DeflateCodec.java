@@ -0,0 +1,274 @@
+package org.dsa.iot.dslink.connection.codec;
+
+import org.dsa.iot.dslink.connection.DataHandler;
+import org.dsa.iot.dslink.connection.InboundFrame;
+import org.dsa.iot.dslink.connection.StreamWriter;
+import org.dsa.iot.dslink.connection.WireCodec;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.json.JsonObject;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses the frames of another codec with deflate. Every frame starts
+ * with a byte telling whether the rest of the frame is compressed, which
+ * lets small frames skip compression. Frames are compressed independently
+ * of each other and always sent as binary frames.
+ *
+ * @author Samuel Grenier
+ */
+public class DeflateCodec implements WireCodec {
+
+    /**
+     * Suffix added to the format of the wrapped codec.
+     */
+    public static final String SUFFIX = "-deflate";
+
+    /**
+     * Frames smaller than this are sent uncompressed by default.
+     */
+    public static final int DEFAULT_THRESHOLD = 256;
+
+    /**
+     * Leading byte of an uncompressed frame.
+     */
+    public static final int RAW = 0;
+
+    /**
+     * Leading byte of a compressed frame.
+     */
+    public static final int DEFLATED = 1;
+
+    /**
+     * Default maximum size of an inflated frame, a generous multiple of the
+     * maximum size of the frames the link sends.
+     */
+    public static final int DEFAULT_MAX_INFLATED_SIZE = DataHandler.DEFAULT_MAX_MESSAGE_SIZE * 32;
+
+    private final CompressionStats stats = new CompressionStats();
+    private final Object inflaterLock = new Object();
+    private final WireCodec codec;
+    private final int level;
+    private final int threshold;
+
+    private volatile int maxInflatedSize = DEFAULT_MAX_INFLATED_SIZE;
+    // Guarded by inflaterLock, created on first use
+    private Inflater inflater;
+
+    /**
+     * @param codec Codec to compress the frames of.
+     */
+    public DeflateCodec(WireCodec codec) {
+        this(codec, Deflater.DEFAULT_COMPRESSION, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * @param codec     Codec to compress the frames of.
+     * @param level     Compression level, from 0 to 9 or -1 for the
+     *                  default level.
+     * @param threshold Frames smaller than this amount of bytes are sent
+     *                  uncompressed.
+     */
+    public DeflateCodec(WireCodec codec, int level, int threshold) {
+        if (codec == null)
+            throw new NullPointerException("codec");
+        else if (level < -1 || level > 9)
+            throw new IllegalArgumentException("level");
+        else if (threshold < 0)
+            throw new IllegalArgumentException("threshold");
+        this.codec = codec;
+        this.level = level;
+        this.threshold = threshold;
+    }
+
+    /**
+     * @return Codec whose frames are compressed.
+     */
+    public WireCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * Bounds the size of received frames once inflated. Frames inflating
+     * to more fail to decode rather than exhausting the memory.
+     *
+     * @param bytes Maximum size of an inflated frame.
+     */
+    public void setMaxInflatedSize(int bytes) {
+        if (bytes <= 0)
+            throw new IllegalArgumentException("bytes");
+        this.maxInflatedSize = bytes;
+    }
+
+    /**
+     * @return Maximum size of an inflated frame in bytes.
+     */
+    public int getMaxInflatedSize() {
+        return maxInflatedSize;
+    }
+
+    /**
+     * Frees the native memory of the inflater once a connection using the
+     * codec closed. The codec stays usable, the next frame received
+     * creates a new inflater.
+     */
+    public void release() {
+        synchronized (inflaterLock) {
+            if (inflater != null) {
+                inflater.end();
+                inflater = null;
+            }
+        }
+    }
+
+    /**
+     * @return Counters of the frames sent through this codec.
+     */
+    public CompressionStats getStats() {
+        return stats;
+    }
+
+    @Override
+    public String getFormat() {
+        return codec.getFormat() + SUFFIX;
+    }
+
+    @Override
+    public boolean isBinary() {
+        return true;
+    }
+
+    @Override
+    public Buffer encode(JsonObject object) {
+        byte[] data = codec.encode(object).getBytes();
+        Deflater deflater = new Deflater(level, true);
+        try {
+            return new Compressor(deflater).compress(data, data.length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Override
+    public JsonObject decode(Buffer data) {
+        return codec.decode(inflate(data));
+    }
+
+    @Override
+    public InboundFrame decodeFrame(Buffer data) {
+        return codec.decodeFrame(inflate(data));
+    }
+
+    @Override
+    public StreamWriter createWriter() {
+        return new DeflateWriter(codec.createWriter(), this);
+    }
+
+    int getLevel() {
+        return level;
+    }
+
+    private Buffer inflate(Buffer data) {
+        int length = data.length();
+        if (length == 0) {
+            throw new RuntimeException("Empty frame");
+        }
+
+        int flag = data.getByte(0);
+        if (flag == RAW) {
+            return data.getBuffer(1, length);
+        } else if (flag != DEFLATED) {
+            throw new RuntimeException("Unknown frame flag: " + flag);
+        }
+
+        int max = maxInflatedSize;
+        byte[] in = data.getBytes(1, length);
+        byte[] out = new byte[Math.min(max, Math.max(64, in.length * 4))];
+        int size = 0;
+        // Decoding only ever happens on the network thread, the lock is
+        // uncontended
+        synchronized (inflaterLock) {
+            Inflater inflater = this.inflater;
+            if (inflater == null) {
+                inflater = new Inflater(true);
+                this.inflater = inflater;
+            }
+            inflater.reset();
+            inflater.setInput(in);
+            try {
+                while (!inflater.finished()) {
+                    if (size == out.length) {
+                        if (size >= max) {
+                            throw new RuntimeException("Inflated frame exceeds " + max + " bytes");
+                        }
+                        byte[] tmp = new byte[(int) Math.min(max, out.length * 2L)];
+                        System.arraycopy(out, 0, tmp, 0, size);
+                        out = tmp;
+                    }
+                    int n = inflater.inflate(out, size, out.length - size);
+                    if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new RuntimeException("Truncated frame");
+                    }
+                    size += n;
+                }
+            } catch (DataFormatException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        Buffer buffer = new Buffer(size);
+        buffer.appendBytes(out, 0, size);
+        return buffer;
+    }
+
+    /**
+     * Compresses frames with a reused deflater and output array.
+     */
+    class Compressor {
+
+        private final Deflater deflater;
+        private byte[] out = new byte[512];
+
+        Compressor(Deflater deflater) {
+            this.deflater = deflater;
+        }
+
+        Buffer compress(byte[] data, int length) {
+            if (length < threshold) {
+                stats.skipped();
+                return frame(RAW, data, length);
+            }
+
+            deflater.reset();
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+
+            int size = 0;
+            while (!deflater.finished()) {
+                if (size == out.length) {
+                    byte[] tmp = new byte[out.length * 2];
+                    System.arraycopy(out, 0, tmp, 0, size);
+                    out = tmp;
+                }
+                size += deflater.deflate(out, size, out.length - size);
+                if (size >= length) {
+                    // Not worth sending compressed
+                    stats.skipped();
+                    return frame(RAW, data, length);
+                }
+            }
+
+            stats.compressed(length, size + 1);
+            return frame(DEFLATED, out, size);
+        }
+
+        private Buffer frame(int flag, byte[] data, int length) {
+            Buffer buffer = new Buffer(length + 1);
+            buffer.appendByte((byte) flag);
+            buffer.appendBytes(data, 0, length);
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package org.dsa.iot.dslink.connection.codec;
+
+import org.dsa.iot.dslink.connection.StreamWriter;
+import org.vertx.java.core.buffer.Buffer;
+
+import java.util.zip.Deflater;
+
+/**
+ * Writes through the writer of the wrapped codec and compresses the
+ * written frame when it is converted to a buffer. The deflater is reused
+ * for every frame.
+ *
+ * @author Samuel Grenier
+ * @see DeflateCodec
+ */
+public class DeflateWriter implements StreamWriter {
+
+    private final StreamWriter writer;
+    private final DeflateCodec.Compressor compressor;
+
+    DeflateWriter(StreamWriter writer, DeflateCodec codec) {
+        this.writer = writer;
+        Deflater deflater = new Deflater(codec.getLevel(), true);
+        this.compressor = codec.new Compressor(deflater);
+    }
+
+    @Override
+    public void writeStartObject() {
+        writer.writeStartObject();
+    }
+
+    @Override
+    public void writeEndObject() {
+        writer.writeEndObject();
+    }
+
+    @Override
+    public void writeStartArray() {
+        writer.writeStartArray();
+    }
+
+    @Override
+    public void writeEndArray() {
+        writer.writeEndArray();
+    }
+
+    @Override
+    public void writeFieldName(String name) {
+        writer.writeFieldName(name);
+    }
+
+    @Override
+    public void writeString(String s) {
+        writer.writeString(s);
+    }
+
+    @Override
+    public void writeLong(long l) {
+        writer.writeLong(l);
+    }
+
+    @Override
+    public void writeDouble(double d) {
+        writer.writeDouble(d);
+    }
+
+    @Override
+    public void writeNumber(Number n) {
+        writer.writeNumber(n);
+    }
+
+    @Override
+    public void writeBoolean(boolean b) {
+        writer.writeBoolean(b);
+    }
+
+    @Override
+    public void writeNull() {
+        writer.writeNull();
+    }
+
+    @Override
+    public void writeValue(Object value) {
+        writer.writeValue(value);
+    }
+
+    /**
+     * @return Size of the written data before compression.
+     */
+    @Override
+    public int size() {
+        return writer.size();
+    }
+
+    @Override
+    public void reset() {
+        writer.reset();
+    }
+
+    /**
+     * @return Compressed frame.
+     */
+    @Override
+    public Buffer toBuffer() {
+        if (writer instanceof AbstractStreamWriter) {
+            // Compresses straight from the array of the writer
+            AbstractStreamWriter w = (AbstractStreamWriter) writer;
+            return compressor.compress(w.buf, w.len);
+        }
+        byte[] data = writer.toBuffer().getBytes();
+        return compressor.compress(data, data.length);
+    }
+
+    @Override
+    public String toString() {
+        return writer.toString();
+    }
+}
@@ -0,0 +1,100 @@
+package org.dsa.iot.dslink.connection.codec;
+
+import org.dsa.iot.dslink.connection.InboundFrame;
+import org.dsa.iot.dslink.connection.MessageView;
+import org.dsa.iot.dslink.connection.StreamWriter;
+import org.dsa.iot.dslink.connection.WireCodec;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Default codec that sends all data as JSON text frames.
+ *
+ * @author Samuel Grenier
+ */
+public class JsonCodec implements WireCodec {
+
+    public static final String FORMAT = "json";
+
+    @Override
+    public String getFormat() {
+        return FORMAT;
+    }
+
+    @Override
+    public boolean isBinary() {
+        return false;
+    }
+
+    @Override
+    public Buffer encode(JsonObject object) {
+        return new Buffer(object.encode(), "UTF-8");
+    }
+
+    @Override
+    public JsonObject decode(Buffer data) {
+        return new JsonObject(data.toString("UTF-8"));
+    }
+
+    @Override
+    public StreamWriter createWriter() {
+        return new JsonWriter();
+    }
+
+    /**
+     * Splits the frame into views over each message without decoding the
+     * messages themselves.
+     *
+     * @param data Data to decode.
+     * @return Decoded frame.
+     */
+    @Override
+    public InboundFrame decodeFrame(Buffer data) {
+        byte[] bytes = data.getBytes();
+        JsonReader reader = new JsonReader(bytes, 0, bytes.length);
+        List<MessageView> requests = null;
+        List<MessageView> responses = null;
+        Object ping = null;
+
+        reader.beginObject();
+        String name;
+        while ((name = reader.nextField()) != null) {
+            switch (name) {
+                case "requests":
+                    requests = readMessages(reader, bytes);
+                    break;
+                case "responses":
+                    responses = readMessages(reader, bytes);
+                    break;
+                case "ping":
+                    ping = reader.readValue();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        return new InboundFrame(requests, responses, ping);
+    }
+
+    private static List<MessageView> readMessages(JsonReader reader,
+                                                  byte[] bytes) {
+        if (reader.peek() != '[') {
+            reader.skipValue();
+            return null;
+        }
+
+        List<MessageView> messages = new ArrayList<>();
+        reader.beginArray();
+        while (reader.nextElement()) {
+            reader.peek();
+            int start = reader.getPosition();
+            reader.skipValue();
+            int end = reader.getPosition();
+            messages.add(new JsonMessageView(bytes, start, end));
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,148 @@
+package org.dsa.iot.dslink.connection.codec;
+
+import org.dsa.iot.dslink.connection.MessageView;
+import org.dsa.iot.dslink.connection.UpdateRow;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.json.JsonObject;
+
+/**
+ * View over a single message of a JSON frame. The top level fields of the
+ * message are only scanned the first time one of them is accessed and the
+ * rows of the updates are decoded one at a time as they are read.
+ *
+ * @author Samuel Grenier
+ */
+public class JsonMessageView implements MessageView {
+
+    private final byte[] buf;
+    private final int start;
+    private final int end;
+
+    private boolean scanned;
+    private Integer rid;
+    private String method;
+    private String path;
+    private String stream;
+    private int updates = -1;
+
+    private JsonObject json;
+
+    /**
+     * @param buf   Data of the frame the message is part of.
+     * @param start Position of the message in the frame.
+     * @param end   Position of the end of the message, exclusive.
+     */
+    public JsonMessageView(byte[] buf, int start, int end) {
+        if (buf == null)
+            throw new NullPointerException("buf");
+        this.buf = buf;
+        this.start = start;
+        this.end = end;
+    }
+
+    @Override
+    public Integer getRid() {
+        scan();
+        return rid;
+    }
+
+    @Override
+    public String getMethod() {
+        scan();
+        return method;
+    }
+
+    @Override
+    public String getPath() {
+        scan();
+        return path;
+    }
+
+    @Override
+    public String getStream() {
+        scan();
+        return stream;
+    }
+
+    @Override
+    public void readUpdates(Handler<UpdateRow> handler) {
+        scan();
+        if (updates < 0) {
+            return;
+        }
+
+        JsonReader reader = new JsonReader(buf, updates, end);
+        if (reader.peek() != '[') {
+            return;
+        }
+
+        UpdateRow row = new UpdateRow();
+        reader.beginArray();
+        while (reader.nextElement()) {
+            char c = reader.peek();
+            if (c == '[') {
+                row.reset(false);
+                reader.beginArray();
+                while (reader.nextElement()) {
+                    row.add(null, reader.readValue());
+                }
+            } else if (c == '{') {
+                row.reset(true);
+                reader.beginObject();
+                String name;
+                while ((name = reader.nextField()) != null) {
+                    row.add(name, reader.readValue());
+                }
+            } else {
+                String err = "Invalid update: " + reader.readValue();
+                throw new RuntimeException(err);
+            }
+            handler.handle(row);
+        }
+    }
+
+    @Override
+    public JsonObject toJson() {
+        if (json == null) {
+            json = (JsonObject) new JsonReader(buf, start, end).readValue();
+        }
+        return json;
+    }
+
+    /**
+     * Scans the top level fields of the message, skipping over any value
+     * that isn't accessed through the view.
+     */
+    private void scan() {
+        if (scanned) {
+            return;
+        }
+        scanned = true;
+
+        JsonReader reader = new JsonReader(buf, start, end);
+        reader.beginObject();
+        String name;
+        while ((name = reader.nextField()) != null) {
+            switch (name) {
+                case "rid":
+                    rid = reader.readInteger();
+                    break;
+                case "method":
+                    method = reader.readStringOrNull();
+                    break;
+                case "path":
+                    path = reader.readStringOrNull();
+                    break;
+                case "stream":
+                    stream = reader.readStringOrNull();
+                    break;
+                case "updates":
+                    updates = reader.getPosition();
+                    reader.skipValue();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+    }
+}
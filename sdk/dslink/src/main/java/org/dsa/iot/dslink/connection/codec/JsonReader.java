@@ -0,0 +1,401 @@
+package org.dsa.iot.dslink.connection.codec;
+
+import org.vertx.java.core.json.DecodeException;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pull parser that reads JSON text encoded as UTF-8 directly from a byte
+ * array. Values can be skipped without being materialized, which allows
+ * callers to only decode the parts of a message they need.
+ *
+ * @author Samuel Grenier
+ */
+public class JsonReader {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final byte[] buf;
+    private final int end;
+    private int pos;
+
+    /**
+     * @param buf   Data to read.
+     * @param start Position to start reading from.
+     * @param end   Position to stop reading at, exclusive.
+     */
+    public JsonReader(byte[] buf, int start, int end) {
+        if (buf == null)
+            throw new NullPointerException("buf");
+        this.buf = buf;
+        this.pos = start;
+        this.end = end;
+    }
+
+    /**
+     * @return Current position of the reader.
+     */
+    public int getPosition() {
+        return pos;
+    }
+
+    /**
+     * Moves the reader to a position returned by {@link #getPosition()}.
+     *
+     * @param pos Position to move to.
+     */
+    public void setPosition(int pos) {
+        this.pos = pos;
+    }
+
+    /**
+     * @return The next non whitespace character without consuming it.
+     */
+    public char peek() {
+        skipWhitespace();
+        if (pos >= end) {
+            throw error("Unexpected end of data");
+        }
+        return (char) buf[pos];
+    }
+
+    public void beginObject() {
+        expect('{');
+    }
+
+    /**
+     * Reads the name of the next field in the current object.
+     *
+     * @return Name of the field or {@code null} if the object has ended.
+     */
+    public String nextField() {
+        if (!hasNext('}')) {
+            return null;
+        }
+        String name = readString();
+        expect(':');
+        return name;
+    }
+
+    public void beginArray() {
+        expect('[');
+    }
+
+    /**
+     * @return Whether the current array has another element.
+     */
+    public boolean nextElement() {
+        return hasNext(']');
+    }
+
+    /**
+     * Skips the next value without decoding it.
+     */
+    public void skipValue() {
+        char c = peek();
+        if (c == '"') {
+            skipString();
+        } else if (c == '{' || c == '[') {
+            int depth = 0;
+            do {
+                c = peek();
+                if (c == '"') {
+                    skipString();
+                    continue;
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                }
+                pos++;
+            } while (depth > 0);
+        } else {
+            while (pos < end) {
+                c = (char) buf[pos];
+                if (c == ',' || c == '}' || c == ']' || isWhitespace(c)) {
+                    break;
+                }
+                pos++;
+            }
+        }
+    }
+
+    /**
+     * Reads the next value. Objects and arrays are returned as JSON objects
+     * and arrays.
+     *
+     * @return Decoded value.
+     */
+    public Object readValue() {
+        Object value = readRaw();
+        if (value instanceof Map) {
+            return new JsonObject(castMap(value));
+        } else if (value instanceof List) {
+            return new JsonArray((List) value);
+        }
+        return value;
+    }
+
+    /**
+     * Reads the next value as an integer.
+     *
+     * @return Integer value or {@code null} if the value is null.
+     */
+    public Integer readInteger() {
+        Object value = readRaw();
+        if (value == null) {
+            return null;
+        } else if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+        throw error("Expected a number");
+    }
+
+    /**
+     * Reads the next value as a string.
+     *
+     * @return String value or {@code null} if the value is null.
+     */
+    public String readStringOrNull() {
+        if (peek() == 'n') {
+            readRaw();
+            return null;
+        }
+        return readString();
+    }
+
+    private Object readRaw() {
+        char c = peek();
+        switch (c) {
+            case '"':
+                return readString();
+            case '{': {
+                beginObject();
+                Map<String, Object> map = new LinkedHashMap<>();
+                String name;
+                while ((name = nextField()) != null) {
+                    map.put(name, readRaw());
+                }
+                return map;
+            }
+            case '[': {
+                beginArray();
+                List<Object> list = new ArrayList<>();
+                while (nextElement()) {
+                    list.add(readRaw());
+                }
+                return list;
+            }
+            case 't':
+                expectLiteral("true");
+                return Boolean.TRUE;
+            case 'f':
+                expectLiteral("false");
+                return Boolean.FALSE;
+            case 'n':
+                expectLiteral("null");
+                return null;
+            default:
+                return readNumber();
+        }
+    }
+
+    private Number readNumber() {
+        int start = pos;
+        boolean decimal = false;
+        long value = 0;
+        boolean negative = false;
+        int digits = 0;
+
+        if (pos < end && buf[pos] == '-') {
+            negative = true;
+            pos++;
+        }
+
+        while (pos < end) {
+            byte b = buf[pos];
+            if (b >= '0' && b <= '9') {
+                value = value * 10 + (b - '0');
+                digits++;
+            } else if (b == '.' || b == 'e' || b == 'E' || b == '+' || b == '-') {
+                decimal = true;
+            } else {
+                break;
+            }
+            pos++;
+        }
+
+        if (pos == start || (digits == 0 && !decimal)) {
+            throw error("Unexpected character");
+        } else if (decimal) {
+            String s = new String(buf, start, pos - start, UTF_8);
+            try {
+                return Double.parseDouble(s);
+            } catch (NumberFormatException e) {
+                throw error("Invalid number: " + s);
+            }
+        } else if (digits > 18) {
+            String s = new String(buf, start, pos - start, UTF_8);
+            BigInteger big = new BigInteger(s);
+            if (big.bitLength() < 64) {
+                return big.longValue();
+            }
+            return big;
+        }
+
+        if (negative) {
+            value = -value;
+        }
+        if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+            return (int) value;
+        }
+        return value;
+    }
+
+    /**
+     * Reads the next value as a string.
+     *
+     * @return Decoded string.
+     */
+    public String readString() {
+        expect('"');
+        int start = pos;
+        while (pos < end) {
+            byte b = buf[pos];
+            if (b == '"') {
+                String s = new String(buf, start, pos - start, UTF_8);
+                pos++;
+                return s;
+            } else if (b == '\\') {
+                pos = start;
+                return readEscapedString();
+            }
+            pos++;
+        }
+        throw error("Unterminated string");
+    }
+
+    private String readEscapedString() {
+        StringBuilder builder = new StringBuilder();
+        int start = pos;
+        while (pos < end) {
+            byte b = buf[pos];
+            if (b == '"') {
+                builder.append(new String(buf, start, pos - start, UTF_8));
+                pos++;
+                return builder.toString();
+            } else if (b == '\\') {
+                builder.append(new String(buf, start, pos - start, UTF_8));
+                if (++pos >= end) {
+                    break;
+                }
+                char c = (char) buf[pos++];
+                switch (c) {
+                    case 'n':
+                        builder.append('\n');
+                        break;
+                    case 'r':
+                        builder.append('\r');
+                        break;
+                    case 't':
+                        builder.append('\t');
+                        break;
+                    case 'b':
+                        builder.append('\b');
+                        break;
+                    case 'f':
+                        builder.append('\f');
+                        break;
+                    case 'u':
+                        if (pos + 4 > end) {
+                            throw error("Invalid escape");
+                        }
+                        String hex = new String(buf, pos, 4, UTF_8);
+                        try {
+                            builder.append((char) Integer.parseInt(hex, 16));
+                        } catch (NumberFormatException e) {
+                            throw error("Invalid escape");
+                        }
+                        pos += 4;
+                        break;
+                    default:
+                        builder.append(c);
+                }
+                start = pos;
+                continue;
+            }
+            pos++;
+        }
+        throw error("Unterminated string");
+    }
+
+    private void skipString() {
+        expect('"');
+        while (pos < end) {
+            byte b = buf[pos++];
+            if (b == '"') {
+                return;
+            } else if (b == '\\') {
+                pos++;
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    private boolean hasNext(char close) {
+        char c = peek();
+        if (c == close) {
+            pos++;
+            return false;
+        } else if (c == ',') {
+            pos++;
+        }
+        return true;
+    }
+
+    private void expect(char c) {
+        if (peek() != c) {
+            throw error("Expected '" + c + "'");
+        }
+        pos++;
+    }
+
+    private void expectLiteral(String literal) {
+        int length = literal.length();
+        if (pos + length > end) {
+            throw error("Unexpected end of data");
+        }
+        for (int i = 0; i < length; i++) {
+            if (buf[pos + i] != literal.charAt(i)) {
+                throw error("Unexpected character");
+            }
+        }
+        pos += length;
+    }
+
+    private void skipWhitespace() {
+        while (pos < end && isWhitespace((char) buf[pos])) {
+            pos++;
+        }
+    }
+
+    private DecodeException error(String msg) {
+        return new DecodeException(msg + " at position " + pos);
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> castMap(Object obj) {
+        return (Map<String, Object>) obj;
+    }
+}
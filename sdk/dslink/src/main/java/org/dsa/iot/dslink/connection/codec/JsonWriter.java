@@ -0,0 +1,242 @@
+package org.dsa.iot.dslink.connection.codec;
+
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+
+/**
+ * Writes JSON text encoded as UTF-8 directly into a reusable byte array.
+ *
+ * @author Samuel Grenier
+ */
+public class JsonWriter extends AbstractStreamWriter {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final byte[] HEX = "0123456789abcdef".getBytes(UTF_8);
+    private static final byte[] MIN_LONG = Long.toString(Long.MIN_VALUE).getBytes(UTF_8);
+
+    /**
+     * Whether the next value in the container at the current depth is the
+     * first one. Index 0 is the top level.
+     */
+    private boolean[] first = new boolean[16];
+    private int depth;
+    private boolean afterName;
+
+    public JsonWriter() {
+        first[0] = true;
+    }
+
+    @Override
+    public void writeStartObject() {
+        beforeValue();
+        append('{');
+        push();
+    }
+
+    @Override
+    public void writeEndObject() {
+        depth--;
+        append('}');
+    }
+
+    @Override
+    public void writeStartArray() {
+        beforeValue();
+        append('[');
+        push();
+    }
+
+    @Override
+    public void writeEndArray() {
+        depth--;
+        append(']');
+    }
+
+    @Override
+    public void writeFieldName(String name) {
+        beforeValue();
+        appendQuoted(name);
+        append(':');
+        afterName = true;
+    }
+
+    @Override
+    public void writeString(String s) {
+        if (s == null) {
+            writeNull();
+            return;
+        }
+        beforeValue();
+        appendQuoted(s);
+    }
+
+    @Override
+    public void writeLong(long l) {
+        beforeValue();
+        if (l == Long.MIN_VALUE) {
+            ensure(MIN_LONG.length);
+            System.arraycopy(MIN_LONG, 0, buf, len, MIN_LONG.length);
+            len += MIN_LONG.length;
+            return;
+        }
+
+        ensure(20);
+        if (l < 0) {
+            buf[len++] = '-';
+            l = -l;
+        }
+
+        int digits = 1;
+        for (long n = l; n >= 10; n /= 10) {
+            digits++;
+        }
+
+        int pos = len + digits;
+        do {
+            buf[--pos] = (byte) ('0' + (l % 10));
+            l /= 10;
+        } while (l > 0);
+        len += digits;
+    }
+
+    @Override
+    public void writeDouble(double d) {
+        if (Double.isNaN(d) || Double.isInfinite(d)) {
+            writeString(String.valueOf(d));
+            return;
+        } else if (d == (long) d && Math.abs(d) < 1e15) {
+            // Keep the fractional part so the type survives the round trip
+            writeLong((long) d);
+            ensure(2);
+            buf[len++] = '.';
+            buf[len++] = '0';
+            return;
+        }
+        beforeValue();
+        appendAscii(Double.toString(d));
+    }
+
+    @Override
+    public void writeNumber(Number n) {
+        if (n == null) {
+            writeNull();
+        } else if (n instanceof Integer || n instanceof Long
+                || n instanceof Short || n instanceof Byte) {
+            writeLong(n.longValue());
+        } else if (n instanceof Double || n instanceof Float) {
+            writeDouble(n.doubleValue());
+        } else if (n instanceof BigDecimal) {
+            beforeValue();
+            appendAscii(((BigDecimal) n).toString());
+        } else {
+            beforeValue();
+            appendAscii(n.toString());
+        }
+    }
+
+    @Override
+    public void writeBoolean(boolean b) {
+        beforeValue();
+        appendAscii(b ? "true" : "false");
+    }
+
+    @Override
+    public void writeNull() {
+        beforeValue();
+        appendAscii("null");
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        depth = 0;
+        first[0] = true;
+        afterName = false;
+    }
+
+    /**
+     * @return The written JSON text.
+     */
+    @Override
+    public String toString() {
+        return new String(buf, 0, len, UTF_8);
+    }
+
+    private void push() {
+        if (++depth == first.length) {
+            boolean[] tmp = new boolean[depth << 1];
+            System.arraycopy(first, 0, tmp, 0, depth);
+            first = tmp;
+        }
+        first[depth] = true;
+    }
+
+    private void beforeValue() {
+        if (afterName) {
+            afterName = false;
+        } else if (first[depth]) {
+            first[depth] = false;
+        } else {
+            append(',');
+        }
+    }
+
+    private void appendAscii(String s) {
+        int length = s.length();
+        ensure(length);
+        for (int i = 0; i < length; i++) {
+            buf[len++] = (byte) s.charAt(i);
+        }
+    }
+
+    private void appendQuoted(String s) {
+        int length = s.length();
+        ensure(length + 2);
+        buf[len++] = '"';
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                i = appendChar(s, c, i);
+            } else if (c >= 0x20 && c != '"' && c != '\\') {
+                append(c);
+            } else {
+                appendEscaped(c);
+            }
+        }
+        append('"');
+    }
+
+    private void appendEscaped(char c) {
+        ensure(6);
+        buf[len++] = '\\';
+        switch (c) {
+            case '"':
+                buf[len++] = '"';
+                break;
+            case '\\':
+                buf[len++] = '\\';
+                break;
+            case '\n':
+                buf[len++] = 'n';
+                break;
+            case '\r':
+                buf[len++] = 'r';
+                break;
+            case '\t':
+                buf[len++] = 't';
+                break;
+            case '\b':
+                buf[len++] = 'b';
+                break;
+            case '\f':
+                buf[len++] = 'f';
+                break;
+            default:
+                buf[len++] = 'u';
+                buf[len++] = '0';
+                buf[len++] = '0';
+                buf[len++] = HEX[(c >> 4) & 0xf];
+                buf[len++] = HEX[c & 0xf];
+        }
+    }
+}
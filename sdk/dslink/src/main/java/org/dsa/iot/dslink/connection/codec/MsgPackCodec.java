@@ -0,0 +1,58 @@
+package org.dsa.iot.dslink.connection.codec;
+
+import org.dsa.iot.dslink.connection.InboundFrame;
+import org.dsa.iot.dslink.connection.StreamWriter;
+import org.dsa.iot.dslink.connection.WireCodec;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.json.JsonObject;
+
+import java.util.Map;
+
+/**
+ * Codec that sends all data as MessagePack binary frames. Values are
+ * encoded with the smallest possible representation, which avoids the
+ * cost of formatting and parsing numbers as text.
+ *
+ * @author Samuel Grenier
+ */
+public class MsgPackCodec implements WireCodec {
+
+    public static final String FORMAT = "msgpack";
+
+    @Override
+    public String getFormat() {
+        return FORMAT;
+    }
+
+    @Override
+    public boolean isBinary() {
+        return true;
+    }
+
+    @Override
+    public Buffer encode(JsonObject object) {
+        MsgPackWriter writer = new MsgPackWriter();
+        writer.writeValue(object);
+        return writer.toBuffer();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public JsonObject decode(Buffer data) {
+        Object obj = new MsgPackReader(data).read();
+        if (!(obj instanceof Map)) {
+            throw new RuntimeException("Top level object must be a map");
+        }
+        return new JsonObject((Map<String, Object>) obj);
+    }
+
+    @Override
+    public InboundFrame decodeFrame(Buffer data) {
+        return InboundFrame.fromJson(decode(data));
+    }
+
+    @Override
+    public StreamWriter createWriter() {
+        return new MsgPackWriter();
+    }
+}
@@ -0,0 +1,212 @@
+package org.dsa.iot.dslink.connection.codec;
+
+import org.vertx.java.core.buffer.Buffer;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads objects in the MessagePack format. Maps and arrays are read into
+ * structures that can directly back JSON objects and arrays.
+ *
+ * @author Samuel Grenier
+ */
+public class MsgPackReader {
+
+    private final Buffer buffer;
+    private int pos;
+
+    /**
+     * @param buffer Buffer to read the encoded data from.
+     */
+    public MsgPackReader(Buffer buffer) {
+        if (buffer == null)
+            throw new NullPointerException("buffer");
+        this.buffer = buffer;
+    }
+
+    /**
+     * @return Whether there is more data to be read.
+     */
+    public boolean hasRemaining() {
+        return pos < buffer.length();
+    }
+
+    /**
+     * Reads the next object from the buffer.
+     *
+     * @return A JSON compatible object.
+     */
+    public Object read() {
+        int b = buffer.getByte(pos++) & 0xFF;
+        if (b <= 0x7f) {
+            return b;
+        } else if (b <= 0x8f) {
+            return readMap(b & 0x0f);
+        } else if (b <= 0x9f) {
+            return readArray(b & 0x0f);
+        } else if (b <= 0xbf) {
+            return readString(b & 0x1f);
+        } else if (b >= 0xe0) {
+            return (int) (byte) b;
+        }
+
+        switch (b) {
+            case 0xc0:
+                return null;
+            case 0xc2:
+                return false;
+            case 0xc3:
+                return true;
+            case 0xc4:
+                return readBinary(readUInt8());
+            case 0xc5:
+                return readBinary(readUInt16());
+            case 0xc6:
+                return readBinary(readLength());
+            case 0xca: {
+                float f = buffer.getFloat(pos);
+                pos += 4;
+                return (double) f;
+            }
+            case 0xcb: {
+                double d = buffer.getDouble(pos);
+                pos += 8;
+                return d;
+            }
+            case 0xcc:
+                return readUInt8();
+            case 0xcd:
+                return readUInt16();
+            case 0xce: {
+                long l = buffer.getInt(pos) & 0xFFFFFFFFL;
+                pos += 4;
+                return narrow(l);
+            }
+            case 0xcf: {
+                long l = buffer.getLong(pos);
+                pos += 8;
+                if (l < 0) {
+                    BigInteger big = BigInteger.valueOf(l & Long.MAX_VALUE);
+                    return big.setBit(63);
+                }
+                return narrow(l);
+            }
+            case 0xd0:
+                return (int) buffer.getByte(pos++);
+            case 0xd1: {
+                int s = buffer.getShort(pos);
+                pos += 2;
+                return s;
+            }
+            case 0xd2: {
+                int i = buffer.getInt(pos);
+                pos += 4;
+                return i;
+            }
+            case 0xd3: {
+                long l = buffer.getLong(pos);
+                pos += 8;
+                return narrow(l);
+            }
+            case 0xd9:
+                return readString(readUInt8());
+            case 0xda:
+                return readString(readUInt16());
+            case 0xdb:
+                return readString(readLength());
+            case 0xdc:
+                return readArray(readUInt16());
+            case 0xdd:
+                return readArray(readLength());
+            case 0xde:
+                return readMap(readUInt16());
+            case 0xdf:
+                return readMap(readLength());
+            default:
+                String hex = Integer.toHexString(b);
+                throw new RuntimeException("Unsupported type: 0x" + hex);
+        }
+    }
+
+    private Map<String, Object> readMap(int size) {
+        // Every entry takes at least a byte for its key and its value
+        ensureRemaining(size * 2L);
+        Map<String, Object> map = new LinkedHashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            Object key = read();
+            if (!(key instanceof String)) {
+                throw new RuntimeException("Map keys must be strings");
+            }
+            map.put((String) key, read());
+        }
+        return map;
+    }
+
+    private List<Object> readArray(int size) {
+        ensureRemaining(size);
+        List<Object> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(read());
+        }
+        return list;
+    }
+
+    private String readString(int len) {
+        ensureRemaining(len);
+        String s = buffer.getString(pos, pos + len, "UTF-8");
+        pos += len;
+        return s;
+    }
+
+    private byte[] readBinary(int len) {
+        ensureRemaining(len);
+        byte[] bytes = buffer.getBytes(pos, pos + len);
+        pos += len;
+        return bytes;
+    }
+
+    private int readUInt8() {
+        return buffer.getByte(pos++) & 0xFF;
+    }
+
+    private int readUInt16() {
+        int s = buffer.getShort(pos) & 0xFFFF;
+        pos += 2;
+        return s;
+    }
+
+    private int readLength() {
+        int len = buffer.getInt(pos);
+        pos += 4;
+        if (len < 0) {
+            throw new RuntimeException("Length too large: " + (len & 0xFFFFFFFFL));
+        }
+        return len;
+    }
+
+    /**
+     * Ensures a length read from the data doesn't exceed the data left in
+     * the buffer, so that a malformed frame can't allocate more memory
+     * than its own size.
+     *
+     * @param bytes Minimum amount of bytes the next value takes.
+     */
+    private void ensureRemaining(long bytes) {
+        long remaining = buffer.length() - pos;
+        if (bytes > remaining) {
+            throw new RuntimeException("Length exceeds the remaining "
+                    + remaining + " bytes: " + bytes);
+        }
+    }
+
+    private static Number narrow(long l) {
+        if (l >= Integer.MIN_VALUE && l <= Integer.MAX_VALUE) {
+            return (int) l;
+        }
+        return l;
+    }
+}
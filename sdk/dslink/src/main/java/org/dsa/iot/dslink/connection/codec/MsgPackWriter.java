@@ -0,0 +1,236 @@
+package org.dsa.iot.dslink.connection.codec;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Writes data in the MessagePack format. Since the size of a map or array
+ * isn't known when it is started, containers are written with a 32-bit
+ * size header that is filled in once the container ends.
+ *
+ * @author Samuel Grenier
+ */
+public class MsgPackWriter extends AbstractStreamWriter {
+
+    /**
+     * Position of the size header of each open container.
+     */
+    private int[] headers = new int[16];
+
+    /**
+     * Amount of entries written into each open container. Index 0 is the
+     * top level.
+     */
+    private int[] counts = new int[16];
+
+    /**
+     * Whether each open container is an array rather than a map.
+     */
+    private boolean[] arrays = new boolean[16];
+    private int depth;
+
+    @Override
+    public void writeStartObject() {
+        beforeValue();
+        append(0xdf);
+        push(false);
+    }
+
+    @Override
+    public void writeEndObject() {
+        pop();
+    }
+
+    @Override
+    public void writeStartArray() {
+        beforeValue();
+        append(0xdd);
+        push(true);
+    }
+
+    @Override
+    public void writeEndArray() {
+        pop();
+    }
+
+    @Override
+    public void writeFieldName(String name) {
+        // Map sizes count pairs, the key is counted rather than the value
+        counts[depth]++;
+        packString(name);
+    }
+
+    @Override
+    public void writeString(String s) {
+        if (s == null) {
+            writeNull();
+            return;
+        }
+        beforeValue();
+        packString(s);
+    }
+
+    @Override
+    public void writeLong(long l) {
+        beforeValue();
+        packLong(l);
+    }
+
+    @Override
+    public void writeDouble(double d) {
+        beforeValue();
+        append(0xcb);
+        appendLong(Double.doubleToLongBits(d));
+    }
+
+    @Override
+    public void writeNumber(Number n) {
+        if (n == null) {
+            writeNull();
+        } else if (n instanceof Double || n instanceof BigDecimal) {
+            writeDouble(n.doubleValue());
+        } else if (n instanceof Float) {
+            beforeValue();
+            append(0xca);
+            appendInt(Float.floatToIntBits(n.floatValue()));
+        } else if (n instanceof BigInteger && ((BigInteger) n).bitLength() > 63) {
+            writeDouble(n.doubleValue());
+        } else {
+            writeLong(n.longValue());
+        }
+    }
+
+    @Override
+    public void writeBoolean(boolean b) {
+        beforeValue();
+        append(b ? 0xc3 : 0xc2);
+    }
+
+    @Override
+    public void writeNull() {
+        beforeValue();
+        append(0xc0);
+    }
+
+    /**
+     * Writes raw binary data.
+     *
+     * @param bytes Bytes to write.
+     */
+    public void writeBinary(byte[] bytes) {
+        beforeValue();
+        int l = bytes.length;
+        if (l < 256) {
+            append(0xc4);
+            append(l);
+        } else if (l < 65536) {
+            append(0xc5);
+            appendShort(l);
+        } else {
+            append(0xc6);
+            appendInt(l);
+        }
+        ensure(l);
+        System.arraycopy(bytes, 0, buf, len, l);
+        len += l;
+    }
+
+    @Override
+    protected void writeOther(Object value) {
+        if (value instanceof byte[]) {
+            writeBinary((byte[]) value);
+        } else {
+            super.writeOther(value);
+        }
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        depth = 0;
+        counts[0] = 0;
+    }
+
+    private void push(boolean array) {
+        if (++depth == counts.length) {
+            int size = depth << 1;
+            int[] tmp = new int[size];
+            System.arraycopy(counts, 0, tmp, 0, depth);
+            counts = tmp;
+            tmp = new int[size];
+            System.arraycopy(headers, 0, tmp, 0, depth);
+            headers = tmp;
+            boolean[] types = new boolean[size];
+            System.arraycopy(arrays, 0, types, 0, depth);
+            arrays = types;
+        }
+        headers[depth] = len;
+        counts[depth] = 0;
+        arrays[depth] = array;
+        appendInt(0);
+    }
+
+    private void pop() {
+        setInt(headers[depth], counts[depth]);
+        depth--;
+    }
+
+    private void beforeValue() {
+        if (arrays[depth]) {
+            counts[depth]++;
+        }
+    }
+
+    private void packString(String s) {
+        int l = utf8Length(s);
+        if (l < 32) {
+            append(0xa0 | l);
+        } else if (l < 256) {
+            append(0xd9);
+            append(l);
+        } else if (l < 65536) {
+            append(0xda);
+            appendShort(l);
+        } else {
+            append(0xdb);
+            appendInt(l);
+        }
+        appendUtf8(s);
+    }
+
+    private void packLong(long l) {
+        if (l >= 0) {
+            if (l < 128) {
+                append((int) l);
+            } else if (l < 256) {
+                append(0xcc);
+                append((int) l);
+            } else if (l < 65536) {
+                append(0xcd);
+                appendShort((int) l);
+            } else if (l < 4294967296L) {
+                append(0xce);
+                appendInt((int) l);
+            } else {
+                append(0xcf);
+                appendLong(l);
+            }
+        } else {
+            if (l >= -32) {
+                append((int) l);
+            } else if (l >= Byte.MIN_VALUE) {
+                append(0xd0);
+                append((int) l);
+            } else if (l >= Short.MIN_VALUE) {
+                append(0xd1);
+                appendShort((int) l);
+            } else if (l >= Integer.MIN_VALUE) {
+                append(0xd2);
+                appendInt((int) l);
+            } else {
+                append(0xd3);
+                appendLong(l);
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package org.dsa.iot.dslink.connection.codec;
+
+import org.dsa.iot.dslink.connection.StreamWriter;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds JSON objects in memory rather than encoding them. Values written
+ * through {@link #writeValue} are added by reference without being copied.
+ * The built value is only encoded, as JSON, when it is turned into a
+ * buffer or a string.
+ *
+ * @author Samuel Grenier
+ */
+public class ObjectWriter implements StreamWriter {
+
+    private final Deque<Object> containers = new ArrayDeque<>();
+    private Object root;
+    private String field;
+    private int count;
+
+    /**
+     * @return First object written since the last reset or {@code null}
+     *         if the first value written wasn't an object.
+     */
+    public JsonObject getObject() {
+        Object root = this.root;
+        if (root instanceof JsonObject) {
+            return (JsonObject) root;
+        }
+        return null;
+    }
+
+    @Override
+    public void writeStartObject() {
+        JsonObject object = new JsonObject();
+        add(object);
+        containers.push(object);
+    }
+
+    @Override
+    public void writeEndObject() {
+        containers.pop();
+    }
+
+    @Override
+    public void writeStartArray() {
+        JsonArray array = new JsonArray();
+        add(array);
+        containers.push(array);
+    }
+
+    @Override
+    public void writeEndArray() {
+        containers.pop();
+    }
+
+    @Override
+    public void writeFieldName(String name) {
+        this.field = name;
+    }
+
+    @Override
+    public void writeString(String s) {
+        add(s);
+    }
+
+    @Override
+    public void writeLong(long l) {
+        add(l);
+    }
+
+    @Override
+    public void writeDouble(double d) {
+        add(d);
+    }
+
+    @Override
+    public void writeNumber(Number n) {
+        add(n);
+    }
+
+    @Override
+    public void writeBoolean(boolean b) {
+        add(b);
+    }
+
+    @Override
+    public void writeNull() {
+        add(null);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void writeValue(Object value) {
+        if (value instanceof Map) {
+            value = new JsonObject((Map<String, Object>) value);
+        } else if (value instanceof List) {
+            value = new JsonArray((List<Object>) value);
+        }
+        add(value);
+    }
+
+    /**
+     * @return Amount of values written since the last reset.
+     */
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public void reset() {
+        containers.clear();
+        root = null;
+        field = null;
+        count = 0;
+    }
+
+    /**
+     * Encodes the first value written as JSON.
+     *
+     * @return Buffer containing the encoded value.
+     */
+    @Override
+    public Buffer toBuffer() {
+        return encode().toBuffer();
+    }
+
+    /**
+     * @return The first value written encoded as JSON, or nothing if no
+     *         value was written.
+     */
+    @Override
+    public String toString() {
+        return encode().toString();
+    }
+
+    private JsonWriter encode() {
+        JsonWriter writer = new JsonWriter();
+        if (count > 0) {
+            writer.writeValue(root);
+        }
+        return writer;
+    }
+
+    private void add(Object value) {
+        count++;
+        Object parent = containers.peek();
+        if (parent == null) {
+            if (root == null) {
+                root = value;
+            }
+        } else if (parent instanceof JsonObject) {
+            ((JsonObject) parent).putValue(field, value);
+            field = null;
+        } else {
+            ((JsonArray) parent).add(value);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package org.dsa.iot.dslink.connection.connector;
+
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.http.HttpClient;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Routes connection failures of a client to the web socket connections
+ * being established through it. Vert.x only reports a failed connection
+ * through the exception handler of the client, so a single handler is
+ * installed when the client is created rather than one per connection.
+ * A failure can't be attributed to a single connection, so it fails every
+ * connection pending at that time.
+ *
+ * @author Samuel Grenier
+ */
+public class PendingConnects implements Handler<Throwable> {
+
+    private final Set<Handler<Throwable>> pending;
+    private final Handler<Throwable> fallback;
+
+    /**
+     * @param fallback Receives failures while no connection is pending,
+     *                 can be null.
+     */
+    private PendingConnects(Handler<Throwable> fallback) {
+        this.pending = Collections.newSetFromMap(
+                new ConcurrentHashMap<Handler<Throwable>, Boolean>());
+        this.fallback = fallback;
+    }
+
+    /**
+     * Installs the exception handler of a client.
+     *
+     * @param client   Client to route the failures of.
+     * @param fallback Receives failures while no connection is pending,
+     *                 can be null.
+     * @return Connections pending on the client.
+     */
+    public static PendingConnects install(HttpClient client,
+                                          Handler<Throwable> fallback) {
+        if (client == null)
+            throw new NullPointerException("client");
+        PendingConnects connects = new PendingConnects(fallback);
+        client.exceptionHandler(connects);
+        return connects;
+    }
+
+    /**
+     * @param onFailure Fails the connection, called at most once.
+     */
+    void add(Handler<Throwable> onFailure) {
+        pending.add(onFailure);
+    }
+
+    /**
+     * @param onFailure Handler of a connection that was established.
+     */
+    void remove(Handler<Throwable> onFailure) {
+        pending.remove(onFailure);
+    }
+
+    @Override
+    public void handle(Throwable event) {
+        boolean handled = false;
+        for (Handler<Throwable> onFailure : pending) {
+            if (pending.remove(onFailure)) {
+                onFailure.handle(event);
+                handled = true;
+            }
+        }
+        if (!handled && fallback != null) {
+            fallback.handle(event);
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package org.dsa.iot.dslink.connection.connector;
+
+import org.dsa.iot.dslink.connection.WireCodec;
+import org.dsa.iot.dslink.connection.codec.DeflateCodec;
+import org.dsa.iot.dslink.connection.codec.JsonCodec;
+import org.dsa.iot.dslink.connection.codec.MsgPackCodec;
+import org.vertx.java.core.buffer.Buffer;
+
+import java.nio.charset.Charset;
+
+/**
+ * Recognizes ping and pong frames at the byte level and writes ping and
+ * pong frames without any JSON processing. A frame is only recognized if
+ * it contains nothing other than the ping or pong, anything else must be
+ * decoded through the codec. A frame of each type is preallocated and only
+ * its ID is written when a ping or pong is sent.
+ * <p>
+ * Instances are not thread safe and are meant to be used from the network
+ * thread of a single connection.
+ *
+ * @author Samuel Grenier
+ */
+public class PingFrames {
+
+    public static final int NONE = 0;
+    public static final int PING = 1;
+    public static final int PONG = 2;
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private final byte[][] frames = new byte[PONG + 1][];
+    private final boolean binary;
+    private final int prefix;
+    private final int start;
+    private final int head;
+    private long id;
+
+    /**
+     * @param binary Whether frames are MessagePack rather than JSON.
+     */
+    public PingFrames(boolean binary) {
+        this(binary, -1);
+    }
+
+    /**
+     * @param binary Whether frames are MessagePack rather than JSON.
+     * @param prefix Byte preceding every frame, or -1 if there is none.
+     */
+    public PingFrames(boolean binary, int prefix) {
+        this.binary = binary;
+        this.prefix = prefix;
+        this.start = prefix >= 0 ? 1 : 0;
+
+        int head = 0;
+        for (int type = PING; type <= PONG; type++) {
+            // Room for the longest ID, only the ID is written afterwards
+            frames[type] = new byte[32];
+            head = writeHead(frames[type], type);
+        }
+        this.head = head;
+    }
+
+    /**
+     * Creates the ping frames matching the encoding of a codec.
+     *
+     * @param codec Codec of the connection.
+     * @return Ping frames of the codec or {@code null} if the encoding of
+     *         the codec isn't known.
+     */
+    public static PingFrames forCodec(WireCodec codec) {
+        int prefix = -1;
+        if (codec instanceof DeflateCodec) {
+            // Pings are too small to be compressed
+            codec = ((DeflateCodec) codec).getCodec();
+            prefix = DeflateCodec.RAW;
+        }
+
+        if (codec instanceof JsonCodec) {
+            return new PingFrames(false, prefix);
+        } else if (codec instanceof MsgPackCodec) {
+            return new PingFrames(true, prefix);
+        }
+        return null;
+    }
+
+    /**
+     * Classifies a frame. If the frame is a ping or pong, its ID is
+     * available through {@link #getId()}.
+     *
+     * @param frame Frame to classify.
+     * @return {@link #PING}, {@link #PONG} or {@link #NONE}.
+     */
+    public int classify(Buffer frame) {
+        int start = 0;
+        if (prefix >= 0) {
+            if (frame.length() == 0 || frame.getByte(0) != (byte) prefix) {
+                return NONE;
+            }
+            start = 1;
+        }
+        return binary ? classifyBinary(frame, start) : classifyText(frame, start);
+    }
+
+    /**
+     * @return ID of the last classified ping or pong.
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Writes a text frame such as {@code {"pong":1}}.
+     *
+     * @param type {@link #PING} or {@link #PONG}.
+     * @param id   ID of the ping or pong.
+     * @return Frame data.
+     */
+    public String toText(int type, long id) {
+        if (binary)
+            throw new IllegalStateException("Frames are MessagePack");
+        int len = write(type, id);
+        return new String(frames[type], start, len - start, ASCII);
+    }
+
+    /**
+     * Writes a binary frame such as {@code {"pong":1}}, encoded as
+     * MessagePack or as JSON following the prefix.
+     *
+     * @param type {@link #PING} or {@link #PONG}.
+     * @param id   ID of the ping or pong.
+     * @return Frame data.
+     */
+    public Buffer toBinary(int type, long id) {
+        int len = write(type, id);
+        // The frame is patched in place, so the socket gets a copy
+        Buffer buffer = new Buffer(len);
+        buffer.appendBytes(frames[type], 0, len);
+        return buffer;
+    }
+
+    /**
+     * Writes the constant part of a frame, up to the ID.
+     *
+     * @return Offset of the ID in the frame.
+     */
+    private int writeHead(byte[] frame, int type) {
+        int len = 0;
+        if (prefix >= 0) {
+            frame[len++] = (byte) prefix;
+        }
+        if (binary) {
+            frame[len++] = (byte) 0x81;
+            frame[len++] = (byte) 0xa4;
+        } else {
+            frame[len++] = '{';
+            frame[len++] = '"';
+        }
+        frame[len++] = 'p';
+        frame[len++] = (byte) (type == PING ? 'i' : 'o');
+        frame[len++] = 'n';
+        frame[len++] = 'g';
+        if (!binary) {
+            frame[len++] = '"';
+            frame[len++] = ':';
+        }
+        return len;
+    }
+
+    /**
+     * Patches the ID into the preallocated frame of a type.
+     *
+     * @return Length of the frame, including the prefix.
+     */
+    private int write(int type, long id) {
+        if (type != PING && type != PONG)
+            throw new IllegalArgumentException("type");
+        byte[] frame = frames[type];
+        return binary ? writeBinary(frame, id) : writeText(frame, id);
+    }
+
+    private int writeBinary(byte[] frame, long id) {
+        int len = head;
+        if (id >= 0 && id < 128) {
+            frame[len++] = (byte) id;
+        } else {
+            frame[len++] = (byte) 0xd3;
+            for (int i = 56; i >= 0; i -= 8) {
+                frame[len++] = (byte) (id >>> i);
+            }
+        }
+        return len;
+    }
+
+    private int writeText(byte[] frame, long id) {
+        int len = head;
+        // Digits are taken from the negated ID so Long.MIN_VALUE fits
+        if (id < 0) {
+            frame[len++] = '-';
+        } else {
+            id = -id;
+        }
+
+        int digits = 1;
+        for (long n = id; n <= -10; n /= 10) {
+            digits++;
+        }
+        int pos = len + digits;
+        do {
+            frame[--pos] = (byte) ('0' - (id % 10));
+            id /= 10;
+        } while (id < 0);
+        len += digits;
+
+        frame[len++] = '}';
+        return len;
+    }
+
+    private int classifyText(Buffer frame, int start) {
+        int length = frame.length();
+        // Shortest is {"ping":0}, longer frames can't be a plain ping
+        if (length - start < 10 || length - start > 64) {
+            return NONE;
+        }
+
+        int pos = skipWhitespace(frame, start, length);
+        if (pos >= length || frame.getByte(pos++) != '{') {
+            return NONE;
+        }
+        pos = skipWhitespace(frame, pos, length);
+        if (pos + 6 > length
+                || frame.getByte(pos) != '"'
+                || frame.getByte(pos + 1) != 'p'
+                || frame.getByte(pos + 3) != 'n'
+                || frame.getByte(pos + 4) != 'g'
+                || frame.getByte(pos + 5) != '"') {
+            return NONE;
+        }
+
+        int type;
+        byte b = frame.getByte(pos + 2);
+        if (b == 'i') {
+            type = PING;
+        } else if (b == 'o') {
+            type = PONG;
+        } else {
+            return NONE;
+        }
+
+        pos = skipWhitespace(frame, pos + 6, length);
+        if (pos >= length || frame.getByte(pos++) != ':') {
+            return NONE;
+        }
+        pos = skipWhitespace(frame, pos, length);
+
+        boolean negative = false;
+        if (pos < length && frame.getByte(pos) == '-') {
+            negative = true;
+            pos++;
+        }
+
+        long value = 0;
+        int digits = 0;
+        while (pos < length) {
+            b = frame.getByte(pos);
+            if (b < '0' || b > '9') {
+                break;
+            }
+            value = value * 10 + (b - '0');
+            digits++;
+            pos++;
+        }
+        if (digits == 0 || digits > 18) {
+            return NONE;
+        }
+
+        pos = skipWhitespace(frame, pos, length);
+        if (pos >= length || frame.getByte(pos++) != '}') {
+            return NONE;
+        } else if (skipWhitespace(frame, pos, length) != length) {
+            return NONE;
+        }
+
+        id = negative ? -value : value;
+        return type;
+    }
+
+    private int classifyBinary(Buffer frame, int start) {
+        int length = frame.length();
+        if (length - start < 7 || length - start > 15) {
+            return NONE;
+        }
+
+        int header = frame.getByte(start) & 0xFF;
+        int pos;
+        if (header == 0x81) {
+            pos = start + 1;
+        } else if (header == 0xdf && frame.getInt(start + 1) == 1) {
+            pos = start + 5;
+        } else {
+            return NONE;
+        }
+
+        if (pos + 6 > length
+                || (frame.getByte(pos) & 0xFF) != 0xa4
+                || frame.getByte(pos + 1) != 'p'
+                || frame.getByte(pos + 3) != 'n'
+                || frame.getByte(pos + 4) != 'g') {
+            return NONE;
+        }
+
+        int type;
+        byte b = frame.getByte(pos + 2);
+        if (b == 'i') {
+            type = PING;
+        } else if (b == 'o') {
+            type = PONG;
+        } else {
+            return NONE;
+        }
+
+        pos += 5;
+        int marker = frame.getByte(pos++) & 0xFF;
+        long value;
+        int size;
+        if (marker <= 0x7f) {
+            value = marker;
+            size = 0;
+        } else if (marker >= 0xe0) {
+            value = (byte) marker;
+            size = 0;
+        } else {
+            switch (marker) {
+                case 0xcc:
+                    size = 1;
+                    break;
+                case 0xcd:
+                    size = 2;
+                    break;
+                case 0xce:
+                    size = 4;
+                    break;
+                case 0xd0:
+                    size = 1;
+                    break;
+                case 0xd1:
+                    size = 2;
+                    break;
+                case 0xd2:
+                    size = 4;
+                    break;
+                case 0xd3:
+                    size = 8;
+                    break;
+                default:
+                    return NONE;
+            }
+            if (pos + size != length) {
+                return NONE;
+            }
+
+            value = 0;
+            for (int i = 0; i < size; i++) {
+                value = (value << 8) | (frame.getByte(pos + i) & 0xFF);
+            }
+            if (marker >= 0xd0 && size < 8) {
+                // Sign extend
+                int shift = 64 - size * 8;
+                value = (value << shift) >> shift;
+            }
+        }
+
+        if (pos + size != length) {
+            return NONE;
+        }
+        id = value;
+        return type;
+    }
+
+    private static int skipWhitespace(Buffer frame, int pos, int length) {
+        while (pos < length) {
+            byte b = frame.getByte(pos);
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                break;
+            }
+            pos++;
+        }
+        return pos;
+    }
+}
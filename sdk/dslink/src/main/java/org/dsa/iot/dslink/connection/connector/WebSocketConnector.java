@@ -1,14 +1,26 @@
 package org.dsa.iot.dslink.connection.connector;
 
+import org.dsa.iot.dslink.connection.ConnectionHealth;
 import org.dsa.iot.dslink.connection.DataHandler;
+import org.dsa.iot.dslink.connection.InboundFrame;
 import org.dsa.iot.dslink.connection.RemoteEndpoint;
+import org.dsa.iot.dslink.connection.WireCodec;
+import org.dsa.iot.dslink.connection.codec.DeflateCodec;
+import org.dsa.iot.dslink.util.ExecutorType;
 import org.dsa.iot.dslink.util.HttpClientUtils;
+import org.dsa.iot.dslink.util.Objects;
+import org.vertx.java.core.AsyncResult;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.buffer.Buffer;
 import org.vertx.java.core.http.HttpClient;
 import org.vertx.java.core.http.WebSocket;
+import org.vertx.java.core.impl.DefaultFutureResult;
 import org.vertx.java.core.json.JsonObject;
 
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * Handles connecting to web socket servers.
  *
@@ -16,50 +28,153 @@ import org.vertx.java.core.json.JsonObject;
  */
 public class WebSocketConnector extends RemoteEndpoint {
 
+    private HttpClient sharedClient;
+    private PendingConnects sharedConnects;
+    private HttpClient client;
     private WebSocket webSocket;
+    private ScheduledFuture<?> pingFuture;
 
     public WebSocketConnector(DataHandler handler) {
         super(handler);
     }
 
+    /**
+     * Sets a client to connect through rather than creating one for this
+     * connection. The client is left open when the connection closes.
+     *
+     * @param client   Client configured to the endpoint.
+     * @param connects Connections pending on the client, installed when
+     *                 the client was created.
+     * @see PendingConnects#install
+     */
+    public void setHttpClient(HttpClient client, PendingConnects connects) {
+        if (client != null && connects == null)
+            throw new NullPointerException("connects");
+        this.sharedClient = client;
+        this.sharedConnects = connects;
+    }
+
     @Override
-    public void start() {
-        HttpClient client = HttpClientUtils.configure(getEndpoint());
+    public void start(final Handler<AsyncResult<Void>> handler) {
+        final AtomicBoolean connected = new AtomicBoolean();
+        HttpClient client = sharedClient;
+        final PendingConnects connects;
+        if (client == null) {
+            client = HttpClientUtils.configure(getEndpoint());
+            connects = PendingConnects.install(client, new Handler<Throwable>() {
+                @Override
+                public void handle(Throwable event) {
+                    Handler<Throwable> onException = getOnException();
+                    if (onException != null) {
+                        onException.handle(event);
+                    }
+                }
+            });
+            this.client = client;
+        } else {
+            connects = sharedConnects;
+        }
+
+        final Handler<Throwable> onFailure = new Handler<Throwable>() {
+            @Override
+            public void handle(Throwable event) {
+                if (connected.compareAndSet(false, true) && handler != null) {
+                    handler.handle(new DefaultFutureResult<Void>(event));
+                }
+            }
+        };
+        connects.add(onFailure);
         client.connectWebsocket(getUri(), new Handler<WebSocket>() {
             @Override
             public void handle(final WebSocket webSocket) {
+                connects.remove(onFailure);
+                if (!connected.compareAndSet(false, true)) {
+                    // The attempt already failed
+                    webSocket.close();
+                    return;
+                }
                 WebSocketConnector.this.webSocket = webSocket;
+                if (handler != null) {
+                    handler.handle(new DefaultFutureResult<Void>((Void) null));
+                }
 
                 Handler<Void> onConnected = getOnConnected();
                 if (onConnected != null) {
                     onConnected.handle(null);
                 }
 
+                webSocket.setWriteQueueMaxSize(getWriteQueueMaxSize());
+                Handler<Void> onDrain = getOnDrain();
+                if (onDrain != null) {
+                    webSocket.drainHandler(onDrain);
+                }
+
                 Handler<Throwable> onException = getOnException();
                 if (onException != null) {
                     webSocket.exceptionHandler(onException);
                 }
 
-                final Handler<JsonObject> onData = getOnData();
-                if (onData != null) {
-                    webSocket.dataHandler(new Handler<Buffer>() {
-                        @Override
-                        public void handle(Buffer event) {
-                            String data = event.toString("UTF-8");
-                            JsonObject obj = new JsonObject(data);
-                            if (obj.containsField("ping")) {
-                                String pong = data.replaceFirst("i", "o");
-                                webSocket.writeTextFrame(pong);
-                                return;
+                final WireCodec codec = getDataHandler().getCodec();
+                final PingFrames pings = PingFrames.forCodec(codec);
+                final Handler<InboundFrame> onData = getOnData();
+                webSocket.dataHandler(new Handler<Buffer>() {
+                    @Override
+                    public void handle(Buffer event) {
+                        // Pings are answered without decoding the frame
+                        int type = PingFrames.NONE;
+                        if (pings != null) {
+                            type = pings.classify(event);
+                        }
+                        if (type == PingFrames.PING) {
+                            getHealth().pingReceived();
+                            writePing(pings, codec, PingFrames.PONG, pings.getId());
+                            return;
+                        } else if (type == PingFrames.PONG) {
+                            getHealth().pongReceived(pings.getId());
+                            return;
+                        } else if (onData == null) {
+                            return;
+                        }
+
+                        InboundFrame frame = codec.decodeFrame(event);
+                        Object ping = frame.getPing();
+                        if (ping != null) {
+                            getHealth().pingReceived();
+                            JsonObject pong = new JsonObject();
+                            pong.putValue("pong", ping);
+                            if (codec.isBinary()) {
+                                webSocket.writeBinaryFrame(codec.encode(pong));
+                            } else {
+                                webSocket.writeTextFrame(pong.encode());
                             }
-                            onData.handle(obj);
                         }
-                    });
+
+                        if (frame.getRequests() != null
+                                || frame.getResponses() != null) {
+                            onData.handle(frame);
+                        }
+                    }
+                });
+
+                int interval = getPingInterval();
+                if (interval > 0) {
+                    final PingFrames outgoing = PingFrames.forCodec(codec);
+                    pingFuture = Objects.getPool(ExecutorType.TIMER).scheduleWithFixedDelay(new Runnable() {
+                        @Override
+                        public void run() {
+                            long id = getHealth().pingSent();
+                            writePing(outgoing, codec, PingFrames.PING, id);
+                        }
+                    }, interval, interval, TimeUnit.SECONDS);
                 }
 
                 webSocket.endHandler(new Handler<Void>() {
                     @Override
                     public void handle(Void event) {
+                        cancelPings();
+                        if (codec instanceof DeflateCodec) {
+                            ((DeflateCodec) codec).release();
+                        }
                         Handler<Void> onDisconnected = getOnDisconnected();
                         if (onDisconnected != null) {
                             onDisconnected.handle(event);
@@ -74,6 +189,7 @@ public class WebSocketConnector extends RemoteEndpoint {
 
     @Override
     public void close() {
+        cancelPings();
         if (webSocket != null) {
             try {
                 webSocket.close();
@@ -82,6 +198,12 @@ public class WebSocketConnector extends RemoteEndpoint {
 
             webSocket = null;
         }
+
+        HttpClient client = this.client;
+        if (client != null) {
+            client.close();
+            this.client = null;
+        }
     }
 
     @Override
@@ -90,11 +212,51 @@ public class WebSocketConnector extends RemoteEndpoint {
         webSocket.writeTextFrame(data);
     }
 
+    @Override
+    public void write(Buffer data) {
+        checkConnected();
+        webSocket.writeBinaryFrame(data);
+    }
+
     @Override
     public boolean isConnected() {
         return webSocket != null;
     }
 
+    @Override
+    public boolean isWritable() {
+        WebSocket webSocket = this.webSocket;
+        return webSocket != null && !webSocket.writeQueueFull();
+    }
+
+    private void writePing(PingFrames frames, WireCodec codec, int type, long id) {
+        WebSocket webSocket = this.webSocket;
+        if (webSocket == null) {
+            return;
+        }
+        try {
+            if (frames == null) {
+                JsonObject obj = new JsonObject();
+                obj.putNumber(type == PingFrames.PING ? "ping" : "pong", id);
+                webSocket.writeBinaryFrame(codec.encode(obj));
+            } else if (codec.isBinary()) {
+                webSocket.writeBinaryFrame(frames.toBinary(type, id));
+            } else {
+                webSocket.writeTextFrame(frames.toText(type, id));
+            }
+        } catch (IllegalStateException ignored) {
+            // Connection closed while writing
+        }
+    }
+
+    private void cancelPings() {
+        ScheduledFuture<?> future = pingFuture;
+        if (future != null) {
+            future.cancel(false);
+            pingFuture = null;
+        }
+    }
+
     private void checkConnected() {
         if (webSocket == null) {
             throw new RuntimeException("Cannot write to unconnected connection");
@@ -1,6 +1,9 @@
 package org.dsa.iot.dslink.handshake;
 
 import org.dsa.iot.dslink.config.Configuration;
+import org.dsa.iot.dslink.connection.WireCodec;
+import org.dsa.iot.dslink.connection.codec.JsonCodec;
+import org.vertx.java.core.json.JsonArray;
 import org.vertx.java.core.json.JsonObject;
 
 /**
@@ -16,6 +19,7 @@ public class LocalHandshake {
     private final boolean isRequester;
     private final boolean isResponder;
     private final String zone;
+    private final WireCodec codec;
 
     /**
      * Populates the handshake with the designated configuration.
@@ -32,6 +36,7 @@ public class LocalHandshake {
         this.isRequester = config.isRequester();
         this.isResponder = config.isResponder();
         this.zone = config.getZone();
+        this.codec = config.getWireCodec();
     }
 
     /**
@@ -65,6 +70,13 @@ public class LocalHandshake {
         return isResponder;
     }
 
+    /**
+     * @return The codec the client prefers to use on the data endpoint.
+     */
+    public WireCodec getCodec() {
+        return codec;
+    }
+
     /**
      * Encodes the handshake to be sent to the authentication server.
      *
@@ -79,6 +91,13 @@ public class LocalHandshake {
         obj.putBoolean("isRequester", isRequester);
         obj.putBoolean("isResponder", isResponder);
         obj.putString("version", "1.0.1");
+
+        JsonArray formats = new JsonArray();
+        if (!JsonCodec.FORMAT.equals(codec.getFormat())) {
+            formats.addString(codec.getFormat());
+        }
+        formats.addString(JsonCodec.FORMAT);
+        obj.putArray("formats", formats);
         return obj;
     }
 }
@@ -1,7 +1,9 @@
 package org.dsa.iot.dslink.handshake;
 
+import org.dsa.iot.dslink.connection.codec.JsonCodec;
 import org.dsa.iot.dslink.util.HttpClientUtils;
 import org.dsa.iot.dslink.util.URLInfo;
+import org.vertx.java.core.AsyncResult;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.buffer.Buffer;
 import org.vertx.java.core.http.HttpClient;
@@ -12,6 +14,7 @@ import org.vertx.java.core.json.JsonObject;
 
 import java.net.HttpURLConnection;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Handshake information retrieved from the server.
@@ -29,6 +32,7 @@ public class RemoteHandshake {
     private String saltS;
     private String saltL;
     private final int updateInterval;
+    private final String format;
 
     /**
      * Populates the handshake with data from the server.
@@ -53,6 +57,8 @@ public class RemoteHandshake {
         } else {
             updateInterval = 0;
         }
+
+        this.format = in.getString("format", JsonCodec.FORMAT);
     }
 
     /**
@@ -119,67 +125,168 @@ public class RemoteHandshake {
         return updateInterval;
     }
 
+    /**
+     * @return The data format the server selected from the formats
+     * the client supports. Servers that do not negotiate a format
+     * always use JSON.
+     */
+    public String getFormat() {
+        return format;
+    }
+
     /**
      * Generates a remote handshake by connecting to the authentication
-     * endpoint. Once the handshake is complete, a populated handshake
-     * is returned. This enables the DSLink to connect to the data
-     * endpoint of the server.
+     * endpoint. The calling thread waits until the handshake is complete,
+     * prefer {@link #generate(LocalHandshake, URLInfo, Handler)} to avoid
+     * tying up a thread for the duration of the request.
      *
      * @param lh  Handshake information
      * @param url URL for the authentication endpoint
      * @return Remote handshake information
      */
-    public static RemoteHandshake generate(final LocalHandshake lh, URLInfo url) {
-        if (url == null)
-            throw new NullPointerException("url");
-        HttpClient client = HttpClientUtils.configure(url);
-        String fullPath = url.path + "?dsId=" + lh.getDsId();
+    public static RemoteHandshake generate(LocalHandshake lh, URLInfo url) {
         final DefaultFutureResult<RemoteHandshake> h = new DefaultFutureResult<>();
         final CountDownLatch latch = new CountDownLatch(1);
+        generate(lh, url, new Handler<AsyncResult<RemoteHandshake>>() {
+            @Override
+            public void handle(AsyncResult<RemoteHandshake> event) {
+                if (event.succeeded()) {
+                    h.setResult(event.result());
+                } else {
+                    h.setFailure(event.cause());
+                }
+                latch.countDown();
+            }
+        });
+
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+
+        if (h.failed()) {
+            throw new RuntimeException(h.cause());
+        }
+
+        return h.result();
+    }
+
+    /**
+     * Generates a remote handshake by connecting to the authentication
+     * endpoint without blocking. Once the handshake is complete, the
+     * handler receives the populated handshake. This enables the DSLink
+     * to connect to the data endpoint of the server.
+     *
+     * @param lh      Handshake information
+     * @param url     URL for the authentication endpoint
+     * @param handler Receives the remote handshake information or the
+     *                cause of the failure, on a network thread.
+     */
+    public static void generate(LocalHandshake lh,
+                                URLInfo url,
+                                final Handler<AsyncResult<RemoteHandshake>> handler) {
+        if (url == null)
+            throw new NullPointerException("url");
+        final HttpClient client = HttpClientUtils.configure(url);
+        generate(lh, client, url.path, new Handler<AsyncResult<RemoteHandshake>>() {
+            @Override
+            public void handle(AsyncResult<RemoteHandshake> event) {
+                client.close();
+                handler.handle(event);
+            }
+        });
+    }
+
+    /**
+     * Generates a remote handshake through an existing client. The client
+     * is left open once the handshake is complete.
+     *
+     * @param lh      Handshake information
+     * @param client  Client configured to the authentication endpoint
+     * @param path    Path of the authentication endpoint
+     * @param handler Receives the remote handshake information or the
+     *                cause of the failure, on a network thread.
+     */
+    public static void generate(final LocalHandshake lh,
+                                HttpClient client,
+                                String path,
+                                Handler<AsyncResult<RemoteHandshake>> handler) {
+        if (lh == null)
+            throw new NullPointerException("lh");
+        else if (client == null)
+            throw new NullPointerException("client");
+        else if (path == null)
+            throw new NullPointerException("path");
+        else if (handler == null)
+            throw new NullPointerException("handler");
+
+        final Result h = new Result(handler);
+        String fullPath = path + "?dsId=" + lh.getDsId();
         HttpClientRequest req = client.post(fullPath, new Handler<HttpClientResponse>() {
             @Override
             public void handle(HttpClientResponse event) {
                 if (event.statusCode() != HttpURLConnection.HTTP_OK) {
-                    Throwable t = new Throwable("BAD STATUS: " + event.statusCode());
-                    h.setFailure(t);
-                    latch.countDown();
-                } else {
-                    event.bodyHandler(new Handler<Buffer>() {
-                        @Override
-                        public void handle(Buffer event) {
-                            String s = event.toString();
-                            JsonObject o = new JsonObject(s);
-                            LocalKeys k = lh.getKeys();
-                            RemoteHandshake rh = new RemoteHandshake(k, o);
-                            h.setResult(rh);
-                            latch.countDown();
-                        }
-                    });
+                    h.fail(new Throwable("BAD STATUS: " + event.statusCode()));
+                    return;
                 }
+                event.exceptionHandler(new Handler<Throwable>() {
+                    @Override
+                    public void handle(Throwable event) {
+                        h.fail(event);
+                    }
+                });
+                event.bodyHandler(new Handler<Buffer>() {
+                    @Override
+                    public void handle(Buffer event) {
+                        RemoteHandshake rh;
+                        try {
+                            JsonObject o = new JsonObject(event.toString());
+                            rh = new RemoteHandshake(lh.getKeys(), o);
+                        } catch (RuntimeException e) {
+                            h.fail(e);
+                            return;
+                        }
+                        h.succeed(rh);
+                    }
+                });
             }
         });
 
         req.exceptionHandler(new Handler<Throwable>() {
             @Override
             public void handle(Throwable event) {
-                h.setFailure(event);
-                latch.countDown();
+                h.fail(event);
             }
         });
 
         String encoded = lh.toJson().encode();
         req.end(encoded);
+    }
 
-        try {
-            latch.await();
-        } catch (InterruptedException e) {
-            h.setFailure(e);
+    /**
+     * Ensures the handler is only called once even when the request fails
+     * after the response was already handled.
+     */
+    private static class Result {
+
+        private final AtomicBoolean done = new AtomicBoolean();
+        private final Handler<AsyncResult<RemoteHandshake>> handler;
+
+        Result(Handler<AsyncResult<RemoteHandshake>> handler) {
+            this.handler = handler;
         }
 
-        if (h.failed()) {
-            throw new RuntimeException(h.cause());
+        void succeed(RemoteHandshake handshake) {
+            if (done.compareAndSet(false, true)) {
+                handler.handle(new DefaultFutureResult<>(handshake));
+            }
         }
 
-        return h.result();
+        void fail(Throwable cause) {
+            if (done.compareAndSet(false, true)) {
+                handler.handle(new DefaultFutureResult<RemoteHandshake>(cause));
+            }
+        }
     }
 }
@@ -2,6 +2,9 @@ package org.dsa.iot.dslink.link;
 
 import org.dsa.iot.dslink.DSLink;
 import org.dsa.iot.dslink.DSLinkHandler;
+import org.dsa.iot.dslink.connection.JsonMessage;
+import org.dsa.iot.dslink.connection.MapMessageView;
+import org.dsa.iot.dslink.connection.MessageView;
 import org.dsa.iot.dslink.methods.Request;
 import org.dsa.iot.dslink.methods.StreamState;
 import org.dsa.iot.dslink.methods.requests.*;
@@ -12,11 +15,13 @@ import org.dsa.iot.dslink.node.NodePair;
 import org.dsa.iot.dslink.node.SubscriptionManager;
 import org.dsa.iot.dslink.node.value.SubscriptionValue;
 import org.dsa.iot.dslink.util.Objects;
+import org.dsa.iot.dslink.util.StripedExecutor;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.json.JsonObject;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -26,7 +31,13 @@ import java.util.concurrent.atomic.AtomicInteger;
  */
 public class Requester extends Linkable {
 
-    private final Object subUpdateLock = new Object();
+    /**
+     * Maximum amount of paths in a single subscribe request when the
+     * subscriptions are restored after reconnecting.
+     */
+    public static final int RESTORE_CHUNK_SIZE = 500;
+
+    private final StripedExecutor dispatcher;
     private final Map<Integer, RequestWrapper> reqs;
 
     /**
@@ -62,6 +73,12 @@ public class Requester extends Linkable {
     public Requester(DSLinkHandler handler) {
         super(handler);
         reqs = new ConcurrentHashMap<>();
+        dispatcher = new StripedExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                Objects.getThreadPool().execute(command);
+            }
+        });
     }
 
     public Map<String, Integer> getSubscriptionPaths() {
@@ -200,6 +217,49 @@ public class Requester extends Linkable {
         sendRequest(wrapper);
     }
 
+    /**
+     * Restores the session after the link reconnected to the broker. All
+     * active subscriptions are sent again with their original sids so
+     * updates keep reaching their existing handlers, and open list streams
+     * are re-opened under their original rids. Everything is written as a
+     * single batch of requests.
+     */
+    public void restore() {
+        final DSLink link = getDSLink();
+        if (link == null) {
+            return;
+        }
+
+        List<JsonMessage> messages = new ArrayList<>();
+        Map<String, Integer> subs = new HashMap<>();
+        for (Map.Entry<String, Integer> sub : subPaths.entrySet()) {
+            subs.put(sub.getKey(), sub.getValue());
+            if (subs.size() >= RESTORE_CHUNK_SIZE) {
+                RequestWrapper wrapper = new RequestWrapper(new SubscribeRequest(subs));
+                messages.add(toMessage(wrapper, currentReqID.incrementAndGet()));
+                subs = new HashMap<>();
+            }
+        }
+        if (!subs.isEmpty()) {
+            RequestWrapper wrapper = new RequestWrapper(new SubscribeRequest(subs));
+            messages.add(toMessage(wrapper, currentReqID.incrementAndGet()));
+        }
+
+        Map<Integer, RequestWrapper> lists = new TreeMap<>();
+        for (Map.Entry<Integer, RequestWrapper> req : reqs.entrySet()) {
+            if (req.getValue().getRequest() instanceof ListRequest) {
+                lists.put(req.getKey(), req.getValue());
+            }
+        }
+        for (Map.Entry<Integer, RequestWrapper> list : lists.entrySet()) {
+            messages.add(toMessage(list.getValue(), list.getKey()));
+        }
+
+        if (!messages.isEmpty()) {
+            link.getWriter().writeRequests(messages);
+        }
+    }
+
     /**
      * Sends a request to the client.
      *
@@ -221,6 +281,17 @@ public class Requester extends Linkable {
         if (link == null) {
             return;
         }
+        link.getWriter().writeRequest(toMessage(wrapper, rid));
+    }
+
+    /**
+     * Tracks the request under its request ID and encodes it.
+     *
+     * @param wrapper Request to send to the client
+     * @param rid Request ID to use
+     * @return Encoded request
+     */
+    private JsonMessage toMessage(RequestWrapper wrapper, int rid) {
         Request request = wrapper.getRequest();
         JsonObject obj = new JsonObject();
         request.addJsonValues(obj);
@@ -229,7 +300,7 @@ public class Requester extends Linkable {
             reqs.put(rid, wrapper);
         }
         obj.putString("method", request.getName());
-        link.getWriter().writeRequest(obj);
+        return new JsonMessage(obj);
     }
 
     /**
@@ -237,31 +308,35 @@ public class Requester extends Linkable {
      *
      * @param in Incoming response.
      */
-    public void parse(final JsonObject in) {
+    public void parse(JsonObject in) {
+        parse(new MapMessageView(in));
+    }
+
+    /**
+     * Handles incoming responses. Subscription updates are read row by row
+     * without decoding the entire response.
+     *
+     * @param in Incoming response.
+     */
+    public void parse(final MessageView in) {
         DSLink link = getDSLink();
         if (link == null) {
             return;
         }
-        int rid = in.getInteger("rid");
+        int rid = in.getRid();
         NodeManager manager = link.getNodeManager();
         if (rid == 0) {
-            final SubscriptionUpdate update = new SubscriptionUpdate(this);
-            Objects.getThreadPool().execute(new Runnable() {
-                @Override
-                public void run() {
-                    synchronized (subUpdateLock) {
-                        update.populate(in);
-                    }
-                }
-            });
+            // Decoded in frame order, applied in parallel across sids
+            new SubscriptionUpdate(this).populate(in, dispatcher);
             return;
         }
         RequestWrapper wrapper = reqs.get(rid);
         Request request = wrapper.getRequest();
         String method = request.getName();
 
-        final String stream = in.getString("stream");
+        final String stream = in.getStream();
         boolean closed = StreamState.CLOSED.getJsonName().equals(stream);
+        JsonObject json = in.toJson();
 
         switch (method) {
             case "list":
@@ -269,7 +344,7 @@ public class Requester extends Linkable {
                 Node node = manager.getNode(listRequest.getPath(), true).getNode();
                 SubscriptionManager subs = link.getSubscriptionManager();
                 ListResponse resp = new ListResponse(link, subs, rid, node);
-                resp.populate(in);
+                resp.populate(json);
                 if (wrapper.getListHandler() != null) {
                     wrapper.getListHandler().handle(resp);
                 }
@@ -278,7 +353,7 @@ public class Requester extends Linkable {
                 SetRequest setRequest = (SetRequest) request;
                 NodePair pair = manager.getNode(setRequest.getPath(), true);
                 SetResponse setResponse = new SetResponse(rid, pair);
-                setResponse.populate(in);
+                setResponse.populate(json);
                 if (wrapper.getSetHandler() != null) {
                     wrapper.getSetHandler().handle(setResponse);
                 }
@@ -287,7 +362,7 @@ public class Requester extends Linkable {
                 RemoveRequest removeRequest = (RemoveRequest) request;
                 pair = manager.getNode(removeRequest.getPath(), true);
                 RemoveResponse removeResponse = new RemoveResponse(rid, pair);
-                removeResponse.populate(in);
+                removeResponse.populate(json);
                 if (wrapper.getRemoveHandler() != null) {
                     wrapper.getRemoveHandler().handle(removeResponse);
                 }
@@ -296,11 +371,11 @@ public class Requester extends Linkable {
                 break;
             case "subscribe":
                 SubscribeResponse subResp = new SubscribeResponse(rid, link);
-                subResp.populate(in);
+                subResp.populate(json);
                 break;
             case "unsubscribe":
                 UnsubscribeResponse unsubResp = new UnsubscribeResponse(rid, link);
-                unsubResp.populate(in);
+                unsubResp.populate(json);
                 if (wrapper.getUnsubHandler() != null) {
                     wrapper.getUnsubHandler().handle(unsubResp);
                 }
@@ -309,7 +384,7 @@ public class Requester extends Linkable {
                 InvokeRequest inReq = (InvokeRequest) request;
                 node = manager.getNode(inReq.getPath(), true).getNode();
                 InvokeResponse inResp = new InvokeResponse(link, rid, node);
-                inResp.populate(in);
+                inResp.populate(json);
                 if (wrapper.getInvokeHandler() != null) {
                     wrapper.getInvokeHandler().handle(inResp);
                 }
@@ -2,6 +2,10 @@ package org.dsa.iot.dslink.link;
 
 import org.dsa.iot.dslink.DSLink;
 import org.dsa.iot.dslink.DSLinkHandler;
+import org.dsa.iot.dslink.connection.JsonMessage;
+import org.dsa.iot.dslink.connection.MapMessageView;
+import org.dsa.iot.dslink.connection.MessageView;
+import org.dsa.iot.dslink.connection.OutboundMessage;
 import org.dsa.iot.dslink.methods.Response;
 import org.dsa.iot.dslink.methods.StreamState;
 import org.dsa.iot.dslink.methods.responses.*;
@@ -42,9 +46,20 @@ public class Responder extends Linkable {
      * @param in Incoming request
      * @return Outgoing response
      */
-    public JsonObject parse(JsonObject in) {
-        final Integer rid = in.getInteger("rid");
-        final String method = in.getString("method");
+    public OutboundMessage parse(JsonObject in) {
+        return parse(new MapMessageView(in));
+    }
+
+    /**
+     * Handles incoming requests. The request is only fully decoded when
+     * the response needs more than the method and path.
+     *
+     * @param in Incoming request
+     * @return Outgoing response
+     */
+    public OutboundMessage parse(MessageView in) {
+        final Integer rid = in.getRid();
+        final String method = in.getMethod();
         if (rid == null) {
             throw new NullPointerException("rid");
         } else if (method == null) {
@@ -56,17 +71,19 @@ public class Responder extends Linkable {
         Response response;
         switch (method) {
             case "list":
-                String path = in.getString("path");
+                String path = in.getPath();
                 if (path == null) {
                     throw new NullPointerException("path");
                 }
                 Node node = nodeManager.getNode(path).getNode();
-                node.getListener().postListUpdate();
+                if (node.hasListener()) {
+                    node.getListener().postListUpdate();
+                }
                 SubscriptionManager subs = link.getSubscriptionManager();
                 response = new ListResponse(link, subs, rid, node);
                 break;
             case "set":
-                path = in.getString("path");
+                path = in.getPath();
                 if (path == null) {
                     throw new NullPointerException("path");
                 }
@@ -80,7 +97,7 @@ public class Responder extends Linkable {
                 response = new UnsubscribeResponse(rid, link);
                 break;
             case "invoke":
-                path = in.getString("path");
+                path = in.getPath();
                 if (path == null) {
                     throw new NullPointerException("path");
                 }
@@ -95,10 +112,16 @@ public class Responder extends Linkable {
                 throw new RuntimeException("Unknown method: " + method);
         }
 
-        JsonObject resp = response.getJsonResponse(in);
+        if (response instanceof ListResponse) {
+            // List responses are written straight into the outgoing frame
+            resps.put(rid, response);
+            return ((ListResponse) response).getOutboundResponse();
+        }
+
+        JsonObject resp = response.getJsonResponse(in.toJson());
         if (!StreamState.CLOSED.getJsonName().equals(resp.getString("stream"))) {
             resps.put(rid, response);
         }
-        return resp;
+        return new JsonMessage(resp);
     }
 }
@@ -1,6 +1,10 @@
 package org.dsa.iot.dslink.methods.responses;
 
 import org.dsa.iot.dslink.DSLink;
+import org.dsa.iot.dslink.connection.MessageGroup;
+import org.dsa.iot.dslink.connection.OutboundMessage;
+import org.dsa.iot.dslink.connection.StreamWriter;
+import org.dsa.iot.dslink.connection.codec.JsonWriter;
 import org.dsa.iot.dslink.methods.Response;
 import org.dsa.iot.dslink.methods.StreamState;
 import org.dsa.iot.dslink.node.*;
@@ -11,7 +15,6 @@ import org.dsa.iot.dslink.node.value.ValueUtils;
 import org.dsa.iot.dslink.util.StringUtils;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.json.JsonArray;
-import org.vertx.java.core.json.JsonElement;
 import org.vertx.java.core.json.JsonObject;
 
 import java.util.HashMap;
@@ -204,132 +207,51 @@ public class ListResponse implements Response {
         }
     }
 
+    /**
+     * Builds the initial response as a JSON object. The responder sends the
+     * response through {@link #getOutboundResponse()} instead, which avoids
+     * building the JSON object.
+     *
+     * @param in Incoming request.
+     * @return Initial list response.
+     */
     @Override
     public JsonObject getJsonResponse(JsonObject in) {
-        JsonObject out = new JsonObject();
-        out.putNumber("rid", getRid());
-        out.putString("stream", StreamState.OPEN.getJsonName());
-
-        JsonArray updates = new JsonArray();
-        {
-            // Special configurations
-            String name = node.getDisplayName();
-            if (name != null) {
-                JsonArray update = new JsonArray();
-                update.addString("$name");
-                update.addString(name);
-                updates.addArray(update);
-            }
-
-            String profile = node.getProfile();
-            if (profile != null) {
-                JsonArray update = new JsonArray();
-                update.addString("$is");
-                update.addString(profile);
-                updates.addArray(update);
-            } else {
-                String err = "Profile not set on node: "
-                            + node.getPath();
-                throw new RuntimeException(err);
-            }
-
-            Set<String> mixins = node.getMixins();
-            if (mixins != null && mixins.size() > 0) {
-                JsonArray update = new JsonArray();
-                update.addString("$mixin");
-                update.addString(StringUtils.join(mixins, "|"));
-                updates.addArray(update);
-            }
-
-            Set<String> interfaces = node.getInterfaces();
-            if (interfaces != null && interfaces.size() > 0) {
-                JsonArray update = new JsonArray();
-                update.addString("$interface");
-                update.addString(StringUtils.join(interfaces, "|"));
-                updates.addArray(update);
-            }
+        MessageGroup group = new MessageGroup(getRid());
+        group.add(getOutboundResponse());
 
-            ValueType type = node.getValueType();
-            if (type != null) {
-                JsonArray update = new JsonArray();
-                update.addString("$type");
-                update.addString(type.toJsonString());
-                updates.addArray(update);
-            }
-
-            char[] password = node.getPassword();
-            if (password != null) {
-                JsonArray update = new JsonArray();
-                update.addString("$$password");
-                update.addString(null);
-                updates.addArray(update);
-            }
-
-            Writable writable = node.getWritable();
-            if (!(writable == null || writable == Writable.NEVER)) {
-                JsonArray update = new JsonArray();
-                update.addString("$writable");
-                update.addString(writable.toJsonName());
-                updates.addArray(update);
-            }
-
-            // Action
-            Action action = node.getAction();
-            if (action != null && action.hasPermission()) {
-                JsonArray update = new JsonArray();
-                update.addString("$invokable");
-                update.addString(action.getPermission().getJsonName());
-                updates.addArray(update);
-
-                update = new JsonArray();
-                update.addString("$params");
-                update.addArray(action.getParams());
-                updates.addArray(update);
-
-                update = new JsonArray();
-                update.addString("$columns");
-                update.addArray(action.getColumns());
-                updates.addArray(update);
-
-                update = new JsonArray();
-                update.addString("$result");
-                update.addString(action.getResultType().getJsonName());
-                updates.addArray(update);
-            }
-
-            // Attributes and configurations
-            add("$$", updates, node.getRoConfigurations());
-            add("$", updates, node.getConfigurations());
-            add("@", updates, node.getAttributes());
+        JsonWriter writer = new JsonWriter();
+        group.write(writer);
+        return new JsonObject(writer.toString());
+    }
 
-            // Children
-            Map<String, Node> children = node.getChildren();
-            if (children != null) {
-                for (Node child : children.values()) {
-                    JsonElement update = getChildUpdate(child, false);
-                    updates.addElement(update);
-                }
+    /**
+     * Creates the initial response of the list stream. The metadata and
+     * children of the node are written directly into the outgoing frame
+     * when the response is sent.
+     *
+     * @return Initial list response.
+     */
+    public OutboundMessage getOutboundResponse() {
+        checkProfile(node);
+        Map<String, Node> children = node.getChildren();
+        if (children != null) {
+            for (Node child : children.values()) {
+                checkProfile(child);
             }
         }
-        out.putArray("updates", updates);
 
         manager.addPathSub(node, this);
-        return out;
+        return new InitialResponse(children);
     }
 
     public void childUpdate(Node child, boolean removed) {
         if (removed) {
             manager.removePathSub(child);
+        } else {
+            checkProfile(child);
         }
-
-        JsonArray updates = new JsonArray();
-        updates.addElement(getChildUpdate(child, removed));
-
-        JsonObject resp = new JsonObject();
-        resp.putNumber("rid", getRid());
-        resp.putString("stream", StreamState.OPEN.getJsonName());
-        resp.putArray("updates", updates);
-        link.getWriter().writeResponse(resp);
+        link.getWriter().writeResponse(new ChildUpdate(child, removed));
     }
 
     @Override
@@ -342,76 +264,100 @@ public class ListResponse implements Response {
     }
 
     /**
+     * @param writer Writer to write the updates to
      * @param prefix Prefix to use (whether its an attribute or config)
-     * @param out Updates array
-     * @param vals Values to iterate and add to the updates array
+     * @param vals Values to iterate and write as updates
      */
-    private void add(String prefix, JsonArray out, Map<String, Value> vals) {
+    private static void writeValues(StreamWriter writer,
+                                    String prefix,
+                                    Map<String, Value> vals) {
         if (vals == null) {
             return;
         }
         for (Map.Entry<String, Value> entry : vals.entrySet()) {
-            JsonArray update = new JsonArray();
-            update.addString(prefix + entry.getKey());
-            ValueUtils.toJson(update, entry.getValue());
-            out.addArray(update);
+            writer.writeStartArray();
+            writer.writeString(prefix + entry.getKey());
+            ValueUtils.write(writer, entry.getValue());
+            writer.writeEndArray();
         }
     }
 
-    private JsonElement getChildUpdate(Node child, boolean removed) {
+    private static void writeUpdate(StreamWriter writer,
+                                    String name,
+                                    String value) {
+        writer.writeStartArray();
+        writer.writeString(name);
+        writer.writeString(value);
+        writer.writeEndArray();
+    }
+
+    private static void writeChildUpdate(StreamWriter writer,
+                                         Node child,
+                                         boolean removed) {
         if (removed) {
-            JsonObject obj = new JsonObject();
-            obj.putString("name", child.getName());
-            obj.putString("change", "remove");
-            return obj;
+            writer.writeStartObject();
+            writer.writeFieldName("name");
+            writer.writeString(child.getName());
+            writer.writeFieldName("change");
+            writer.writeString("remove");
+            writer.writeEndObject();
+            return;
         }
 
-        JsonArray update = new JsonArray();
-        update.addString(child.getName());
-
-        JsonObject childData = new JsonObject();
+        writer.writeStartArray();
+        writer.writeString(child.getName());
+        writer.writeStartObject();
         {
             String displayName = child.getDisplayName();
             if (displayName != null) {
-                childData.putString("$name", displayName);
+                writer.writeFieldName("$name");
+                writer.writeString(displayName);
             }
 
-            String profile = child.getProfile();
-            if (profile == null) {
-                String err = "Profile not set on node: "
-                        + child.getPath();
-                throw new RuntimeException(err);
-            }
-            childData.putString("$is", profile);
+            writer.writeFieldName("$is");
+            writer.writeString(child.getProfile());
 
             Action action = child.getAction();
             if (action != null) {
-                String perm = action.getPermission().getJsonName();
-                childData.putString("$invokable", perm);
+                writer.writeFieldName("$invokable");
+                writer.writeString(action.getPermission().getJsonName());
 
-                String jsonName = action.getResultType().getJsonName();
-                childData.putString("$result", jsonName);
+                writer.writeFieldName("$result");
+                writer.writeString(action.getResultType().getJsonName());
             }
 
             Set<String> mixins = child.getMixins();
             if (mixins != null) {
-                String mixin = StringUtils.join(mixins, "|");
-                childData.putString("$mixin", mixin);
+                writer.writeFieldName("$mixin");
+                writer.writeString(StringUtils.join(mixins, "|"));
             }
 
             Set<String> interfaces = child.getInterfaces();
             if (interfaces != null) {
-                String _interface = StringUtils.join(mixins, "|");
-                childData.putString("$interface", _interface);
+                writer.writeFieldName("$interface");
+                writer.writeString(StringUtils.join(interfaces, "|"));
             }
 
             ValueType type = child.getValueType();
             if (type != null) {
-                childData.putString("$type", type.toJsonString());
+                writer.writeFieldName("$type");
+                writer.writeString(type.toJsonString());
             }
         }
-        update.addObject(childData);
-        return update;
+        writer.writeEndObject();
+        writer.writeEndArray();
+    }
+
+    private static void checkProfile(Node node) {
+        if (node.getProfile() == null) {
+            String err = "Profile not set on node: " + node.getPath();
+            throw new RuntimeException(err);
+        }
+    }
+
+    private static void writeOpenStream(StreamWriter writer) {
+        writer.writeFieldName("stream");
+        writer.writeString(StreamState.OPEN.getJsonName());
     }
 
     private static void iterateActionMetaData(Action act,
@@ -454,4 +400,135 @@ public class ListResponse implements Response {
             }
         });
     }
+
+    /**
+     * Initial response of the list stream containing the metadata and
+     * children of the node.
+     */
+    private class InitialResponse implements OutboundMessage {
+
+        private final Map<String, Node> children;
+
+        public InitialResponse(Map<String, Node> children) {
+            this.children = children;
+        }
+
+        @Override
+        public int getRid() {
+            return rid;
+        }
+
+        @Override
+        public void writeFields(StreamWriter writer) {
+            writeOpenStream(writer);
+        }
+
+        @Override
+        public boolean hasUpdates() {
+            return true;
+        }
+
+        @Override
+        public void writeUpdates(StreamWriter writer) {
+            // Special configurations
+            String name = node.getDisplayName();
+            if (name != null) {
+                writeUpdate(writer, "$name", name);
+            }
+
+            writeUpdate(writer, "$is", node.getProfile());
+
+            Set<String> mixins = node.getMixins();
+            if (mixins != null && mixins.size() > 0) {
+                writeUpdate(writer, "$mixin", StringUtils.join(mixins, "|"));
+            }
+
+            Set<String> interfaces = node.getInterfaces();
+            if (interfaces != null && interfaces.size() > 0) {
+                String joined = StringUtils.join(interfaces, "|");
+                writeUpdate(writer, "$interface", joined);
+            }
+
+            ValueType type = node.getValueType();
+            if (type != null) {
+                writeUpdate(writer, "$type", type.toJsonString());
+            }
+
+            char[] password = node.getPassword();
+            if (password != null) {
+                writeUpdate(writer, "$$password", null);
+            }
+
+            Writable writable = node.getWritable();
+            if (!(writable == null || writable == Writable.NEVER)) {
+                writeUpdate(writer, "$writable", writable.toJsonName());
+            }
+
+            // Action
+            Action action = node.getAction();
+            if (action != null && action.hasPermission()) {
+                String perm = action.getPermission().getJsonName();
+                writeUpdate(writer, "$invokable", perm);
+
+                writer.writeStartArray();
+                writer.writeString("$params");
+                writer.writeValue(action.getParams());
+                writer.writeEndArray();
+
+                writer.writeStartArray();
+                writer.writeString("$columns");
+                writer.writeValue(action.getColumns());
+                writer.writeEndArray();
+
+                String result = action.getResultType().getJsonName();
+                writeUpdate(writer, "$result", result);
+            }
+
+            // Attributes and configurations
+            writeValues(writer, "$$", node.getRoConfigurations());
+            writeValues(writer, "$", node.getConfigurations());
+            writeValues(writer, "@", node.getAttributes());
+
+            // Children
+            if (children != null) {
+                for (Node child : children.values()) {
+                    writeChildUpdate(writer, child, false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Update of a single child of the node.
+     */
+    private class ChildUpdate implements OutboundMessage {
+
+        private final Node child;
+        private final boolean removed;
+
+        public ChildUpdate(Node child, boolean removed) {
+            this.child = child;
+            this.removed = removed;
+        }
+
+        @Override
+        public int getRid() {
+            return rid;
+        }
+
+        @Override
+        public void writeFields(StreamWriter writer) {
+            writeOpenStream(writer);
+        }
+
+        @Override
+        public boolean hasUpdates() {
+            return true;
+        }
+
+        @Override
+        public void writeUpdates(StreamWriter writer) {
+            writeChildUpdate(writer, child, removed);
+        }
+    }
 }
@@ -1,5 +1,8 @@
 package org.dsa.iot.dslink.methods.responses;
 
+import org.dsa.iot.dslink.connection.MapMessageView;
+import org.dsa.iot.dslink.connection.MessageView;
+import org.dsa.iot.dslink.connection.UpdateRow;
 import org.dsa.iot.dslink.link.Requester;
 import org.dsa.iot.dslink.methods.Response;
 import org.dsa.iot.dslink.node.Node;
@@ -7,8 +10,8 @@ import org.dsa.iot.dslink.node.NodeManager;
 import org.dsa.iot.dslink.node.value.SubscriptionValue;
 import org.dsa.iot.dslink.node.value.Value;
 import org.dsa.iot.dslink.node.value.ValueUtils;
+import org.dsa.iot.dslink.util.StripedExecutor;
 import org.vertx.java.core.Handler;
-import org.vertx.java.core.json.JsonArray;
 import org.vertx.java.core.json.JsonObject;
 
 import java.util.HashMap;
@@ -39,59 +42,95 @@ public class SubscriptionUpdate implements Response {
 
     @Override
     public void populate(JsonObject in) {
-        JsonArray updates = in.getArray("updates");
-        Map<Integer, String> paths = requester.getSubscriptionIDs();
-        Map<Integer, Handler<SubscriptionValue>> handlers = requester.getSubscriptionHandlers();
-        if (updates != null) {
-            for (Object obj : updates) {
+        populate(new MapMessageView(in));
+    }
+
+    /**
+     * Populates the updates from each row of the response. Rows are
+     * decoded one at a time rather than as a JSON array per row.
+     *
+     * @param in Incoming subscription update response.
+     */
+    public void populate(MessageView in) {
+        populate(in, null);
+    }
+
+    /**
+     * Populates the updates from each row of the response. Rows are
+     * decoded on the calling thread while the nodes and handlers of the
+     * subscriptions are updated on the dispatcher, keyed by sid. Updates
+     * of the same sid are applied in the order they were received.
+     *
+     * @param in         Incoming subscription update response.
+     * @param dispatcher Dispatcher to apply the updates on, or
+     *                   {@code null} to apply them on the calling thread.
+     */
+    public void populate(MessageView in, final StripedExecutor dispatcher) {
+        final Map<Integer, String> paths = requester.getSubscriptionIDs();
+        final Map<Integer, Handler<SubscriptionValue>> handlers = requester.getSubscriptionHandlers();
+        in.readUpdates(new Handler<UpdateRow>() {
+            @Override
+            public void handle(UpdateRow row) {
                 int rid;
                 String path;
                 SubscriptionValue value;
-                if (obj instanceof JsonArray) {
-                    JsonArray update = (JsonArray) obj;
-                    rid = update.get(0);
+                if (!row.isMap()) {
+                    rid = ((Number) row.get(0)).intValue();
                     path = paths.get(rid);
-                    Object o = update.get(1);
-                    String ts = update.get(2);
+                    Object o = row.get(1);
+                    String ts = (String) row.get(2);
                     Value val = null;
                     if (o != null) {
                         val = ValueUtils.toValue(o);
                     }
                     value = new SubscriptionValue(path, val, ts);
-                    this.updates.put(path, value);
-                } else if (obj instanceof JsonObject) {
-                    JsonObject update = (JsonObject) obj;
-                    rid = update.getInteger("sid");
+                    updates.put(path, value);
+                } else {
+                    rid = ((Number) row.get("sid")).intValue();
                     path = paths.get(rid);
-                    Object o = update.getField("value");
+                    Object o = row.get("value");
                     Value val = null;
                     if (o != null) {
                         val = ValueUtils.toValue(o);
                     }
-                    Integer c = update.getInteger("count");
-                    Integer s = update.getInteger("sum");
-                    Integer min = update.getInteger("min");
-                    Integer max = update.getInteger("max");
-                    String ts = update.getString("ts");
+                    Integer c = toInteger(row.get("count"));
+                    Integer s = toInteger(row.get("sum"));
+                    Integer min = toInteger(row.get("min"));
+                    Integer max = toInteger(row.get("max"));
+                    String ts = (String) row.get("ts");
                     value = new SubscriptionValue(path, val, ts, c, s, min, max);
-                    this.updates.put(path, value);
-                } else {
-                    String err = "Invalid subscription update: " + in.encode();
-                    throw new RuntimeException(err);
-                }
-                Node node = manager.getNode(path, true).getNode();
-                {
-                    Value val = value.getValue();
-                    if (node.getValueType() == null) {
-                        node.setValueType(val.getType());
-                    }
-                    node.setValue(val);
+                    updates.put(path, value);
                 }
-                Handler<SubscriptionValue> handler = handlers.get(rid);
-                if (handler != null) {
-                    handler.handle(value);
+
+                final int sid = rid;
+                final SubscriptionValue update = value;
+                if (dispatcher == null) {
+                    apply(sid, update, handlers);
+                } else {
+                    dispatcher.execute(sid, new Runnable() {
+                        @Override
+                        public void run() {
+                            apply(sid, update, handlers);
+                        }
+                    });
                 }
             }
+        });
+    }
+
+    private void apply(int sid,
+                       SubscriptionValue value,
+                       Map<Integer, Handler<SubscriptionValue>> handlers) {
+        Node node = manager.getNode(value.getPath(), true).getNode();
+        Value val = value.getValue();
+        if (node.getValueType() == null) {
+            node.setValueType(val.getType());
+        }
+        node.setValue(val);
+
+        Handler<SubscriptionValue> handler = handlers.get(sid);
+        if (handler != null) {
+            handler.handle(value);
         }
     }
 
@@ -104,4 +143,8 @@ public class SubscriptionUpdate implements Response {
     public JsonObject getCloseResponse() {
         return null;
     }
+
+    private static Integer toInteger(Object o) {
+        return o == null ? null : ((Number) o).intValue();
+    }
 }
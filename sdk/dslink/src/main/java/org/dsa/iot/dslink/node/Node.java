@@ -5,13 +5,22 @@ import org.dsa.iot.dslink.node.NodeListener.ValueUpdate;
 import org.dsa.iot.dslink.node.actions.Action;
 import org.dsa.iot.dslink.node.value.Value;
 import org.dsa.iot.dslink.node.value.ValueType;
+import org.dsa.iot.dslink.util.ExecutorType;
+import org.dsa.iot.dslink.util.Objects;
 import org.dsa.iot.dslink.util.StringUtils;
 
-import java.lang.ref.WeakReference;
 import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
- * Contains information about a node and its data.
+ * Contains information about a node and its data. All state of a node is
+ * guarded by the node's own monitor and collections are only allocated
+ * once they hold data, keeping large trees compact. Listeners and
+ * subscribers are notified after the monitor is released, and monitors
+ * are only nested from a node to its parent.
  *
  * @author Samuel Grenier
  */
@@ -21,32 +30,38 @@ public class Node {
             ".", "/", "\\", "?", "%", "*", ":", "|", "<", ">", "$", "@"
     };
 
-    private final Object roConfigLock = new Object();
-    private final Object configLock = new Object();
+    private static final AtomicReferenceFieldUpdater<Node, Value> VALUE;
+    private static final AtomicIntegerFieldUpdater<Node> POSTING;
 
-    private final Object attributeLock = new Object();
-    private final Object interfaceLock = new Object();
-    private final Object childrenLock = new Object();
-    private final Object passwordLock = new Object();
-    private final Object mixinLock = new Object();
-    private final Object valueLock = new Object();
+    // States of posting value updates to subscribers
+    private static final int IDLE = 0;
+    private static final int BUSY = 1;
+    private static final int DIRTY = 2;
 
-    private final WeakReference<Node> parent;
+    // Rounds a writer posts for others before handing the posting off
+    static final int MAX_REPOSTS = 16;
+
+    private final Node parent;
     private final Linkable link;
     private final String path;
     private final String name;
 
+    private final ConcurrentMap<String, Node> index;
+    private volatile boolean attached;
+
     private boolean serializable = true;
-    private NodeListener listener;
+    private volatile NodeListener listener;
     private Map<String, Node> children;
+    private volatile Map<String, Node> childrenView;
     private Writable writable;
 
-    private Map<String, Value> roConfigs;
-    private Map<String, Value> configs;
-    private Map<String, Value> attribs;
+    private SmallMap<Value> roConfigs;
+    private SmallMap<Value> configs;
+    private SmallMap<Value> attribs;
 
-    private ValueType valueType;
-    private Value value;
+    private volatile ValueType valueType;
+    private volatile Value value;
+    private volatile int posting;
 
     private String displayName;
     private String profile;
@@ -63,9 +78,24 @@ public class Node {
      * @param link Linkable class the node is handled on
      */
     public Node(String name, Node parent, Linkable link) {
-        this.parent = new WeakReference<>(parent);
-        this.listener = new NodeListener(this);
+        this(name, parent, link, parent != null ? parent.index : null);
+    }
+
+    /**
+     * Constructs a node that keeps its attached descendants in a path
+     * index. A node without a parent is attached as soon as it has an
+     * index.
+     *
+     * @param name   Name of the node
+     * @param parent Parent of this node
+     * @param link   Linkable class the node is handled on
+     * @param index  Index of paths to attached nodes, can be null
+     */
+    Node(String name, Node parent, Linkable link, ConcurrentMap<String, Node> index) {
+        this.parent = parent;
         this.link = link;
+        this.index = index;
+        this.attached = parent == null && index != null;
         if (parent != null) {
             this.name = checkName(name);
             this.path = parent.getPath() + "/" + name;
@@ -83,11 +113,10 @@ public class Node {
     }
 
     /**
-     * @return Parent of this node, can be null if the parent was garbage
-     *         collected or there is no parent.
+     * @return Parent of this node, can be null if there is no parent.
      */
     public Node getParent() {
-        return parent.get();
+        return parent;
     }
 
     /**
@@ -143,12 +172,37 @@ public class Node {
 
     /**
      * The listener API provides functionality for listening to changes
-     * that occur within a node.
+     * that occur within a node. The listener is created on first use.
      *
      * @return The node's listener.
      */
     public NodeListener getListener() {
-        return listener;
+        synchronized (this) {
+            if (listener == null) {
+                listener = new NodeListener(this);
+            }
+            return listener;
+        }
+    }
+
+    /**
+     * @return Whether a listener was created for the node.
+     * @see #getListener()
+     */
+    public boolean hasListener() {
+        synchronized (this) {
+            return listener != null;
+        }
+    }
+
+    /**
+     * @return Listener of the node, or {@code null} if it was never
+     *         created.
+     */
+    NodeListener listener() {
+        synchronized (this) {
+            return listener;
+        }
     }
 
     /**
@@ -161,11 +215,13 @@ public class Node {
         if (listener == null) {
             throw new NullPointerException("listener");
         }
-        this.listener = listener;
+        synchronized (this) {
+            this.listener = listener;
+        }
     }
 
     public void addMixin(String mixin) {
-        synchronized (mixinLock) {
+        synchronized (this) {
             if (mixin == null) {
                 throw new NullPointerException("mixin");
             } else if (mixins == null) {
@@ -176,7 +232,7 @@ public class Node {
     }
 
     public void removeMixin(String mixin) {
-        synchronized (mixinLock) {
+        synchronized (this) {
             if (mixin == null) {
                 throw new NullPointerException("mixin");
             } else if (mixins != null) {
@@ -186,7 +242,7 @@ public class Node {
     }
 
     public void setMixins(String mixin) {
-        synchronized (mixinLock) {
+        synchronized (this) {
             if (mixin == null) {
                 throw new NullPointerException("mixin");
             } else if (mixins == null) {
@@ -198,13 +254,13 @@ public class Node {
     }
 
     public Set<String> getMixins() {
-        synchronized (mixinLock) {
+        synchronized (this) {
             return mixins != null ? new HashSet<>(mixins) : null;
         }
     }
 
     public void addInterface(String _interface) {
-        synchronized (interfaceLock) {
+        synchronized (this) {
             if (_interface == null) {
                 throw new NullPointerException("_interface");
             } else if (interfaces == null) {
@@ -215,7 +271,7 @@ public class Node {
     }
 
     public void removeInterface(String _interface) {
-        synchronized (interfaceLock) {
+        synchronized (this) {
             if (_interface == null) {
                 throw new NullPointerException("_interface");
             } else if (interfaces != null) {
@@ -225,7 +281,7 @@ public class Node {
     }
 
     public void setInterfaces(String _interface) {
-        synchronized (interfaceLock) {
+        synchronized (this) {
             if (_interface == null) {
                 throw new NullPointerException("_interface");
             } else if (interfaces == null) {
@@ -237,52 +293,151 @@ public class Node {
     }
 
     public Set<String> getInterfaces() {
-        synchronized (interfaceLock) {
+        synchronized (this) {
             return interfaces != null ? new HashSet<>(interfaces) : null;
         }
     }
 
+    /**
+     * Sets the value of the node without holding the node's monitor. The
+     * value is validated and compared against the current value. Without
+     * a value handler it is then published with a compare and set, retrying
+     * the comparison if another writer published a value in the meantime.
+     * <p>
+     * With a value handler, writers of the node are serialized on the
+     * listener so the handler can reject the value before it is published.
+     * The handler is called once per update, with the value the update
+     * replaces, and the value is published right after it accepted it.
+     * <p>
+     * Values of a node are published in a single total order and
+     * {@link #getValue()} returns the latest published value. Subscribers
+     * are notified after publication, one notification at a time per
+     * node, and each notification carries the value current when it is
+     * sent. Intermediate values of concurrent writers may be coalesced,
+     * but the last notification always carries the last published value.
+     *
+     * @param value Value to set, can be null to remove the value.
+     */
     public void setValue(Value value) {
-        synchronized (valueLock) {
-            ValueType type = valueType;
-            if (type == null) {
-                String err = "Value type not set on node (" + getPath() + ")";
-                throw new RuntimeException(err);
-            }
-            if (value != null) {
-                if (type.compare(ValueType.ENUM)) {
-                    if (!value.getType().compare(ValueType.STRING)) {
-                        String err = "[" + getPath() + "] ";
-                        err += "Node has enum value type, value must be string";
-                        throw new RuntimeException(err);
-                    } else if (!type.getEnums().contains(value.getString())) {
-                        String err = "[" + getPath() + "] ";
-                        err += "New value does not contain a valid enum value";
-                        throw new RuntimeException(err);
-                    }
-                } else if (!type.compare(ValueType.DYNAMIC)
-                            && type != value.getType()) {
+        ValueType type = valueType;
+        if (type == null) {
+            String err = "Value type not set on node (" + getPath() + ")";
+            throw new RuntimeException(err);
+        }
+        if (value != null) {
+            if (type.compare(ValueType.ENUM)) {
+                if (!value.getType().compare(ValueType.STRING)) {
+                    String err = "[" + getPath() + "] ";
+                    err += "Node has enum value type, value must be string";
+                    throw new RuntimeException(err);
+                } else if (!type.getEnums().contains(value.getString())) {
                     String err = "[" + getPath() + "] ";
-                    err += "Expected value type ";
-                    err += "'" + type.toJsonString() + "' ";
-                    err += "got '" + value.getType().toJsonString() + "'";
+                    err += "New value does not contain a valid enum value";
                     throw new RuntimeException(err);
                 }
+            } else if (!type.compare(ValueType.DYNAMIC)
+                        && type != value.getType()) {
+                String err = "[" + getPath() + "] ";
+                err += "Expected value type ";
+                err += "'" + type.toJsonString() + "' ";
+                err += "got '" + value.getType().toJsonString() + "'";
+                throw new RuntimeException(err);
+            }
+
+            value.setImmutable();
+        }
+
+        NodeListener listener = this.listener;
+        if (listener != null && listener.hasValueHandler()) {
+            synchronized (listener) {
+                Value prev = this.value;
+                if ((prev != null && prev.equals(value))
+                        || listener.postValueUpdate(prev, value)) {
+                    return;
+                } else if (!VALUE.compareAndSet(this, prev, value)) {
+                    // Published by a writer that didn't see the handler
+                    // yet, this value is ordered before it and replaced
+                    return;
+                }
+            }
+        } else {
+            Value prev;
+            do {
+                prev = this.value;
+                if (prev != null && prev.equals(value)) {
+                    return;
+                }
+            } while (!VALUE.compareAndSet(this, prev, value));
+        }
 
-                value.setImmutable();
+        if (link != null) {
+            SubscriptionManager manager = link.getSubscriptionManager();
+            if (manager != null) {
+                postValueUpdate(manager);
             }
+        }
+    }
 
-            if ((this.value != null && this.value.equals(value))
-                    || listener.postValueUpdate(this.value, value)) {
+    /**
+     * Notifies subscribers of the current value. Only one thread posts
+     * updates of the node at a time. Updates published while it posts
+     * mark the node dirty, and the posting thread posts again so the
+     * latest value is never left unsent. After {@link #MAX_REPOSTS} rounds
+     * the posting is handed off to the {@link ExecutorType#ACTION} pool so
+     * that busy writers can't hold up a single one of them.
+     *
+     * @param manager Manager to post the update to.
+     */
+    private void postValueUpdate(SubscriptionManager manager) {
+        for (;;) {
+            int state = posting;
+            if (state == IDLE) {
+                if (POSTING.compareAndSet(this, IDLE, BUSY)) {
+                    break;
+                }
+            } else if (state == DIRTY
+                    || POSTING.compareAndSet(this, BUSY, DIRTY)) {
                 return;
             }
+        }
 
-            this.value = value;
-            if (link != null) {
-                SubscriptionManager manager = link.getSubscriptionManager();
-                if (manager != null) {
-                    manager.postValueUpdate(this);
+        repost(manager, true);
+    }
+
+    /**
+     * Posts updates while the node is busy.
+     *
+     * @param manager Manager to post the update to.
+     * @param handOff Whether the posting can be handed off to another
+     *                thread.
+     */
+    private void repost(final SubscriptionManager manager, boolean handOff) {
+        boolean posted = false;
+        try {
+            // Only the posting thread moves the node out of dirty
+            int rounds = 0;
+            do {
+                if (handOff && ++rounds > MAX_REPOSTS) {
+                    try {
+                        Objects.getPool(ExecutorType.ACTION).execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                repost(manager, true);
+                            }
+                        });
+                        posted = true;
+                        return;
+                    } catch (RejectedExecutionException e) {
+                        handOff = false;
+                    }
                 }
+                manager.postValueUpdate(this);
+            } while (!POSTING.compareAndSet(this, BUSY, IDLE)
+                        && POSTING.compareAndSet(this, DIRTY, BUSY));
+            posted = true;
+        } finally {
+            if (!posted) {
+                posting = IDLE;
             }
         }
     }
@@ -291,9 +446,7 @@ public class Node {
      * @return The value of the node.
      */
     public Value getValue() {
-        synchronized (valueLock) {
-            return value;
-        }
+        return value;
     }
 
     public void setValueType(ValueType type) {
@@ -319,11 +472,25 @@ public class Node {
     }
 
     /**
-     * @return Children of the node, can be null
+     * Gets a snapshot of the children. The snapshot is copied once after
+     * the children change and is shared until they change again, making
+     * repeated listings and serialization of large nodes free of copies.
+     *
+     * @return Unmodifiable children of the node, can be null
      */
     public Map<String, Node> getChildren() {
-        synchronized (childrenLock) {
-            return children != null ? new HashMap<>(children) : null;
+        Map<String, Node> view = childrenView;
+        if (view != null) {
+            return view;
+        }
+        synchronized (this) {
+            if (children == null) {
+                return null;
+            } else if (childrenView == null) {
+                Map<String, Node> copy = new HashMap<>(children);
+                childrenView = Collections.unmodifiableMap(copy);
+            }
+            return childrenView;
         }
     }
 
@@ -331,11 +498,10 @@ public class Node {
      * Clears the children in the node.
      */
     public void clearChildren() {
-        synchronized (childrenLock) {
-            if (children != null) {
-                for (Node child : getChildren().values()) {
-                    removeChild(child);
-                }
+        Map<String, Node> children = getChildren();
+        if (children != null) {
+            for (Node child : children.values()) {
+                removeChild(child);
             }
         }
     }
@@ -345,7 +511,7 @@ public class Node {
      * @return Child, or null if non-existent
      */
     public Node getChild(String name) {
-        synchronized (childrenLock) {
+        synchronized (this) {
             return children != null ? children.get(name) : null;
         }
     }
@@ -387,26 +553,32 @@ public class Node {
      * @return The node
      */
     public Node addChild(Node node) {
-        synchronized (childrenLock) {
-            String name = node.getName();
+        String name = node.getName();
+        boolean attach;
+        synchronized (this) {
             if (children == null) {
                 children = new HashMap<>();
             } else if (children.containsKey(name)) {
                 return children.get(name);
             }
 
-            SubscriptionManager manager = null;
-            if (link != null) {
-                manager = link.getSubscriptionManager();
-            }
-
             node.setProfile(profile);
             children.put(name, node);
+            childrenView = null;
+            attach = attached;
+        }
+
+        // The child's monitor is never taken while holding this one
+        if (attach) {
+            node.attach();
+        }
+        if (link != null) {
+            SubscriptionManager manager = link.getSubscriptionManager();
             if (manager != null) {
                 manager.postChildUpdate(node, false);
             }
-            return node;
         }
+        return node;
     }
 
     /**
@@ -426,18 +598,78 @@ public class Node {
      * @return The node if it existed.
      */
     public Node removeChild(String name) {
-        synchronized (childrenLock) {
-            Node child = children != null ? children.remove(name) : null;
-            SubscriptionManager manager = null;
-            if (link != null) {
-                manager = link.getSubscriptionManager();
+        Node child;
+        synchronized (this) {
+            child = children != null ? children.remove(name) : null;
+            if (child == null) {
+                return null;
             }
-            if (child != null && manager != null) {
+            childrenView = null;
+        }
+
+        child.detach();
+        if (link != null) {
+            SubscriptionManager manager = link.getSubscriptionManager();
+            if (manager != null) {
                 manager.postChildUpdate(child, true);
                 manager.removeValueSub(child);
                 manager.removePathSub(child);
             }
-            return child;
+        }
+        return child;
+    }
+
+    /**
+     * Adds the node and its descendants to the path index. The node is
+     * only indexed if it is still a child of an attached parent, which is
+     * checked under the node's monitor so a concurrent removal either
+     * fails the check or detaches the node after it was indexed. Children
+     * added concurrently are indexed by either this call or their own
+     * addition.
+     * <p>
+     * Monitors are only taken from a node to its parent, never the other
+     * way around.
+     */
+    private void attach() {
+        if (index == null) {
+            return;
+        }
+        Map<String, Node> children;
+        synchronized (this) {
+            if (attached
+                    || !parent.attached
+                    || parent.getChild(name) != this) {
+                return;
+            }
+            attached = true;
+            index.put(path, this);
+            children = getChildren();
+        }
+        if (children != null) {
+            for (Node child : children.values()) {
+                child.attach();
+            }
+        }
+    }
+
+    /**
+     * Removes the node and its descendants from the path index. Entries
+     * are only removed if they still map to the detached nodes.
+     */
+    private void detach() {
+        Map<String, Node> children;
+        synchronized (this) {
+            if (!attached) {
+                return;
+            }
+            attached = false;
+            index.remove(path, this);
+            children = getChildren();
+        }
+        if (children != null) {
+            for (Node child : children.values()) {
+                child.detach();
+            }
         }
     }
 
@@ -445,8 +677,8 @@ public class Node {
      * @return The configurations in this node.
      */
     public Map<String, Value> getConfigurations() {
-        synchronized (configLock) {
-            return configs != null ? new HashMap<>(configs) : null;
+        synchronized (this) {
+            return configs != null ? configs.toMap() : null;
         }
     }
 
@@ -455,7 +687,7 @@ public class Node {
      * @return Value of the configuration, if it exists
      */
     public Value getConfig(String name) {
-        synchronized (configLock) {
+        synchronized (this) {
             return configs != null ? configs.get(name) : null;
         }
     }
@@ -465,14 +697,17 @@ public class Node {
      * @return Configuration value, or null if it didn't exist
      */
     public Value removeConfig(String name) {
-        synchronized (configLock) {
-            Value ret = configs != null ? configs.remove(name) : null;
-            if (ret != null) {
-                ValueUpdate update = new ValueUpdate(name, ret, true);
-                listener.postConfigUpdate(update);
-            }
-            return ret;
+        Value ret;
+        NodeListener listener;
+        synchronized (this) {
+            ret = configs != null ? configs.remove(name) : null;
+            listener = this.listener;
         }
+        if (ret != null && listener != null) {
+            ValueUpdate update = new ValueUpdate(name, ret, true);
+            listener.postConfigUpdate(update);
+        }
+        return ret;
     }
 
     /**
@@ -486,12 +721,14 @@ public class Node {
      * @see Action
      */
     public Value setConfig(String name, Value value) {
-        synchronized (configLock) {
+        Value prev;
+        NodeListener listener;
+        synchronized (this) {
             name = checkName(name);
             if (value == null) {
                 throw new NullPointerException("value");
             } else if (configs == null) {
-                configs = new HashMap<>();
+                configs = new SmallMap<>();
             }
             switch (name) {
                 case "params":
@@ -510,21 +747,22 @@ public class Node {
                     throw new IllegalArgumentException(err);
             }
             value.setImmutable();
+            prev = configs.put(name, value);
+            listener = this.listener;
+        }
+        if (listener != null) {
             ValueUpdate update = new ValueUpdate(name, value, false);
-            NodeListener listener = this.listener;
-            if (listener != null) {
-                listener.postConfigUpdate(update);
-            }
-            return configs.put(name, value);
+            listener.postConfigUpdate(update);
         }
+        return prev;
     }
 
     /**
      * @return The read-only configurations in this node.
      */
     public Map<String, Value> getRoConfigurations() {
-        synchronized (roConfigLock) {
-            return roConfigs != null ? new HashMap<>(roConfigs) : null;
+        synchronized (this) {
+            return roConfigs != null ? roConfigs.toMap() : null;
         }
     }
 
@@ -535,7 +773,7 @@ public class Node {
      * @return Previous value of the configuration.
      */
     public Value removeRoConfig(String name) {
-        synchronized (roConfigLock) {
+        synchronized (this) {
             return roConfigs != null ? roConfigs.remove(name) : null;
         }
     }
@@ -547,7 +785,7 @@ public class Node {
      * @return The value of the configuration name, if any.
      */
     public Value getRoConfig(String name) {
-        synchronized (roConfigLock) {
+        synchronized (this) {
             return roConfigs != null ? roConfigs.get(name) : null;
         }
     }
@@ -560,12 +798,12 @@ public class Node {
      * @return The previous value, if any.
      */
     public Value setRoConfig(String name, Value value) {
-        synchronized (roConfigLock) {
+        synchronized (this) {
             name = checkName(name);
             if (value == null) {
                 throw new NullPointerException("value");
             } else if (roConfigs == null) {
-                roConfigs = new HashMap<>();
+                roConfigs = new SmallMap<>();
             }
 
             switch (name) {
@@ -583,8 +821,8 @@ public class Node {
      * @return The attributes in this node.
      */
     public Map<String, Value> getAttributes() {
-        synchronized (attributeLock) {
-            return attribs != null ? new HashMap<>(attribs) : null;
+        synchronized (this) {
+            return attribs != null ? attribs.toMap() : null;
         }
     }
 
@@ -593,14 +831,17 @@ public class Node {
      * @return Attribute value or null if it didn't exist
      */
     public Value removeAttribute(String name) {
-        synchronized (attributeLock) {
-            Value ret = attribs != null ? attribs.get(name) : null;
-            if (ret != null) {
-                ValueUpdate update = new ValueUpdate(name, ret, true);
-                listener.postAttributeUpdate(update);
-            }
-            return ret;
+        Value ret;
+        NodeListener listener;
+        synchronized (this) {
+            ret = attribs != null ? attribs.get(name) : null;
+            listener = this.listener;
+        }
+        if (ret != null && listener != null) {
+            ValueUpdate update = new ValueUpdate(name, ret, true);
+            listener.postAttributeUpdate(update);
         }
+        return ret;
     }
 
     /**
@@ -608,7 +849,7 @@ public class Node {
      * @return Value of the attribute, if it exists
      */
     public Value getAttribute(String name) {
-        synchronized (attributeLock) {
+        synchronized (this) {
             return attribs != null ? attribs.get(name) : null;
         }
     }
@@ -619,18 +860,24 @@ public class Node {
      * @return The previous attribute value, if any
      */
     public Value setAttribute(String name, Value value) {
-        synchronized (attributeLock) {
+        Value prev;
+        NodeListener listener;
+        synchronized (this) {
             name = checkName(name);
             if (value == null) {
                 throw new NullPointerException("value");
             } else if (attribs == null) {
-                attribs = new HashMap<>();
+                attribs = new SmallMap<>();
             }
             value.setImmutable();
+            prev = attribs.put(name, value);
+            listener = this.listener;
+        }
+        if (listener != null) {
             ValueUpdate update = new ValueUpdate(name, value, false);
             listener.postAttributeUpdate(update);
-            return attribs.put(name, value);
         }
+        return prev;
     }
 
     /**
@@ -656,7 +903,7 @@ public class Node {
      * @return Password the node is configured to use.
      */
     public char[] getPassword() {
-        synchronized (passwordLock) {
+        synchronized (this) {
             return pass != null ? pass.clone() : null;
         }
     }
@@ -669,7 +916,7 @@ public class Node {
      * @param password Password to set.
      */
     public void setPassword(char[] password) {
-        synchronized (passwordLock) {
+        synchronized (this) {
             this.pass = password != null ? password.clone() : null;
         }
     }
@@ -731,4 +978,9 @@ public class Node {
     public static String[] getBannedCharacters() {
         return BANNED_CHARS.clone();
     }
+
+    static {
+        VALUE = AtomicReferenceFieldUpdater.newUpdater(Node.class, Value.class, "value");
+        POSTING = AtomicIntegerFieldUpdater.newUpdater(Node.class, "posting");
+    }
 }
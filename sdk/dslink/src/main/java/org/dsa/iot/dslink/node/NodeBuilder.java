@@ -112,7 +112,10 @@ public class NodeBuilder {
         // addChild can return a deserialized node. This results in the action
         // being removed
         node.setAction(child.getAction());
-        node.setListener(child.getListener());
+        NodeListener listener = child.listener();
+        if (listener != null) {
+            node.setListener(listener);
+        }
         return node;
     }
 }
@@ -13,7 +13,7 @@ public class NodeListener {
 
     private final Node node;
 
-    private Handler<ValuePair> valueHandler;
+    private volatile Handler<ValuePair> valueHandler;
     private Handler<ValueUpdate> configHandler;
     private Handler<ValueUpdate> attribHandler;
 
@@ -27,7 +27,9 @@ public class NodeListener {
 
     /**
      * Handles when a node updates its value. The value can be {@code null} if
-     * the value on the node was removed.
+     * the value on the node was removed. The handler is called before the
+     * value is published and can reject it, other writers of the node wait
+     * until it returns.
      *
      * @param handler Callback.
      */
@@ -35,6 +37,17 @@ public class NodeListener {
         valueHandler = handler;
     }
 
+    /**
+     * Writers of the node are only serialized while this returns true.
+     * Subclasses overriding {@link #postValueUpdate} must override it too.
+     *
+     * @return Whether values set on the node are passed to a handler that
+     *         can reject them.
+     */
+    protected boolean hasValueHandler() {
+        return valueHandler != null;
+    }
+
     /**
      * Posts a value update calling all the value handler callbacks.
      *
@@ -5,6 +5,8 @@ import org.dsa.iot.dslink.node.exceptions.NoSuchPathException;
 import org.dsa.iot.dslink.util.StringUtils;
 
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Handles nodes based on paths.
@@ -17,8 +19,12 @@ public class NodeManager {
     private final Node superRoot;
     private final String defaultProfile;
 
+    // Paths of every node attached under the super root
+    private final ConcurrentMap<String, Node> index;
+
     public NodeManager(Linkable link, String defaultProfile) {
-        this.superRoot = new Node(null, null, link);
+        this.index = new ConcurrentHashMap<>();
+        this.superRoot = new Node(null, null, link, index);
         superRoot.setProfile(defaultProfile);
         this.defaultProfile = defaultProfile;
     }
@@ -53,6 +59,12 @@ public class NodeManager {
             throw new NullPointerException("path");
         else if ("/".equals(path))
             return new NodePair(superRoot, null);
+
+        NodePair pair = lookup(normalizePath(path, true));
+        if (pair != null)
+            return pair;
+
+        // Walks the tree when the node must be created or doesn't exist
         String[] parts = splitPath(path);
         if (parts.length == 1 && StringUtils.isReference(parts[0])) {
             return new NodePair(superRoot, parts[0]);
@@ -83,6 +95,27 @@ public class NodeManager {
         return new NodePair(current, null);
     }
 
+    /**
+     * Looks up a node in the path index without walking the tree.
+     *
+     * @param path Normalized path with a leading slash.
+     * @return The node and reference, or {@code null} if not indexed.
+     */
+    private NodePair lookup(String path) {
+        Node node = index.get(path);
+        if (node != null)
+            return new NodePair(node, null);
+
+        int i = path.lastIndexOf('/');
+        String last = path.substring(i + 1);
+        if (StringUtils.isReference(last)) {
+            node = i == 0 ? superRoot : index.get(path.substring(0, i));
+            if (node != null)
+                return new NodePair(node, last);
+        }
+        return null;
+    }
+
     public static String[] splitPath(String path) {
         return normalizePath(path).split("/");
     }
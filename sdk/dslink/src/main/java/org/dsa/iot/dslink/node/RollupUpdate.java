@@ -0,0 +1,132 @@
+package org.dsa.iot.dslink.node;
+
+import org.dsa.iot.dslink.connection.StreamWriter;
+import org.dsa.iot.dslink.node.value.Value;
+import org.dsa.iot.dslink.node.value.ValueUtils;
+
+/**
+ * The latest value update of a subscription along with the rollup of the
+ * updates it replaced. The update is written as a
+ * {@code {sid, value, ts, count, sum, min, max}} row of the subscription
+ * stream. The {@code sum}, {@code min} and {@code max} are only written
+ * when at least one of the values was a number.
+ *
+ * @author Samuel Grenier
+ */
+public class RollupUpdate extends ValueUpdate {
+
+    private final int count;
+    private final int numbers;
+    private final double sum;
+    private final double min;
+    private final double max;
+
+    /**
+     * @param previous Older update of the same sid.
+     * @param latest   Update replacing the older one.
+     */
+    public RollupUpdate(ValueUpdate previous, ValueUpdate latest) {
+        super(latest.getSid(), latest.getValue());
+        if (previous.getSid() != latest.getSid()) {
+            throw new IllegalArgumentException("sid mismatch");
+        }
+
+        int count;
+        int numbers;
+        double sum;
+        double min;
+        double max;
+        if (previous instanceof RollupUpdate) {
+            RollupUpdate rollup = (RollupUpdate) previous;
+            count = rollup.count;
+            numbers = rollup.numbers;
+            sum = rollup.sum;
+            min = rollup.min;
+            max = rollup.max;
+        } else {
+            count = 1;
+            Number n = toNumber(previous.getValue());
+            numbers = n != null ? 1 : 0;
+            sum = n != null ? n.doubleValue() : 0;
+            min = n != null ? sum : Double.POSITIVE_INFINITY;
+            max = n != null ? sum : Double.NEGATIVE_INFINITY;
+        }
+
+        Number n = toNumber(latest.getValue());
+        if (n != null) {
+            double d = n.doubleValue();
+            numbers++;
+            sum += d;
+            min = Math.min(min, d);
+            max = Math.max(max, d);
+        }
+
+        this.count = count + 1;
+        this.numbers = numbers;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * @return Amount of updates combined into this update.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return Sum of the numeric values or {@code null} if none of the
+     *         values were numbers.
+     */
+    public Double getSum() {
+        return numbers > 0 ? sum : null;
+    }
+
+    /**
+     * @return Minimum of the numeric values or {@code null} if none of the
+     *         values were numbers.
+     */
+    public Double getMin() {
+        return numbers > 0 ? min : null;
+    }
+
+    /**
+     * @return Maximum of the numeric values or {@code null} if none of the
+     *         values were numbers.
+     */
+    public Double getMax() {
+        return numbers > 0 ? max : null;
+    }
+
+    @Override
+    public void writeUpdates(StreamWriter writer) {
+        Value value = getValue();
+        writer.writeStartObject();
+        writer.writeFieldName("sid");
+        writer.writeLong(getSid());
+        writer.writeFieldName("value");
+        if (value != null) {
+            ValueUtils.write(writer, value);
+            writer.writeFieldName("ts");
+            writer.writeString(value.getTimeStamp());
+        } else {
+            writer.writeNull();
+        }
+        writer.writeFieldName("count");
+        writer.writeLong(count);
+        if (numbers > 0) {
+            writer.writeFieldName("sum");
+            writer.writeDouble(sum);
+            writer.writeFieldName("min");
+            writer.writeDouble(min);
+            writer.writeFieldName("max");
+            writer.writeDouble(max);
+        }
+        writer.writeEndObject();
+    }
+
+    private static Number toNumber(Value value) {
+        return value != null ? value.getNumber() : null;
+    }
+}
@@ -0,0 +1,132 @@
+package org.dsa.iot.dslink.node;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Map of names to values that stores its entries in a pair of arrays and
+ * searches them linearly. Nodes rarely carry more than a handful of
+ * configurations or attributes, which makes a hash table mostly empty
+ * buckets. Once the map outgrows {@link #MAX_ENTRIES} it switches over to
+ * a {@link HashMap}. The map is not thread safe.
+ *
+ * @author Samuel Grenier
+ */
+final class SmallMap<V> {
+
+    /**
+     * Maximum amount of entries kept in the arrays.
+     */
+    static final int MAX_ENTRIES = 8;
+
+    private String[] keys;
+    private Object[] values;
+    private int size;
+    private Map<String, V> map;
+
+    /**
+     * @param key Key of the value.
+     * @return Value of the key, or {@code null} if not present.
+     */
+    @SuppressWarnings("unchecked")
+    V get(String key) {
+        if (map != null) {
+            return map.get(key);
+        }
+        int i = indexOf(key);
+        return i >= 0 ? (V) values[i] : null;
+    }
+
+    /**
+     * @param key   Key of the value.
+     * @param value Value to set.
+     * @return The previous value, if any.
+     */
+    @SuppressWarnings("unchecked")
+    V put(String key, V value) {
+        if (map != null) {
+            return map.put(key, value);
+        }
+        int i = indexOf(key);
+        if (i >= 0) {
+            V prev = (V) values[i];
+            values[i] = value;
+            return prev;
+        }
+
+        if (size == MAX_ENTRIES) {
+            map = toMap();
+            keys = null;
+            values = null;
+            size = 0;
+            return map.put(key, value);
+        } else if (keys == null) {
+            keys = new String[2];
+            values = new Object[2];
+        } else if (size == keys.length) {
+            int len = Math.min(size * 2, MAX_ENTRIES);
+            String[] k = new String[len];
+            Object[] v = new Object[len];
+            System.arraycopy(keys, 0, k, 0, size);
+            System.arraycopy(values, 0, v, 0, size);
+            keys = k;
+            values = v;
+        }
+        keys[size] = key;
+        values[size++] = value;
+        return null;
+    }
+
+    /**
+     * @param key Key of the value to remove.
+     * @return The removed value, if any.
+     */
+    @SuppressWarnings("unchecked")
+    V remove(String key) {
+        if (map != null) {
+            return map.remove(key);
+        }
+        int i = indexOf(key);
+        if (i < 0) {
+            return null;
+        }
+        V prev = (V) values[i];
+        int last = --size;
+        keys[i] = keys[last];
+        values[i] = values[last];
+        keys[last] = null;
+        values[last] = null;
+        return prev;
+    }
+
+    /**
+     * @return Amount of entries in the map.
+     */
+    int size() {
+        return map != null ? map.size() : size;
+    }
+
+    /**
+     * @return A copy of the entries.
+     */
+    @SuppressWarnings("unchecked")
+    Map<String, V> toMap() {
+        if (map != null) {
+            return new HashMap<>(map);
+        }
+        Map<String, V> copy = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            copy.put(keys[i], (V) values[i]);
+        }
+        return copy;
+    }
+
+    private int indexOf(String key) {
+        for (int i = 0; i < size; i++) {
+            if (keys[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
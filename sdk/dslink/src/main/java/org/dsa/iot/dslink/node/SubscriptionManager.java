@@ -2,10 +2,6 @@ package org.dsa.iot.dslink.node;
 
 import org.dsa.iot.dslink.DSLink;
 import org.dsa.iot.dslink.methods.responses.ListResponse;
-import org.dsa.iot.dslink.node.value.Value;
-import org.dsa.iot.dslink.node.value.ValueUtils;
-import org.vertx.java.core.json.JsonArray;
-import org.vertx.java.core.json.JsonObject;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -63,7 +59,10 @@ public class SubscriptionManager {
             valueSubsSids.put(sid, node);
         }
         postValueUpdate(node);
-        node.getListener().postOnSubscription();
+        NodeListener listener = node.listener();
+        if (listener != null) {
+            listener.postOnSubscription();
+        }
     }
 
     /**
@@ -80,8 +79,9 @@ public class SubscriptionManager {
                 valueSubsNodes.remove(node);
             }
         }
-        if (node != null) {
-            node.getListener().postOnUnsubscription();
+        NodeListener listener = node != null ? node.listener() : null;
+        if (listener != null) {
+            listener.postOnUnsubscription();
         }
     }
 
@@ -99,8 +99,9 @@ public class SubscriptionManager {
                 valueSubsSids.remove(sid);
             }
         }
-        if (sid != null) {
-            node.getListener().postOnUnsubscription();
+        NodeListener listener = sid != null ? node.listener() : null;
+        if (listener != null) {
+            listener.postOnUnsubscription();
         }
     }
 
@@ -158,26 +159,8 @@ public class SubscriptionManager {
     public void postValueUpdate(Node node) {
         Integer sid = valueSubsNodes.get(node);
         if (sid != null) {
-            JsonArray updates = new JsonArray();
-            {
-                JsonArray update = new JsonArray();
-                update.addNumber(sid);
-
-                Value value = node.getValue();
-                if (value != null) {
-                    ValueUtils.toJson(update, value);
-                    update.addString(value.getTimeStamp());
-                } else {
-                    update.add(null);
-                }
-
-                updates.addArray(update);
-            }
-
-            JsonObject resp = new JsonObject();
-            resp.putNumber("rid", 0);
-            resp.putArray("updates", updates);
-            link.getWriter().writeResponse(resp);
+            ValueUpdate update = new ValueUpdate(sid, node.getValue());
+            link.getWriter().writeResponse(update);
         }
     }
 }
@@ -0,0 +1,71 @@
+package org.dsa.iot.dslink.node;
+
+import org.dsa.iot.dslink.connection.StreamWriter;
+import org.dsa.iot.dslink.connection.SubscriptionMessage;
+import org.dsa.iot.dslink.node.value.Value;
+import org.dsa.iot.dslink.node.value.ValueUtils;
+
+/**
+ * A single value update of a subscription. The update is written as a
+ * {@code [sid, value, ts]} row of the subscription stream.
+ *
+ * @author Samuel Grenier
+ */
+public class ValueUpdate implements SubscriptionMessage {
+
+    private final int sid;
+    private final Value value;
+
+    /**
+     * @param sid   Subscription ID of the update.
+     * @param value Value of the node, can be null.
+     */
+    public ValueUpdate(int sid, Value value) {
+        this.sid = sid;
+        this.value = value;
+    }
+
+    @Override
+    public int getSid() {
+        return sid;
+    }
+
+    public Value getValue() {
+        return value;
+    }
+
+    @Override
+    public SubscriptionMessage rollup(SubscriptionMessage previous) {
+        if (previous instanceof ValueUpdate) {
+            return new RollupUpdate((ValueUpdate) previous, this);
+        }
+        return this;
+    }
+
+    @Override
+    public int getRid() {
+        return 0;
+    }
+
+    @Override
+    public void writeFields(StreamWriter writer) {
+    }
+
+    @Override
+    public boolean hasUpdates() {
+        return true;
+    }
+
+    @Override
+    public void writeUpdates(StreamWriter writer) {
+        writer.writeStartArray();
+        writer.writeLong(sid);
+        if (value != null) {
+            ValueUtils.write(writer, value);
+            writer.writeString(value.getTimeStamp());
+        } else {
+            writer.writeNull();
+        }
+        writer.writeEndArray();
+    }
+}
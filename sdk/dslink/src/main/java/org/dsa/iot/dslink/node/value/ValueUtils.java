@@ -1,5 +1,6 @@
 package org.dsa.iot.dslink.node.value;
 
+import org.dsa.iot.dslink.connection.StreamWriter;
 import org.vertx.java.core.json.JsonArray;
 import org.vertx.java.core.json.JsonObject;
 
@@ -79,6 +80,39 @@ public class ValueUtils {
         }
     }
 
+    /**
+     * @param writer Writer to write the value to.
+     * @param value  Value to write.
+     */
+    public static void write(StreamWriter writer, Value value) {
+        if (writer == null)
+            throw new NullPointerException("writer");
+        else if (value == null)
+            throw new NullPointerException("value");
+        switch (value.getType().toJsonString()) {
+            case ValueType.JSON_BOOL:
+                writer.writeBoolean(value.getBool());
+                break;
+            case ValueType.JSON_NUMBER:
+                writer.writeNumber(value.getNumber());
+                break;
+            case ValueType.JSON_STRING:
+                writer.writeString(value.getString());
+                break;
+            case ValueType.JSON_MAP:
+                writer.writeValue(value.getMap());
+                break;
+            case ValueType.JSON_ARRAY:
+                writer.writeValue(value.getArray());
+                break;
+            case ValueType.JSON_ENUM:
+                writer.writeString(value.toString());
+                break;
+            default:
+                throw new RuntimeException(ERROR_MSG + value.getType());
+        }
+    }
+
     /**
      * Inserts the name and value pair into the object after converting
      * the value to be json compatible.
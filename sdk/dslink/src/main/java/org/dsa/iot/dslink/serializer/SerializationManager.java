@@ -1,7 +1,9 @@
 package org.dsa.iot.dslink.serializer;
 
 import org.dsa.iot.dslink.node.NodeManager;
+import org.dsa.iot.dslink.util.ExecutorType;
 import org.dsa.iot.dslink.util.FileUtils;
+import org.dsa.iot.dslink.util.HashedWheelTimer;
 import org.dsa.iot.dslink.util.Objects;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,8 +11,7 @@ import org.vertx.java.core.json.JsonObject;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -27,7 +28,7 @@ public class SerializationManager {
 
     private final Deserializer deserializer;
     private final Serializer serializer;
-    private ScheduledFuture<?> future;
+    private HashedWheelTimer.Timeout future;
 
     /**
      * Handles serialization based on the file path.
@@ -44,18 +45,18 @@ public class SerializationManager {
 
     public synchronized void start() {
         stop();
-        ScheduledThreadPoolExecutor daemon = Objects.getDaemonThreadPool();
-        future = daemon.scheduleWithFixedDelay(new Runnable() {
+        Executor pool = Objects.getPool(ExecutorType.PERSISTENCE);
+        future = Objects.getTimer().scheduleWithFixedDelay(new Runnable() {
             @Override
             public void run() {
                 serialize();
             }
-        }, 5, 5, TimeUnit.SECONDS);
+        }, 5, 5, 0, TimeUnit.SECONDS, pool);
     }
 
     public synchronized void stop() {
         if (future != null) {
-            future.cancel(false);
+            future.cancel();
             future = null;
         }
     }
@@ -0,0 +1,104 @@
+package org.dsa.iot.dslink.util;
+
+import java.util.Arrays;
+
+/**
+ * Maps integer keys onto a fixed amount of nodes with a hash ring. Every
+ * node owns several points on the ring so the keys are spread evenly and
+ * changing the amount of nodes only moves the keys of the affected points.
+ *
+ * @author Samuel Grenier
+ */
+public class ConsistentHash {
+
+    /**
+     * Default amount of points each node owns on the ring.
+     */
+    public static final int DEFAULT_REPLICAS = 64;
+
+    private static final int SEED = 0x5bd1e995;
+
+    private final int nodes;
+    private final int[] points;
+    private final int[] owners;
+
+    /**
+     * @param nodes Amount of nodes.
+     */
+    public ConsistentHash(int nodes) {
+        this(nodes, DEFAULT_REPLICAS);
+    }
+
+    /**
+     * @param nodes    Amount of nodes.
+     * @param replicas Amount of points each node owns on the ring.
+     */
+    public ConsistentHash(int nodes, int replicas) {
+        if (nodes <= 0) {
+            throw new IllegalArgumentException("nodes");
+        } else if (replicas <= 0) {
+            throw new IllegalArgumentException("replicas");
+        }
+        this.nodes = nodes;
+
+        // Sorted by point while keeping track of the owner
+        long[] ring = new long[nodes * replicas];
+        int i = 0;
+        for (int node = 0; node < nodes; node++) {
+            for (int replica = 0; replica < replicas; replica++) {
+                // Seeded so small keys don't land on the points themselves
+                int point = mix(mix(node ^ SEED) + replica * 0x9E3779B9);
+                ring[i++] = ((long) point << 32) | node;
+            }
+        }
+        Arrays.sort(ring);
+
+        points = new int[ring.length];
+        owners = new int[ring.length];
+        for (i = 0; i < ring.length; i++) {
+            points[i] = (int) (ring[i] >> 32);
+            owners[i] = (int) ring[i];
+        }
+    }
+
+    /**
+     * @return Amount of nodes.
+     */
+    public int getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @param key Key to look up.
+     * @return Node owning the key, between 0 and the amount of nodes.
+     */
+    public int nodeOf(int key) {
+        if (nodes == 1) {
+            return 0;
+        }
+        int index = Arrays.binarySearch(points, mix(key));
+        if (index < 0) {
+            // Owned by the next point on the ring
+            index = -index - 1;
+            if (index == points.length) {
+                index = 0;
+            }
+        }
+        return owners[index];
+    }
+
+    /**
+     * Spreads the bits of a key, sequential keys end up far apart.
+     *
+     * @param h Key to mix.
+     * @return Mixed key.
+     */
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -0,0 +1,84 @@
+package org.dsa.iot.dslink.util;
+
+/**
+ * Sizing and bounds of a thread pool.
+ *
+ * @author Samuel Grenier
+ * @see org.dsa.iot.dslink.config.Configuration#setExecutorConfig
+ */
+public class ExecutorConfig {
+
+    private int poolSize;
+    private int maxQueued = -1;
+    private RejectionPolicy rejectionPolicy = RejectionPolicy.ABORT;
+
+    /**
+     * @param poolSize Amount of threads of the pool.
+     */
+    public ExecutorConfig(int poolSize) {
+        setPoolSize(poolSize);
+    }
+
+    /**
+     * @param type Purpose of the pool.
+     * @return Default configuration of the pool.
+     */
+    public static ExecutorConfig defaultOf(ExecutorType type) {
+        if (type == null)
+            throw new NullPointerException("type");
+        return new ExecutorConfig(type.getDefaultSize());
+    }
+
+    /**
+     * @param poolSize Amount of threads of the pool.
+     */
+    public void setPoolSize(int poolSize) {
+        if (poolSize <= 0)
+            throw new IllegalArgumentException("poolSize");
+        this.poolSize = poolSize;
+    }
+
+    /**
+     * @return Amount of threads of the pool.
+     */
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * Bounds the amount of tasks waiting to run. Only tasks submitted
+     * through {@code execute} are bounded, from their submission until a
+     * thread starts them. Delayed and periodic tasks are always accepted
+     * and never evicted.
+     *
+     * @param maxQueued Maximum amount of queued tasks, -1 for no bound.
+     */
+    public void setMaxQueued(int maxQueued) {
+        if (maxQueued < -1)
+            throw new IllegalArgumentException("maxQueued");
+        this.maxQueued = maxQueued;
+    }
+
+    /**
+     * @return Maximum amount of queued tasks, -1 for no bound.
+     */
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    /**
+     * @param policy Policy applied once the queue is full.
+     */
+    public void setRejectionPolicy(RejectionPolicy policy) {
+        if (policy == null)
+            throw new NullPointerException("policy");
+        this.rejectionPolicy = policy;
+    }
+
+    /**
+     * @return Policy applied once the queue is full.
+     */
+    public RejectionPolicy getRejectionPolicy() {
+        return rejectionPolicy;
+    }
+}
@@ -0,0 +1,61 @@
+package org.dsa.iot.dslink.util;
+
+/**
+ * Purposes of the thread pools shared by every link of the process.
+ *
+ * @author Samuel Grenier
+ * @see Objects#getPool(ExecutorType)
+ */
+public enum ExecutorType {
+
+    /**
+     * Network callbacks and connection attempts. Threads are daemons.
+     */
+    IO(32, true),
+
+    /**
+     * Flushing of outgoing data. Never runs callbacks of the user, so
+     * producers waiting for a flush can't starve it. Threads are daemons.
+     */
+    FLUSH(2, true),
+
+    /**
+     * Action handlers and callbacks of the user, such as asynchronous
+     * invocations and subscription updates.
+     */
+    ACTION(32, false),
+
+    /**
+     * Periodic and delayed tasks, such as pings, reconnection delays and
+     * the tasks of the {@link Objects#getTimer() timer}. Threads are
+     * daemons.
+     */
+    TIMER(2, true),
+
+    /**
+     * Serialization of the node tree to disk. Threads are daemons.
+     */
+    PERSISTENCE(1, true);
+
+    private final int defaultSize;
+    private final boolean daemon;
+
+    ExecutorType(int defaultSize, boolean daemon) {
+        this.defaultSize = defaultSize;
+        this.daemon = daemon;
+    }
+
+    /**
+     * @return Default amount of threads of the pool.
+     */
+    public int getDefaultSize() {
+        return defaultSize;
+    }
+
+    /**
+     * @return Whether the threads of the pool are daemons.
+     */
+    public boolean isDaemon() {
+        return daemon;
+    }
+}
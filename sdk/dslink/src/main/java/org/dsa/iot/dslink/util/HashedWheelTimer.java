@@ -0,0 +1,545 @@
+package org.dsa.iot.dslink.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Timer for large amounts of delayed and periodic tasks. Tasks are hashed
+ * into the buckets of a wheel by their deadline and a single thread
+ * advances the wheel once per tick, so scheduling and cancelling take
+ * constant time regardless of the amount of tasks.
+ * <p>
+ * Deadlines are rounded up to the next tick. The tasks expiring in the
+ * same tick are handed to the executor of the timer in batches rather than
+ * one at a time. Periodic tasks can have a random jitter added to every
+ * delay, which spreads tasks scheduled at the same time across ticks.
+ * Tasks rejected by a saturated executor are retried in the next tick.
+ *
+ * @author Samuel Grenier
+ * @see Objects#getTimer()
+ */
+public class HashedWheelTimer {
+
+    /**
+     * Default duration of a tick in milliseconds.
+     */
+    public static final int DEFAULT_TICK = 10;
+
+    /**
+     * Default amount of buckets of the wheel.
+     */
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    /**
+     * Maximum amount of tasks run by a single batch.
+     */
+    public static final int BATCH_SIZE = 256;
+
+    private static final Logger LOGGER;
+
+    private static final int WAITING = 0;
+    private static final int RUNNING = 1;
+    private static final int CANCELLED = 2;
+    private static final int DONE = 3;
+
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final Executor executor;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final long tickNanos;
+    private final long startTime;
+    private final Thread worker;
+
+    private volatile boolean running = true;
+
+    // Only accessed by the worker
+    private long tick;
+
+    /**
+     * @param name     Name of the thread advancing the wheel.
+     * @param executor Executor the tasks run on.
+     */
+    public HashedWheelTimer(String name, Executor executor) {
+        this(name, executor, DEFAULT_TICK, TimeUnit.MILLISECONDS, DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * @param name      Name of the thread advancing the wheel.
+     * @param executor  Executor the tasks run on.
+     * @param tick      Duration of a tick.
+     * @param unit      Unit of the tick.
+     * @param wheelSize Amount of buckets of the wheel, rounded up to a
+     *                  power of two.
+     */
+    public HashedWheelTimer(String name,
+                            Executor executor,
+                            long tick,
+                            TimeUnit unit,
+                            int wheelSize) {
+        if (name == null)
+            throw new NullPointerException("name");
+        else if (executor == null)
+            throw new NullPointerException("executor");
+        else if (unit == null)
+            throw new NullPointerException("unit");
+        else if (tick <= 0)
+            throw new IllegalArgumentException("tick");
+        else if (wheelSize <= 0 || wheelSize > (1 << 30))
+            throw new IllegalArgumentException("wheelSize");
+
+        int buckets = 1;
+        while (buckets < wheelSize) {
+            buckets <<= 1;
+        }
+        this.wheel = new Bucket[buckets];
+        for (int i = 0; i < buckets; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = buckets - 1;
+        this.executor = executor;
+        this.tickNanos = unit.toNanos(tick);
+        this.startTime = System.nanoTime();
+
+        this.worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                advance();
+            }
+        }, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Runs a task once after a delay. A task without a delay is handed to
+     * the executor right away.
+     *
+     * @param task  Task to run.
+     * @param delay Delay before running the task.
+     * @param unit  Unit of the delay.
+     * @return Handle to cancel the task.
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        return schedule(task, delay, unit, null);
+    }
+
+    /**
+     * Runs a task once after a delay. A task without a delay is handed to
+     * the executor right away.
+     *
+     * @param task     Task to run.
+     * @param delay    Delay before running the task.
+     * @param unit     Unit of the delay.
+     * @param executor Executor to run the task on rather than the executor
+     *                 of the timer, can be {@code null}.
+     * @return Handle to cancel the task.
+     */
+    public Timeout schedule(Runnable task,
+                            long delay,
+                            TimeUnit unit,
+                            Executor executor) {
+        if (task == null)
+            throw new NullPointerException("task");
+        else if (unit == null)
+            throw new NullPointerException("unit");
+        Timeout timeout = new Timeout(task, 0, 0, executor);
+        size.incrementAndGet();
+        if (delay <= 0) {
+            timeout.expire();
+        } else {
+            timeout.enqueue(unit.toNanos(delay));
+        }
+        return timeout;
+    }
+
+    /**
+     * Runs a task periodically with a delay between the end of a run and
+     * the start of the next one.
+     *
+     * @param task         Task to run.
+     * @param initialDelay Delay before the first run.
+     * @param delay        Delay between runs.
+     * @param unit         Unit of the delays.
+     * @return Handle to cancel the task.
+     */
+    public Timeout scheduleWithFixedDelay(Runnable task,
+                                          long initialDelay,
+                                          long delay,
+                                          TimeUnit unit) {
+        return scheduleWithFixedDelay(task, initialDelay, delay, 0, unit, null);
+    }
+
+    /**
+     * Runs a task periodically with a delay between the end of a run and
+     * the start of the next one. A task that throws isn't run again.
+     *
+     * @param task         Task to run.
+     * @param initialDelay Delay before the first run.
+     * @param delay        Delay between runs.
+     * @param jitter       Upper bound of a random delay added to every
+     *                     delay, 0 for none.
+     * @param unit         Unit of the delays.
+     * @param executor     Executor to run the task on rather than the
+     *                     executor of the timer, can be {@code null}.
+     * @return Handle to cancel the task.
+     */
+    public Timeout scheduleWithFixedDelay(Runnable task,
+                                          long initialDelay,
+                                          long delay,
+                                          long jitter,
+                                          TimeUnit unit,
+                                          Executor executor) {
+        if (task == null)
+            throw new NullPointerException("task");
+        else if (unit == null)
+            throw new NullPointerException("unit");
+        else if (delay <= 0)
+            throw new IllegalArgumentException("delay");
+        else if (jitter < 0)
+            throw new IllegalArgumentException("jitter");
+        long nanos = unit.toNanos(delay);
+        long jitterNanos = unit.toNanos(jitter);
+        Timeout timeout = new Timeout(task, nanos, jitterNanos, executor);
+        size.incrementAndGet();
+        timeout.enqueue(unit.toNanos(Math.max(0, initialDelay)) + timeout.jitter());
+        return timeout;
+    }
+
+    /**
+     * @return Amount of tasks that are scheduled and not done, including
+     *         periodic tasks.
+     */
+    public int getPending() {
+        return size.get();
+    }
+
+    /**
+     * Stops advancing the wheel. Tasks that didn't expire yet never run.
+     */
+    public void stop() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private void advance() {
+        List<Timeout> expired = new ArrayList<>();
+        while (running) {
+            long deadline = waitForNextTick();
+            if (deadline < 0) {
+                break;
+            }
+
+            removeCancelled();
+            transferPending();
+            wheel[(int) (tick & mask)].expire(deadline, expired);
+            dispatch(expired);
+            expired.clear();
+            tick++;
+        }
+    }
+
+    /**
+     * @return Time of the tick since the start of the timer, or -1 if the
+     *         timer was stopped.
+     */
+    private long waitForNextTick() {
+        long deadline = tickNanos * (tick + 1);
+        for (;;) {
+            long current = System.nanoTime() - startTime;
+            long sleep = TimeUnit.NANOSECONDS.toMillis(deadline - current + 999999);
+            if (sleep <= 0) {
+                return current;
+            }
+            try {
+                Thread.sleep(sleep);
+            } catch (InterruptedException e) {
+                if (!running) {
+                    return -1;
+                }
+            }
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void transferPending() {
+        // Bounded so that a flood of new tasks can't stall the wheel
+        for (int i = 0; i < 100000; i++) {
+            Timeout timeout = pending.poll();
+            if (timeout == null) {
+                break;
+            } else if (timeout.state.get() == CANCELLED) {
+                continue;
+            }
+
+            long ticks = timeout.deadline / tickNanos;
+            timeout.rounds = (ticks - tick) / wheel.length;
+            // Deadlines that already passed expire in the current tick
+            ticks = Math.max(ticks, tick);
+            wheel[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+    private void dispatch(List<Timeout> expired) {
+        List<Timeout> batch = null;
+        for (Timeout timeout : expired) {
+            if (timeout.executor != null) {
+                execute(timeout.executor, timeout);
+                continue;
+            }
+            if (batch == null) {
+                batch = new ArrayList<>(Math.min(expired.size(), BATCH_SIZE));
+            }
+            batch.add(timeout);
+            if (batch.size() == BATCH_SIZE) {
+                execute(executor, new Batch(batch));
+                batch = null;
+            }
+        }
+        if (batch != null) {
+            execute(executor, new Batch(batch));
+        }
+    }
+
+    private void execute(Executor executor, Timeout timeout) {
+        try {
+            executor.execute(timeout);
+        } catch (RejectedExecutionException e) {
+            rejected(executor, timeout, e);
+        }
+    }
+
+    private void execute(Executor executor, Batch batch) {
+        try {
+            executor.execute(batch);
+        } catch (RejectedExecutionException e) {
+            for (Timeout timeout : batch.timeouts) {
+                rejected(executor, timeout, e);
+            }
+        }
+    }
+
+    /**
+     * Retries a rejected task in the next tick so that it isn't lost to a
+     * saturated executor. Tasks of an executor that was shut down never
+     * run and are cancelled instead.
+     *
+     * @param executor Executor that rejected the task.
+     * @param timeout  Rejected task.
+     * @param e        Reason of the rejection.
+     */
+    private void rejected(Executor executor, Timeout timeout, RejectedExecutionException e) {
+        if (executor instanceof ExecutorService
+                && ((ExecutorService) executor).isShutdown()) {
+            LOGGER.warn("Expired task was rejected, executor is shut down", e);
+            timeout.cancel();
+        } else {
+            LOGGER.debug("Expired task was rejected, retrying next tick");
+            timeout.enqueue(tickNanos);
+        }
+    }
+
+    /**
+     * Tasks expired in the same tick that run on the same thread.
+     */
+    private static class Batch implements Runnable {
+
+        private final List<Timeout> timeouts;
+
+        Batch(List<Timeout> timeouts) {
+            this.timeouts = timeouts;
+        }
+
+        @Override
+        public void run() {
+            for (Timeout timeout : timeouts) {
+                timeout.run();
+            }
+        }
+    }
+
+    /**
+     * Doubly linked list of the tasks of a bucket, only accessed by the
+     * worker.
+     */
+    private static class Bucket {
+
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            Timeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (next != null) {
+                next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        void expire(long deadline, List<Timeout> expired) {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.rounds <= 0 && timeout.deadline <= deadline) {
+                    remove(timeout);
+                    expired.add(timeout);
+                } else if (timeout.state.get() == CANCELLED) {
+                    remove(timeout);
+                } else {
+                    timeout.rounds--;
+                }
+                timeout = next;
+            }
+        }
+    }
+
+    /**
+     * Handle of a scheduled task.
+     */
+    public class Timeout implements Runnable {
+
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private final Runnable task;
+        private final long period;
+        private final long jitter;
+        private final Executor executor;
+
+        // Set before the timeout is queued, then only accessed by the worker
+        private long deadline;
+        private long rounds;
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+
+        Timeout(Runnable task, long period, long jitter, Executor executor) {
+            this.task = task;
+            this.period = period;
+            this.jitter = jitter;
+            this.executor = executor;
+        }
+
+        /**
+         * Cancels the task. A task that is running completes its current
+         * run but isn't run again.
+         *
+         * @return Whether the task was cancelled by this call.
+         */
+        public boolean cancel() {
+            for (;;) {
+                int s = state.get();
+                if (s == CANCELLED || s == DONE) {
+                    return false;
+                } else if (state.compareAndSet(s, CANCELLED)) {
+                    size.decrementAndGet();
+                    if (s == WAITING) {
+                        cancelled.add(this);
+                    }
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * @return Whether the task was cancelled.
+         */
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        /**
+         * @return Whether the task ran and won't run again.
+         */
+        public boolean isDone() {
+            return state.get() == DONE;
+        }
+
+        @Override
+        public void run() {
+            if (!state.compareAndSet(WAITING, RUNNING)) {
+                return;
+            }
+
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                LOGGER.error("Timer task failed", e);
+                finish();
+                return;
+            }
+
+            if (period > 0 && state.compareAndSet(RUNNING, WAITING)) {
+                enqueue(period + jitter());
+            } else {
+                finish();
+            }
+        }
+
+        private void finish() {
+            if (state.compareAndSet(RUNNING, DONE)) {
+                size.decrementAndGet();
+            }
+        }
+
+        private void expire() {
+            Executor executor = this.executor;
+            execute(executor != null ? executor : HashedWheelTimer.this.executor, this);
+        }
+
+        private void enqueue(long delay) {
+            deadline = System.nanoTime() - startTime + delay;
+            pending.add(this);
+        }
+
+        private long jitter() {
+            if (jitter <= 0) {
+                return 0;
+            }
+            return ThreadLocalRandom.current().nextLong(jitter);
+        }
+    }
+
+    static {
+        LOGGER = LoggerFactory.getLogger(HashedWheelTimer.class);
+    }
+}
@@ -0,0 +1,110 @@
+package org.dsa.iot.dslink.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies with buckets growing in powers of two
+ * microseconds. Bucket {@code i} counts the latencies below
+ * {@code 2^i} microseconds that didn't fit a lower bucket, the last
+ * bucket counts everything else.
+ *
+ * @author Samuel Grenier
+ */
+public class LatencyHistogram {
+
+    /**
+     * Amount of buckets, the last one starts at roughly 18 minutes.
+     */
+    public static final int BUCKETS = 32;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param nanos Latency to record in nanoseconds.
+     */
+    public void record(long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(Math.max(0, nanos));
+        buckets.incrementAndGet(bucketOf(micros));
+        count.incrementAndGet();
+        total.addAndGet(micros);
+
+        long prev;
+        while (micros > (prev = max.get())) {
+            if (max.compareAndSet(prev, micros)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * @return Amount of recorded latencies.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return Highest recorded latency in microseconds.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return Average latency in microseconds, or -1 if nothing was
+     *         recorded.
+     */
+    public double getMean() {
+        long count = this.count.get();
+        if (count == 0) {
+            return -1;
+        }
+        return (double) total.get() / count;
+    }
+
+    /**
+     * @param bucket Bucket to retrieve.
+     * @return Amount of latencies recorded in the bucket.
+     */
+    public long getBucket(int bucket) {
+        return buckets.get(bucket);
+    }
+
+    /**
+     * Estimates a percentile by the upper bound of the bucket it falls in.
+     *
+     * @param percentile Percentile between 0 and 100.
+     * @return Upper bound of the percentile in microseconds, or -1 if
+     *         nothing was recorded.
+     */
+    public long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile");
+        }
+        long count = this.count.get();
+        if (count == 0) {
+            return -1;
+        }
+
+        long target = (long) Math.ceil(count * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS - 1; i++) {
+            seen += buckets.get(i);
+            if (seen >= Math.max(1, target)) {
+                return Math.min(1L << i, max.get());
+            }
+        }
+        return max.get();
+    }
+
+    private static int bucketOf(long micros) {
+        // Bucket 0 holds sub-microsecond latencies
+        int bucket = 64 - Long.numberOfLeadingZeros(micros);
+        return Math.min(bucket, BUCKETS - 1);
+    }
+}
@@ -0,0 +1,322 @@
+package org.dsa.iot.dslink.util;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Scheduled thread pool that keeps metrics of its tasks and can bound the
+ * amount of tasks waiting to run. The latency of a task is the time from
+ * when it was due to when a thread started running it.
+ * <p>
+ * Only tasks passed to {@link #execute} count towards the bound, from
+ * their submission until a thread starts them. Delayed and periodic tasks
+ * share the queue but are never counted, rejected or evicted.
+ *
+ * @author Samuel Grenier
+ * @see Objects#getPool(ExecutorType)
+ */
+public class MonitoredThreadPool extends Objects.ScheduledThreadPool {
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram executionTime = new LatencyHistogram();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private volatile int maxQueued;
+    private volatile RejectionPolicy policy;
+
+    /**
+     * @param name   Prefix of the names of the threads.
+     * @param daemon Whether the threads are daemons.
+     * @param config Sizing and bounds of the pool.
+     */
+    public MonitoredThreadPool(String name, boolean daemon, ExecutorConfig config) {
+        super(config.getPoolSize(), newFactory(name, daemon));
+        configure(config);
+    }
+
+    /**
+     * Applies a configuration to the pool. Threads above the new pool size
+     * terminate once they are idle.
+     *
+     * @param config Sizing and bounds of the pool.
+     */
+    public void configure(ExecutorConfig config) {
+        if (config == null)
+            throw new NullPointerException("config");
+        setCorePoolSize(config.getPoolSize());
+        maxQueued = config.getMaxQueued();
+        policy = config.getRejectionPolicy();
+        RejectedExecutionHandler handler = policy.toHandler();
+        setRejectedExecutionHandler(new CountingHandler(handler));
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (command == null)
+            throw new NullPointerException("command");
+        int max = maxQueued;
+        if (max < 0) {
+            super.execute(command);
+            return;
+        }
+
+        if (waiting.incrementAndGet() > max) {
+            waiting.decrementAndGet();
+            if (policy != RejectionPolicy.DISCARD_OLDEST) {
+                getRejectedExecutionHandler().rejectedExecution(command, this);
+                return;
+            } else if (!evictOldest()) {
+                // Nothing waiting can make room, the new task goes instead
+                rejected.incrementAndGet();
+                return;
+            }
+            waiting.incrementAndGet();
+        }
+        super.execute(new Waiting(command));
+    }
+
+    /**
+     * @return Amount of tasks waiting to run, including delayed and
+     *         periodic tasks that aren't due yet.
+     */
+    public int getQueueDepth() {
+        return getQueue().size();
+    }
+
+    /**
+     * @return Amount of tasks passed to {@link #execute} that are waiting
+     *         for a thread.
+     */
+    public int getWaiting() {
+        return waiting.get();
+    }
+
+    /**
+     * @return Time tasks waited for a thread after being due.
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * @return Time tasks took to run.
+     */
+    public LatencyHistogram getExecutionTime() {
+        return executionTime;
+    }
+
+    /**
+     * @return Amount of tasks rejected because the queue was full or the
+     *         pool was shut down.
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    @Override
+    protected void beforeExecute(Thread t, Runnable r) {
+        super.beforeExecute(t, r);
+        if (r instanceof TimedTask) {
+            ((TimedTask<?>) r).leave();
+        }
+    }
+
+    @Override
+    protected <V> RunnableScheduledFuture<V> decorateTask(Runnable runnable,
+                                                          RunnableScheduledFuture<V> task) {
+        return new TimedTask<>(task, runnable instanceof Waiting);
+    }
+
+    @Override
+    protected <V> RunnableScheduledFuture<V> decorateTask(Callable<V> callable,
+                                                          RunnableScheduledFuture<V> task) {
+        return new TimedTask<>(task, false);
+    }
+
+    /**
+     * Drops the task passed to {@link #execute} that has waited the
+     * longest.
+     *
+     * @return Whether a task was dropped.
+     */
+    private boolean evictOldest() {
+        BlockingQueue<Runnable> queue = getQueue();
+        for (;;) {
+            TimedTask<?> oldest = null;
+            for (Runnable r : queue) {
+                if (!(r instanceof TimedTask)) {
+                    continue;
+                }
+                TimedTask<?> task = (TimedTask<?>) r;
+                if (task.counted && !task.left.get()
+                        && (oldest == null || task.compareTo(oldest) < 0)) {
+                    oldest = task;
+                }
+            }
+            if (oldest == null) {
+                return false;
+            } else if (queue.remove(oldest)) {
+                oldest.leave();
+                oldest.task.cancel(false);
+                rejected.incrementAndGet();
+                return true;
+            }
+            // Taken by a thread in the meantime, look again
+        }
+    }
+
+    private static ThreadFactory newFactory(final String name, final boolean daemon) {
+        return new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+                t.setDaemon(daemon);
+                return t;
+            }
+        };
+    }
+
+    /**
+     * Marks a task passed to {@link #execute} so it counts towards the
+     * bound of the queue.
+     */
+    private static class Waiting implements Runnable {
+
+        private final Runnable command;
+
+        Waiting(Runnable command) {
+            this.command = command;
+        }
+
+        @Override
+        public void run() {
+            command.run();
+        }
+    }
+
+    private class CountingHandler implements RejectedExecutionHandler {
+
+        private final RejectedExecutionHandler handler;
+
+        CountingHandler(RejectedExecutionHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            if (r instanceof TimedTask) {
+                // Rejected after being queued because the pool shut down
+                ((TimedTask<?>) r).leave();
+            }
+            rejected.incrementAndGet();
+            handler.rejectedExecution(r, executor);
+        }
+    }
+
+    /**
+     * Records the latency and execution time of the task it wraps.
+     */
+    private class TimedTask<V> implements RunnableScheduledFuture<V> {
+
+        private final RunnableScheduledFuture<V> task;
+        private final boolean counted;
+        private final AtomicBoolean left = new AtomicBoolean();
+        private volatile long due;
+
+        /**
+         * @param task    Task to wrap.
+         * @param counted Whether the task counts towards the bound.
+         */
+        TimedTask(RunnableScheduledFuture<V> task, boolean counted) {
+            this.task = task;
+            this.counted = counted;
+            this.due = System.nanoTime() + task.getDelay(TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Stops counting the task as waiting, once it started or left the
+         * queue.
+         */
+        void leave() {
+            if (counted && left.compareAndSet(false, true)) {
+                waiting.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void run() {
+            if (task.isCancelled()) {
+                task.run();
+                return;
+            }
+
+            long start = System.nanoTime();
+            latency.record(start - due);
+            try {
+                task.run();
+            } finally {
+                long end = System.nanoTime();
+                executionTime.record(end - start);
+                if (task.isPeriodic()) {
+                    due = end + task.getDelay(TimeUnit.NANOSECONDS);
+                }
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = task.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                leave();
+            }
+            if (cancelled && getRemoveOnCancelPolicy()) {
+                // The queue holds this wrapper rather than the task
+                remove(this);
+            }
+            return cancelled;
+        }
+
+        @Override
+        public boolean isPeriodic() {
+            return task.isPeriodic();
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return task.isCancelled();
+        }
+
+        @Override
+        public boolean isDone() {
+            return task.isDone();
+        }
+
+        @Override
+        public V get() throws InterruptedException, ExecutionException {
+            return task.get();
+        }
+
+        @Override
+        public V get(long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            return task.get(timeout, unit);
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return task.getDelay(unit);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            if (o instanceof TimedTask) {
+                return task.compareTo(((TimedTask<?>) o).task);
+            }
+            return task.compareTo(o);
+        }
+    }
+}
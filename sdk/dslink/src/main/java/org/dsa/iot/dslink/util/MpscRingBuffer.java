@@ -0,0 +1,152 @@
+package org.dsa.iot.dslink.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue that any number of threads can offer to while a
+ * single thread at a time polls from it. Every slot carries a sequence
+ * number so producers can claim a slot with a single CAS and publish it
+ * without blocking each other or the consumer.
+ * <p>
+ * Every element can be offered along with a stamp, such as the time it was
+ * offered, which the consumer reads through {@link #peekStamp()}.
+ *
+ * @param <E> Type of the elements in the queue.
+ * @author Samuel Grenier
+ */
+public class MpscRingBuffer<E> {
+
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final long[] stamps;
+    private final int mask;
+
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    /**
+     * @param capacity Minimum capacity of the queue, rounded up to the next
+     *                 power of two.
+     */
+    public MpscRingBuffer(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("capacity");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.mask = size - 1;
+        this.elements = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        this.stamps = new long[size];
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds an element to the queue. Safe to call from any thread.
+     *
+     * @param element Element to add.
+     * @return Whether the element was added, {@code false} if the queue is
+     *         full.
+     */
+    public boolean offer(E element) {
+        return offer(element, 0);
+    }
+
+    /**
+     * Adds an element along with a stamp to the queue. Safe to call from
+     * any thread.
+     *
+     * @param element Element to add.
+     * @param stamp   Stamp of the element.
+     * @return Whether the element was added, {@code false} if the queue is
+     *         full.
+     */
+    public boolean offer(E element, long stamp) {
+        if (element == null)
+            throw new NullPointerException("element");
+        for (;;) {
+            long t = tail.get();
+            int index = (int) t & mask;
+            long diff = sequences.get(index) - t;
+            if (diff == 0) {
+                if (tail.compareAndSet(t, t + 1)) {
+                    stamps[index] = stamp;
+                    elements.lazySet(index, element);
+                    // Publishes the element to the consumer
+                    sequences.set(index, t + 1);
+                    return true;
+                }
+            } else if (diff < 0) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest element of the queue. Must only be called by one
+     * thread at a time.
+     *
+     * @return The oldest element or {@code null} if the queue is empty.
+     */
+    public E poll() {
+        long h = head;
+        int index = (int) h & mask;
+        if (sequences.get(index) != h + 1) {
+            return null;
+        }
+        E element = elements.get(index);
+        elements.lazySet(index, null);
+        // Frees the slot for the producers once it wraps around
+        sequences.set(index, h + mask + 1);
+        head = h + 1;
+        return element;
+    }
+
+    /**
+     * Reads the stamp of the element the next {@link #poll()} returns.
+     * Must only be called by the polling thread.
+     *
+     * @return Stamp of the oldest element or {@code 0} if the queue is
+     *         empty.
+     */
+    public long peekStamp() {
+        long h = head;
+        int index = (int) h & mask;
+        if (sequences.get(index) != h + 1) {
+            return 0;
+        }
+        return stamps[index];
+    }
+
+    /**
+     * Whether an element is ready to be polled. Elements that are still
+     * being published by a producer are not considered.
+     *
+     * @return Whether the queue is empty.
+     */
+    public boolean isEmpty() {
+        long h = head;
+        return sequences.get((int) h & mask) != h + 1;
+    }
+
+    /**
+     * @return Approximate amount of elements in the queue.
+     */
+    public int size() {
+        long size = tail.get() - head;
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    /**
+     * @return Maximum amount of elements in the queue.
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+}
@@ -4,6 +4,7 @@ import org.vertx.java.core.Vertx;
 import org.vertx.java.core.VertxFactory;
 
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Miscellaneous global fields.
@@ -12,50 +13,146 @@ import java.util.concurrent.*;
  */
 public class Objects {
 
-    private static final int POOL_SIZE = 32;
     private static final Vertx VERTX;
+    private static final AtomicReferenceArray<ScheduledThreadPoolExecutor> POOLS;
+    private static final ExecutorConfig[] CONFIGS;
 
-    private static volatile ScheduledThreadPoolExecutor THREAD_POOL;
-    private static volatile ScheduledThreadPoolExecutor DAEMON_THREAD_POOL;
+    private static volatile HashedWheelTimer TIMER;
 
     public static Vertx getVertx() {
         return VERTX;
     }
 
-    public static ScheduledThreadPoolExecutor getThreadPool() {
-        if (THREAD_POOL == null) {
-            THREAD_POOL = new ScheduledThreadPool(POOL_SIZE);
+    /**
+     * Gets the pool of a purpose, which is created on first use. Pools
+     * created by the SDK are {@link MonitoredThreadPool}s.
+     *
+     * @param type Purpose of the pool.
+     * @return Pool of the purpose.
+     */
+    public static ScheduledThreadPoolExecutor getPool(ExecutorType type) {
+        if (type == null)
+            throw new NullPointerException("type");
+        int i = type.ordinal();
+        ScheduledThreadPoolExecutor pool = POOLS.get(i);
+        if (pool == null) {
+            synchronized (CONFIGS) {
+                pool = POOLS.get(i);
+                if (pool == null) {
+                    ExecutorConfig config = CONFIGS[i];
+                    if (config == null) {
+                        config = ExecutorConfig.defaultOf(type);
+                    }
+                    String name = "dslink-" + type.name().toLowerCase();
+                    pool = new MonitoredThreadPool(name, type.isDaemon(), config);
+                    POOLS.set(i, pool);
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Replaces the pool of a purpose. The previous pool is not shut down.
+     *
+     * @param type Purpose of the pool.
+     * @param stpe Pool to use, or {@code null} to create a new one on
+     *             next use.
+     */
+    public static void setPool(ExecutorType type, ScheduledThreadPoolExecutor stpe) {
+        if (type == null)
+            throw new NullPointerException("type");
+        synchronized (CONFIGS) {
+            POOLS.set(type.ordinal(), stpe);
+        }
+    }
+
+    /**
+     * Configures the pool of a purpose. A pool that already exists is
+     * reconfigured in place.
+     *
+     * @param type   Purpose of the pool.
+     * @param config Configuration of the pool.
+     */
+    public static void setExecutorConfig(ExecutorType type, ExecutorConfig config) {
+        if (type == null)
+            throw new NullPointerException("type");
+        else if (config == null)
+            throw new NullPointerException("config");
+        synchronized (CONFIGS) {
+            int i = type.ordinal();
+            CONFIGS[i] = config;
+            ScheduledThreadPoolExecutor pool = POOLS.get(i);
+            if (pool instanceof MonitoredThreadPool) {
+                ((MonitoredThreadPool) pool).configure(config);
+            }
+        }
+    }
+
+    /**
+     * Gets an executor that hands its tasks to the pool of a purpose. The
+     * pool is looked up on every task in case it is replaced.
+     *
+     * @param type Purpose of the pool.
+     * @return Executor of the purpose.
+     */
+    public static Executor getExecutor(final ExecutorType type) {
+        if (type == null)
+            throw new NullPointerException("type");
+        return new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                getPool(type).execute(command);
+            }
+        };
+    }
+
+    /**
+     * Gets the timer for large amounts of delayed and periodic tasks. The
+     * tasks run on the {@link ExecutorType#TIMER} pool unless they are
+     * scheduled with an executor of their own.
+     *
+     * @return Shared timer, created on first use.
+     */
+    public static HashedWheelTimer getTimer() {
+        HashedWheelTimer timer = TIMER;
+        if (timer == null) {
+            synchronized (CONFIGS) {
+                timer = TIMER;
+                if (timer == null) {
+                    Executor executor = getExecutor(ExecutorType.TIMER);
+                    timer = new HashedWheelTimer("dslink-wheel", executor);
+                    TIMER = timer;
+                }
+            }
         }
-        return THREAD_POOL;
+        return timer;
+    }
+
+    /**
+     * @return Pool of action handlers and user callbacks.
+     * @see ExecutorType#ACTION
+     */
+    public static ScheduledThreadPoolExecutor getThreadPool() {
+        return getPool(ExecutorType.ACTION);
     }
 
     @SuppressWarnings("unused")
     public static void setThreadPool(ScheduledThreadPoolExecutor stpe) {
-        THREAD_POOL = stpe;
+        setPool(ExecutorType.ACTION, stpe);
     }
 
+    /**
+     * @return Pool of network callbacks.
+     * @see ExecutorType#IO
+     */
     public static ScheduledThreadPoolExecutor getDaemonThreadPool() {
-        if (DAEMON_THREAD_POOL == null) {
-            ThreadFactory factory = getDaemonFactory();
-            DAEMON_THREAD_POOL = new ScheduledThreadPool(POOL_SIZE, factory);
-        }
-        return DAEMON_THREAD_POOL;
+        return getPool(ExecutorType.IO);
     }
 
     @SuppressWarnings("unused")
     public static void setDaemonThreadPool(ScheduledThreadPoolExecutor stpe) {
-        DAEMON_THREAD_POOL = stpe;
-    }
-
-    private static ThreadFactory getDaemonFactory() {
-        return new ThreadFactory() {
-            @Override
-            public Thread newThread(Runnable r) {
-                Thread t = new Thread(r);
-                t.setDaemon(true);
-                return t;
-            }
-        };
+        setPool(ExecutorType.IO, stpe);
     }
 
     protected static class ScheduledThreadPool extends ScheduledThreadPoolExecutor {
@@ -95,5 +192,8 @@ public class Objects {
 
     static {
         VERTX = VertxFactory.newVertx();
+        int types = ExecutorType.values().length;
+        POOLS = new AtomicReferenceArray<>(types);
+        CONFIGS = new ExecutorConfig[types];
     }
 }
@@ -0,0 +1,54 @@
+package org.dsa.iot.dslink.util;
+
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Determines what happens to a task submitted to a pool whose queue is
+ * full or that was shut down.
+ *
+ * @author Samuel Grenier
+ * @see ExecutorConfig#setRejectionPolicy
+ */
+public enum RejectionPolicy {
+
+    /**
+     * A {@link java.util.concurrent.RejectedExecutionException} is thrown
+     * to the submitter.
+     */
+    ABORT,
+
+    /**
+     * The task runs on the thread of the submitter, which slows down
+     * submitters until the pool catches up.
+     */
+    CALLER_RUNS,
+
+    /**
+     * The task is silently dropped.
+     */
+    DISCARD,
+
+    /**
+     * The task that waited the longest is dropped to make room. Delayed
+     * and periodic tasks are never dropped, if none of the waiting tasks
+     * can be dropped the new task is.
+     */
+    DISCARD_OLDEST;
+
+    /**
+     * @return Handler of the JDK implementing the policy.
+     */
+    public RejectedExecutionHandler toHandler() {
+        switch (this) {
+            case CALLER_RUNS:
+                return new ThreadPoolExecutor.CallerRunsPolicy();
+            case DISCARD:
+                return new ThreadPoolExecutor.DiscardPolicy();
+            case DISCARD_OLDEST:
+                return new ThreadPoolExecutor.DiscardOldestPolicy();
+            default:
+                return new ThreadPoolExecutor.AbortPolicy();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package org.dsa.iot.dslink.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs tasks of the same key one at a time in the order they were
+ * submitted, while tasks of different keys run in parallel. Keys are
+ * hashed into a fixed amount of stripes, each stripe draining its queue
+ * on the backing executor. Keys sharing a stripe are ordered relative to
+ * each other as well.
+ *
+ * @author Samuel Grenier
+ */
+public class StripedExecutor {
+
+    /**
+     * Maximum amount of tasks a stripe runs before yielding its thread to
+     * other stripes.
+     */
+    public static final int MAX_DRAIN = 64;
+
+    private static final Logger LOGGER;
+
+    private final Executor executor;
+    private final Stripe[] stripes;
+    private final int mask;
+
+    /**
+     * Creates an executor with four stripes per available processor.
+     *
+     * @param executor Executor the stripes are drained on.
+     */
+    public StripedExecutor(Executor executor) {
+        this(executor, Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    /**
+     * @param executor Executor the stripes are drained on.
+     * @param stripes  Amount of stripes, rounded up to a power of two.
+     */
+    public StripedExecutor(Executor executor, int stripes) {
+        if (executor == null)
+            throw new NullPointerException("executor");
+        else if (stripes <= 0 || stripes > (1 << 16))
+            throw new IllegalArgumentException("stripes");
+
+        int size = 1;
+        while (size < stripes) {
+            size <<= 1;
+        }
+        this.executor = executor;
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new Stripe();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * @return Amount of stripes.
+     */
+    public int getStripes() {
+        return stripes.length;
+    }
+
+    /**
+     * Runs a task after every task previously submitted with the same key.
+     *
+     * @param key  Key to order the task by, such as a sid or a path.
+     * @param task Task to run.
+     */
+    public void execute(Object key, Runnable task) {
+        if (key == null)
+            throw new NullPointerException("key");
+        execute(key.hashCode(), task);
+    }
+
+    /**
+     * Runs a task after every task previously submitted with the same key.
+     *
+     * @param key  Key to order the task by.
+     * @param task Task to run.
+     */
+    public void execute(int key, Runnable task) {
+        if (task == null)
+            throw new NullPointerException("task");
+        // Spreads keys that only differ in their high bits
+        int h = key ^ (key >>> 16);
+        stripes[h & mask].add(task);
+    }
+
+    /**
+     * @return Amount of tasks waiting to run across all stripes.
+     */
+    public int getQueued() {
+        int queued = 0;
+        for (Stripe s : stripes) {
+            queued += s.tasks.size();
+        }
+        return queued;
+    }
+
+    private class Stripe implements Runnable {
+
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        void add(Runnable task) {
+            tasks.add(task);
+            schedule();
+        }
+
+        private void schedule() {
+            if (!scheduled.get() && scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this);
+                } catch (RuntimeException e) {
+                    scheduled.set(false);
+                    throw e;
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int i = 0; i < MAX_DRAIN; i++) {
+                    Runnable task = tasks.poll();
+                    if (task == null) {
+                        break;
+                    }
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        LOGGER.error("Striped task failed", e);
+                    }
+                }
+            } finally {
+                scheduled.set(false);
+            }
+
+            // Tasks added while draining didn't schedule the stripe
+            if (!tasks.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+
+    static {
+        LOGGER = LoggerFactory.getLogger(StripedExecutor.class);
+    }
+}
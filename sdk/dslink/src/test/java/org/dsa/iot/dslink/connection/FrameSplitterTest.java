@@ -0,0 +1,176 @@
+package org.dsa.iot.dslink.connection;
+
+import org.dsa.iot.dslink.connection.codec.JsonWriter;
+import org.dsa.iot.dslink.connection.codec.MsgPackCodec;
+import org.dsa.iot.dslink.connection.codec.MsgPackWriter;
+import org.dsa.iot.dslink.node.ValueUpdate;
+import org.dsa.iot.dslink.node.value.Value;
+import org.junit.Assert;
+import org.junit.Test;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests splitting batches of messages across frames.
+ *
+ * @author Samuel Grenier
+ */
+public class FrameSplitterTest {
+
+    @Test
+    public void unlimited() {
+        List<JsonObject> frames = write(new JsonWriter(), 0, groups());
+        Assert.assertEquals(1, frames.size());
+        Assert.assertEquals(3, frames.get(0).getArray("responses").size());
+    }
+
+    /**
+     * Ensures messages are split across frames in order.
+     */
+    @Test
+    public void betweenMessages() {
+        List<JsonObject> frames = write(new JsonWriter(), 1, groups());
+        Assert.assertEquals(3, frames.size());
+        for (int i = 0; i < 3; i++) {
+            JsonArray resps = frames.get(i).getArray("responses");
+            Assert.assertEquals(1, resps.size());
+            JsonObject resp = resps.get(0);
+            Assert.assertEquals(i + 1, (int) resp.getInteger("rid"));
+        }
+    }
+
+    /**
+     * Ensures a single oversized message is continued in the next frames
+     * and the stream state is only sent with the last chunk.
+     */
+    @Test
+    public void chunked() {
+        JsonArray updates = new JsonArray();
+        for (int i = 0; i < 100; i++) {
+            updates.addArray(new JsonArray().addNumber(i).addString("value"));
+        }
+        JsonObject obj = new JsonObject();
+        obj.putNumber("rid", 5);
+        obj.putString("stream", "closed");
+        obj.putArray("updates", updates);
+
+        MessageGroup group = new MessageGroup(5);
+        group.add(new JsonMessage(obj));
+        List<MessageGroup> groups = new ArrayList<>();
+        groups.add(group);
+
+        List<JsonObject> frames = write(new MsgPackWriter(), 200, groups);
+        Assert.assertTrue(frames.size() > 1);
+
+        int rows = 0;
+        for (int i = 0; i < frames.size(); i++) {
+            JsonArray resps = frames.get(i).getArray("responses");
+            Assert.assertEquals(1, resps.size());
+            JsonObject resp = resps.get(0);
+            Assert.assertEquals(5, (int) resp.getInteger("rid"));
+
+            boolean last = i == frames.size() - 1;
+            Assert.assertEquals(last, resp.containsField("stream"));
+
+            JsonArray chunk = resp.getArray("updates");
+            if (chunk != null) {
+                for (Object row : chunk) {
+                    Number n = (Number) ((JsonArray) row).get(0);
+                    Assert.assertEquals(rows++, n.intValue());
+                }
+            }
+        }
+        Assert.assertEquals(100, rows);
+    }
+
+    /**
+     * Ensures fields such as the columns of a table are sent with the first
+     * chunk of a split message while the stream state waits for the last.
+     */
+    @Test
+    public void chunkedColumns() {
+        JsonArray updates = new JsonArray();
+        for (int i = 0; i < 100; i++) {
+            updates.addArray(new JsonArray().addNumber(i));
+        }
+        JsonArray columns = new JsonArray();
+        columns.addObject(new JsonObject().putString("name", "n").putString("type", "int"));
+        JsonObject obj = new JsonObject();
+        obj.putNumber("rid", 6);
+        obj.putArray("columns", columns);
+        obj.putString("stream", "closed");
+        obj.putArray("updates", updates);
+
+        MessageGroup group = new MessageGroup(6);
+        group.add(new JsonMessage(obj));
+        List<MessageGroup> groups = new ArrayList<>();
+        groups.add(group);
+
+        List<JsonObject> frames = write(new JsonWriter(), 200, groups);
+        Assert.assertTrue(frames.size() > 1);
+        for (int i = 0; i < frames.size(); i++) {
+            JsonObject resp = frames.get(i).getArray("responses").get(0);
+            Assert.assertEquals(i == 0, resp.containsField("columns"));
+            Assert.assertEquals(i == frames.size() - 1, resp.containsField("stream"));
+        }
+        JsonObject first = frames.get(0).getArray("responses").get(0);
+        Assert.assertEquals(1, first.getArray("columns").size());
+        Assert.assertNotNull(first.getArray("updates"));
+    }
+
+    /**
+     * Ensures no empty chunk is sent when the split happens on the last
+     * row of a message.
+     */
+    @Test
+    public void splitOnLastRow() {
+        MessageGroup group = new MessageGroup(0);
+        group.add(new ValueUpdate(1, new Value(1)));
+        List<MessageGroup> groups = new ArrayList<>();
+        groups.add(group);
+
+        List<JsonObject> frames = write(new JsonWriter(), 1, groups);
+        Assert.assertEquals(1, frames.size());
+    }
+
+    private static List<MessageGroup> groups() {
+        List<MessageGroup> groups = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            JsonObject obj = new JsonObject();
+            obj.putNumber("rid", i);
+            obj.putString("stream", "open");
+            MessageGroup group = new MessageGroup(i);
+            group.add(new JsonMessage(obj));
+            groups.add(group);
+        }
+        return groups;
+    }
+
+    private static List<JsonObject> write(final StreamWriter writer,
+                                          int maxSize,
+                                          List<MessageGroup> groups) {
+        final List<JsonObject> frames = new ArrayList<>();
+        FrameSplitter splitter = new FrameSplitter(writer, "responses", maxSize,
+                new Handler<StreamWriter>() {
+                    @Override
+                    public void handle(StreamWriter event) {
+                        if (event instanceof MsgPackWriter) {
+                            MsgPackCodec codec = new MsgPackCodec();
+                            frames.add(codec.decode(event.toBuffer()));
+                        } else {
+                            frames.add(new JsonObject(event.toString()));
+                        }
+                    }
+                });
+        splitter.begin();
+        for (MessageGroup group : groups) {
+            group.write(splitter);
+        }
+        splitter.end();
+        return frames;
+    }
+}
@@ -0,0 +1,533 @@
+package org.dsa.iot.dslink.connection;
+
+import org.dsa.iot.dslink.node.ValueUpdate;
+import org.dsa.iot.dslink.node.value.Value;
+import org.junit.Assert;
+import org.junit.Test;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests posting messages from multiple threads.
+ *
+ * @author Samuel Grenier
+ */
+public class IntervalUpdateManagerTest {
+
+    @Test
+    public void producers() throws InterruptedException {
+        final int producers = 4;
+        final int count = 10000;
+        final int total = producers * count;
+
+        final AtomicInteger received = new AtomicInteger();
+        final AtomicInteger flushing = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(1);
+        final IntervalUpdateManager manager = new IntervalUpdateManager(5, 256,
+                new Handler<Collection<MessageGroup>>() {
+                    @Override
+                    public void handle(Collection<MessageGroup> event) {
+                        Assert.assertEquals(1, flushing.incrementAndGet());
+                        for (MessageGroup group : event) {
+                            int size = group.getMessages().size();
+                            if (received.addAndGet(size) == total) {
+                                done.countDown();
+                            }
+                        }
+                        flushing.decrementAndGet();
+                    }
+                });
+
+        for (int p = 0; p < producers; p++) {
+            Thread t = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < count; i++) {
+                        manager.post(new ValueUpdate(i, null));
+                    }
+                }
+            });
+            t.setDaemon(true);
+            t.start();
+        }
+
+        Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+        Assert.assertEquals(total, received.get());
+    }
+
+    /**
+     * Ensures messages posted within the update interval are flushed
+     * together and grouped by rid, the interactive response ahead of the
+     * subscription updates.
+     */
+    @Test
+    public void groupsByRid() throws InterruptedException {
+        final BlockingQueue<List<MessageGroup>> flushes = new LinkedBlockingQueue<>();
+        IntervalUpdateManager manager = new IntervalUpdateManager(200,
+                new Handler<Collection<MessageGroup>>() {
+                    @Override
+                    public void handle(Collection<MessageGroup> event) {
+                        flushes.add(new ArrayList<>(event));
+                    }
+                });
+
+        JsonObject resp = new JsonObject();
+        resp.putNumber("rid", 2);
+        OutboundMessage first = new ValueUpdate(1, null);
+        OutboundMessage second = new JsonMessage(resp);
+        OutboundMessage third = new ValueUpdate(2, null);
+
+        // The first flush is immediate and starts the interval
+        manager.post(new ValueUpdate(0, null));
+        Assert.assertNotNull(flushes.poll(5, TimeUnit.SECONDS));
+
+        manager.post(first);
+        manager.post(second);
+        manager.post(third);
+
+        List<MessageGroup> groups = flushes.poll(5, TimeUnit.SECONDS);
+        Assert.assertNotNull(groups);
+        Assert.assertEquals(2, groups.size());
+        Assert.assertEquals(2, groups.get(0).getRid());
+        Assert.assertEquals(0, groups.get(1).getRid());
+        Assert.assertEquals(2, groups.get(1).getMessages().size());
+    }
+
+    /**
+     * Ensures the groups of a flush are ordered in weighted rounds of their
+     * lanes and the time spent queued is recorded for each lane.
+     */
+    @Test
+    public void lanes() throws InterruptedException {
+        final BlockingQueue<List<MessageGroup>> flushes = new LinkedBlockingQueue<>();
+        IntervalUpdateManager manager = new IntervalUpdateManager(200,
+                new Handler<Collection<MessageGroup>>() {
+                    @Override
+                    public void handle(Collection<MessageGroup> event) {
+                        flushes.add(new ArrayList<>(event));
+                    }
+                });
+
+        List<OutboundMessage> messages = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) {
+            // Streaming table results
+            JsonObject table = new JsonObject();
+            table.putNumber("rid", i);
+            table.putString("stream", "open");
+            table.putArray("updates", new JsonArray());
+            messages.add(new JsonMessage(table));
+        }
+        for (int i = 5; i <= 14; i++) {
+            JsonObject close = new JsonObject();
+            close.putNumber("rid", i);
+            close.putString("stream", "closed");
+            messages.add(new JsonMessage(close));
+        }
+        messages.add(new ValueUpdate(1, null));
+
+        manager.post(new ValueUpdate(0, null));
+        Assert.assertNotNull(flushes.poll(5, TimeUnit.SECONDS));
+        manager.post(messages);
+
+        List<MessageGroup> groups = flushes.poll(5, TimeUnit.SECONDS);
+        Assert.assertNotNull(groups);
+        Assert.assertEquals(15, groups.size());
+
+        OutboundLane[] expected = new OutboundLane[15];
+        for (int i = 0; i < 8; i++) {
+            expected[i] = OutboundLane.CONTROL;
+        }
+        expected[8] = OutboundLane.SUBSCRIPTION;
+        expected[9] = OutboundLane.BULK;
+        expected[10] = OutboundLane.CONTROL;
+        expected[11] = OutboundLane.CONTROL;
+        for (int i = 12; i < 15; i++) {
+            expected[i] = OutboundLane.BULK;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            Assert.assertEquals(expected[i], groups.get(i).getLane());
+        }
+        Assert.assertEquals(1, groups.get(9).getRid());
+        Assert.assertEquals(4, groups.get(14).getRid());
+
+        OutboundStats stats = manager.getStats();
+        Assert.assertEquals(10, stats.getLatency(OutboundLane.CONTROL).getCount());
+        Assert.assertEquals(4, stats.getLatency(OutboundLane.BULK).getCount());
+        Assert.assertEquals(2, stats.getLatency(OutboundLane.SUBSCRIPTION).getCount());
+        Assert.assertEquals(0, stats.getLatency(OutboundLane.INTERACTIVE).getCount());
+    }
+
+    /**
+     * Ensures only the latest update of each sid is held back while the
+     * client can't keep up.
+     */
+    @Test
+    public void keepLatest() throws InterruptedException {
+        TestClient client = new TestClient();
+        BlockingQueue<List<MessageGroup>> flushes = new LinkedBlockingQueue<>();
+        IntervalUpdateManager manager = create(client, flushes);
+        manager.setBackpressure(BackpressurePolicy.KEEP_LATEST, 1 << 20);
+
+        client.writable = false;
+        for (int i = 0; i < 100; i++) {
+            manager.post(new ValueUpdate(i % 10, new Value(i)));
+        }
+
+        OutboundStats stats = manager.getStats();
+        await(stats, 10, 90);
+        Assert.assertTrue(stats.getQueuedBytes() > 0);
+        Assert.assertTrue(flushes.isEmpty());
+
+        client.writable = true;
+        manager.resume();
+        List<OutboundMessage> messages = poll(flushes).get(0).getMessages();
+        Assert.assertEquals(10, messages.size());
+        ValueUpdate update = (ValueUpdate) messages.get(0);
+        Assert.assertEquals(0, update.getSid());
+        Assert.assertEquals(90, update.getValue().getNumber().intValue());
+        Assert.assertEquals(0, stats.getQueuedMessages());
+        Assert.assertEquals(0, stats.getQueuedBytes());
+    }
+
+    /**
+     * Ensures the oldest updates are dropped past the high watermark while
+     * other responses are kept.
+     */
+    @Test
+    public void dropOldest() throws InterruptedException {
+        TestClient client = new TestClient();
+        BlockingQueue<List<MessageGroup>> flushes = new LinkedBlockingQueue<>();
+        IntervalUpdateManager manager = create(client, flushes);
+        manager.setBackpressure(BackpressurePolicy.DROP_OLDEST, 64);
+
+        JsonObject resp = new JsonObject();
+        resp.putNumber("rid", 1);
+        resp.putString("stream", "closed");
+
+        client.writable = false;
+        manager.post(new JsonMessage(resp));
+        for (int i = 0; i < 10; i++) {
+            manager.post(new ValueUpdate(i, null));
+        }
+
+        // The response and the last two updates fit in the high watermark
+        OutboundStats stats = manager.getStats();
+        await(stats, 3, 8);
+        Assert.assertTrue(stats.getQueuedBytes() <= 64);
+
+        client.writable = true;
+        manager.resume();
+        List<MessageGroup> groups = poll(flushes);
+        Assert.assertEquals(2, groups.size());
+        Assert.assertEquals(1, groups.get(0).getRid());
+        List<OutboundMessage> updates = groups.get(1).getMessages();
+        Assert.assertEquals(2, updates.size());
+        Assert.assertEquals(8, ((ValueUpdate) updates.get(0)).getSid());
+        Assert.assertEquals(9, ((ValueUpdate) updates.get(1)).getSid());
+    }
+
+    /**
+     * Ensures producers wait while the held back messages are at the high
+     * watermark.
+     */
+    @Test
+    public void block() throws InterruptedException {
+        final TestClient client = new TestClient();
+        final BlockingQueue<List<MessageGroup>> flushes = new LinkedBlockingQueue<>();
+        final IntervalUpdateManager manager = new IntervalUpdateManager(1, 4,
+                new OutboundStats(), new Handler<Collection<MessageGroup>>() {
+                    @Override
+                    public void handle(Collection<MessageGroup> event) {
+                        flushes.add(new ArrayList<>(event));
+                    }
+                });
+        manager.setClient(client);
+        manager.setBackpressure(BackpressurePolicy.BLOCK, 32);
+
+        client.writable = false;
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 20; i++) {
+                    manager.post(new ValueUpdate(i, null));
+                }
+            }
+        });
+        producer.setDaemon(true);
+        producer.start();
+
+        producer.join(200);
+        Assert.assertTrue(producer.isAlive());
+
+        client.writable = true;
+        manager.resume();
+        producer.join(5000);
+        Assert.assertFalse(producer.isAlive());
+
+        int received = 0;
+        while (received < 20) {
+            for (MessageGroup group : poll(flushes)) {
+                received += group.getMessages().size();
+            }
+        }
+        Assert.assertEquals(20, received);
+        Assert.assertEquals(0, manager.getStats().getDroppedUpdates());
+    }
+
+    /**
+     * Ensures responses that can't be dropped are bounded by the high
+     * watermark under a lossy policy by making the producers wait.
+     */
+    @Test
+    public void lossyBounded() throws InterruptedException {
+        final TestClient client = new TestClient();
+        final BlockingQueue<List<MessageGroup>> flushes = new LinkedBlockingQueue<>();
+        final IntervalUpdateManager manager = new IntervalUpdateManager(1, 4,
+                new OutboundStats(), new Handler<Collection<MessageGroup>>() {
+                    @Override
+                    public void handle(Collection<MessageGroup> event) {
+                        flushes.add(new ArrayList<>(event));
+                    }
+                });
+        manager.setClient(client);
+        manager.setBackpressure(BackpressurePolicy.DROP_OLDEST, 64);
+
+        client.writable = false;
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 1; i <= 20; i++) {
+                    JsonObject resp = new JsonObject();
+                    resp.putNumber("rid", i);
+                    resp.putString("stream", "closed");
+                    manager.post(new JsonMessage(resp));
+                }
+            }
+        });
+        producer.setDaemon(true);
+        producer.start();
+
+        producer.join(200);
+        Assert.assertTrue(producer.isAlive());
+        OutboundStats stats = manager.getStats();
+        Assert.assertTrue(stats.getQueuedMessages() < 20);
+        Assert.assertTrue(stats.getQueuedBytes() < 128);
+
+        client.writable = true;
+        manager.resume();
+        producer.join(5000);
+        Assert.assertFalse(producer.isAlive());
+
+        int received = 0;
+        while (received < 20) {
+            received += poll(flushes).size();
+        }
+        Assert.assertEquals(20, received);
+        Assert.assertEquals(0, stats.getDroppedUpdates());
+    }
+
+    /**
+     * Ensures held messages of rid 0 are written in the order they were
+     * posted, whether they are subscription updates or not.
+     */
+    @Test
+    public void heldOrder() throws InterruptedException {
+        TestClient client = new TestClient();
+        BlockingQueue<List<MessageGroup>> flushes = new LinkedBlockingQueue<>();
+        IntervalUpdateManager manager = create(client, flushes);
+        manager.setBackpressure(BackpressurePolicy.DROP_OLDEST, 1 << 20);
+
+        JsonObject resp = new JsonObject();
+        resp.putNumber("rid", 0);
+        resp.putString("stream", "open");
+
+        client.writable = false;
+        manager.post(new ValueUpdate(0, null));
+        manager.post(new JsonMessage(resp));
+        manager.post(new ValueUpdate(1, null));
+        await(manager.getStats(), 3, 0);
+
+        client.writable = true;
+        manager.resume();
+        List<MessageGroup> groups = poll(flushes);
+        Assert.assertEquals(1, groups.size());
+        List<OutboundMessage> messages = groups.get(0).getMessages();
+        Assert.assertEquals(3, messages.size());
+        Assert.assertEquals(0, ((ValueUpdate) messages.get(0)).getSid());
+        Assert.assertTrue(messages.get(1) instanceof JsonMessage);
+        Assert.assertEquals(1, ((ValueUpdate) messages.get(2)).getSid());
+    }
+
+    /**
+     * Ensures messages are discarded and counted while disconnected.
+     */
+    @Test
+    public void disconnected() throws InterruptedException {
+        TestClient client = new TestClient();
+        BlockingQueue<List<MessageGroup>> flushes = new LinkedBlockingQueue<>();
+        IntervalUpdateManager manager = create(client, flushes);
+
+        client.connected = false;
+        manager.post(new ValueUpdate(0, null));
+        manager.post(new ValueUpdate(1, null));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (manager.getStats().getDiscardedMessages() < 2) {
+            Assert.assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+        Assert.assertTrue(flushes.isEmpty());
+    }
+
+    /**
+     * Ensures the adaptive interval grows while messages queue up within
+     * the target latency, shrinks once the target is exceeded and decays
+     * once there is nothing to batch, staying within its bounds.
+     */
+    @Test
+    public void adaptiveInterval() throws InterruptedException {
+        TestClient client = new TestClient();
+        BlockingQueue<List<MessageGroup>> flushes = new LinkedBlockingQueue<>();
+        IntervalUpdateManager manager = create(client, flushes);
+        manager.setAdaptiveInterval(0, 100, 20);
+        Assert.assertEquals(0, manager.getInterval());
+
+        List<OutboundMessage> batch = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            batch.add(new ValueUpdate(i, null));
+        }
+
+        // Posted after the interval elapsed so they are flushed right away
+        int interval = 0;
+        for (int i = 0; i < 50 && interval < 100; i++) {
+            Thread.sleep(interval + 5);
+            manager.post(batch);
+            poll(flushes);
+            int next = awaitChange(manager, interval);
+            Assert.assertTrue(next > interval);
+            interval = next;
+        }
+        Assert.assertEquals(100, interval);
+
+        // Posted right after a flush so they wait for the whole interval
+        manager.post(batch);
+        poll(flushes);
+        interval = awaitChange(manager, interval);
+        Assert.assertTrue("Interval of " + interval, interval < 50);
+
+        while (interval > 0) {
+            Thread.sleep(interval + 5);
+            manager.post(new ValueUpdate(0, null));
+            poll(flushes);
+            int next = awaitChange(manager, interval);
+            Assert.assertEquals(interval / 2, next);
+            interval = next;
+        }
+    }
+
+    /**
+     * Ensures held messages are retried at most once per tick while the
+     * client isn't writable, even without an interval.
+     */
+    @Test
+    public void unwritableNoSpin() throws InterruptedException {
+        final AtomicInteger checks = new AtomicInteger();
+        TestClient client = new TestClient() {
+            @Override
+            public boolean isWritable() {
+                checks.incrementAndGet();
+                return false;
+            }
+        };
+        BlockingQueue<List<MessageGroup>> flushes = new LinkedBlockingQueue<>();
+        IntervalUpdateManager manager = create(client, flushes);
+        manager.setAdaptiveInterval(0, 0);
+
+        manager.post(new ValueUpdate(0, null));
+        Thread.sleep(200);
+        Assert.assertEquals(1, manager.getStats().getQueuedMessages());
+        Assert.assertTrue("Checked " + checks.get() + " times", checks.get() < 100);
+    }
+
+    private static int awaitChange(IntervalUpdateManager manager,
+                                   int interval) throws InterruptedException {
+        // The interval adapts right after the callback returns
+        long deadline = System.currentTimeMillis() + 5000;
+        while (manager.getInterval() == interval) {
+            Assert.assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+        return manager.getInterval();
+    }
+
+    private static IntervalUpdateManager create(TestClient client,
+                                                final BlockingQueue<List<MessageGroup>> flushes) {
+        IntervalUpdateManager manager = new IntervalUpdateManager(1,
+                new Handler<Collection<MessageGroup>>() {
+                    @Override
+                    public void handle(Collection<MessageGroup> event) {
+                        flushes.add(new ArrayList<>(event));
+                    }
+                });
+        manager.setClient(client);
+        return manager;
+    }
+
+    private static List<MessageGroup> poll(BlockingQueue<List<MessageGroup>> flushes)
+                                                throws InterruptedException {
+        List<MessageGroup> groups = flushes.poll(5, TimeUnit.SECONDS);
+        Assert.assertNotNull(groups);
+        return groups;
+    }
+
+    private static void await(OutboundStats stats,
+                              long queued,
+                              long dropped) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (stats.getQueuedMessages() != queued
+                || stats.getDroppedUpdates() != dropped) {
+            Assert.assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private static class TestClient implements NetworkClient {
+
+        private volatile boolean connected = true;
+        private volatile boolean writable = true;
+
+        @Override
+        public void write(String data) {
+        }
+
+        @Override
+        public void write(Buffer data) {
+        }
+
+        @Override
+        public void close() {
+            connected = false;
+        }
+
+        @Override
+        public boolean isConnected() {
+            return connected;
+        }
+
+        @Override
+        public boolean isWritable() {
+            return writable;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package org.dsa.iot.dslink.connection;
+
+import org.dsa.iot.dslink.node.ValueUpdate;
+import org.dsa.iot.dslink.node.value.Value;
+import org.junit.Assert;
+import org.junit.Test;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests connecting data handlers in the same process.
+ *
+ * @author Samuel Grenier
+ */
+public class LoopbackClientTest {
+
+    /**
+     * Ensures requests reach the peer as the same object they were
+     * written as.
+     */
+    @Test
+    public void requestsByReference() throws InterruptedException {
+        DataHandler requester = new DataHandler(0);
+        DataHandler responder = new DataHandler(0);
+        LoopbackClient.connect(requester, responder);
+
+        BlockingQueue<MessageView> requests = new LinkedBlockingQueue<>();
+        BlockingQueue<MessageView> responses = new LinkedBlockingQueue<>();
+        responder.setReqHandler(collect(requests));
+        responder.setRespHandler(collect(responses));
+
+        JsonObject req = new JsonObject();
+        req.putNumber("rid", 1);
+        req.putString("method", "list");
+        req.putString("path", "/");
+        requester.writeRequest(req);
+
+        MessageView view = requests.poll(5, TimeUnit.SECONDS);
+        Assert.assertNotNull(view);
+        Assert.assertSame(req, view.toJson());
+        Assert.assertEquals("list", view.getMethod());
+        Assert.assertEquals("/", view.getPath());
+        Assert.assertTrue(responses.isEmpty());
+    }
+
+    /**
+     * Ensures updates written as objects reach the peer as the rows they
+     * would have been encoded as.
+     */
+    @Test
+    public void subscriptionUpdates() throws InterruptedException {
+        DataHandler requester = new DataHandler(0);
+        DataHandler responder = new DataHandler(0);
+        LoopbackClient.connect(requester, responder);
+
+        BlockingQueue<MessageView> responses = new LinkedBlockingQueue<>();
+        requester.setRespHandler(collect(responses));
+
+        responder.writeResponse(new ValueUpdate(3, new Value(7)));
+        MessageView view = responses.poll(5, TimeUnit.SECONDS);
+        Assert.assertNotNull(view);
+        Assert.assertEquals(Integer.valueOf(0), view.getRid());
+
+        JsonArray updates = view.toJson().getArray("updates");
+        Assert.assertEquals(1, updates.size());
+        JsonArray row = updates.get(0);
+        Assert.assertEquals(3, ((Number) row.get(0)).intValue());
+        Assert.assertEquals(7, ((Number) row.get(1)).intValue());
+        Assert.assertNotNull(row.get(2));
+    }
+
+    /**
+     * Ensures a link can be connected to itself.
+     */
+    @Test
+    public void toItself() throws InterruptedException {
+        DataHandler handler = new DataHandler(0);
+        handler.setClient(new LoopbackClient(handler));
+
+        BlockingQueue<MessageView> requests = new LinkedBlockingQueue<>();
+        BlockingQueue<MessageView> responses = new LinkedBlockingQueue<>();
+        handler.setReqHandler(collect(requests));
+        handler.setRespHandler(collect(responses));
+
+        JsonObject req = new JsonObject();
+        req.putNumber("rid", 2);
+        req.putString("method", "set");
+        handler.writeRequest(req);
+
+        JsonObject resp = new JsonObject();
+        resp.putNumber("rid", 2);
+        resp.putString("stream", "closed");
+        handler.writeResponse(resp);
+
+        Assert.assertSame(req, requests.poll(5, TimeUnit.SECONDS).toJson());
+        Assert.assertSame(resp, responses.poll(5, TimeUnit.SECONDS).toJson());
+    }
+
+    /**
+     * Ensures nothing is delivered once the loopback is closed.
+     */
+    @Test
+    public void closed() throws InterruptedException {
+        DataHandler requester = new DataHandler(0);
+        DataHandler responder = new DataHandler(0);
+        LoopbackClient client = new LoopbackClient(responder);
+        requester.setClient(client);
+        client.close();
+        Assert.assertFalse(client.isConnected());
+        Assert.assertFalse(client.isWritable());
+
+        BlockingQueue<MessageView> requests = new LinkedBlockingQueue<>();
+        responder.setReqHandler(collect(requests));
+
+        JsonObject req = new JsonObject();
+        req.putNumber("rid", 1);
+        requester.writeRequest(req);
+        Assert.assertNull(requests.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    private static Handler<List<MessageView>> collect(final BlockingQueue<MessageView> queue) {
+        return new Handler<List<MessageView>>() {
+            @Override
+            public void handle(List<MessageView> event) {
+                queue.addAll(event);
+            }
+        };
+    }
+}
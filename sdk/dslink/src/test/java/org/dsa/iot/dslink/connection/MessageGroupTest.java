@@ -0,0 +1,196 @@
+package org.dsa.iot.dslink.connection;
+
+import org.dsa.iot.dslink.connection.codec.JsonWriter;
+import org.dsa.iot.dslink.connection.codec.MsgPackCodec;
+import org.dsa.iot.dslink.connection.codec.MsgPackWriter;
+import org.dsa.iot.dslink.node.ValueUpdate;
+import org.dsa.iot.dslink.node.value.Value;
+import org.junit.Assert;
+import org.junit.Test;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+
+/**
+ * Tests writing groups of outbound messages.
+ *
+ * @author Samuel Grenier
+ */
+public class MessageGroupTest {
+
+    /**
+     * Ensures value updates with the same rid are written as one response.
+     */
+    @Test
+    public void valueUpdates() {
+        MessageGroup group = new MessageGroup(0);
+        group.add(new ValueUpdate(1, new Value(5)));
+        group.add(new ValueUpdate(2, null));
+
+        JsonWriter writer = new JsonWriter();
+        group.write(writer);
+
+        JsonObject obj = new JsonObject(writer.toString());
+        Assert.assertEquals(0, (int) obj.getInteger("rid"));
+
+        JsonArray updates = obj.getArray("updates");
+        Assert.assertEquals(2, updates.size());
+
+        JsonArray update = updates.get(0);
+        Assert.assertEquals(1, ((Number) update.get(0)).intValue());
+        Assert.assertEquals(5, ((Number) update.get(1)).intValue());
+        Assert.assertNotNull(update.get(2));
+
+        update = updates.get(1);
+        Assert.assertEquals(2, update.size());
+        Assert.assertNull(update.get(1));
+    }
+
+    /**
+     * Ensures JSON messages are merged and the latest fields win.
+     */
+    @Test
+    public void jsonMerge() {
+        JsonArray updates = new JsonArray();
+        updates.addArray(new JsonArray().addNumber(1));
+        JsonObject first = new JsonObject();
+        first.putNumber("rid", 3);
+        first.putString("stream", "open");
+        first.putArray("updates", updates);
+
+        updates = new JsonArray();
+        updates.addArray(new JsonArray().addNumber(2));
+        JsonObject second = new JsonObject();
+        second.putNumber("rid", 3);
+        second.putString("stream", "closed");
+        second.putArray("updates", updates);
+
+        MessageGroup group = new MessageGroup(3);
+        group.add(new JsonMessage(first));
+        group.add(new JsonMessage(second));
+        Assert.assertEquals(1, group.getMessages().size());
+
+        MsgPackWriter writer = new MsgPackWriter();
+        group.write(writer);
+
+        JsonObject obj = new MsgPackCodec().decode(writer.toBuffer());
+        Assert.assertEquals("closed", obj.getString("stream"));
+        Assert.assertEquals(2, obj.getArray("updates").size());
+    }
+
+    /**
+     * Ensures the fields of every message are kept when messages that
+     * can't be merged share a group.
+     */
+    @Test
+    public void fieldUnion() {
+        JsonObject first = new JsonObject();
+        first.putNumber("rid", 4);
+        first.putArray("columns", new JsonArray().addObject(new JsonObject()));
+        first.putString("stream", "open");
+
+        JsonObject last = new JsonObject();
+        last.putNumber("rid", 4);
+        last.putString("stream", "closed");
+
+        MessageGroup group = new MessageGroup(4);
+        group.add(new JsonMessage(first));
+        group.add(new RowMessage(4));
+        group.add(new JsonMessage(last));
+        Assert.assertEquals(3, group.getMessages().size());
+
+        JsonWriter writer = new JsonWriter();
+        group.write(writer);
+
+        JsonObject obj = new JsonObject(writer.toString());
+        Assert.assertEquals(1, obj.getArray("columns").size());
+        Assert.assertEquals("closed", obj.getString("stream"));
+        Assert.assertEquals(1, obj.getArray("updates").size());
+    }
+
+    /**
+     * Ensures only the latest update of each sid is kept.
+     */
+    @Test
+    public void coalesceLatest() {
+        MessageGroup group = new MessageGroup(0, UpdateCoalescing.LATEST);
+        group.add(new ValueUpdate(1, new Value(1)));
+        group.add(new ValueUpdate(2, new Value("a")));
+        group.add(new ValueUpdate(1, new Value(3)));
+        Assert.assertEquals(2, group.getMessages().size());
+
+        JsonWriter writer = new JsonWriter();
+        group.write(writer);
+
+        JsonArray updates = new JsonObject(writer.toString()).getArray("updates");
+        Assert.assertEquals(2, updates.size());
+        JsonArray update = updates.get(0);
+        Assert.assertEquals(1, ((Number) update.get(0)).intValue());
+        Assert.assertEquals(3, ((Number) update.get(1)).intValue());
+    }
+
+    /**
+     * Ensures replaced updates are rolled up into the latest update.
+     */
+    @Test
+    public void coalesceRollup() {
+        MessageGroup group = new MessageGroup(0, UpdateCoalescing.ROLLUP);
+        group.add(new ValueUpdate(1, new Value(4)));
+        group.add(new ValueUpdate(1, new Value(-2)));
+        group.add(new ValueUpdate(1, new Value(10)));
+        group.add(new ValueUpdate(2, new Value("a")));
+        group.add(new ValueUpdate(2, new Value("b")));
+
+        JsonWriter writer = new JsonWriter();
+        group.write(writer);
+
+        JsonArray updates = new JsonObject(writer.toString()).getArray("updates");
+        Assert.assertEquals(2, updates.size());
+
+        JsonObject update = updates.get(0);
+        Assert.assertEquals(1, (int) update.getInteger("sid"));
+        Assert.assertEquals(10, update.getNumber("value").intValue());
+        Assert.assertNotNull(update.getString("ts"));
+        Assert.assertEquals(3, (int) update.getInteger("count"));
+        Assert.assertEquals(12, update.getNumber("sum").intValue());
+        Assert.assertEquals(-2, update.getNumber("min").intValue());
+        Assert.assertEquals(10, update.getNumber("max").intValue());
+
+        update = updates.get(1);
+        Assert.assertEquals("b", update.getString("value"));
+        Assert.assertEquals(2, (int) update.getInteger("count"));
+        Assert.assertFalse(update.containsField("sum"));
+    }
+
+    /**
+     * Message with a single row and no fields.
+     */
+    private static class RowMessage implements OutboundMessage {
+
+        private final int rid;
+
+        RowMessage(int rid) {
+            this.rid = rid;
+        }
+
+        @Override
+        public int getRid() {
+            return rid;
+        }
+
+        @Override
+        public void writeFields(StreamWriter writer) {
+        }
+
+        @Override
+        public boolean hasUpdates() {
+            return true;
+        }
+
+        @Override
+        public void writeUpdates(StreamWriter writer) {
+            writer.writeStartArray();
+            writer.writeLong(rid);
+            writer.writeEndArray();
+        }
+    }
+}
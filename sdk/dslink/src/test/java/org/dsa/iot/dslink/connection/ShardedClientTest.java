@@ -0,0 +1,193 @@
+package org.dsa.iot.dslink.connection;
+
+import org.dsa.iot.dslink.node.ValueUpdate;
+import org.dsa.iot.dslink.node.value.Value;
+import org.junit.Assert;
+import org.junit.Test;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests spreading the outgoing data of a link across several connections.
+ *
+ * @author Samuel Grenier
+ */
+public class ShardedClientTest {
+
+    /**
+     * Ensures every rid and sid is always written through the same
+     * connection and in order.
+     */
+    @Test
+    public void spreadsByRidAndSid() throws InterruptedException {
+        int shards = 4;
+        int rids = 50;
+        int rounds = 5;
+        List<TestClient> clients = new ArrayList<>();
+        for (int i = 0; i < shards; i++) {
+            clients.add(new TestClient(i));
+        }
+        ShardedClient client = new ShardedClient(clients.toArray(new NetworkClient[shards]));
+
+        DataHandler handler = new DataHandler(1);
+        handler.setClient(client);
+        for (int round = 0; round < rounds; round++) {
+            List<OutboundMessage> messages = new ArrayList<>();
+            for (int rid = 1; rid <= rids; rid++) {
+                JsonObject resp = new JsonObject();
+                resp.putNumber("rid", rid);
+                resp.putString("stream", "open");
+                JsonArray updates = new JsonArray();
+                JsonArray row = new JsonArray();
+                row.addNumber(round);
+                updates.addArray(row);
+                resp.putArray("updates", updates);
+                messages.add(new JsonMessage(resp));
+                messages.add(new ValueUpdate(rid, new Value(round)));
+            }
+            handler.writeResponses(messages);
+            Thread.sleep(5);
+        }
+
+        // Receives the rows of each rid and sid along with their shard
+        Map<Integer, List<Integer>> ridRows = new HashMap<>();
+        Map<Integer, List<Integer>> sidRows = new HashMap<>();
+        Map<Integer, Integer> ridShards = new HashMap<>();
+        Map<Integer, Integer> sidShards = new HashMap<>();
+        int expected = rids * rounds * 2;
+        int received = 0;
+        while (received < expected) {
+            Object[] frame = TestClient.FRAMES.poll(5, TimeUnit.SECONDS);
+            Assert.assertNotNull("received " + received, frame);
+            int shard = (Integer) frame[0];
+            JsonArray responses = ((JsonObject) frame[1]).getArray("responses");
+            for (Object o : responses) {
+                JsonObject resp = (JsonObject) o;
+                int rid = resp.getInteger("rid");
+                for (Object r : resp.getArray("updates")) {
+                    JsonArray row = (JsonArray) r;
+                    if (rid == 0) {
+                        int sid = ((Number) row.get(0)).intValue();
+                        int value = ((Number) row.get(1)).intValue();
+                        add(sidRows, sidShards, sid, value, shard);
+                    } else {
+                        int value = ((Number) row.get(0)).intValue();
+                        add(ridRows, ridShards, rid, value, shard);
+                    }
+                    received++;
+                }
+            }
+        }
+
+        for (int rid = 1; rid <= rids; rid++) {
+            Assert.assertEquals(client.shardOfRid(rid), (int) ridShards.get(rid));
+            Assert.assertEquals(client.shardOfSid(rid), (int) sidShards.get(rid));
+            for (int round = 0; round < rounds; round++) {
+                Assert.assertEquals(round, (int) ridRows.get(rid).get(round));
+                Assert.assertEquals(round, (int) sidRows.get(rid).get(round));
+            }
+        }
+
+        boolean[] used = new boolean[shards];
+        for (int shard : ridShards.values()) {
+            used[shard] = true;
+        }
+        for (boolean u : used) {
+            Assert.assertTrue(u);
+        }
+    }
+
+    /**
+     * Ensures writes reach the new connections after reconnecting with the
+     * same codec and the same amount of shards.
+     */
+    @Test
+    public void reconnectSameCodec() throws InterruptedException {
+        TestClient.FRAMES.clear();
+        DataHandler handler = new DataHandler(1);
+        TestClient[] first = {new TestClient(0), new TestClient(1)};
+        handler.setClient(new ShardedClient(first));
+        handler.writeResponse(new ValueUpdate(1, new Value(1)));
+        Assert.assertNotNull(TestClient.FRAMES.poll(5, TimeUnit.SECONDS));
+
+        for (TestClient client : first) {
+            client.close();
+        }
+        TestClient[] second = {new TestClient(2), new TestClient(3)};
+        handler.setClient(new ShardedClient(second));
+        handler.writeResponse(new ValueUpdate(1, new Value(2)));
+
+        Object[] frame = TestClient.FRAMES.poll(5, TimeUnit.SECONDS);
+        Assert.assertNotNull(frame);
+        Assert.assertTrue((Integer) frame[0] >= 2);
+        for (TestClient client : first) {
+            Assert.assertFalse(client.writtenClosed);
+        }
+    }
+
+    private static void add(Map<Integer, List<Integer>> rows,
+                            Map<Integer, Integer> shards,
+                            int id, int value, int shard) {
+        List<Integer> list = rows.get(id);
+        if (list == null) {
+            list = new ArrayList<>();
+            rows.put(id, list);
+        }
+        list.add(value);
+
+        Integer prev = shards.put(id, shard);
+        if (prev != null) {
+            Assert.assertEquals(prev, (Integer) shard);
+        }
+    }
+
+    private static class TestClient implements NetworkClient {
+
+        private static final BlockingQueue<Object[]> FRAMES = new LinkedBlockingQueue<>();
+        private final int shard;
+        private volatile boolean closed;
+        private volatile boolean writtenClosed;
+
+        TestClient(int shard) {
+            this.shard = shard;
+        }
+
+        @Override
+        public void write(String data) {
+            if (closed) {
+                writtenClosed = true;
+                throw new RuntimeException("Cannot write to unconnected connection");
+            }
+            FRAMES.add(new Object[]{shard, new JsonObject(data)});
+        }
+
+        @Override
+        public void write(Buffer data) {
+            write(data.toString());
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        @Override
+        public boolean isConnected() {
+            return !closed;
+        }
+
+        @Override
+        public boolean isWritable() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package org.dsa.iot.dslink.connection.codec;
+
+import org.dsa.iot.dslink.connection.InboundFrame;
+import org.dsa.iot.dslink.connection.StreamWriter;
+import org.dsa.iot.dslink.connection.connector.PingFrames;
+import org.junit.Assert;
+import org.junit.Test;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+
+/**
+ * Tests compressing frames with the deflate codec.
+ *
+ * @author Samuel Grenier
+ */
+public class DeflateCodecTest {
+
+    @Test
+    public void format() {
+        DeflateCodec codec = new DeflateCodec(new MsgPackCodec());
+        Assert.assertEquals("msgpack-deflate", codec.getFormat());
+        Assert.assertTrue(codec.isBinary());
+    }
+
+    /**
+     * Ensures frames written through the writer are compressed and can be
+     * decoded again.
+     */
+    @Test
+    public void writer() {
+        DeflateCodec codec = new DeflateCodec(new JsonCodec());
+        StreamWriter writer = codec.createWriter();
+        for (int n = 0; n < 2; n++) {
+            writer.reset();
+            writer.writeStartObject();
+            writer.writeFieldName("responses");
+            writer.writeStartArray();
+            for (int i = 0; i < 100; i++) {
+                writer.writeStartObject();
+                writer.writeFieldName("rid");
+                writer.writeLong(i);
+                writer.writeFieldName("stream");
+                writer.writeString("open");
+                writer.writeEndObject();
+            }
+            writer.writeEndArray();
+            writer.writeEndObject();
+
+            Buffer buffer = writer.toBuffer();
+            Assert.assertEquals(DeflateCodec.DEFLATED, buffer.getByte(0));
+            Assert.assertTrue(buffer.length() < writer.size());
+
+            InboundFrame frame = codec.decodeFrame(buffer);
+            Assert.assertEquals(100, frame.getResponses().size());
+            Assert.assertEquals(99, (int) frame.getResponses().get(99).getRid());
+        }
+
+        CompressionStats stats = codec.getStats();
+        Assert.assertEquals(2, stats.getCompressedFrames());
+        Assert.assertTrue(stats.getRatio() < 0.5);
+    }
+
+    /**
+     * Ensures frames below the threshold are sent uncompressed.
+     */
+    @Test
+    public void threshold() {
+        DeflateCodec codec = new DeflateCodec(new JsonCodec(), 9, 64);
+        JsonObject obj = new JsonObject();
+        obj.putArray("responses", new JsonArray());
+
+        Buffer buffer = codec.encode(obj);
+        Assert.assertEquals(DeflateCodec.RAW, buffer.getByte(0));
+        Assert.assertEquals(obj, codec.decode(buffer));
+        Assert.assertEquals(1, codec.getStats().getSkippedFrames());
+        Assert.assertEquals(0, codec.getStats().getCompressedFrames());
+    }
+
+    /**
+     * Ensures pings are still answered without decoding when compression
+     * is used.
+     */
+    @Test
+    public void pings() {
+        DeflateCodec codec = new DeflateCodec(new JsonCodec());
+        PingFrames frames = PingFrames.forCodec(codec);
+        Assert.assertNotNull(frames);
+
+        JsonObject ping = new JsonObject();
+        ping.putNumber("ping", 12);
+        Assert.assertEquals(PingFrames.PING, frames.classify(codec.encode(ping)));
+        Assert.assertEquals(12, frames.getId());
+
+        Buffer pong = frames.toBinary(PingFrames.PONG, 12);
+        Assert.assertEquals(12, (int) codec.decode(pong).getInteger("pong"));
+    }
+
+    /**
+     * Ensures a frame inflating past the maximum size fails to decode
+     * while frames within it still decode.
+     */
+    @Test
+    public void inflationBound() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            builder.append('a');
+        }
+        JsonObject obj = new JsonObject();
+        obj.putString("padding", builder.toString());
+
+        DeflateCodec codec = new DeflateCodec(new JsonCodec());
+        Buffer encoded = codec.encode(obj);
+        Assert.assertEquals(DeflateCodec.DEFLATED, encoded.getByte(0));
+        Assert.assertTrue(encoded.length() < 1024);
+        Assert.assertEquals(obj, codec.decode(encoded));
+
+        codec.setMaxInflatedSize(64 * 1024);
+        try {
+            codec.decode(encoded);
+            Assert.fail("Inflated past the maximum size");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("Inflated frame exceeds"));
+        }
+
+        codec.setMaxInflatedSize(128 * 1024);
+        Assert.assertEquals(obj, codec.decode(encoded));
+    }
+
+    /**
+     * Ensures the codec keeps decoding after its inflater was released.
+     */
+    @Test
+    public void release() {
+        JsonObject obj = new JsonObject();
+        obj.putString("padding", String.format("%1024s", "a"));
+
+        DeflateCodec codec = new DeflateCodec(new JsonCodec());
+        Buffer encoded = codec.encode(obj);
+        Assert.assertEquals(obj, codec.decode(encoded));
+        codec.release();
+        codec.release();
+        Assert.assertEquals(obj, codec.decode(encoded));
+    }
+}
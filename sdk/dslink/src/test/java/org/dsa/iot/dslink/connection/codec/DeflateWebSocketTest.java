@@ -0,0 +1,121 @@
+package org.dsa.iot.dslink.connection.codec;
+
+import org.dsa.iot.dslink.connection.InboundFrame;
+import org.dsa.iot.dslink.connection.StreamWriter;
+import org.dsa.iot.dslink.util.HttpClientUtils;
+import org.dsa.iot.dslink.util.Objects;
+import org.dsa.iot.dslink.util.URLInfo;
+import org.junit.Assert;
+import org.junit.Test;
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.http.HttpClient;
+import org.vertx.java.core.http.HttpServer;
+import org.vertx.java.core.http.ServerWebSocket;
+import org.vertx.java.core.http.WebSocket;
+import org.vertx.java.core.json.JsonObject;
+
+import java.net.ServerSocket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends compressed frames to a local web socket server standing in for
+ * the broker.
+ *
+ * @author Samuel Grenier
+ */
+public class DeflateWebSocketTest {
+
+    @Test
+    public void roundTrip() throws Exception {
+        final DeflateCodec serverCodec = new DeflateCodec(new JsonCodec());
+        final BlockingQueue<InboundFrame> received = new LinkedBlockingQueue<>();
+        final BlockingQueue<JsonObject> replies = new LinkedBlockingQueue<>();
+
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        final CountDownLatch listening = new CountDownLatch(1);
+        HttpServer server = Objects.getVertx().createHttpServer();
+        server.websocketHandler(new Handler<ServerWebSocket>() {
+            @Override
+            public void handle(final ServerWebSocket ws) {
+                ws.dataHandler(new Handler<Buffer>() {
+                    @Override
+                    public void handle(Buffer event) {
+                        received.add(serverCodec.decodeFrame(event));
+                        JsonObject reply = new JsonObject();
+                        reply.putNumber("pong", 1);
+                        ws.writeBinaryFrame(serverCodec.encode(reply));
+                    }
+                });
+            }
+        });
+        server.listen(port, "localhost", new Handler<AsyncResult<HttpServer>>() {
+            @Override
+            public void handle(AsyncResult<HttpServer> event) {
+                listening.countDown();
+            }
+        });
+
+        try {
+            Assert.assertTrue(listening.await(5, TimeUnit.SECONDS));
+
+            final DeflateCodec codec = new DeflateCodec(new JsonCodec());
+            final CountDownLatch connected = new CountDownLatch(1);
+            final WebSocket[] socket = new WebSocket[1];
+            URLInfo info = URLInfo.parse("http://localhost:" + port);
+            HttpClient client = HttpClientUtils.configure(info);
+            client.connectWebsocket("/ws", new Handler<WebSocket>() {
+                @Override
+                public void handle(WebSocket event) {
+                    event.dataHandler(new Handler<Buffer>() {
+                        @Override
+                        public void handle(Buffer event) {
+                            replies.add(codec.decode(event));
+                        }
+                    });
+                    socket[0] = event;
+                    connected.countDown();
+                }
+            });
+            Assert.assertTrue(connected.await(5, TimeUnit.SECONDS));
+
+            StreamWriter writer = codec.createWriter();
+            writer.writeStartObject();
+            writer.writeFieldName("responses");
+            writer.writeStartArray();
+            for (int i = 0; i < 50; i++) {
+                writer.writeStartObject();
+                writer.writeFieldName("rid");
+                writer.writeLong(i);
+                writer.writeFieldName("stream");
+                writer.writeString("closed");
+                writer.writeEndObject();
+            }
+            writer.writeEndArray();
+            writer.writeEndObject();
+            socket[0].writeBinaryFrame(writer.toBuffer());
+
+            InboundFrame frame = received.poll(5, TimeUnit.SECONDS);
+            Assert.assertNotNull(frame);
+            Assert.assertEquals(50, frame.getResponses().size());
+
+            JsonObject reply = replies.poll(5, TimeUnit.SECONDS);
+            Assert.assertNotNull(reply);
+            Assert.assertEquals(1, (int) reply.getInteger("pong"));
+
+            Assert.assertEquals(1, codec.getStats().getCompressedFrames());
+            Assert.assertEquals(1, serverCodec.getStats().getSkippedFrames());
+            client.close();
+        } finally {
+            server.close();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package org.dsa.iot.dslink.connection.codec;
+
+import org.dsa.iot.dslink.connection.InboundFrame;
+import org.dsa.iot.dslink.connection.MessageView;
+import org.dsa.iot.dslink.connection.UpdateRow;
+import org.junit.Assert;
+import org.junit.Test;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests decoding frames with the JSON codec.
+ *
+ * @author Samuel Grenier
+ */
+public class JsonCodecTest {
+
+    /**
+     * Ensures the fields of each message can be read lazily.
+     */
+    @Test
+    public void lazyFields() {
+        String data = "{\"msg\": {\"skipped\": [1, \"]\"]}, \"requests\": ["
+                + "{\"rid\": 1, \"method\": \"list\", \"path\": \"/a\\\"b\"},"
+                + "{\"method\": \"set\", \"value\": {\"x\": [true]}, \"rid\": 2}"
+                + "]}";
+        InboundFrame frame = decode(data);
+        Assert.assertNull(frame.getResponses());
+        Assert.assertNull(frame.getPing());
+
+        List<MessageView> requests = frame.getRequests();
+        Assert.assertEquals(2, requests.size());
+
+        MessageView view = requests.get(0);
+        Assert.assertEquals(1, (int) view.getRid());
+        Assert.assertEquals("list", view.getMethod());
+        Assert.assertEquals("/a\"b", view.getPath());
+        Assert.assertNull(view.getStream());
+
+        view = requests.get(1);
+        Assert.assertEquals(2, (int) view.getRid());
+        Assert.assertEquals("set", view.getMethod());
+        Assert.assertNull(view.getPath());
+
+        JsonObject json = view.toJson();
+        JsonObject value = json.getObject("value");
+        Assert.assertTrue((Boolean) value.getArray("x").get(0));
+    }
+
+    /**
+     * Ensures update rows are read one by one in both forms.
+     */
+    @Test
+    public void updates() {
+        String data = "{\"responses\":[{\"rid\":0,\"updates\":["
+                + "[1, 12.5, \"ts\"],"
+                + "{\"sid\": 2, \"value\": \"str\", \"count\": 3},"
+                + "[3, {\"a\": 1}, null]"
+                + "]}]}";
+        MessageView view = decode(data).getResponses().get(0);
+        Assert.assertEquals(0, (int) view.getRid());
+
+        final List<Object> values = new ArrayList<>();
+        view.readUpdates(new Handler<UpdateRow>() {
+            @Override
+            public void handle(UpdateRow row) {
+                if (row.isMap()) {
+                    values.add(row.get("sid"));
+                    values.add(row.get("value"));
+                    values.add(row.get("count"));
+                    values.add(row.get("missing"));
+                } else {
+                    values.add(row.get(0));
+                    values.add(row.get(1));
+                    values.add(row.get(2));
+                }
+            }
+        });
+
+        Assert.assertEquals(10, values.size());
+        Assert.assertEquals(1, values.get(0));
+        Assert.assertEquals(12.5, values.get(1));
+        Assert.assertEquals("ts", values.get(2));
+        Assert.assertEquals(2, values.get(3));
+        Assert.assertEquals("str", values.get(4));
+        Assert.assertEquals(3, values.get(5));
+        Assert.assertNull(values.get(6));
+        Assert.assertEquals(3, values.get(7));
+        Assert.assertTrue(values.get(8) instanceof JsonObject);
+        Assert.assertNull(values.get(9));
+    }
+
+    /**
+     * Ensures pings are detected.
+     */
+    @Test
+    public void ping() {
+        InboundFrame frame = decode("{\"ping\": 42}");
+        Assert.assertEquals(42, frame.getPing());
+        Assert.assertNull(frame.getRequests());
+    }
+
+    /**
+     * Ensures the decoded message matches the original encoding.
+     */
+    @Test
+    public void roundTrip() {
+        JsonArray updates = new JsonArray();
+        updates.addArray(new JsonArray().addNumber(Long.MAX_VALUE).addString("é\n"));
+        JsonObject resp = new JsonObject();
+        resp.putNumber("rid", 5);
+        resp.putString("stream", "open");
+        resp.putArray("updates", updates);
+
+        JsonArray responses = new JsonArray();
+        responses.addObject(resp);
+        JsonObject top = new JsonObject();
+        top.putArray("responses", responses);
+
+        MessageView view = decode(top.encode()).getResponses().get(0);
+        Assert.assertEquals("open", view.getStream());
+        Assert.assertEquals(resp, view.toJson());
+    }
+
+    private static InboundFrame decode(String data) {
+        return new JsonCodec().decodeFrame(new Buffer(data, "UTF-8"));
+    }
+}
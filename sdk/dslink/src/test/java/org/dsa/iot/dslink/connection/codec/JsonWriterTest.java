@@ -0,0 +1,64 @@
+package org.dsa.iot.dslink.connection.codec;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+
+/**
+ * Tests the streaming JSON writer.
+ *
+ * @author Samuel Grenier
+ */
+public class JsonWriterTest {
+
+    /**
+     * Ensures the written JSON can be decoded into the original object.
+     */
+    @Test
+    public void roundTrip() throws Exception {
+        JsonArray array = new JsonArray();
+        array.addNumber(0);
+        array.addNumber(-42);
+        array.addNumber(Long.MIN_VALUE);
+        array.addNumber(Long.MAX_VALUE);
+        array.addNumber(1.5);
+        array.addBoolean(false);
+        array.add(null);
+        array.addObject(new JsonObject());
+        array.addArray(new JsonArray());
+
+        JsonObject obj = new JsonObject();
+        obj.putString("escaped", "\"quoted\"\\\n\t\u0001");
+        obj.putString("unicode", "é中😀");
+        obj.putArray("array", array);
+        obj.putBoolean("bool", true);
+
+        JsonWriter writer = new JsonWriter();
+        writer.writeValue(obj);
+        Assert.assertEquals(obj, new JsonObject(writer.toString()));
+        Assert.assertEquals(writer.toString().getBytes("UTF-8").length, writer.size());
+    }
+
+    /**
+     * Ensures the writer can be reused after a reset.
+     */
+    @Test
+    public void reset() {
+        JsonWriter writer = new JsonWriter();
+        writer.writeStartArray();
+        writer.writeLong(1);
+        writer.writeLong(2);
+        writer.writeEndArray();
+        Assert.assertEquals("[1,2]", writer.toString());
+
+        writer.reset();
+        writer.writeStartObject();
+        writer.writeFieldName("a");
+        writer.writeString("b");
+        writer.writeFieldName("c");
+        writer.writeNull();
+        writer.writeEndObject();
+        Assert.assertEquals("{\"a\":\"b\",\"c\":null}", writer.toString());
+    }
+}
@@ -0,0 +1,122 @@
+package org.dsa.iot.dslink.connection.codec;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+
+/**
+ * Tests the MessagePack codec.
+ *
+ * @author Samuel Grenier
+ */
+public class MsgPackCodecTest {
+
+    /**
+     * Ensures a typical subscription update survives a round trip.
+     */
+    @Test
+    public void roundTrip() {
+        JsonArray update = new JsonArray();
+        update.addNumber(1);
+        update.addNumber(12.5);
+        update.addString("2015-06-01T00:00:00.000-00:00");
+
+        JsonArray updates = new JsonArray();
+        updates.addArray(update);
+
+        JsonObject resp = new JsonObject();
+        resp.putNumber("rid", 0);
+        resp.putArray("updates", updates);
+        resp.putBoolean("flag", true);
+        resp.putString("empty", null);
+
+        JsonArray responses = new JsonArray();
+        responses.addObject(resp);
+        JsonObject top = new JsonObject();
+        top.putArray("responses", responses);
+
+        MsgPackCodec codec = new MsgPackCodec();
+        Buffer encoded = codec.encode(top);
+        JsonObject decoded = codec.decode(encoded);
+        Assert.assertEquals(top, decoded);
+        Assert.assertTrue(encoded.length() < top.encode().length());
+    }
+
+    /**
+     * Ensures integers are encoded with the smallest width and decoded back
+     * to the same value.
+     */
+    @Test
+    public void integers() {
+        long[] values = {
+                0, 127, 128, 255, 256, 65535, 65536,
+                Integer.MAX_VALUE, 4294967295L, Long.MAX_VALUE,
+                -1, -32, -33, -128, -129, -32768, -32769,
+                Integer.MIN_VALUE, Long.MIN_VALUE
+        };
+        for (long value : values) {
+            MsgPackWriter writer = new MsgPackWriter();
+            writer.writeLong(value);
+            Number read = (Number) new MsgPackReader(writer.toBuffer()).read();
+            Assert.assertEquals(value, read.longValue());
+        }
+
+        MsgPackWriter writer = new MsgPackWriter();
+        writer.writeLong(5);
+        Assert.assertEquals(1, writer.size());
+    }
+
+    /**
+     * Ensures strings and collections crossing the fixed size boundaries
+     * are read back correctly.
+     */
+    @Test
+    public void sizes() {
+        StringBuilder builder = new StringBuilder();
+        JsonArray array = new JsonArray();
+        for (int i = 0; i < 300; i++) {
+            builder.append('a');
+            array.addNumber(i);
+        }
+
+        JsonObject obj = new JsonObject();
+        obj.putString("string", builder.toString());
+        obj.putArray("array", array);
+        for (int i = 0; i < 20; i++) {
+            obj.putNumber("field" + i, i);
+        }
+
+        MsgPackCodec codec = new MsgPackCodec();
+        Assert.assertEquals(obj, codec.decode(codec.encode(obj)));
+    }
+
+    /**
+     * Ensures lengths larger than the frame are rejected before anything
+     * is allocated for them.
+     */
+    @Test
+    public void oversizedLengths() {
+        int[][] frames = {
+                {0xdf, 0xff, 0xff, 0xff, 0xff},
+                {0xdf, 0x7f, 0xff, 0xff, 0xff},
+                {0xdd, 0x7f, 0xff, 0xff, 0xff},
+                {0xdb, 0x7f, 0xff, 0xff, 0xff},
+                {0xc6, 0x7f, 0xff, 0xff, 0xff},
+                {0xde, 0x00, 0x02, 0xa1, 0x61, 0x01}
+        };
+        for (int[] frame : frames) {
+            Buffer buffer = new Buffer(frame.length);
+            for (int b : frame) {
+                buffer.appendByte((byte) b);
+            }
+            try {
+                new MsgPackReader(buffer).read();
+                Assert.fail("Read 0x" + Integer.toHexString(frame[0]));
+            } catch (RuntimeException e) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("Length"));
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package org.dsa.iot.dslink.connection.codec;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+
+/**
+ * Tests building objects in memory.
+ *
+ * @author Samuel Grenier
+ */
+public class ObjectWriterTest {
+
+    /**
+     * Ensures the built object is encoded as JSON when turned into a
+     * buffer.
+     */
+    @Test
+    public void toBuffer() {
+        ObjectWriter writer = new ObjectWriter();
+        writer.writeStartObject();
+        writer.writeFieldName("rid");
+        writer.writeLong(1);
+        writer.writeFieldName("updates");
+        writer.writeStartArray();
+        writer.writeValue(new JsonArray().addNumber(2).addString("a"));
+        writer.writeEndArray();
+        writer.writeEndObject();
+
+        JsonObject built = writer.getObject();
+        Assert.assertEquals(1, (int) built.getInteger("rid"));
+        // Decoded numbers don't keep the type they were written with
+        JsonObject expected = new JsonObject(built.encode());
+        Assert.assertEquals(expected, new JsonObject(writer.toBuffer().toString("UTF-8")));
+        Assert.assertEquals(expected, new JsonObject(writer.toString()));
+    }
+
+    @Test
+    public void empty() {
+        ObjectWriter writer = new ObjectWriter();
+        Assert.assertEquals(0, writer.toBuffer().length());
+        Assert.assertEquals("", writer.toString());
+    }
+}
@@ -0,0 +1,78 @@
+package org.dsa.iot.dslink.connection.connector;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.http.HttpClient;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests routing failures of a shared client to pending connections.
+ *
+ * @author Samuel Grenier
+ */
+public class PendingConnectsTest {
+
+    /**
+     * Ensures a failure reaches every pending connection once, and only
+     * reaches the fallback while nothing is pending.
+     */
+    @Test
+    public void routesFailures() {
+        final AtomicReference<Object> installed = new AtomicReference<>();
+        HttpClient client = (HttpClient) Proxy.newProxyInstance(
+                HttpClient.class.getClassLoader(),
+                new Class<?>[] { HttpClient.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("exceptionHandler".equals(method.getName())) {
+                            installed.set(args[0]);
+                        }
+                        return proxy;
+                    }
+                });
+
+        final AtomicInteger fallbacks = new AtomicInteger();
+        PendingConnects connects = PendingConnects.install(client, new Handler<Throwable>() {
+            @Override
+            public void handle(Throwable event) {
+                fallbacks.incrementAndGet();
+            }
+        });
+        Assert.assertSame(connects, installed.get());
+
+        Counter first = new Counter();
+        Counter second = new Counter();
+        Counter established = new Counter();
+        connects.add(first);
+        connects.add(second);
+        connects.add(established);
+        connects.remove(established);
+
+        connects.handle(new Throwable("Connection refused"));
+        Assert.assertEquals(1, first.count.get());
+        Assert.assertEquals(1, second.count.get());
+        Assert.assertEquals(0, established.count.get());
+        Assert.assertEquals(0, fallbacks.get());
+
+        connects.handle(new Throwable("Connection reset"));
+        Assert.assertEquals(1, first.count.get());
+        Assert.assertEquals(1, fallbacks.get());
+    }
+
+    private static class Counter implements Handler<Throwable> {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public void handle(Throwable event) {
+            count.incrementAndGet();
+        }
+    }
+}
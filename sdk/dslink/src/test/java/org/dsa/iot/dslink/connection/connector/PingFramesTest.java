@@ -0,0 +1,120 @@
+package org.dsa.iot.dslink.connection.connector;
+
+import org.dsa.iot.dslink.connection.ConnectionHealth;
+import org.dsa.iot.dslink.connection.codec.DeflateCodec;
+import org.dsa.iot.dslink.connection.codec.MsgPackCodec;
+import org.junit.Assert;
+import org.junit.Test;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.json.JsonObject;
+
+/**
+ * Tests recognizing and writing ping frames without decoding them.
+ *
+ * @author Samuel Grenier
+ */
+public class PingFramesTest {
+
+    @Test
+    public void textFrames() {
+        PingFrames frames = new PingFrames(false);
+        Assert.assertEquals(PingFrames.PING, frames.classify(text("{\"ping\":42}")));
+        Assert.assertEquals(42, frames.getId());
+
+        Assert.assertEquals(PingFrames.PONG, frames.classify(text(" { \"pong\" : -7 }\n")));
+        Assert.assertEquals(-7, frames.getId());
+
+        Assert.assertEquals(PingFrames.NONE, frames.classify(text("{\"ping\":1,\"requests\":[]}")));
+        Assert.assertEquals(PingFrames.NONE, frames.classify(text("{\"pins\":1}")));
+        Assert.assertEquals(PingFrames.NONE, frames.classify(text("{\"ping\":\"1\"}")));
+        Assert.assertEquals(PingFrames.NONE, frames.classify(text("{\"responses\":[]}")));
+    }
+
+    @Test
+    public void writeText() {
+        PingFrames frames = new PingFrames(false);
+        Assert.assertEquals("{\"pong\":0}", frames.toText(PingFrames.PONG, 0));
+        Assert.assertEquals("{\"ping\":1234567890123}",
+                frames.toText(PingFrames.PING, 1234567890123L));
+        Assert.assertEquals("{\"pong\":-15}", frames.toText(PingFrames.PONG, -15));
+    }
+
+    @Test
+    public void binaryFrames() {
+        MsgPackCodec codec = new MsgPackCodec();
+        PingFrames frames = new PingFrames(true);
+
+        JsonObject obj = new JsonObject();
+        obj.putNumber("ping", 300);
+        Assert.assertEquals(PingFrames.PING, frames.classify(codec.encode(obj)));
+        Assert.assertEquals(300, frames.getId());
+
+        Buffer pong = frames.toBinary(PingFrames.PONG, 5);
+        Assert.assertEquals(5, (int) codec.decode(pong).getInteger("pong"));
+        Assert.assertEquals(PingFrames.PONG, frames.classify(pong));
+        Assert.assertEquals(5, frames.getId());
+
+        pong = frames.toBinary(PingFrames.PONG, 1L << 40);
+        Assert.assertEquals(PingFrames.PONG, frames.classify(pong));
+        Assert.assertEquals(1L << 40, frames.getId());
+
+        obj = new JsonObject();
+        obj.putNumber("ping", 1);
+        obj.putNumber("rid", 1);
+        Assert.assertEquals(PingFrames.NONE, frames.classify(codec.encode(obj)));
+    }
+
+    @Test
+    public void prefixedFrames() {
+        PingFrames frames = new PingFrames(false, DeflateCodec.RAW);
+
+        Buffer pong = frames.toBinary(PingFrames.PONG, 123456);
+        Assert.assertEquals(DeflateCodec.RAW, pong.getByte(0));
+        Assert.assertEquals("{\"pong\":123456}", pong.getString(1, pong.length()));
+        Assert.assertEquals(PingFrames.PONG, frames.classify(pong));
+        Assert.assertEquals(123456, frames.getId());
+
+        // Frames handed out are not changed by later writes
+        Buffer ping = frames.toBinary(PingFrames.PING, 8);
+        Assert.assertEquals("{\"ping\":8}", ping.getString(1, ping.length()));
+        Assert.assertEquals("{\"pong\":123456}", pong.getString(1, pong.length()));
+    }
+
+    @Test
+    public void extremeIds() {
+        PingFrames frames = new PingFrames(false);
+        Assert.assertEquals("{\"pong\":-9223372036854775808}",
+                frames.toText(PingFrames.PONG, Long.MIN_VALUE));
+        Assert.assertEquals("{\"pong\":9223372036854775807}",
+                frames.toText(PingFrames.PONG, Long.MAX_VALUE));
+        Assert.assertEquals("{\"pong\":5}", frames.toText(PingFrames.PONG, 5));
+
+        MsgPackCodec codec = new MsgPackCodec();
+        frames = new PingFrames(true);
+        Buffer pong = frames.toBinary(PingFrames.PONG, Long.MIN_VALUE);
+        Assert.assertEquals(Long.MIN_VALUE, (long) codec.decode(pong).getLong("pong"));
+    }
+
+    @Test
+    public void health() {
+        ConnectionHealth health = new ConnectionHealth();
+        Assert.assertEquals(-1, health.getLastRtt());
+
+        long id = health.pingSent();
+        health.pongReceived(id + 1);
+        Assert.assertEquals(-1, health.getLastRtt());
+
+        health.pongReceived(id);
+        Assert.assertTrue(health.getLastRtt() >= 0);
+        Assert.assertEquals(health.getLastRtt(), health.getAverageRtt());
+        Assert.assertEquals(2, health.getPongsReceived());
+
+        health.pingReceived();
+        Assert.assertEquals(1, health.getPingsReceived());
+        Assert.assertTrue(health.getLastPingReceived() > 0);
+    }
+
+    private static Buffer text(String s) {
+        return new Buffer(s, "UTF-8");
+    }
+}
@@ -0,0 +1,167 @@
+package org.dsa.iot.dslink.handshake;
+
+import org.dsa.iot.dslink.config.Configuration;
+import org.dsa.iot.dslink.connection.ConnectionType;
+import org.dsa.iot.dslink.util.Objects;
+import org.dsa.iot.dslink.util.URLInfo;
+import org.junit.Assert;
+import org.junit.Test;
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.http.HttpServer;
+import org.vertx.java.core.http.HttpServerRequest;
+import org.vertx.java.core.json.JsonObject;
+
+import java.net.ServerSocket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Performs handshakes against a local server standing in for the
+ * authentication endpoint of the broker.
+ *
+ * @author Samuel Grenier
+ */
+public class RemoteHandshakeTest {
+
+    private static final int HANDSHAKES = 1000;
+
+    /**
+     * Starts all the handshakes from a single thread, which would be
+     * impossible if any of them waited on the network.
+     */
+    @Test
+    public void concurrentHandshakes() throws Exception {
+        final String tempKey = LocalKeys.generate().encodedPublicKey();
+        final AtomicInteger requests = new AtomicInteger();
+
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        final CountDownLatch listening = new CountDownLatch(1);
+        HttpServer server = Objects.getVertx().createHttpServer();
+        server.setAcceptBacklog(HANDSHAKES);
+        server.requestHandler(new Handler<HttpServerRequest>() {
+            @Override
+            public void handle(final HttpServerRequest req) {
+                req.bodyHandler(new Handler<Buffer>() {
+                    @Override
+                    public void handle(Buffer event) {
+                        JsonObject in = new JsonObject(event.toString());
+                        Assert.assertTrue(in.containsField("publicKey"));
+                        requests.incrementAndGet();
+
+                        JsonObject out = new JsonObject();
+                        out.putString("dsId", "broker");
+                        out.putString("tempKey", tempKey);
+                        out.putString("wsUri", "/ws");
+                        out.putString("httpUri", "/http");
+                        out.putString("salt", "0x100");
+                        out.putNumber("updateInterval", 200);
+                        req.response().end(out.encode());
+                    }
+                });
+            }
+        });
+        server.listen(port, "localhost", new Handler<AsyncResult<HttpServer>>() {
+            @Override
+            public void handle(AsyncResult<HttpServer> event) {
+                listening.countDown();
+            }
+        });
+
+        try {
+            Assert.assertTrue(listening.await(5, TimeUnit.SECONDS));
+
+            Configuration config = new Configuration();
+            config.setConnectionType(ConnectionType.WEB_SOCKET);
+            config.setAuthEndpoint("http://localhost:" + port + "/conn");
+            config.setKeys(LocalKeys.generate());
+            config.setDsId("test");
+            LocalHandshake lh = new LocalHandshake(config);
+            URLInfo url = config.getAuthEndpoint();
+
+            final CountDownLatch done = new CountDownLatch(HANDSHAKES);
+            final AtomicInteger succeeded = new AtomicInteger();
+            for (int i = 0; i < HANDSHAKES; i++) {
+                RemoteHandshake.generate(lh, url, new Handler<AsyncResult<RemoteHandshake>>() {
+                    @Override
+                    public void handle(AsyncResult<RemoteHandshake> event) {
+                        if (event.succeeded()) {
+                            RemoteHandshake rh = event.result();
+                            if ("/ws".equals(rh.getWsUri())
+                                    && rh.getUpdateInterval() == 200) {
+                                succeeded.incrementAndGet();
+                            }
+                        }
+                        done.countDown();
+                    }
+                });
+            }
+
+            Assert.assertTrue(done.await(60, TimeUnit.SECONDS));
+            Assert.assertEquals(HANDSHAKES, succeeded.get());
+            Assert.assertEquals(HANDSHAKES, requests.get());
+        } finally {
+            server.close();
+        }
+    }
+
+    /**
+     * Ensures a rejected handshake fails rather than never completing.
+     */
+    @Test
+    public void rejectedHandshake() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        final CountDownLatch listening = new CountDownLatch(1);
+        HttpServer server = Objects.getVertx().createHttpServer();
+        server.requestHandler(new Handler<HttpServerRequest>() {
+            @Override
+            public void handle(HttpServerRequest req) {
+                req.response().setStatusCode(401).end();
+            }
+        });
+        server.listen(port, "localhost", new Handler<AsyncResult<HttpServer>>() {
+            @Override
+            public void handle(AsyncResult<HttpServer> event) {
+                listening.countDown();
+            }
+        });
+
+        try {
+            Assert.assertTrue(listening.await(5, TimeUnit.SECONDS));
+
+            Configuration config = new Configuration();
+            config.setConnectionType(ConnectionType.WEB_SOCKET);
+            config.setAuthEndpoint("http://localhost:" + port + "/conn");
+            config.setKeys(LocalKeys.generate());
+            config.setDsId("test");
+            LocalHandshake lh = new LocalHandshake(config);
+
+            final CountDownLatch done = new CountDownLatch(1);
+            final AtomicInteger failed = new AtomicInteger();
+            RemoteHandshake.generate(lh, config.getAuthEndpoint(), new Handler<AsyncResult<RemoteHandshake>>() {
+                @Override
+                public void handle(AsyncResult<RemoteHandshake> event) {
+                    if (event.failed()) {
+                        failed.incrementAndGet();
+                    }
+                    done.countDown();
+                }
+            });
+
+            Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(1, failed.get());
+        } finally {
+            server.close();
+        }
+    }
+}
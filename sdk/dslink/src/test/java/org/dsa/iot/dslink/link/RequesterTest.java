@@ -0,0 +1,151 @@
+package org.dsa.iot.dslink.link;
+
+import org.dsa.iot.dslink.DSLink;
+import org.dsa.iot.dslink.DSLinkHandler;
+import org.dsa.iot.dslink.connection.DataHandler;
+import org.dsa.iot.dslink.connection.NetworkClient;
+import org.dsa.iot.dslink.methods.requests.ListRequest;
+import org.dsa.iot.dslink.methods.responses.ListResponse;
+import org.dsa.iot.dslink.node.value.SubscriptionValue;
+import org.junit.Assert;
+import org.junit.Test;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests restoring the requester session after reconnecting.
+ *
+ * @author Samuel Grenier
+ */
+public class RequesterTest {
+
+    /**
+     * Ensures subscriptions are sent again in chunks under their original
+     * sids and list streams are re-opened under their original rids.
+     */
+    @Test
+    public void restore() throws InterruptedException {
+        final BlockingQueue<JsonObject> sent = new LinkedBlockingQueue<>();
+        DataHandler data = new DataHandler(5);
+        data.setClient(new TestClient(sent));
+        DSLink link = new DSLink(new DSLinkHandler() {}, data, true, true) {};
+        Requester requester = link.getRequester();
+
+        final BlockingQueue<SubscriptionValue> values = new LinkedBlockingQueue<>();
+        Set<String> paths = new HashSet<>();
+        int count = Requester.RESTORE_CHUNK_SIZE * 2 + 100;
+        for (int i = 0; i < count; i++) {
+            paths.add("/sub/" + i);
+        }
+        requester.subscribe(paths, new Handler<SubscriptionValue>() {
+            @Override
+            public void handle(SubscriptionValue event) {
+                values.add(event);
+            }
+        });
+        requester.list(new ListRequest("/list"), new Handler<ListResponse>() {
+            @Override
+            public void handle(ListResponse event) {
+            }
+        });
+        Assert.assertEquals(2, poll(sent, 2).size());
+
+        requester.restore();
+        List<JsonObject> requests = poll(sent, 4);
+        Map<String, Integer> sids = requester.getSubscriptionPaths();
+        Set<Integer> restored = new HashSet<>();
+        int listRid = -1;
+        for (JsonObject req : requests) {
+            String method = req.getString("method");
+            if ("subscribe".equals(method)) {
+                JsonArray array = req.getArray("paths");
+                Assert.assertTrue(array.size() <= Requester.RESTORE_CHUNK_SIZE);
+                for (Object o : array) {
+                    JsonObject sub = (JsonObject) o;
+                    int sid = sub.getInteger("sid");
+                    Assert.assertEquals(sids.get(sub.getString("path")), (Integer) sid);
+                    Assert.assertTrue(restored.add(sid));
+                }
+            } else {
+                Assert.assertEquals("list", method);
+                Assert.assertEquals("/list", req.getString("path"));
+                listRid = req.getInteger("rid");
+            }
+        }
+        Assert.assertEquals(count, restored.size());
+        Assert.assertEquals(2, listRid);
+
+        // Updates of the restored subscriptions reach the original handler
+        int sid = sids.get("/sub/1");
+        JsonObject update = new JsonObject();
+        update.putNumber("rid", 0);
+        JsonArray updates = new JsonArray();
+        JsonArray row = new JsonArray();
+        row.addNumber(sid);
+        row.addNumber(5);
+        row.addString("2015-01-01T00:00:00.000-00:00");
+        updates.addArray(row);
+        update.putArray("updates", updates);
+        requester.parse(update);
+
+        SubscriptionValue value = values.poll(5, TimeUnit.SECONDS);
+        Assert.assertNotNull(value);
+        Assert.assertEquals("/sub/1", value.getPath());
+        Assert.assertEquals(5, value.getValue().getNumber().intValue());
+        Assert.assertNull(values.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    private static List<JsonObject> poll(BlockingQueue<JsonObject> sent,
+                                         int count) throws InterruptedException {
+        List<JsonObject> requests = new ArrayList<>();
+        while (requests.size() < count) {
+            JsonObject req = sent.poll(5, TimeUnit.SECONDS);
+            Assert.assertNotNull(req);
+            requests.add(req);
+        }
+        return requests;
+    }
+
+    private static class TestClient implements NetworkClient {
+
+        private final BlockingQueue<JsonObject> sent;
+
+        TestClient(BlockingQueue<JsonObject> sent) {
+            this.sent = sent;
+        }
+
+        @Override
+        public void write(String data) {
+            JsonArray requests = new JsonObject(data).getArray("requests");
+            for (Object o : requests) {
+                sent.add((JsonObject) o);
+            }
+        }
+
+        @Override
+        public void write(Buffer data) {
+            write(data.toString());
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+
+        @Override
+        public boolean isWritable() {
+            return true;
+        }
+    }
+}
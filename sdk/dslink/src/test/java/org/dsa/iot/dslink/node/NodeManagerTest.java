@@ -4,6 +4,10 @@ import org.dsa.iot.dslink.node.exceptions.NoSuchPathException;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
 /**
  * Tests the node manager.
  *
@@ -50,4 +54,135 @@ public class NodeManagerTest {
         NodeManager manager = new NodeManager(null, "node");
         manager.getNode("/A//");
     }
+
+    /**
+     * Ensures references are resolved against the node before them.
+     */
+    @Test
+    public void references() {
+        NodeManager manager = new NodeManager(null, "node");
+        Node a = manager.createRootNode("A").build();
+
+        NodePair pair = manager.getNode("/A/$is");
+        Assert.assertSame(a, pair.getNode());
+        Assert.assertEquals("$is", pair.getReference());
+
+        pair = manager.getNode("@attr");
+        Assert.assertSame(manager.getSuperRoot(), pair.getNode());
+        Assert.assertEquals("@attr", pair.getReference());
+    }
+
+    /**
+     * Ensures nodes added below a removed node are no longer found, and
+     * that a replacement at the same path is.
+     */
+    @Test
+    public void subtreeRemovals() {
+        NodeManager manager = new NodeManager(null, "node");
+        Node a = manager.createRootNode("A").build();
+        Node b = a.createChild("B").build();
+        b.createChild("C").build();
+        Assert.assertNotNull(manager.getNode("/A/B/C").getNode());
+
+        a.removeChild(b);
+        assertMissing(manager, "/A/B");
+        assertMissing(manager, "/A/B/C");
+
+        // Children added to a removed node stay out of the tree
+        b.createChild("D").build();
+        assertMissing(manager, "/A/B/D");
+
+        Node replaced = a.createChild("B").build();
+        Assert.assertSame(replaced, manager.getNode("/A/B").getNode());
+        assertMissing(manager, "/A/B/C");
+    }
+
+    /**
+     * Ensures children built before their parent is added to the tree are
+     * found once it is.
+     */
+    @Test
+    public void detachedChildren() {
+        NodeManager manager = new NodeManager(null, "node");
+        NodeBuilder builder = manager.createRootNode("A");
+        Node child = builder.getChild().createChild("B").build();
+        builder.build();
+        Assert.assertSame(child, manager.getNode("/A/B").getNode());
+    }
+
+    /**
+     * Ensures children removed while their parent is being added to the
+     * tree never stay in the path index.
+     */
+    @Test
+    public void concurrentRemovals() throws Exception {
+        final NodeManager manager = new NodeManager(null, "node");
+        final Node a = manager.createRootNode("A").build();
+        final int rounds = 2000;
+        final int children = 8;
+        final CyclicBarrier barrier = new CyclicBarrier(2);
+        final AtomicReference<Node> parent = new AtomicReference<>();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Thread adder = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < rounds; i++) {
+                        NodeBuilder builder = a.createChild("B" + i);
+                        Node b = builder.getChild();
+                        for (int c = 0; c < children; c++) {
+                            b.createChild("C" + c).build();
+                        }
+                        parent.set(b);
+                        barrier.await();
+                        builder.build();
+                        barrier.await();
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                    barrier.reset();
+                }
+            }
+        });
+        Thread remover = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < rounds; i++) {
+                        barrier.await();
+                        Node b = parent.get();
+                        for (int c = 0; c < children; c++) {
+                            b.removeChild("C" + c);
+                        }
+                        barrier.await();
+                        for (int c = 0; c < children; c++) {
+                            assertMissing(manager, b.getPath() + "/C" + c);
+                        }
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                    barrier.reset();
+                }
+            }
+        });
+
+        adder.start();
+        remover.start();
+        adder.join(TimeUnit.SECONDS.toMillis(30));
+        remover.join(TimeUnit.SECONDS.toMillis(30));
+        Assert.assertFalse(adder.isAlive() || remover.isAlive());
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        Assert.assertNotNull(manager.getNode("/A/B0").getNode());
+    }
+
+    private static void assertMissing(NodeManager manager, String path) {
+        try {
+            manager.getNode(path);
+            Assert.fail(path + " still exists");
+        } catch (NoSuchPathException ignored) {
+        }
+    }
 }
@@ -1,7 +1,15 @@
 package org.dsa.iot.dslink.node;
 
+import org.dsa.iot.dslink.node.NodeListener.ValueUpdate;
+import org.dsa.iot.dslink.node.value.Value;
+import org.dsa.iot.dslink.node.value.ValueType;
 import org.junit.Assert;
 import org.junit.Test;
+import org.vertx.java.core.Handler;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Tests the node API.
@@ -52,4 +60,134 @@ public class NodeTest {
         Assert.assertNull(node.getAttributes());
         Assert.assertNull(node.getAttribute("nothing"));
     }
+
+    /**
+     * Ensures the listener is only created once it is requested.
+     */
+    @Test
+    public void lazyListener() {
+        Node node = new Node("Test", null, null);
+        node.setAttribute("unit", new Value("C"));
+        node.setValueType(ValueType.NUMBER);
+        node.setValue(new Value(1));
+        Assert.assertFalse(node.hasListener());
+        Assert.assertNotNull(node.getListener());
+        Assert.assertTrue(node.hasListener());
+    }
+
+    /**
+     * Ensures attributes stay accurate while the node grows past the small
+     * map representation.
+     */
+    @Test
+    public void manyAttributes() {
+        Node node = new Node("Test", null, null);
+        int count = SmallMap.MAX_ENTRIES * 2;
+        for (int i = 0; i < count; i++) {
+            Assert.assertNull(node.setAttribute("a" + i, new Value(i)));
+        }
+        Assert.assertEquals(new Value(3), node.setAttribute("a3", new Value(-3)));
+        Assert.assertEquals(count, node.getAttributes().size());
+        for (int i = 0; i < count; i++) {
+            int expected = i == 3 ? -3 : i;
+            Assert.assertEquals(new Value(expected), node.getAttribute("a" + i));
+        }
+    }
+
+    /**
+     * Ensures removed configurations are no longer present.
+     */
+    @Test
+    public void removeConfig() {
+        Node node = new Node("Test", null, null);
+        node.setConfig("a", new Value(1));
+        node.setConfig("b", new Value(2));
+        node.setConfig("c", new Value(3));
+        Assert.assertEquals(new Value(1), node.removeConfig("a"));
+        Assert.assertNull(node.removeConfig("a"));
+        Assert.assertNull(node.getConfig("a"));
+        Assert.assertEquals(new Value(3), node.getConfig("c"));
+        Assert.assertEquals(2, node.getConfigurations().size());
+    }
+
+    /**
+     * Ensures children snapshots are shared until the children change and
+     * are not affected by later changes.
+     */
+    @Test
+    public void childrenSnapshot() {
+        Node node = new Node("Test", null, null);
+        Assert.assertNull(node.getChildren());
+
+        node.createChild("A").build();
+        Map<String, Node> first = node.getChildren();
+        Assert.assertSame(first, node.getChildren());
+
+        node.createChild("B").build();
+        Map<String, Node> second = node.getChildren();
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals(1, first.size());
+        Assert.assertEquals(2, second.size());
+
+        node.removeChild("A");
+        Assert.assertEquals(2, second.size());
+        Assert.assertEquals(1, node.getChildren().size());
+    }
+
+    /**
+     * Ensures configuration and attribute handlers run without holding
+     * the node's monitor, after the update is stored.
+     */
+    @Test
+    public void handlersOutsideMonitor() {
+        final Node node = new Node("Test", null, null);
+        final AtomicReference<Value> config = new AtomicReference<>();
+        final AtomicReference<Value> attribute = new AtomicReference<>();
+        node.getListener().setConfigHandler(new Handler<ValueUpdate>() {
+            @Override
+            public void handle(ValueUpdate event) {
+                config.set(readFromOtherThread(node, "$" + event.name()));
+            }
+        });
+        node.getListener().setAttributeHandler(new Handler<ValueUpdate>() {
+            @Override
+            public void handle(ValueUpdate event) {
+                attribute.set(readFromOtherThread(node, "@" + event.name()));
+            }
+        });
+
+        node.setConfig("a", new Value(1));
+        Assert.assertEquals(new Value(1), config.get());
+        node.setAttribute("b", new Value(2));
+        Assert.assertEquals(new Value(2), attribute.get());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void childrenUnmodifiable() {
+        Node node = new Node("Test", null, null);
+        node.createChild("A").build();
+        node.getChildren().remove("A");
+    }
+
+    private static Value readFromOtherThread(final Node node, final String name) {
+        final AtomicReference<Value> read = new AtomicReference<>();
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                if (name.startsWith("$")) {
+                    read.set(node.getConfig(name.substring(1)));
+                } else {
+                    read.set(node.getAttribute(name.substring(1)));
+                }
+            }
+        });
+        reader.setDaemon(true);
+        reader.start();
+        try {
+            reader.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        return read.get();
+    }
 }
@@ -0,0 +1,294 @@
+package org.dsa.iot.dslink.node;
+
+import org.dsa.iot.dslink.link.Linkable;
+import org.dsa.iot.dslink.node.value.Value;
+import org.dsa.iot.dslink.node.value.ValuePair;
+import org.dsa.iot.dslink.node.value.ValueType;
+import org.junit.Assert;
+import org.junit.Test;
+import org.vertx.java.core.Handler;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests publishing node values and notifying subscribers of them.
+ *
+ * @author Samuel Grenier
+ */
+public class NodeValueTest {
+
+    /**
+     * Ensures many writers of a node never post updates at the same time
+     * and that the last update posted carries the last published value.
+     */
+    @Test
+    public void concurrentWriters() throws InterruptedException {
+        final RecordingManager manager = new RecordingManager();
+        final Node node = createNode(manager);
+        final AtomicBoolean sameValue = new AtomicBoolean();
+        node.getListener().setValueHandler(new Handler<ValuePair>() {
+            @Override
+            public void handle(ValuePair event) {
+                Value prev = event.getPrevious();
+                if (prev != null && prev.equals(event.getCurrent())) {
+                    sameValue.set(true);
+                }
+            }
+        });
+
+        final int writers = 8;
+        final int values = 20000;
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[writers];
+        for (int w = 0; w < writers; w++) {
+            final int writer = w;
+            threads[w] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < values; i++) {
+                        node.setValue(new Value(writer * values + i));
+                    }
+                }
+            });
+            threads[w].start();
+        }
+        start.countDown();
+        for (Thread t : threads) {
+            t.join(TimeUnit.SECONDS.toMillis(30));
+            Assert.assertFalse(t.isAlive());
+        }
+
+        Assert.assertFalse(manager.overlapped.get());
+        Assert.assertFalse(sameValue.get());
+        Assert.assertTrue(manager.posts.get() > 0);
+        Assert.assertSame(node.getValue(), manager.last.get());
+    }
+
+    /**
+     * Ensures the value handler is called once per update with the value
+     * the update replaces.
+     */
+    @Test
+    public void handlerCalledOnce() throws InterruptedException {
+        final Node node = createNode(null);
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicBoolean stale = new AtomicBoolean();
+        final AtomicReference<Value> last = new AtomicReference<>();
+        node.getListener().setValueHandler(new Handler<ValuePair>() {
+            @Override
+            public void handle(ValuePair event) {
+                calls.incrementAndGet();
+                if (event.getPrevious() != last.get()) {
+                    stale.set(true);
+                }
+                last.set(event.getCurrent());
+            }
+        });
+
+        final int writers = 4;
+        final int values = 5000;
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[writers];
+        for (int w = 0; w < writers; w++) {
+            final int writer = w;
+            threads[w] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < values; i++) {
+                        node.setValue(new Value(writer * values + i));
+                    }
+                }
+            });
+            threads[w].start();
+        }
+        start.countDown();
+        for (Thread t : threads) {
+            t.join(TimeUnit.SECONDS.toMillis(30));
+            Assert.assertFalse(t.isAlive());
+        }
+
+        Assert.assertEquals(writers * values, calls.get());
+        Assert.assertFalse(stale.get());
+        Assert.assertSame(last.get(), node.getValue());
+    }
+
+    /**
+     * Ensures a slow value handler doesn't block readers of the node.
+     */
+    @Test
+    public void slowHandler() throws InterruptedException {
+        final Node node = createNode(null);
+        node.setValue(new Value(0));
+
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        node.getListener().setValueHandler(new Handler<ValuePair>() {
+            @Override
+            public void handle(ValuePair event) {
+                entered.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                node.setValue(new Value(1));
+            }
+        });
+        writer.start();
+        Assert.assertTrue(entered.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(new Value(0), node.getValue());
+        // Operations taking the node's monitor aren't blocked either
+        Assert.assertNull(node.getAttribute("unit"));
+
+        release.countDown();
+        writer.join(5000);
+        Assert.assertEquals(new Value(1), node.getValue());
+    }
+
+    /**
+     * Ensures a rejected value is neither published nor posted.
+     */
+    @Test
+    public void rejected() {
+        RecordingManager manager = new RecordingManager();
+        Node node = createNode(manager);
+        node.setValue(new Value(0));
+        node.getListener().setValueHandler(new Handler<ValuePair>() {
+            @Override
+            public void handle(ValuePair event) {
+                event.setReject(true);
+            }
+        });
+
+        node.setValue(new Value(1));
+        Assert.assertEquals(new Value(0), node.getValue());
+        Assert.assertEquals(1, manager.posts.get());
+    }
+
+    /**
+     * Ensures writers aren't serialized on the listener while it has no
+     * value handler.
+     */
+    @Test
+    public void listenerWithoutHandler() throws InterruptedException {
+        final Node node = createNode(null);
+        NodeListener listener = node.getListener();
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                node.setValue(new Value(1));
+            }
+        });
+        synchronized (listener) {
+            writer.start();
+            writer.join(5000);
+            Assert.assertFalse(writer.isAlive());
+        }
+        Assert.assertEquals(new Value(1), node.getValue());
+    }
+
+    /**
+     * Ensures a writer stops posting for other writers after a bounded
+     * amount of rounds and the latest value is still posted.
+     */
+    @Test
+    public void repostHandOff() throws InterruptedException {
+        final AtomicReference<Node> target = new AtomicReference<>();
+        final Thread caller = Thread.currentThread();
+        final AtomicInteger callerPosts = new AtomicInteger();
+        final AtomicInteger posts = new AtomicInteger();
+        final AtomicReference<Value> last = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        SubscriptionManager manager = new SubscriptionManager(null) {
+            @Override
+            public void postValueUpdate(Node node) {
+                if (Thread.currentThread() == caller) {
+                    callerPosts.incrementAndGet();
+                }
+                last.set(node.getValue());
+                final int count = posts.incrementAndGet();
+                if (count >= 100) {
+                    done.countDown();
+                    return;
+                }
+                // Another writer marks the node dirty while it is posted
+                Thread writer = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        target.get().setValue(new Value(count));
+                    }
+                });
+                writer.start();
+                try {
+                    writer.join(5000);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        Node node = createNode(manager);
+        target.set(node);
+
+        node.setValue(new Value(-1));
+        Assert.assertEquals(Node.MAX_REPOSTS, callerPosts.get());
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(new Value(99), node.getValue());
+        Assert.assertSame(node.getValue(), last.get());
+    }
+
+    private static Node createNode(final SubscriptionManager manager) {
+        Linkable link = new Linkable(null) {
+            @Override
+            public SubscriptionManager getSubscriptionManager() {
+                return manager;
+            }
+        };
+        Node node = new Node("Test", null, link);
+        node.setValueType(ValueType.NUMBER);
+        return node;
+    }
+
+    /**
+     * Records updates posted to subscribers instead of writing them.
+     */
+    private static class RecordingManager extends SubscriptionManager {
+
+        private final AtomicInteger posting = new AtomicInteger();
+        private final AtomicBoolean overlapped = new AtomicBoolean();
+        private final AtomicInteger posts = new AtomicInteger();
+        private final AtomicReference<Value> last = new AtomicReference<>();
+
+        RecordingManager() {
+            super(null);
+        }
+
+        @Override
+        public void postValueUpdate(Node node) {
+            if (posting.incrementAndGet() != 1) {
+                overlapped.set(true);
+            }
+            last.set(node.getValue());
+            posts.incrementAndGet();
+            posting.decrementAndGet();
+        }
+    }
+}
@@ -66,6 +66,24 @@ public class ConfigurationTest {
         config.setKeys((LocalKeys) null);
     }
 
+    /**
+     * Ensures the maximum adaptive interval can't be below the minimum.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void adaptiveIntervalBounds() {
+        Configuration config = new Configuration();
+        config.setAdaptiveInterval(50, 10);
+    }
+
+    /**
+     * Ensures the target latency of the adaptive interval is positive.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void targetLatencyPositive() {
+        Configuration config = new Configuration();
+        config.setTargetLatency(0);
+    }
+
     /**
      * Ensures that the validation passes on proper data.
      */
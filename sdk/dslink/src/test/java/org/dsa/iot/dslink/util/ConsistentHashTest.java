@@ -0,0 +1,78 @@
+package org.dsa.iot.dslink.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Samuel Grenier
+ */
+public class ConsistentHashTest {
+
+    @Test
+    public void singleNode() {
+        ConsistentHash hash = new ConsistentHash(1);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(0, hash.nodeOf(i));
+        }
+    }
+
+    /**
+     * Ensures sequential keys are spread evenly across the nodes.
+     */
+    @Test
+    public void distribution() {
+        int nodes = 8;
+        int keys = 80000;
+        ConsistentHash hash = new ConsistentHash(nodes);
+        int[] counts = new int[nodes];
+        for (int i = 0; i < keys; i++) {
+            counts[hash.nodeOf(i)]++;
+        }
+
+        int expected = keys / nodes;
+        for (int count : counts) {
+            Assert.assertTrue("count " + count, count > expected / 2);
+            Assert.assertTrue("count " + count, count < expected * 2);
+        }
+    }
+
+    /**
+     * Ensures small keys don't all land on the same node.
+     */
+    @Test
+    public void smallKeys() {
+        ConsistentHash hash = new ConsistentHash(4);
+        boolean[] used = new boolean[4];
+        for (int i = 0; i < 64; i++) {
+            used[hash.nodeOf(i)] = true;
+        }
+        for (boolean u : used) {
+            Assert.assertTrue(u);
+        }
+    }
+
+    /**
+     * Ensures adding a node only moves keys onto the new node.
+     */
+    @Test
+    public void consistency() {
+        ConsistentHash before = new ConsistentHash(4);
+        ConsistentHash after = new ConsistentHash(5);
+        int moved = 0;
+        for (int i = 0; i < 10000; i++) {
+            int a = before.nodeOf(i);
+            int b = after.nodeOf(i);
+            if (a != b) {
+                Assert.assertEquals(4, b);
+                moved++;
+            }
+        }
+        Assert.assertTrue(moved > 0);
+        Assert.assertTrue(moved < 10000 / 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void noNodes() {
+        new ConsistentHash(0);
+    }
+}
@@ -0,0 +1,198 @@
+package org.dsa.iot.dslink.util;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests scheduling and cancelling tasks on the hashed wheel timer.
+ *
+ * @author Samuel Grenier
+ */
+public class HashedWheelTimerTest {
+
+    private ExecutorService executor;
+    private HashedWheelTimer timer;
+
+    @Before
+    public void setup() {
+        executor = Executors.newFixedThreadPool(2);
+        timer = new HashedWheelTimer("test", executor, 1, TimeUnit.MILLISECONDS, 8);
+    }
+
+    @After
+    public void teardown() {
+        timer.stop();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Ensures a task doesn't run before its deadline, including deadlines
+     * beyond a full turn of the wheel.
+     */
+    @Test
+    public void delayed() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+        timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        }, 30, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(1, timer.getPending());
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Assert.assertTrue("Ran after " + elapsed + " ms", elapsed >= 30);
+    }
+
+    /**
+     * Ensures a task without a delay runs right away.
+     */
+    @Test
+    public void immediate() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        HashedWheelTimer.Timeout timeout = timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        }, 0, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        awaitDone(timeout);
+        Assert.assertEquals(0, timer.getPending());
+    }
+
+    /**
+     * Ensures a cancelled task never runs.
+     */
+    @Test
+    public void cancel() throws InterruptedException {
+        final AtomicInteger runs = new AtomicInteger();
+        HashedWheelTimer.Timeout timeout = timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+            }
+        }, 20, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(timeout.cancel());
+        Assert.assertFalse(timeout.cancel());
+        Assert.assertTrue(timeout.isCancelled());
+        Assert.assertEquals(0, timer.getPending());
+
+        Thread.sleep(60);
+        Assert.assertEquals(0, runs.get());
+    }
+
+    /**
+     * Ensures periodic tasks run until they are cancelled.
+     */
+    @Test
+    public void periodic() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(3);
+        final AtomicInteger runs = new AtomicInteger();
+        HashedWheelTimer.Timeout timeout = timer.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+                latch.countDown();
+            }
+        }, 0, 5, 5, TimeUnit.MILLISECONDS, null);
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(1, timer.getPending());
+
+        timeout.cancel();
+        Thread.sleep(20);
+        int count = runs.get();
+        Thread.sleep(40);
+        Assert.assertEquals(count, runs.get());
+        Assert.assertEquals(0, timer.getPending());
+    }
+
+    /**
+     * Ensures many tasks expiring in the same tick all run.
+     */
+    @Test
+    public void batches() throws InterruptedException {
+        int tasks = HashedWheelTimer.BATCH_SIZE * 4 + 1;
+        final CountDownLatch latch = new CountDownLatch(tasks);
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        };
+        for (int i = 0; i < tasks; i++) {
+            timer.schedule(task, 5, TimeUnit.MILLISECONDS);
+        }
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Ensures tasks rejected by a saturated executor are retried until they
+     * run rather than staying pending forever.
+     */
+    @Test
+    public void rejectedRetried() throws InterruptedException {
+        final AtomicInteger rejections = new AtomicInteger(3);
+        Executor saturated = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                if (rejections.getAndDecrement() > 0) {
+                    throw new RejectedExecutionException();
+                }
+                executor.execute(command);
+            }
+        };
+
+        final CountDownLatch latch = new CountDownLatch(2);
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        };
+        HashedWheelTimer.Timeout now = timer.schedule(task, 0, TimeUnit.MILLISECONDS, saturated);
+        HashedWheelTimer.Timeout later = timer.schedule(task, 5, TimeUnit.MILLISECONDS, saturated);
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        awaitDone(now);
+        awaitDone(later);
+        Assert.assertEquals(0, timer.getPending());
+    }
+
+    /**
+     * Ensures tasks of an executor that was shut down are cancelled.
+     */
+    @Test
+    public void rejectedShutdown() throws InterruptedException {
+        ExecutorService shutdown = Executors.newSingleThreadExecutor();
+        shutdown.shutdown();
+        HashedWheelTimer.Timeout timeout = timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }, 2, TimeUnit.MILLISECONDS, shutdown);
+        for (int i = 0; i < 500 && !timeout.isCancelled(); i++) {
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(timeout.isCancelled());
+        Assert.assertEquals(0, timer.getPending());
+    }
+
+    private static void awaitDone(HashedWheelTimer.Timeout timeout) throws InterruptedException {
+        for (int i = 0; i < 500 && !timeout.isDone(); i++) {
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(timeout.isDone());
+    }
+}
@@ -0,0 +1,47 @@
+package org.dsa.iot.dslink.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Samuel Grenier
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void empty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(-1, histogram.getPercentile(50));
+        Assert.assertEquals(-1, histogram.getMean(), 0);
+    }
+
+    @Test
+    public void percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 90; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(3));
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(5));
+        }
+
+        Assert.assertEquals(100, histogram.getCount());
+        Assert.assertEquals(90, histogram.getBucket(2));
+        Assert.assertEquals(5000, histogram.getMax());
+        Assert.assertEquals(4, histogram.getPercentile(50));
+        Assert.assertEquals(4, histogram.getPercentile(90));
+        Assert.assertEquals(5000, histogram.getPercentile(99));
+        Assert.assertEquals(502.7, histogram.getMean(), 0.001);
+    }
+
+    @Test
+    public void overflow() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(TimeUnit.DAYS.toNanos(1));
+        Assert.assertEquals(1, histogram.getBucket(LatencyHistogram.BUCKETS - 1));
+        Assert.assertEquals(TimeUnit.DAYS.toMicros(1), histogram.getPercentile(100));
+    }
+}
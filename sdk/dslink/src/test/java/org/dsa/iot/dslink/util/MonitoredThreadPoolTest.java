@@ -0,0 +1,233 @@
+package org.dsa.iot.dslink.util;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the metrics and bounds of monitored thread pools.
+ *
+ * @author Samuel Grenier
+ */
+public class MonitoredThreadPoolTest {
+
+    private MonitoredThreadPool pool;
+
+    @After
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Ensures the latency and execution time of tasks are recorded.
+     */
+    @Test
+    public void metrics() throws InterruptedException {
+        pool = new MonitoredThreadPool("test", true, new ExecutorConfig(1));
+        final CountDownLatch latch = new CountDownLatch(2);
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        };
+        pool.execute(task);
+        pool.schedule(task, 10, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+        pool.shutdown();
+        Assert.assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+        Assert.assertEquals(2, pool.getLatency().getCount());
+        Assert.assertEquals(2, pool.getExecutionTime().getCount());
+        Assert.assertEquals(0, pool.getQueueDepth());
+    }
+
+    /**
+     * Ensures tasks are rejected once the queue is full.
+     */
+    @Test
+    public void bounded() throws InterruptedException {
+        ExecutorConfig config = new ExecutorConfig(1);
+        config.setMaxQueued(1);
+        pool = new MonitoredThreadPool("test", true, config);
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        pool.execute(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        Runnable noop = new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+        pool.execute(noop);
+        Assert.assertEquals(1, pool.getQueueDepth());
+        try {
+            pool.execute(noop);
+            Assert.fail("Task should have been rejected");
+        } catch (RejectedExecutionException ignored) {
+        }
+        Assert.assertEquals(1, pool.getRejected());
+
+        // The submitter runs the task once the policy is changed
+        config.setRejectionPolicy(RejectionPolicy.CALLER_RUNS);
+        pool.configure(config);
+        final Thread caller = Thread.currentThread();
+        final boolean[] ranOnCaller = new boolean[1];
+        pool.execute(new Runnable() {
+            @Override
+            public void run() {
+                ranOnCaller[0] = Thread.currentThread() == caller;
+            }
+        });
+        Assert.assertTrue(ranOnCaller[0]);
+        Assert.assertEquals(2, pool.getRejected());
+        release.countDown();
+    }
+
+    /**
+     * Ensures delayed and periodic tasks neither count towards the bound
+     * nor get evicted to make room.
+     */
+    @Test
+    public void scheduledNotBounded() throws InterruptedException {
+        ExecutorConfig config = new ExecutorConfig(1);
+        config.setMaxQueued(1);
+        config.setRejectionPolicy(RejectionPolicy.DISCARD_OLDEST);
+        pool = new MonitoredThreadPool("test", true, config);
+
+        Runnable noop = new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+        for (int i = 0; i < 100; i++) {
+            pool.schedule(noop, 1, TimeUnit.HOURS);
+        }
+        ScheduledFuture<?> periodic = pool.scheduleWithFixedDelay(noop, 1, 1, TimeUnit.HOURS);
+
+        final CountDownLatch ran = new CountDownLatch(1);
+        pool.execute(new Runnable() {
+            @Override
+            public void run() {
+                ran.countDown();
+            }
+        });
+        Assert.assertTrue(ran.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(0, pool.getRejected());
+        Assert.assertFalse(periodic.isCancelled());
+        Assert.assertEquals(101, pool.getQueueDepth());
+
+        config.setRejectionPolicy(RejectionPolicy.ABORT);
+        pool.configure(config);
+        final CountDownLatch again = new CountDownLatch(1);
+        pool.execute(new Runnable() {
+            @Override
+            public void run() {
+                again.countDown();
+            }
+        });
+        Assert.assertTrue(again.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(0, pool.getRejected());
+    }
+
+    /**
+     * Ensures the task that waited the longest is dropped to make room.
+     */
+    @Test
+    public void discardOldest() throws InterruptedException {
+        ExecutorConfig config = new ExecutorConfig(1);
+        config.setMaxQueued(1);
+        config.setRejectionPolicy(RejectionPolicy.DISCARD_OLDEST);
+        pool = new MonitoredThreadPool("test", true, config);
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        pool.execute(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(0, pool.getWaiting());
+
+        final boolean[] oldestRan = new boolean[1];
+        final CountDownLatch newestRan = new CountDownLatch(1);
+        pool.execute(new Runnable() {
+            @Override
+            public void run() {
+                oldestRan[0] = true;
+            }
+        });
+        pool.execute(new Runnable() {
+            @Override
+            public void run() {
+                newestRan.countDown();
+            }
+        });
+        Assert.assertEquals(1, pool.getWaiting());
+        Assert.assertEquals(1, pool.getRejected());
+
+        release.countDown();
+        Assert.assertTrue(newestRan.await(5, TimeUnit.SECONDS));
+        Assert.assertFalse(oldestRan[0]);
+        Assert.assertEquals(0, pool.getWaiting());
+    }
+
+    /**
+     * Ensures cancelled tasks leave the queue.
+     */
+    @Test
+    public void cancel() {
+        pool = new MonitoredThreadPool("test", true, new ExecutorConfig(1));
+        ScheduledFuture<?> future = pool.schedule(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }, 1, TimeUnit.HOURS);
+        Assert.assertEquals(1, pool.getQueueDepth());
+        Assert.assertTrue(future.cancel(false));
+        Assert.assertEquals(0, pool.getQueueDepth());
+    }
+
+    /**
+     * Ensures the pools of each purpose are separate.
+     */
+    @Test
+    public void pools() {
+        Assert.assertNotSame(Objects.getPool(ExecutorType.IO),
+                Objects.getPool(ExecutorType.PERSISTENCE));
+        Assert.assertSame(Objects.getThreadPool(),
+                Objects.getPool(ExecutorType.ACTION));
+        Assert.assertSame(Objects.getDaemonThreadPool(),
+                Objects.getPool(ExecutorType.IO));
+
+        ExecutorConfig config = new ExecutorConfig(3);
+        Objects.setExecutorConfig(ExecutorType.PERSISTENCE, config);
+        Assert.assertEquals(3, Objects.getPool(ExecutorType.PERSISTENCE).getCorePoolSize());
+        Objects.setExecutorConfig(ExecutorType.PERSISTENCE,
+                ExecutorConfig.defaultOf(ExecutorType.PERSISTENCE));
+    }
+}
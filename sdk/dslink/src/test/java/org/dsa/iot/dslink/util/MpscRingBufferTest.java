@@ -0,0 +1,84 @@
+package org.dsa.iot.dslink.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * @author Samuel Grenier
+ */
+public class MpscRingBufferTest {
+
+    @Test
+    public void bounded() {
+        MpscRingBuffer<Integer> queue = new MpscRingBuffer<>(3);
+        Assert.assertEquals(4, queue.capacity());
+        Assert.assertTrue(queue.isEmpty());
+        Assert.assertNull(queue.poll());
+
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(queue.offer(i));
+        }
+        Assert.assertFalse(queue.offer(4));
+        Assert.assertEquals(4, queue.size());
+
+        Assert.assertEquals(0, (int) queue.poll());
+        Assert.assertTrue(queue.offer(4));
+        for (int i = 1; i < 5; i++) {
+            Assert.assertEquals(i, (int) queue.poll());
+        }
+        Assert.assertTrue(queue.isEmpty());
+    }
+
+    /**
+     * Ensures every element offered concurrently is polled exactly once
+     * and in order for each producer.
+     */
+    @Test
+    public void producers() throws InterruptedException {
+        final int producers = 8;
+        final int count = 50000;
+        final MpscRingBuffer<long[]> queue = new MpscRingBuffer<>(64);
+        final CountDownLatch start = new CountDownLatch(1);
+
+        for (int p = 0; p < producers; p++) {
+            final int id = p;
+            Thread t = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < count; i++) {
+                        long[] element = new long[] {id, i};
+                        while (!queue.offer(element)) {
+                            Thread.yield();
+                        }
+                    }
+                }
+            });
+            t.setDaemon(true);
+            t.start();
+        }
+
+        start.countDown();
+        long[] next = new long[producers];
+        int received = 0;
+        long deadline = System.currentTimeMillis() + 30000;
+        while (received < producers * count) {
+            long[] element = queue.poll();
+            if (element == null) {
+                Assert.assertTrue(System.currentTimeMillis() < deadline);
+                Thread.yield();
+                continue;
+            }
+            int id = (int) element[0];
+            Assert.assertEquals(next[id]++, element[1]);
+            received++;
+        }
+        Assert.assertNull(queue.poll());
+    }
+}
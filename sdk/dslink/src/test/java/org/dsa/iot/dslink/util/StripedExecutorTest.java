@@ -0,0 +1,128 @@
+package org.dsa.iot.dslink.util;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests ordering and parallelism of striped executors.
+ *
+ * @author Samuel Grenier
+ */
+public class StripedExecutorTest {
+
+    private ExecutorService executor;
+
+    @Before
+    public void setup() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void teardown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Ensures tasks of the same key run in the order they were submitted
+     * and never at the same time.
+     */
+    @Test
+    public void ordered() throws InterruptedException {
+        StripedExecutor striped = new StripedExecutor(executor, 8);
+        final int keys = 32;
+        final int tasks = 1000;
+        final int[] last = new int[keys];
+        final AtomicInteger[] running = new AtomicInteger[keys];
+        final AtomicBoolean failed = new AtomicBoolean();
+        final CountDownLatch latch = new CountDownLatch(keys * tasks);
+        for (int k = 0; k < keys; k++) {
+            running[k] = new AtomicInteger();
+        }
+
+        for (int i = 1; i <= tasks; i++) {
+            for (int k = 0; k < keys; k++) {
+                final int key = k;
+                final int seq = i;
+                striped.execute(key, new Runnable() {
+                    @Override
+                    public void run() {
+                        if (running[key].incrementAndGet() != 1
+                                || last[key] != seq - 1) {
+                            failed.set(true);
+                        }
+                        last[key] = seq;
+                        running[key].decrementAndGet();
+                        latch.countDown();
+                    }
+                });
+            }
+        }
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertFalse(failed.get());
+        Assert.assertEquals(0, striped.getQueued());
+    }
+
+    /**
+     * Ensures a blocked key doesn't hold back keys of other stripes.
+     */
+    @Test
+    public void parallel() throws InterruptedException {
+        StripedExecutor striped = new StripedExecutor(executor, 2);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch other = new CountDownLatch(1);
+        striped.execute(0, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+        striped.execute(1, new Runnable() {
+            @Override
+            public void run() {
+                other.countDown();
+            }
+        });
+        Assert.assertTrue(other.await(5, TimeUnit.SECONDS));
+        release.countDown();
+    }
+
+    /**
+     * Ensures a failing task doesn't stop the tasks after it.
+     */
+    @Test
+    public void failure() throws InterruptedException {
+        StripedExecutor striped = new StripedExecutor(executor, 1);
+        final CountDownLatch latch = new CountDownLatch(1);
+        striped.execute("key", new Runnable() {
+            @Override
+            public void run() {
+                throw new RuntimeException("Expected");
+            }
+        });
+        striped.execute("key", new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        });
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void stripesRounded() {
+        Assert.assertEquals(8, new StripedExecutor(executor, 5).getStripes());
+    }
+}
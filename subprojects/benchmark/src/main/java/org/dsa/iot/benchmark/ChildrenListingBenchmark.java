@@ -0,0 +1,68 @@
+package org.dsa.iot.benchmark;
+
+import org.dsa.iot.dslink.node.Node;
+import org.dsa.iot.dslink.node.NodeManager;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures listing the children of a large node, as list responses and
+ * serialization do. The previous behavior, which copied the children on
+ * every call, is kept here as the baseline. The churn benchmark changes
+ * a child before every listing, which is the worst case for snapshots.
+ *
+ * @author Samuel Grenier
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ChildrenListingBenchmark {
+
+    @Param({"100", "5000", "50000"})
+    public int children;
+
+    private Node node;
+    private int next;
+
+    @Setup
+    public void setup() {
+        NodeManager manager = new NodeManager(null, "node");
+        node = manager.createRootNode("parent").build();
+        for (int i = 0; i < children; i++) {
+            node.createChild("child" + i).build();
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void snapshot(Blackhole bh) {
+        list(node.getChildren(), bh);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void copy(Blackhole bh) {
+        list(new HashMap<>(node.getChildren()), bh);
+    }
+
+    @Benchmark
+    public void churn(Blackhole bh) {
+        node.removeChild("child" + next);
+        node.createChild("child" + next).build();
+        next = (next + 1) % children;
+        list(node.getChildren(), bh);
+    }
+
+    private static void list(Map<String, Node> children, Blackhole bh) {
+        for (Node child : children.values()) {
+            bh.consume(child.getName());
+        }
+    }
+}
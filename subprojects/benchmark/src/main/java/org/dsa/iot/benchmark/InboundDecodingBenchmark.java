@@ -0,0 +1,92 @@
+package org.dsa.iot.benchmark;
+
+import org.dsa.iot.dslink.connection.InboundFrame;
+import org.dsa.iot.dslink.connection.MessageView;
+import org.dsa.iot.dslink.connection.UpdateRow;
+import org.dsa.iot.dslink.connection.codec.JsonCodec;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares decoding a batch of subscription updates into a full JSON tree
+ * against reading the rows through the lazy message view.
+ *
+ * @author Samuel Grenier
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(InboundDecodingBenchmark.UPDATES)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class InboundDecodingBenchmark {
+
+    static final int UPDATES = 1000;
+
+    private final JsonCodec codec = new JsonCodec();
+    private Buffer frame;
+
+    @Setup
+    public void setup() {
+        JsonArray updates = new JsonArray();
+        for (int i = 0; i < UPDATES; i++) {
+            JsonArray update = new JsonArray();
+            update.addNumber(i);
+            update.addNumber(i * 1.5);
+            update.addString("2015-06-01T00:00:00.000-00:00");
+            updates.addArray(update);
+        }
+
+        JsonObject resp = new JsonObject();
+        resp.putNumber("rid", 0);
+        resp.putArray("updates", updates);
+
+        JsonArray responses = new JsonArray();
+        responses.addObject(resp);
+
+        JsonObject top = new JsonObject();
+        top.putArray("responses", responses);
+        frame = new Buffer(top.encode(), "UTF-8");
+    }
+
+    /**
+     * The previous decoding path where the entire frame is decoded and
+     * every row is a JSON array.
+     */
+    @Benchmark
+    public void tree(Blackhole bh) {
+        JsonObject obj = new JsonObject(frame.toString("UTF-8"));
+        for (Object resp : obj.getArray("responses")) {
+            JsonArray updates = ((JsonObject) resp).getArray("updates");
+            for (Object update : updates) {
+                JsonArray row = (JsonArray) update;
+                bh.consume(row.get(0));
+                bh.consume(row.get(1));
+                bh.consume(row.get(2));
+            }
+        }
+    }
+
+    @Benchmark
+    public void lazy(final Blackhole bh) {
+        InboundFrame decoded = codec.decodeFrame(frame);
+        for (MessageView view : decoded.getResponses()) {
+            bh.consume(view.getRid());
+            view.readUpdates(new Handler<UpdateRow>() {
+                @Override
+                public void handle(UpdateRow row) {
+                    bh.consume(row.get(0));
+                    bh.consume(row.get(1));
+                    bh.consume(row.get(2));
+                }
+            });
+        }
+    }
+}
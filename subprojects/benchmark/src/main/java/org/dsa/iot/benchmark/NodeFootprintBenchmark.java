@@ -0,0 +1,106 @@
+package org.dsa.iot.benchmark;
+
+import org.dsa.iot.dslink.node.Node;
+import org.dsa.iot.dslink.node.NodeBuilder;
+import org.dsa.iot.dslink.node.NodeManager;
+import org.dsa.iot.dslink.node.value.Value;
+import org.dsa.iot.dslink.node.value.ValuePair;
+import org.dsa.iot.dslink.node.value.ValueType;
+import org.openjdk.jmh.annotations.*;
+import org.vertx.java.core.Handler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds node trees of increasing size and reports the heap retained per
+ * node once the tree is built. Every node carries a value and an
+ * attribute, and every tenth node a value handler, much like a typical
+ * responder tree. The retained size is printed after each iteration; the
+ * measured time is how long the tree took to build.
+ *
+ * @author Samuel Grenier
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+public class NodeFootprintBenchmark {
+
+    private static final int FAN_OUT = 10;
+    private static final Handler<ValuePair> HANDLER = new Handler<ValuePair>() {
+        @Override
+        public void handle(ValuePair event) {
+        }
+    };
+
+    @Param({"10000", "100000", "1000000"})
+    public int nodes;
+
+    private NodeManager manager;
+    private long baseline;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        manager = null;
+        baseline = usedHeap();
+    }
+
+    @TearDown(Level.Iteration)
+    public void teardown() {
+        long retained = usedHeap() - baseline;
+        System.out.printf("%n%d nodes: %d bytes retained, %.1f bytes/node%n",
+                nodes, retained, (double) retained / nodes);
+        manager = null;
+    }
+
+    @Benchmark
+    public NodeManager build() {
+        NodeManager manager = new NodeManager(null, "node");
+        Node[] level = new Node[] { manager.getSuperRoot() };
+        int created = 0;
+        while (created < nodes) {
+            Node[] next = new Node[level.length * FAN_OUT];
+            int size = 0;
+            for (Node parent : level) {
+                for (int i = 0; i < FAN_OUT && created < nodes; i++) {
+                    next[size++] = create(parent, created++);
+                }
+            }
+            level = new Node[size];
+            System.arraycopy(next, 0, level, 0, size);
+        }
+        this.manager = manager;
+        return manager;
+    }
+
+    private static Node create(Node parent, int id) {
+        NodeBuilder b = parent.createChild("node" + id);
+        b.setProfile("node");
+        b.setValueType(ValueType.NUMBER);
+        b.setValue(new Value(id));
+        b.setAttribute("unit", new Value("C"));
+        if (id % 10 == 0) {
+            b.getListener().setValueHandler(HANDLER);
+        }
+        return b.build();
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // Repeated collections settle the heap before it is sampled
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
@@ -0,0 +1,74 @@
+package org.dsa.iot.benchmark;
+
+import org.dsa.iot.dslink.node.Node;
+import org.dsa.iot.dslink.node.NodeManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures resolving paths of increasing depth. The previous lookup,
+ * which splits the path and walks the tree one child at a time, is kept
+ * here as the baseline.
+ *
+ * @author Samuel Grenier
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class NodeLookupBenchmark {
+
+    private static final int PATHS = 1024;
+    private static final int FAN_OUT = 8;
+
+    @Param({"3", "6", "9", "12"})
+    public int depth;
+
+    private NodeManager manager;
+    private String[] paths;
+
+    @Setup
+    public void setup() {
+        manager = new NodeManager(null, "node");
+        paths = new String[PATHS];
+        Random random = new Random(depth);
+        for (int i = 0; i < PATHS; i++) {
+            StringBuilder path = new StringBuilder();
+            for (int d = 0; d < depth; d++) {
+                path.append("/node").append(random.nextInt(FAN_OUT));
+            }
+            paths[i] = path.toString();
+            manager.getNode(paths[i], true);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Node indexed(Cursor cursor) {
+        return manager.getNode(next(cursor)).getNode();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Node walk(Cursor cursor) {
+        String[] parts = NodeManager.splitPath(next(cursor));
+        Node current = manager.getSuperRoot();
+        for (String part : parts) {
+            current = current.getChild(part);
+        }
+        return current;
+    }
+
+    private String next(Cursor cursor) {
+        return paths[cursor.next++ & (PATHS - 1)];
+    }
+}
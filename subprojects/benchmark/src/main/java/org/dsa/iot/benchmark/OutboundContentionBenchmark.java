@@ -0,0 +1,172 @@
+package org.dsa.iot.benchmark;
+
+import org.dsa.iot.dslink.connection.IntervalUpdateManager;
+import org.dsa.iot.dslink.connection.MessageGroup;
+import org.dsa.iot.dslink.connection.OutboundMessage;
+import org.dsa.iot.dslink.node.ValueUpdate;
+import org.dsa.iot.dslink.node.value.Value;
+import org.openjdk.jmh.annotations.*;
+import org.vertx.java.core.Handler;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Measures posting value updates to the outbound queue from many threads
+ * at once. The previous synchronized queue is kept here as the baseline.
+ *
+ * @author Samuel Grenier
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(OutboundContentionBenchmark.UPDATES)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OutboundContentionBenchmark {
+
+    static final int UPDATES = 64 * 1024;
+    private static final int INTERVAL = 10;
+
+    @Param({"1", "2", "4", "8", "16", "32", "64"})
+    public int producers;
+
+    private ExecutorService executor;
+    private IntervalUpdateManager ringBuffer;
+    private LockingUpdateManager locking;
+    private List<Callable<Void>> ringTasks;
+    private List<Callable<Void>> lockingTasks;
+
+    @Setup
+    public void setup() {
+        Handler<Collection<MessageGroup>> sink = new Handler<Collection<MessageGroup>>() {
+            @Override
+            public void handle(Collection<MessageGroup> event) {
+            }
+        };
+        ringBuffer = new IntervalUpdateManager(INTERVAL, sink);
+        locking = new LockingUpdateManager(INTERVAL, sink);
+        executor = Executors.newFixedThreadPool(producers);
+
+        final int count = UPDATES / producers;
+        final Value value = new Value(1.5);
+        ringTasks = new ArrayList<>(producers);
+        lockingTasks = new ArrayList<>(producers);
+        for (int p = 0; p < producers; p++) {
+            ringTasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int i = 0; i < count; i++) {
+                        ringBuffer.post(new ValueUpdate(i, value));
+                    }
+                    return null;
+                }
+            });
+            lockingTasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int i = 0; i < count; i++) {
+                        locking.post(new ValueUpdate(i, value));
+                    }
+                    return null;
+                }
+            });
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public void synchronizedQueue() throws Exception {
+        run(lockingTasks);
+    }
+
+    @Benchmark
+    public void lockFreeQueue() throws Exception {
+        run(ringTasks);
+    }
+
+    private void run(List<Callable<Void>> tasks) throws Exception {
+        for (Future<Void> future : executor.invokeAll(tasks)) {
+            future.get();
+        }
+    }
+
+    /**
+     * The previous queue where every post takes the lock and groups the
+     * message by rid while holding it.
+     */
+    private static class LockingUpdateManager {
+
+        private final Map<Integer, MessageGroup> tasks = new LinkedHashMap<>();
+        private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r);
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        private final Handler<Collection<MessageGroup>> callback;
+        private final int updateInterval;
+
+        private long time;
+        private ScheduledFuture<?> fut;
+
+        LockingUpdateManager(int updateInterval,
+                             Handler<Collection<MessageGroup>> callback) {
+            this.updateInterval = updateInterval;
+            this.callback = callback;
+        }
+
+        synchronized void post(OutboundMessage content) {
+            List<OutboundMessage> list = new ArrayList<>(1);
+            list.add(content);
+            post(list);
+        }
+
+        synchronized void post(List<? extends OutboundMessage> content) {
+            long curr = System.currentTimeMillis();
+            long diff = curr - time;
+            if (diff > updateInterval) {
+                Map<Integer, MessageGroup> groups = new LinkedHashMap<>();
+                addTask(groups, content);
+                callback.handle(groups.values());
+            } else {
+                addTask(tasks, content);
+                if (fut == null) {
+                    fut = flusher.schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            synchronized (LockingUpdateManager.this) {
+                                if (!tasks.isEmpty()) {
+                                    callback.handle(tasks.values());
+                                    tasks.clear();
+                                }
+                                fut = null;
+                            }
+                        }
+                    }, updateInterval - diff, TimeUnit.MILLISECONDS);
+                }
+            }
+            time = curr;
+        }
+
+        private static void addTask(Map<Integer, MessageGroup> groups,
+                                    List<? extends OutboundMessage> content) {
+            for (OutboundMessage msg : content) {
+                int rid = msg.getRid();
+                MessageGroup group = groups.get(rid);
+                if (group == null) {
+                    group = new MessageGroup(rid);
+                    groups.put(rid, group);
+                }
+                group.add(msg);
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.dsa.iot.benchmark;
+
+import org.dsa.iot.dslink.connection.MessageGroup;
+import org.dsa.iot.dslink.connection.StreamWriter;
+import org.dsa.iot.dslink.connection.codec.JsonWriter;
+import org.dsa.iot.dslink.connection.codec.MsgPackWriter;
+import org.dsa.iot.dslink.node.ValueUpdate;
+import org.dsa.iot.dslink.node.value.Value;
+import org.dsa.iot.dslink.node.value.ValueUtils;
+import org.openjdk.jmh.annotations.*;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares encoding a batch of subscription updates by building a JSON
+ * tree against writing them through a reused stream writer. Run with
+ * {@code -prof gc} to see the bytes allocated per update in the
+ * {@code gc.alloc.rate.norm} column.
+ *
+ * @author Samuel Grenier
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(OutboundEncodingBenchmark.UPDATES)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OutboundEncodingBenchmark {
+
+    static final int UPDATES = 100;
+
+    private final Value[] values = new Value[UPDATES];
+    private final StreamWriter json = new JsonWriter();
+    private final StreamWriter msgPack = new MsgPackWriter();
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < UPDATES; i++) {
+            values[i] = new Value(i * 1.5);
+        }
+    }
+
+    /**
+     * The previous encoding path where every update is built as a JSON
+     * tree and the whole batch is encoded into a string.
+     */
+    @Benchmark
+    public byte[] tree() throws Exception {
+        JsonArray responses = new JsonArray();
+        for (int i = 0; i < UPDATES; i++) {
+            JsonArray update = new JsonArray();
+            update.addNumber(i);
+            ValueUtils.toJson(update, values[i]);
+            update.addString(values[i].getTimeStamp());
+
+            JsonArray updates = new JsonArray();
+            updates.addArray(update);
+
+            JsonObject resp = new JsonObject();
+            resp.putNumber("rid", 0);
+            resp.putArray("updates", updates);
+            responses.addObject(resp);
+        }
+
+        JsonObject top = new JsonObject();
+        top.putArray("responses", responses);
+        return top.encode().getBytes("UTF-8");
+    }
+
+    @Benchmark
+    public String streamJson() {
+        write(json);
+        return json.toString();
+    }
+
+    @Benchmark
+    public Buffer streamMsgPack() {
+        write(msgPack);
+        return msgPack.toBuffer();
+    }
+
+    private void write(StreamWriter writer) {
+        MessageGroup group = new MessageGroup(0);
+        for (int i = 0; i < UPDATES; i++) {
+            group.add(new ValueUpdate(i, values[i]));
+        }
+
+        writer.reset();
+        writer.writeStartObject();
+        writer.writeFieldName("responses");
+        writer.writeStartArray();
+        group.write(writer);
+        writer.writeEndArray();
+        writer.writeEndObject();
+    }
+}
@@ -0,0 +1,199 @@
+package org.dsa.iot.benchmark;
+
+import org.dsa.iot.dslink.connection.BackpressurePolicy;
+import org.dsa.iot.dslink.connection.DataHandler;
+import org.dsa.iot.dslink.connection.NetworkClient;
+import org.dsa.iot.dslink.connection.OutboundMessage;
+import org.dsa.iot.dslink.connection.ShardedClient;
+import org.dsa.iot.dslink.node.ValueUpdate;
+import org.dsa.iot.dslink.node.value.Value;
+import org.dsa.iot.dslink.util.HttpClientUtils;
+import org.dsa.iot.dslink.util.Objects;
+import org.dsa.iot.dslink.util.URLInfo;
+import org.openjdk.jmh.annotations.*;
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.http.HttpClient;
+import org.vertx.java.core.http.HttpServer;
+import org.vertx.java.core.http.ServerWebSocket;
+import org.vertx.java.core.http.WebSocket;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the throughput of subscription updates written through one or
+ * several web sockets to a local server standing in for the broker. The
+ * server decodes every frame and counts the update rows.
+ *
+ * @author Samuel Grenier
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(ShardedThroughputBenchmark.UPDATES)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ShardedThroughputBenchmark {
+
+    static final int UPDATES = 128 * 1024;
+    private static final int SIDS = 10000;
+    private static final int INTERVAL = 10;
+
+    @Param({"1", "8"})
+    public int connections;
+
+    private final AtomicLong received = new AtomicLong();
+    private volatile long target;
+    private volatile CountDownLatch done;
+
+    private HttpServer server;
+    private List<HttpClient> clients;
+    private DataHandler handler;
+    private List<OutboundMessage> updates;
+
+    @Setup
+    public void setup() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        final CountDownLatch listening = new CountDownLatch(1);
+        server = Objects.getVertx().createHttpServer();
+        server.websocketHandler(new Handler<ServerWebSocket>() {
+            @Override
+            public void handle(ServerWebSocket ws) {
+                ws.dataHandler(new Handler<Buffer>() {
+                    @Override
+                    public void handle(Buffer event) {
+                        received(event);
+                    }
+                });
+            }
+        });
+        server.listen(port, "localhost", new Handler<AsyncResult<HttpServer>>() {
+            @Override
+            public void handle(AsyncResult<HttpServer> event) {
+                listening.countDown();
+            }
+        });
+        if (!listening.await(5, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Server failed to listen");
+        }
+
+        URLInfo url = URLInfo.parse("http://localhost:" + port);
+        final NetworkClient[] shards = new NetworkClient[connections];
+        final CountDownLatch connected = new CountDownLatch(connections);
+        clients = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++) {
+            final int shard = i;
+            HttpClient client = HttpClientUtils.configure(url);
+            client.connectWebsocket("/ws?shard=" + i, new Handler<WebSocket>() {
+                @Override
+                public void handle(WebSocket event) {
+                    shards[shard] = new WebSocketClient(event);
+                    connected.countDown();
+                }
+            });
+            clients.add(client);
+        }
+        if (!connected.await(5, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Failed to connect");
+        }
+
+        handler = new DataHandler(INTERVAL);
+        // Every update must arrive for the invocation to complete
+        handler.setBackpressure(BackpressurePolicy.BLOCK, 8 * 1024 * 1024);
+        if (connections == 1) {
+            handler.setClient(shards[0]);
+        } else {
+            handler.setClient(new ShardedClient(shards));
+        }
+
+        updates = new ArrayList<>(UPDATES);
+        for (int i = 0; i < UPDATES; i++) {
+            updates.add(new ValueUpdate(i % SIDS, new Value(i)));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (HttpClient client : clients) {
+            client.close();
+        }
+        server.close();
+    }
+
+    @Benchmark
+    public void updates() throws InterruptedException {
+        done = new CountDownLatch(1);
+        target = received.get() + UPDATES;
+        handler.writeResponses(updates);
+        if (!done.await(60, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Updates didn't arrive");
+        }
+    }
+
+    private void received(Buffer frame) {
+        JsonArray responses = new JsonObject(frame.toString()).getArray("responses");
+        int rows = 0;
+        for (Object o : responses) {
+            JsonArray updates = ((JsonObject) o).getArray("updates");
+            if (updates != null) {
+                rows += updates.size();
+            }
+        }
+
+        CountDownLatch done = this.done;
+        if (received.addAndGet(rows) >= target && done != null) {
+            done.countDown();
+        }
+    }
+
+    /**
+     * Writes through a web socket connected to the broker stand-in.
+     */
+    private static class WebSocketClient implements NetworkClient {
+
+        private final WebSocket webSocket;
+
+        WebSocketClient(WebSocket webSocket) {
+            this.webSocket = webSocket;
+            webSocket.setWriteQueueMaxSize(1024 * 1024);
+        }
+
+        @Override
+        public void write(String data) {
+            webSocket.writeTextFrame(data);
+        }
+
+        @Override
+        public void write(Buffer data) {
+            webSocket.writeBinaryFrame(data);
+        }
+
+        @Override
+        public void close() {
+            webSocket.close();
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+
+        @Override
+        public boolean isWritable() {
+            return !webSocket.writeQueueFull();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package org.dsa.iot.benchmark;
+
+import org.dsa.iot.dslink.util.StripedExecutor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures applying subscription updates spread over many paths. The
+ * previous dispatch, which submits every frame to the pool and applies it
+ * under a single lock, is kept here as the baseline.
+ *
+ * @author Samuel Grenier
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(SubscriptionDispatchBenchmark.UPDATES)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SubscriptionDispatchBenchmark {
+
+    static final int UPDATES = 100000;
+    private static final int PATHS = 10000;
+    private static final int ROWS_PER_FRAME = 100;
+
+    @Param({"2", "4", "8", "16"})
+    public int threads;
+
+    private final Object lock = new Object();
+    private ExecutorService executor;
+    private StripedExecutor striped;
+    private Path[] paths;
+
+    @Setup
+    public void setup() {
+        executor = Executors.newFixedThreadPool(threads);
+        striped = new StripedExecutor(executor, threads * 4);
+        paths = new Path[PATHS];
+        for (int i = 0; i < PATHS; i++) {
+            paths[i] = new Path();
+        }
+    }
+
+    @TearDown
+    public void teardown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public void striped() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(UPDATES);
+        for (int i = 0; i < UPDATES; i++) {
+            final Path path = paths[i % PATHS];
+            final int value = i;
+            striped.execute(i % PATHS, new Runnable() {
+                @Override
+                public void run() {
+                    path.update(value);
+                    latch.countDown();
+                }
+            });
+        }
+        latch.await();
+    }
+
+    @Benchmark
+    public void locked() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(UPDATES / ROWS_PER_FRAME);
+        for (int f = 0; f < UPDATES; f += ROWS_PER_FRAME) {
+            final int first = f;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (lock) {
+                        for (int i = first; i < first + ROWS_PER_FRAME; i++) {
+                            paths[i % PATHS].update(i);
+                        }
+                    }
+                    latch.countDown();
+                }
+            });
+        }
+        latch.await();
+    }
+
+    /**
+     * Stands in for the node of a subscribed path.
+     */
+    private static class Path {
+
+        private volatile int value;
+        private long checksum;
+
+        void update(int value) {
+            this.value = value;
+            // Roughly the cost of converting and storing a value
+            for (int i = 0; i < 16; i++) {
+                checksum = checksum * 31 + (value ^ i);
+            }
+        }
+    }
+}
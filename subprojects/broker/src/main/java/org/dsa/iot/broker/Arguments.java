@@ -0,0 +1,90 @@
+package org.dsa.iot.broker;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParameterException;
+import com.beust.jcommander.Parameters;
+
+/**
+ * Command line arguments of the broker.
+ *
+ * @author Samuel Grenier
+ */
+@Parameters(separators = "= ")
+public class Arguments {
+
+    @Parameter(names = { "--port", "-p" },
+                description = "Sets the port to listen on",
+                arity = 1)
+    private int port = 8080;
+
+    @Parameter(names = { "--host" },
+                description = "Sets the host to listen on",
+                arity = 1)
+    private String host = "0.0.0.0";
+
+    @Parameter(names = { "--update-interval", "-u" },
+                description = "Sets the update interval in milliseconds",
+                arity = 1)
+    private int updateInterval = Broker.DEFAULT_UPDATE_INTERVAL;
+
+    @Parameter(names = { "--log", "-l"},
+                description = "Sets the log level",
+                arity = 1)
+    private String log = "info";
+
+    @Parameter(names = { "--help", "-h" },
+                description = "Displays the help menu",
+                help = true)
+    private boolean help = false;
+
+    /**
+     * @return Port to listen on.
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * @return Host to listen on.
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * @return Update interval in milliseconds.
+     */
+    public int getUpdateInterval() {
+        return updateInterval;
+    }
+
+    /**
+     * @return Log level.
+     */
+    public String getLogLevel() {
+        return log;
+    }
+
+    /**
+     * Parses the arguments.
+     * @param args Arguments to parse
+     * @return Populated arguments array
+     */
+    public static Arguments parse(String[] args) {
+        try {
+            Arguments parsed = new Arguments();
+            JCommander jc = new JCommander(parsed, args);
+            jc.setProgramName("<broker>");
+            if (parsed.help) {
+                jc.usage();
+                return null;
+            }
+            return parsed;
+        } catch (ParameterException pe) {
+            System.out.println("Use --help or -h to get usage help");
+            System.out.println(pe.getMessage());
+            return null;
+        }
+    }
+}
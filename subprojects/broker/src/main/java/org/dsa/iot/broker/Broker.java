@@ -0,0 +1,338 @@
+package org.dsa.iot.broker;
+
+import org.dsa.iot.dslink.connection.WireCodec;
+import org.dsa.iot.dslink.connection.codec.DeflateCodec;
+import org.dsa.iot.dslink.connection.codec.JsonCodec;
+import org.dsa.iot.dslink.connection.codec.MsgPackCodec;
+import org.dsa.iot.dslink.handshake.LocalKeys;
+import org.dsa.iot.dslink.handshake.RemoteKey;
+import org.dsa.iot.dslink.util.Objects;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.http.HttpServer;
+import org.vertx.java.core.http.HttpServerRequest;
+import org.vertx.java.core.http.ServerWebSocket;
+import org.vertx.java.core.impl.DefaultFutureResult;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URLDecoder;
+import java.security.SecureRandom;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Lightweight stand-in for a broker. Links perform the handshake on
+ * {@link #CONN_PATH} and connect to the web socket data endpoint on
+ * {@link #WS_PATH}. Requests to {@code /conns/<name>} are routed to the
+ * responder of that name.
+ * <p>
+ * The broker is meant for integration tests and benchmarks of links on a
+ * single machine. There are no permissions, no persistence and nothing is
+ * cached on behalf of the requesters.
+ *
+ * @author Samuel Grenier
+ */
+public class Broker {
+
+    public static final String CONN_PATH = "/conn";
+    public static final String WS_PATH = "/ws";
+
+    /**
+     * Default interval in milliseconds between frames sent to a link.
+     */
+    public static final int DEFAULT_UPDATE_INTERVAL = 200;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Broker.class);
+
+    private final Map<String, Link> links = new ConcurrentHashMap<>();
+    private final Map<String, Link> names = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private final Router router = new Router(this);
+    private final LocalKeys keys;
+    private final String dsId;
+
+    private volatile int updateInterval = DEFAULT_UPDATE_INTERVAL;
+    private HttpServer server;
+
+    public Broker() {
+        keys = LocalKeys.generate();
+        dsId = "broker-" + keys.encodedHashPublicKey();
+    }
+
+    /**
+     * Sets the interval sent to links in the handshake. Frames sent to a
+     * link are batched over the same interval.
+     *
+     * @param interval Interval in milliseconds, 0 to send immediately.
+     */
+    public void setUpdateInterval(int interval) {
+        if (interval < 0)
+            throw new IllegalArgumentException("interval");
+        this.updateInterval = interval;
+    }
+
+    /**
+     * @return Interval in milliseconds between frames sent to a link.
+     */
+    public int getUpdateInterval() {
+        return updateInterval;
+    }
+
+    /**
+     * @return DsId of the broker.
+     */
+    public String getDsId() {
+        return dsId;
+    }
+
+    /**
+     * Starts listening and waits until the broker is listening.
+     *
+     * @param port Port to listen on.
+     * @param host Host to listen on.
+     */
+    public void listen(int port, String host) {
+        final DefaultFutureResult<Void> result = new DefaultFutureResult<>();
+        final CountDownLatch latch = new CountDownLatch(1);
+        listen(port, host, new Handler<AsyncResult<Void>>() {
+            @Override
+            public void handle(AsyncResult<Void> event) {
+                if (event.succeeded()) {
+                    result.setResult(null);
+                } else {
+                    result.setFailure(event.cause());
+                }
+                latch.countDown();
+            }
+        });
+
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+
+        if (result.failed()) {
+            throw new RuntimeException(result.cause());
+        }
+    }
+
+    /**
+     * Starts listening without blocking.
+     *
+     * @param port    Port to listen on.
+     * @param host    Host to listen on.
+     * @param handler Called once the broker is listening or failed to.
+     */
+    public synchronized void listen(final int port,
+                                    final String host,
+                                    final Handler<AsyncResult<Void>> handler) {
+        if (host == null)
+            throw new NullPointerException("host");
+        else if (server != null)
+            throw new IllegalStateException("Already listening");
+
+        server = Objects.getVertx().createHttpServer();
+        server.requestHandler(new Handler<HttpServerRequest>() {
+            @Override
+            public void handle(HttpServerRequest event) {
+                handshake(event);
+            }
+        });
+        server.websocketHandler(new Handler<ServerWebSocket>() {
+            @Override
+            public void handle(ServerWebSocket event) {
+                connect(event);
+            }
+        });
+        server.listen(port, host, new Handler<AsyncResult<HttpServer>>() {
+            @Override
+            public void handle(AsyncResult<HttpServer> event) {
+                if (event.succeeded()) {
+                    LOGGER.info("Broker listening on {}:{}", host, port);
+                }
+                if (handler != null) {
+                    if (event.succeeded()) {
+                        handler.handle(new DefaultFutureResult<Void>((Void) null));
+                    } else {
+                        handler.handle(new DefaultFutureResult<Void>(event.cause()));
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Closes every link and stops listening.
+     */
+    public synchronized void stop() {
+        for (Link link : links.values()) {
+            link.close();
+        }
+        links.clear();
+        names.clear();
+
+        if (server != null) {
+            server.close();
+            server = null;
+        }
+    }
+
+    Router getRouter() {
+        return router;
+    }
+
+    Collection<Link> getLinks() {
+        return links.values();
+    }
+
+    /**
+     * @param name Name of a link under {@code /conns}.
+     * @return Link of the name, can be {@code null}.
+     */
+    Link getLink(String name) {
+        return names.get(name);
+    }
+
+    private void handshake(final HttpServerRequest req) {
+        if (!"POST".equals(req.method()) || !CONN_PATH.equals(req.path())) {
+            req.response().setStatusCode(HttpURLConnection.HTTP_NOT_FOUND).end();
+            return;
+        }
+
+        final String id = req.params().get("dsId");
+        if (id == null || id.isEmpty()) {
+            req.response().setStatusCode(HttpURLConnection.HTTP_BAD_REQUEST).end();
+            return;
+        }
+
+        req.bodyHandler(new Handler<Buffer>() {
+            @Override
+            public void handle(Buffer event) {
+                JsonObject in;
+                byte[] secret;
+                WireCodec codec;
+                try {
+                    in = new JsonObject(event.toString("UTF-8"));
+                    secret = RemoteKey.generate(keys, in.getString("publicKey")).getSharedSecret();
+                    codec = selectCodec(in.getArray("formats"));
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Invalid handshake from {}", id, e);
+                    req.response().setStatusCode(HttpURLConnection.HTTP_BAD_REQUEST).end();
+                    return;
+                }
+
+                String salt = "0x" + Long.toHexString(random.nextLong());
+                Link link = getOrCreate(id);
+                link.handshake(in.getBoolean("isRequester", false),
+                               in.getBoolean("isResponder", false),
+                               codec, salt, secret);
+
+                JsonObject out = new JsonObject();
+                out.putString("dsId", dsId);
+                out.putString("publicKey", keys.encodedPublicKey());
+                out.putString("wsUri", WS_PATH);
+                out.putString("httpUri", "/http");
+                // The key of the broker doubles as the temporary key
+                out.putString("tempKey", keys.encodedPublicKey());
+                out.putString("salt", salt);
+                out.putNumber("updateInterval", updateInterval);
+                out.putString("format", codec.getFormat());
+                req.response().end(out.encode());
+            }
+        });
+    }
+
+    private void connect(ServerWebSocket ws) {
+        if (!WS_PATH.equals(ws.path())) {
+            ws.reject();
+            return;
+        }
+
+        Map<String, String> params = parseQuery(ws.query());
+        String id = params.get("dsId");
+        Link link = id == null ? null : links.get(id);
+        if (link == null || !link.authenticate(params.get("auth"))) {
+            LOGGER.warn("Rejected connection of {}", id);
+            ws.reject();
+            return;
+        }
+        link.connected(ws);
+    }
+
+    /**
+     * @param id DsId of a link.
+     * @return Link of the DsId, created if it doesn't exist yet.
+     */
+    synchronized Link getOrCreate(String id) {
+        Link link = links.get(id);
+        if (link == null) {
+            link = new Link(this, id);
+            links.put(id, link);
+            // The latest link of a name takes over its path
+            names.put(link.getName(), link);
+        }
+        return link;
+    }
+
+    /**
+     * @param formats Formats supported by the link in order of preference.
+     * @return Codec of the first format the broker supports.
+     */
+    private static WireCodec selectCodec(JsonArray formats) {
+        if (formats != null) {
+            for (Object format : formats) {
+                WireCodec codec = codecOf(String.valueOf(format));
+                if (codec != null) {
+                    return codec;
+                }
+            }
+        }
+        return new JsonCodec();
+    }
+
+    private static WireCodec codecOf(String format) {
+        if (JsonCodec.FORMAT.equals(format)) {
+            return new JsonCodec();
+        } else if (MsgPackCodec.FORMAT.equals(format)) {
+            return new MsgPackCodec();
+        } else if (format.endsWith(DeflateCodec.SUFFIX)) {
+            int end = format.length() - DeflateCodec.SUFFIX.length();
+            WireCodec codec = codecOf(format.substring(0, end));
+            if (codec != null) {
+                return new DeflateCodec(codec);
+            }
+        }
+        return null;
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query == null) {
+            return params;
+        }
+
+        try {
+            for (String param : query.split("&")) {
+                int index = param.indexOf('=');
+                if (index > 0) {
+                    String name = URLDecoder.decode(param.substring(0, index), "UTF-8");
+                    String value = URLDecoder.decode(param.substring(index + 1), "UTF-8");
+                    params.put(name, value);
+                }
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+        return params;
+    }
+}
@@ -0,0 +1,294 @@
+package org.dsa.iot.broker;
+
+import org.bouncycastle.jcajce.provider.digest.SHA256;
+import org.dsa.iot.dslink.connection.WireCodec;
+import org.dsa.iot.dslink.util.Objects;
+import org.dsa.iot.dslink.util.UrlBase64;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.http.ServerWebSocket;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A link known to the broker. The link is kept across reconnections so
+ * that a session can be resumed with the salt of its last handshake.
+ * <p>
+ * Outgoing messages are batched and written once per update interval.
+ *
+ * @author Samuel Grenier
+ */
+class Link {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Link.class);
+
+    private final List<ServerWebSocket> sockets = new CopyOnWriteArrayList<>();
+    private final Object writeLock = new Object();
+    private final Broker broker;
+    private final String dsId;
+    private final String name;
+
+    // Set by the handshake
+    private volatile boolean requester;
+    private volatile boolean responder;
+    private volatile WireCodec codec;
+    private volatile String salt;
+    private volatile byte[] sharedSecret;
+
+    // Pending outgoing messages, guarded by the write lock
+    private JsonArray requests;
+    private JsonArray responses;
+    private boolean scheduled;
+
+    // Routing state, guarded by the router
+    final Map<Integer, Router.Stream> requested = new HashMap<>();
+    final Map<Integer, Router.Stream> served = new HashMap<>();
+    final Map<Integer, Router.Subscription> subscribed = new HashMap<>();
+    final Map<Integer, Router.Subscription> published = new HashMap<>();
+    int nextRid = 1;
+    int nextSid = 1;
+
+    /**
+     * @param broker Broker the link is connected to.
+     * @param dsId   DsId of the link.
+     */
+    Link(Broker broker, String dsId) {
+        this.broker = broker;
+        this.dsId = dsId;
+
+        // The DsId ends with the hash of the public key
+        int index = dsId.lastIndexOf('-');
+        this.name = index > 0 ? dsId.substring(0, index) : dsId;
+    }
+
+    /**
+     * @return DsId of the link.
+     */
+    String getDsId() {
+        return dsId;
+    }
+
+    /**
+     * @return Name of the link under {@code /conns}.
+     */
+    String getName() {
+        return name;
+    }
+
+    boolean isRequester() {
+        return requester;
+    }
+
+    boolean isResponder() {
+        return responder;
+    }
+
+    /**
+     * @return Whether the link has at least one open connection.
+     */
+    boolean isConnected() {
+        return !sockets.isEmpty();
+    }
+
+    /**
+     * Records the result of a handshake.
+     *
+     * @param requester    Whether the link is a requester.
+     * @param responder    Whether the link is a responder.
+     * @param codec        Codec of the negotiated format.
+     * @param salt         Salt sent to the link.
+     * @param sharedSecret Secret shared with the link.
+     */
+    void handshake(boolean requester,
+                   boolean responder,
+                   WireCodec codec,
+                   String salt,
+                   byte[] sharedSecret) {
+        this.requester = requester;
+        this.responder = responder;
+        this.codec = codec;
+        this.salt = salt;
+        this.sharedSecret = sharedSecret;
+    }
+
+    /**
+     * @param auth Authentication parameter of the data endpoint.
+     * @return Whether the parameter matches the salt and shared secret of
+     *         the last handshake.
+     */
+    boolean authenticate(String auth) {
+        String salt = this.salt;
+        byte[] secret = this.sharedSecret;
+        if (auth == null || salt == null || secret == null) {
+            return false;
+        }
+
+        try {
+            byte[] s = salt.getBytes("UTF-8");
+            byte[] data = new byte[s.length + secret.length];
+            System.arraycopy(s, 0, data, 0, s.length);
+            System.arraycopy(secret, 0, data, s.length, secret.length);
+
+            SHA256.Digest sha = new SHA256.Digest();
+            String expected = UrlBase64.encode(sha.digest(data));
+            return MessageDigest.isEqual(expected.getBytes("UTF-8"),
+                                         auth.getBytes("UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Starts handling the data of a connection to the data endpoint.
+     *
+     * @param ws Connection of the link.
+     */
+    void connected(final ServerWebSocket ws) {
+        final WireCodec codec = this.codec;
+        final Router router = broker.getRouter();
+        ws.dataHandler(new Handler<Buffer>() {
+            @Override
+            public void handle(Buffer event) {
+                JsonObject frame;
+                try {
+                    frame = codec.decode(event);
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Invalid frame from {}", dsId, e);
+                    return;
+                }
+
+                Object ping = frame.getValue("ping");
+                if (ping != null) {
+                    JsonObject pong = new JsonObject();
+                    pong.putValue("pong", ping);
+                    write(ws, codec, pong);
+                }
+
+                JsonArray requests = frame.getArray("requests");
+                if (requests != null) {
+                    router.requests(Link.this, requests);
+                }
+                JsonArray responses = frame.getArray("responses");
+                if (responses != null) {
+                    router.responses(Link.this, responses);
+                }
+            }
+        });
+
+        ws.closeHandler(new Handler<Void>() {
+            @Override
+            public void handle(Void event) {
+                sockets.remove(ws);
+                if (sockets.isEmpty()) {
+                    LOGGER.info("Link {} disconnected", dsId);
+                    router.disconnected(Link.this);
+                }
+            }
+        });
+
+        boolean first = sockets.isEmpty();
+        sockets.add(ws);
+        if (first) {
+            LOGGER.info("Link {} connected", dsId);
+            router.connected(this);
+        }
+    }
+
+    /**
+     * Closes every connection of the link.
+     */
+    void close() {
+        for (ServerWebSocket ws : sockets) {
+            try {
+                ws.close();
+            } catch (IllegalStateException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Queues a request to be written to the link.
+     *
+     * @param request Request to write.
+     */
+    void sendRequest(JsonObject request) {
+        synchronized (writeLock) {
+            if (requests == null) {
+                requests = new JsonArray();
+            }
+            requests.addObject(request);
+            schedule();
+        }
+    }
+
+    /**
+     * Queues a response to be written to the link.
+     *
+     * @param response Response to write.
+     */
+    void sendResponse(JsonObject response) {
+        synchronized (writeLock) {
+            if (responses == null) {
+                responses = new JsonArray();
+            }
+            responses.addObject(response);
+            schedule();
+        }
+    }
+
+    private void schedule() {
+        if (scheduled) {
+            return;
+        }
+        scheduled = true;
+        Objects.getDaemonThreadPool().schedule(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, broker.getUpdateInterval(), TimeUnit.MILLISECONDS);
+    }
+
+    private void flush() {
+        JsonObject frame = new JsonObject();
+        synchronized (writeLock) {
+            if (requests != null) {
+                frame.putArray("requests", requests);
+                requests = null;
+            }
+            if (responses != null) {
+                frame.putArray("responses", responses);
+                responses = null;
+            }
+            scheduled = false;
+        }
+
+        // Messages to a disconnected link are dropped
+        for (ServerWebSocket ws : sockets) {
+            write(ws, codec, frame);
+            break;
+        }
+    }
+
+    private static void write(ServerWebSocket ws, WireCodec codec, JsonObject obj) {
+        try {
+            if (codec.isBinary()) {
+                ws.writeBinaryFrame(codec.encode(obj));
+            } else {
+                ws.writeTextFrame(obj.encode());
+            }
+        } catch (IllegalStateException ignored) {
+            // Connection closed while writing
+        }
+    }
+}
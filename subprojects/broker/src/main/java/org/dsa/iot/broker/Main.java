@@ -0,0 +1,29 @@
+package org.dsa.iot.broker;
+
+import org.dsa.iot.dslink.util.LogManager;
+
+/**
+ * Runs the broker stand-in until the process is terminated.
+ *
+ * @author Samuel Grenier
+ */
+public class Main {
+
+    public static void main(String[] args) throws InterruptedException {
+        Arguments parsed = Arguments.parse(args);
+        if (parsed == null) {
+            return;
+        }
+
+        LogManager.configure();
+        LogManager.setLevel(parsed.getLogLevel());
+
+        Broker broker = new Broker();
+        broker.setUpdateInterval(parsed.getUpdateInterval());
+        broker.listen(parsed.getPort(), parsed.getHost());
+
+        while (true) {
+            Thread.sleep(Long.MAX_VALUE);
+        }
+    }
+}
@@ -0,0 +1,467 @@
+package org.dsa.iot.broker;
+
+import org.dsa.iot.dslink.methods.StreamState;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Routes requests of requesters to the responders under
+ * {@code /conns/<name>} and their responses back. Every stream and
+ * subscription is given a rid and sid of the responder so that requests
+ * of different requesters never collide.
+ * <p>
+ * Subscriptions are kept while their responder is disconnected and are
+ * subscribed again once it reconnects.
+ *
+ * @author Samuel Grenier
+ */
+class Router {
+
+    private static final String CONNS = "/conns";
+
+    private final Broker broker;
+
+    Router(Broker broker) {
+        this.broker = broker;
+    }
+
+    /**
+     * Handles the requests received from a link.
+     *
+     * @param from     Link that sent the requests.
+     * @param requests Requests to route.
+     */
+    synchronized void requests(Link from, JsonArray requests) {
+        for (Object o : requests) {
+            if (!(o instanceof JsonObject)) {
+                continue;
+            }
+            JsonObject req = (JsonObject) o;
+            Integer rid = req.getInteger("rid");
+            if (rid == null) {
+                continue;
+            }
+
+            String method = req.getString("method");
+            if ("subscribe".equals(method)) {
+                subscribe(from, rid, req.getArray("paths"));
+            } else if ("unsubscribe".equals(method)) {
+                unsubscribe(from, rid, req.getArray("sids"));
+            } else if ("close".equals(method)) {
+                close(from, rid);
+            } else {
+                forward(from, rid, req);
+            }
+        }
+    }
+
+    /**
+     * Handles the responses received from a link.
+     *
+     * @param from      Link that sent the responses.
+     * @param responses Responses to route.
+     */
+    synchronized void responses(Link from, JsonArray responses) {
+        for (Object o : responses) {
+            if (!(o instanceof JsonObject)) {
+                continue;
+            }
+            JsonObject resp = (JsonObject) o;
+            Integer rid = resp.getInteger("rid");
+            if (rid == null) {
+                continue;
+            } else if (rid == 0) {
+                updates(from, resp.getArray("updates"));
+                continue;
+            }
+
+            // Responses to requests of the broker itself aren't routed
+            Stream stream = from.served.get(rid);
+            if (stream == null) {
+                continue;
+            }
+
+            JsonObject out = copy(resp);
+            out.putNumber("rid", stream.reqRid);
+            if (StreamState.CLOSED.getJsonName().equals(resp.getString("stream"))) {
+                from.served.remove(rid);
+                stream.requester.requested.remove(stream.reqRid);
+            }
+            stream.requester.sendResponse(out);
+        }
+    }
+
+    /**
+     * Subscribes again to the subscriptions of a responder that was
+     * disconnected.
+     *
+     * @param link Link that connected.
+     */
+    synchronized void connected(Link link) {
+        if (link.published.isEmpty()) {
+            return;
+        }
+
+        JsonArray paths = new JsonArray();
+        for (Map.Entry<Integer, Subscription> entry : link.published.entrySet()) {
+            JsonObject path = new JsonObject();
+            path.putString("path", entry.getValue().path);
+            path.putNumber("sid", entry.getKey());
+            paths.addObject(path);
+        }
+        link.sendRequest(request(link, "subscribe", "paths", paths));
+    }
+
+    /**
+     * Closes the streams of a link that disconnected. Its subscriptions
+     * as a requester are released while its subscriptions as a responder
+     * are kept.
+     *
+     * @param link Link that disconnected.
+     */
+    synchronized void disconnected(Link link) {
+        for (Stream stream : link.requested.values()) {
+            release(stream);
+        }
+        link.requested.clear();
+
+        Map<Link, JsonArray> sids = new LinkedHashMap<>();
+        for (Subscription sub : link.subscribed.values()) {
+            sub.responder.published.remove(sub.respSid);
+            add(sids, sub.responder, sub.respSid);
+        }
+        link.subscribed.clear();
+        for (Map.Entry<Link, JsonArray> entry : sids.entrySet()) {
+            Link responder = entry.getKey();
+            responder.sendRequest(request(responder, "unsubscribe", "sids", entry.getValue()));
+        }
+
+        for (Stream stream : link.served.values()) {
+            stream.requester.requested.remove(stream.reqRid);
+            stream.requester.sendResponse(error(stream.reqRid, "Disconnected"));
+        }
+        link.served.clear();
+    }
+
+    private void forward(Link from, int rid, JsonObject req) {
+        // A rid that is reused replaces its previous stream
+        Stream previous = from.requested.remove(rid);
+        if (previous != null) {
+            release(previous);
+        }
+
+        String path = req.getString("path");
+        Target target = resolve(path);
+        if (target == null) {
+            if ("list".equals(req.getString("method"))) {
+                JsonObject resp = list(rid, path);
+                if (resp != null) {
+                    from.sendResponse(resp);
+                    return;
+                }
+            }
+            from.sendResponse(error(rid, "Path not found: " + path));
+            return;
+        }
+
+        Link responder = target.link;
+        Stream stream = new Stream(from, rid, responder, responder.nextRid++);
+        from.requested.put(rid, stream);
+        responder.served.put(stream.respRid, stream);
+
+        JsonObject out = copy(req);
+        out.putNumber("rid", stream.respRid);
+        out.putString("path", target.path);
+        responder.sendRequest(out);
+    }
+
+    private void close(Link from, int rid) {
+        Stream stream = from.requested.remove(rid);
+        if (stream != null) {
+            release(stream);
+        }
+    }
+
+    private void subscribe(Link from, int rid, JsonArray paths) {
+        Map<Link, JsonArray> forwarded = new LinkedHashMap<>();
+        Map<Link, JsonArray> released = new LinkedHashMap<>();
+        if (paths != null) {
+            for (Object o : paths) {
+                if (!(o instanceof JsonObject)) {
+                    continue;
+                }
+                JsonObject obj = (JsonObject) o;
+                Integer sid = obj.getInteger("sid");
+                Target target = resolve(obj.getString("path"));
+                if (sid == null || target == null) {
+                    continue;
+                }
+
+                // A sid that is reused replaces its previous subscription
+                Subscription previous = from.subscribed.remove(sid);
+                if (previous != null) {
+                    previous.responder.published.remove(previous.respSid);
+                    add(released, previous.responder, previous.respSid);
+                }
+
+                Link responder = target.link;
+                Subscription sub = new Subscription(from, sid, responder,
+                                                    responder.nextSid++, target.path);
+                from.subscribed.put(sid, sub);
+                responder.published.put(sub.respSid, sub);
+
+                JsonObject path = copy(obj);
+                path.putString("path", target.path);
+                path.putNumber("sid", sub.respSid);
+                add(forwarded, responder, path);
+            }
+        }
+
+        for (Map.Entry<Link, JsonArray> entry : released.entrySet()) {
+            Link responder = entry.getKey();
+            responder.sendRequest(request(responder, "unsubscribe", "sids", entry.getValue()));
+        }
+        for (Map.Entry<Link, JsonArray> entry : forwarded.entrySet()) {
+            Link responder = entry.getKey();
+            responder.sendRequest(request(responder, "subscribe", "paths", entry.getValue()));
+        }
+        from.sendResponse(closed(rid));
+    }
+
+    private void unsubscribe(Link from, int rid, JsonArray sids) {
+        Map<Link, JsonArray> released = new LinkedHashMap<>();
+        if (sids != null) {
+            for (Object o : sids) {
+                if (!(o instanceof Number)) {
+                    continue;
+                }
+                Subscription sub = from.subscribed.remove(((Number) o).intValue());
+                if (sub != null) {
+                    sub.responder.published.remove(sub.respSid);
+                    add(released, sub.responder, sub.respSid);
+                }
+            }
+        }
+
+        for (Map.Entry<Link, JsonArray> entry : released.entrySet()) {
+            Link responder = entry.getKey();
+            responder.sendRequest(request(responder, "unsubscribe", "sids", entry.getValue()));
+        }
+        from.sendResponse(closed(rid));
+    }
+
+    private void updates(Link from, JsonArray updates) {
+        if (updates == null) {
+            return;
+        }
+
+        Map<Link, JsonArray> routed = new LinkedHashMap<>();
+        for (Object o : updates) {
+            if (o instanceof JsonArray) {
+                JsonArray row = (JsonArray) o;
+                if (row.size() == 0 || !(row.get(0) instanceof Number)) {
+                    continue;
+                }
+                Subscription sub = from.published.get(((Number) row.get(0)).intValue());
+                if (sub == null) {
+                    continue;
+                }
+
+                JsonArray out = new JsonArray();
+                out.addNumber(sub.reqSid);
+                for (int i = 1; i < row.size(); i++) {
+                    out.add(row.get(i));
+                }
+                add(routed, sub.requester, out);
+            } else if (o instanceof JsonObject) {
+                JsonObject update = (JsonObject) o;
+                Integer sid = update.getInteger("sid");
+                Subscription sub = sid == null ? null : from.published.get(sid);
+                if (sub == null) {
+                    continue;
+                }
+
+                JsonObject out = copy(update);
+                out.putNumber("sid", sub.reqSid);
+                add(routed, sub.requester, out);
+            }
+        }
+
+        for (Map.Entry<Link, JsonArray> entry : routed.entrySet()) {
+            JsonObject resp = new JsonObject();
+            resp.putNumber("rid", 0);
+            resp.putArray("updates", entry.getValue());
+            entry.getKey().sendResponse(resp);
+        }
+    }
+
+    /**
+     * Lists the nodes of the broker itself.
+     *
+     * @param rid  Request ID of the list request.
+     * @param path Path to list.
+     * @return Response of the list or {@code null} if the path isn't a
+     *         node of the broker.
+     */
+    private JsonObject list(int rid, String path) {
+        List<String> children = new ArrayList<>();
+        if ("/".equals(path)) {
+            children.add(CONNS.substring(1));
+        } else if (CONNS.equals(path) || (CONNS + "/").equals(path)) {
+            for (Link link : broker.getLinks()) {
+                if (link.isResponder() && link.isConnected()) {
+                    children.add(link.getName());
+                }
+            }
+        } else {
+            return null;
+        }
+
+        JsonArray updates = new JsonArray();
+        updates.addArray(new JsonArray().addString("$is").addString("node"));
+        for (String child : children) {
+            JsonObject node = new JsonObject();
+            node.putString("$is", "node");
+            updates.addArray(new JsonArray().addString(child).addObject(node));
+        }
+
+        JsonObject resp = new JsonObject();
+        resp.putNumber("rid", rid);
+        resp.putString("stream", StreamState.OPEN.getJsonName());
+        resp.putArray("updates", updates);
+        return resp;
+    }
+
+    /**
+     * @param path Path requested by a requester.
+     * @return Responder and path of the node on the responder or
+     *         {@code null} if no connected responder has the path.
+     */
+    private Target resolve(String path) {
+        if (path == null || !path.startsWith(CONNS + "/")) {
+            return null;
+        }
+
+        int start = CONNS.length() + 1;
+        int end = path.indexOf('/', start);
+        String name = end < 0 ? path.substring(start) : path.substring(start, end);
+        Link link = broker.getLink(name);
+        if (link == null || !link.isResponder()) {
+            return null;
+        }
+
+        String local = end < 0 ? "/" : path.substring(end);
+        return new Target(link, local);
+    }
+
+    /**
+     * Closes the responder side of a stream.
+     *
+     * @param stream Stream that was closed by its requester.
+     */
+    private static void release(Stream stream) {
+        stream.responder.served.remove(stream.respRid);
+        JsonObject close = new JsonObject();
+        close.putNumber("rid", stream.respRid);
+        close.putString("method", "close");
+        stream.responder.sendRequest(close);
+    }
+
+    private static JsonObject request(Link responder,
+                                      String method,
+                                      String field,
+                                      JsonArray values) {
+        JsonObject req = new JsonObject();
+        req.putNumber("rid", responder.nextRid++);
+        req.putString("method", method);
+        req.putArray(field, values);
+        return req;
+    }
+
+    private static JsonObject closed(int rid) {
+        JsonObject resp = new JsonObject();
+        resp.putNumber("rid", rid);
+        resp.putString("stream", StreamState.CLOSED.getJsonName());
+        return resp;
+    }
+
+    private static JsonObject error(int rid, String msg) {
+        JsonObject err = new JsonObject();
+        err.putString("msg", msg);
+
+        JsonObject resp = closed(rid);
+        resp.putObject("error", err);
+        return resp;
+    }
+
+    private static JsonObject copy(JsonObject obj) {
+        JsonObject copy = new JsonObject();
+        copy.mergeIn(obj);
+        return copy;
+    }
+
+    private static void add(Map<Link, JsonArray> map, Link link, Object value) {
+        JsonArray array = map.get(link);
+        if (array == null) {
+            array = new JsonArray();
+            map.put(link, array);
+        }
+        array.add(value);
+    }
+
+    /**
+     * A request stream between a requester and a responder.
+     */
+    static class Stream {
+
+        final Link requester;
+        final int reqRid;
+        final Link responder;
+        final int respRid;
+
+        Stream(Link requester, int reqRid, Link responder, int respRid) {
+            this.requester = requester;
+            this.reqRid = reqRid;
+            this.responder = responder;
+            this.respRid = respRid;
+        }
+    }
+
+    /**
+     * A subscription of a requester to a node of a responder.
+     */
+    static class Subscription {
+
+        final Link requester;
+        final int reqSid;
+        final Link responder;
+        final int respSid;
+        final String path;
+
+        Subscription(Link requester, int reqSid,
+                     Link responder, int respSid,
+                     String path) {
+            this.requester = requester;
+            this.reqSid = reqSid;
+            this.responder = responder;
+            this.respSid = respSid;
+            this.path = path;
+        }
+    }
+
+    private static class Target {
+
+        final Link link;
+        final String path;
+
+        Target(Link link, String path) {
+            this.link = link;
+            this.path = path;
+        }
+    }
+}
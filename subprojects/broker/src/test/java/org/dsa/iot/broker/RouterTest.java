@@ -0,0 +1,242 @@
+package org.dsa.iot.broker;
+
+import org.bouncycastle.jcajce.provider.digest.SHA256;
+import org.dsa.iot.dslink.connection.codec.JsonCodec;
+import org.dsa.iot.dslink.util.UrlBase64;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.http.ServerWebSocket;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests routing between links connected to the broker.
+ *
+ * @author Samuel Grenier
+ */
+public class RouterTest {
+
+    private Broker broker;
+    private TestSocket requester;
+    private TestSocket responder;
+
+    @Before
+    public void setup() {
+        broker = new Broker();
+        broker.setUpdateInterval(0);
+        requester = connect("requester-abc", true, false);
+        responder = connect("responder-def", false, true);
+    }
+
+    /**
+     * Ensures streams are given a rid of the responder and the path of the
+     * node on the responder.
+     */
+    @Test
+    public void streams() throws InterruptedException {
+        requester.receive(request(7, "list", "/conns/responder/a/b"));
+
+        JsonObject req = responder.next("requests");
+        Assert.assertEquals("list", req.getString("method"));
+        Assert.assertEquals("/a/b", req.getString("path"));
+        int rid = req.getInteger("rid");
+
+        JsonObject resp = new JsonObject();
+        resp.putNumber("rid", rid);
+        resp.putString("stream", "open");
+        responder.receive(frame("responses", resp));
+
+        resp = requester.next("responses");
+        Assert.assertEquals(7, (int) resp.getInteger("rid"));
+        Assert.assertEquals("open", resp.getString("stream"));
+
+        requester.receive(request(7, "close", null));
+        req = responder.next("requests");
+        Assert.assertEquals("close", req.getString("method"));
+        Assert.assertEquals(rid, (int) req.getInteger("rid"));
+    }
+
+    /**
+     * Ensures updates reach the requester with its own sid.
+     */
+    @Test
+    public void subscriptions() throws InterruptedException {
+        JsonObject path = new JsonObject();
+        path.putString("path", "/conns/responder/value");
+        path.putNumber("sid", 42);
+        JsonObject sub = request(3, "subscribe", null);
+        sub.putArray("paths", new JsonArray().addObject(path));
+        requester.receive(frame("requests", sub));
+
+        JsonObject resp = requester.next("responses");
+        Assert.assertEquals(3, (int) resp.getInteger("rid"));
+        Assert.assertEquals("closed", resp.getString("stream"));
+
+        JsonObject req = responder.next("requests");
+        Assert.assertEquals("subscribe", req.getString("method"));
+        JsonObject forwarded = req.getArray("paths").get(0);
+        Assert.assertEquals("/value", forwarded.getString("path"));
+        int sid = forwarded.getInteger("sid");
+
+        JsonArray row = new JsonArray().addNumber(sid).addNumber(10).addString("ts");
+        JsonObject update = new JsonObject();
+        update.putNumber("rid", 0);
+        update.putArray("updates", new JsonArray().addArray(row));
+        responder.receive(frame("responses", update));
+
+        resp = requester.next("responses");
+        Assert.assertEquals(0, (int) resp.getInteger("rid"));
+        row = resp.getArray("updates").get(0);
+        Assert.assertEquals(42, ((Number) row.get(0)).intValue());
+        Assert.assertEquals(10, ((Number) row.get(1)).intValue());
+
+        // The subscription is released once the requester disconnects
+        requester.disconnect();
+        req = responder.next("requests");
+        Assert.assertEquals("unsubscribe", req.getString("method"));
+        Assert.assertEquals(sid, ((Number) req.getArray("sids").get(0)).intValue());
+    }
+
+    /**
+     * Ensures requests to unknown paths fail.
+     */
+    @Test
+    public void unknownPath() throws InterruptedException {
+        requester.receive(request(1, "set", "/conns/missing/value"));
+        JsonObject resp = requester.next("responses");
+        Assert.assertEquals(1, (int) resp.getInteger("rid"));
+        Assert.assertEquals("closed", resp.getString("stream"));
+        Assert.assertNotNull(resp.getObject("error"));
+    }
+
+    /**
+     * Ensures the data endpoint only accepts the salt of the last
+     * handshake.
+     */
+    @Test
+    public void authenticate() throws Exception {
+        byte[] secret = new byte[32];
+        secret[0] = 1;
+        Link link = broker.getOrCreate("auth-xyz");
+        link.handshake(true, false, new JsonCodec(), "0x1", secret);
+
+        byte[] salt = "0x1".getBytes("UTF-8");
+        byte[] data = new byte[salt.length + secret.length];
+        System.arraycopy(salt, 0, data, 0, salt.length);
+        System.arraycopy(secret, 0, data, salt.length, secret.length);
+        String auth = UrlBase64.encode(new SHA256.Digest().digest(data));
+
+        Assert.assertTrue(link.authenticate(auth));
+        Assert.assertFalse(link.authenticate(auth + "a"));
+        Assert.assertFalse(link.authenticate(null));
+    }
+
+    private TestSocket connect(String dsId, boolean req, boolean resp) {
+        Link link = broker.getOrCreate(dsId);
+        link.handshake(req, resp, new JsonCodec(), "0x1", new byte[32]);
+        TestSocket socket = new TestSocket();
+        link.connected(socket.proxy);
+        return socket;
+    }
+
+    private static JsonObject request(int rid, String method, String path) {
+        JsonObject req = new JsonObject();
+        req.putNumber("rid", rid);
+        req.putString("method", method);
+        if (path != null) {
+            req.putString("path", path);
+        }
+        return req;
+    }
+
+    private static JsonObject frame(String field, JsonObject obj) {
+        JsonObject frame = new JsonObject();
+        frame.putArray(field, new JsonArray().addObject(obj));
+        return frame;
+    }
+
+    /**
+     * Web socket of a link that records the frames written to it.
+     */
+    private static class TestSocket implements InvocationHandler {
+
+        private final BlockingQueue<JsonObject> messages = new LinkedBlockingQueue<>();
+        private final ServerWebSocket proxy;
+        private Handler<Buffer> dataHandler;
+        private Handler<Void> closeHandler;
+
+        TestSocket() {
+            ClassLoader loader = ServerWebSocket.class.getClassLoader();
+            Class<?>[] types = new Class<?>[] { ServerWebSocket.class };
+            proxy = (ServerWebSocket) Proxy.newProxyInstance(loader, types, this);
+        }
+
+        void receive(JsonObject frame) {
+            if (!frame.containsField("requests") && !frame.containsField("responses")) {
+                frame = frame("requests", frame);
+            }
+            dataHandler.handle(new Buffer(frame.encode()));
+        }
+
+        void disconnect() {
+            closeHandler.handle(null);
+        }
+
+        /**
+         * @param field Field of the frame the message is in.
+         * @return Next message written to the socket.
+         */
+        JsonObject next(String field) throws InterruptedException {
+            JsonObject msg = messages.poll(5, TimeUnit.SECONDS);
+            Assert.assertNotNull(msg);
+            Assert.assertEquals(field, msg.getString("field"));
+            return msg.getObject("message");
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "dataHandler":
+                    dataHandler = (Handler<Buffer>) args[0];
+                    break;
+                case "closeHandler":
+                    closeHandler = (Handler<Void>) args[0];
+                    break;
+                case "writeTextFrame":
+                    JsonObject frame = new JsonObject((String) args[0]);
+                    record(frame, "requests");
+                    record(frame, "responses");
+                    break;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+            }
+            return method.getReturnType().isInstance(proxy) ? proxy : null;
+        }
+
+        private void record(JsonObject frame, String field) {
+            JsonArray array = frame.getArray(field);
+            if (array == null) {
+                return;
+            }
+            for (Object o : array) {
+                JsonObject msg = new JsonObject();
+                msg.putString("field", field);
+                msg.putObject("message", (JsonObject) o);
+                messages.add(msg);
+            }
+        }
+    }
+}
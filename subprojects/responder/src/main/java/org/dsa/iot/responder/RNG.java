@@ -8,6 +8,7 @@ import org.dsa.iot.dslink.node.actions.ActionResult;
 import org.dsa.iot.dslink.node.actions.Parameter;
 import org.dsa.iot.dslink.node.value.Value;
 import org.dsa.iot.dslink.node.value.ValueType;
+import org.dsa.iot.dslink.util.HashedWheelTimer;
 import org.dsa.iot.dslink.util.Objects;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,8 +18,6 @@ import org.vertx.java.core.json.JsonArray;
 import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -32,7 +31,7 @@ public class RNG {
     private static final Random RANDOM = new Random();
 
     private final Node parent;
-    private final Map<Node, ScheduledFuture<?>> futures;
+    private final Map<Node, HashedWheelTimer.Timeout> futures;
 
     private RNG(Node parent) {
         this.parent = parent;
@@ -90,10 +89,10 @@ public class RNG {
             LOGGER.info(msg);
 
             // Remove RNG task if possible
-            ScheduledFuture<?> fut = futures.remove(child);
+            HashedWheelTimer.Timeout fut = futures.remove(child);
             if (fut != null) {
                 // Cancel out the RNG task
-                fut.cancel(false);
+                fut.cancel();
             }
         }
         return min;
@@ -107,8 +106,9 @@ public class RNG {
                 if (futures.containsKey(event)) {
                     return;
                 }
-                ScheduledThreadPoolExecutor stpe = Objects.getDaemonThreadPool();
-                ScheduledFuture<?> fut = stpe.scheduleWithFixedDelay(new Runnable() {
+                // The jitter spreads the updates of many nodes over time
+                HashedWheelTimer timer = Objects.getTimer();
+                HashedWheelTimer.Timeout fut = timer.scheduleWithFixedDelay(new Runnable() {
                     @Override
                     public void run() {
                         Value val = new Value(RANDOM.nextInt());
@@ -117,7 +117,7 @@ public class RNG {
                         int value = val.getNumber().intValue();
                         LOGGER.info(event.getPath() + " has new value of " + value);
                     }
-                }, 0, 2, TimeUnit.SECONDS);
+                }, 0, 2000, 200, TimeUnit.MILLISECONDS, null);
                 futures.put(event, fut);
             }
         });
@@ -125,9 +125,9 @@ public class RNG {
         child.getListener().setOnUnsubscribeHandler(new Handler<Node>() {
             @Override
             public void handle(Node event) {
-                ScheduledFuture<?> fut = futures.remove(event);
+                HashedWheelTimer.Timeout fut = futures.remove(event);
                 if (fut != null) {
-                    fut.cancel(false);
+                    fut.cancel();
                     LOGGER.info("Unsubscribed to {}", event.getPath());
                 }
             }